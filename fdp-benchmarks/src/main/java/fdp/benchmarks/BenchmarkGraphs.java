@@ -0,0 +1,47 @@
+package fdp.benchmarks;
+
+import org.jgrapht.Graph;
+
+import fdp.GraphConfiguration;
+import fdp.GraphType;
+import fdp.Parameter;
+import fdp.RepulsionMode;
+import fdp.graph.Edge;
+import fdp.graph.Vertex;
+
+/**
+ * Graphs and parameters shared by the benchmarks, they match the defaults of
+ * the main window.
+ */
+final class BenchmarkGraphs {
+
+	static final int FRAME_WIDTH = 800;
+	static final int FRAME_HEIGHT = 600;
+	static final String ATTRACTIVE_FORCE = "(d * d) / k";
+	static final String REPULSIVE_FORCE = "(k * k) / d";
+
+	private BenchmarkGraphs() {
+	}
+
+	static Parameter parameter(RepulsionMode repulsionMode) {
+		Parameter p = new Parameter();
+		p.setFrameWidth(FRAME_WIDTH);
+		p.setFrameHeight(FRAME_HEIGHT);
+		p.setEquilibriumCriterion(true);
+		p.setCriterion(15);
+		p.setCoolingRate(0.01);
+		p.setFrameDelay(0);
+		p.setAttractiveForce(ATTRACTIVE_FORCE);
+		p.setRepulsiveForce(REPULSIVE_FORCE);
+		p.setRepulsionMode(repulsionMode);
+		return p;
+	}
+
+	static GraphConfiguration configuration(GraphType type, int vertexCount, Parameter p) {
+		return new GraphConfiguration(type.createGenerator(type.sizeFor(vertexCount)), p);
+	}
+
+	static Graph<Vertex, Edge> generate(GraphType type, int vertexCount, Parameter p) {
+		return configuration(type, vertexCount, p).generateGraph();
+	}
+}
@@ -0,0 +1,28 @@
+package fdp.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openjdk.jmh.Main;
+
+/**
+ * Runs the JMH benchmarks and, unless specified otherwise on the command line,
+ * writes the results as JSON to jmh-result.json so that they can be compared
+ * between releases.
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws Exception {
+		List<String> options = new ArrayList<>(Arrays.asList(args));
+		if (!options.contains("-rf")) {
+			options.add("-rf");
+			options.add("json");
+		}
+		if (!options.contains("-rff")) {
+			options.add("-rff");
+			options.add("jmh-result.json");
+		}
+		Main.main(options.toArray(new String[options.size()]));
+	}
+}
@@ -0,0 +1,67 @@
+package fdp.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jgrapht.Graph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fdp.GraphType;
+import fdp.MultilevelSimulation;
+import fdp.Parameter;
+import fdp.RepulsionMode;
+import fdp.Simulation;
+import fdp.graph.Edge;
+import fdp.graph.Vertex;
+
+/**
+ * Time of a full simulation until mechanical equilibrium, or until the
+ * iteration cap is reached.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EquilibriumBenchmark {
+
+	@Param
+	private GraphType graphType;
+
+	@Param({ "100", "500" })
+	private int vertices;
+
+	@Param
+	private RepulsionMode repulsionMode;
+
+	@Param({ "false", "true" })
+	private boolean multilevel;
+
+	private Parameter parameter;
+	private Graph<Vertex, Edge> graph;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		parameter = BenchmarkGraphs.parameter(repulsionMode);
+		graph = BenchmarkGraphs.generate(graphType, vertices, parameter);
+	}
+
+	@Benchmark
+	public int simulate() throws Exception {
+		if (multilevel) {
+			return new MultilevelSimulation(graph, parameter).call();
+		}
+		return new Simulation(graph, parameter).call();
+	}
+}
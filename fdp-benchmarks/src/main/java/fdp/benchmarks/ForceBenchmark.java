@@ -0,0 +1,74 @@
+package fdp.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleBinaryOperator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fdp.force.ExpressionForce;
+import fdp.force.ForceCompiler;
+import parsii.tokenizer.ParseException;
+
+/**
+ * Cost of a single force evaluation, compiled and interpreted by parsii.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ForceBenchmark {
+
+	private static final int DISTANCES = 1024;
+
+	@Param({ "(k * k) / d", "(d * d) / k", "k * log(d / k)", "sqrt(d) + k / d", "2k / d" })
+	private String expression;
+
+	private DoubleBinaryOperator compiled;
+	private DoubleBinaryOperator parsii;
+	private double[] distances = new double[DISTANCES];
+	private double k = 20;
+
+	@Setup
+	public void setup() throws ParseException {
+		compiled = ForceCompiler.compile(expression);
+		parsii = new ExpressionForce(expression);
+		Random random = new Random(42);
+		for (int i = 0; i < DISTANCES; i++) {
+			distances[i] = 0.5 + random.nextDouble() * 800;
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(DISTANCES)
+	public double compiled() {
+		return evaluate(compiled);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(DISTANCES)
+	public double parsii() {
+		return evaluate(parsii);
+	}
+
+	private double evaluate(DoubleBinaryOperator force) {
+		double sum = 0;
+		for (double d : distances) {
+			sum += force.applyAsDouble(d, k);
+		}
+		return sum;
+	}
+}
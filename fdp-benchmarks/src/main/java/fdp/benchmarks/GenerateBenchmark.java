@@ -0,0 +1,52 @@
+package fdp.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jgrapht.Graph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fdp.GraphConfiguration;
+import fdp.GraphType;
+import fdp.RepulsionMode;
+import fdp.graph.Edge;
+import fdp.graph.Vertex;
+
+/**
+ * Cost of {@link GraphConfiguration#generateGraph()}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenerateBenchmark {
+
+	@Param
+	private GraphType graphType;
+
+	@Param({ "100", "1000", "10000" })
+	private int vertices;
+
+	private GraphConfiguration config;
+
+	@Setup
+	public void setup() {
+		config = BenchmarkGraphs.configuration(graphType, vertices, BenchmarkGraphs.parameter(RepulsionMode.EXACT));
+	}
+
+	@Benchmark
+	public Graph<Vertex, Edge> generateGraph() {
+		return config.generateGraph();
+	}
+}
@@ -0,0 +1,92 @@
+package fdp.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fdp.GraphType;
+import fdp.Parameter;
+import fdp.RepulsionMode;
+import fdp.Simulation;
+import fdp.VertexOrder;
+import fdp.force.ForceCompiler;
+import fdp.graph.CompactGraph;
+import fdp.layout.LayoutKernel;
+import parsii.tokenizer.ParseException;
+
+/**
+ * Cost of a single simulation step for every graph family of the main window.
+ * Every iteration starts from the same random positions in a freshly computed
+ * vertex order, since the steps at a fixed temperature pile the vertices up at
+ * the border of the frame and the order decays as they move.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StepBenchmark {
+
+	@Param
+	private GraphType graphType;
+
+	@Param({ "100", "1000", "5000" })
+	private int vertices;
+
+	@Param
+	private RepulsionMode repulsionMode;
+
+	@Param
+	private VertexOrder vertexOrder;
+
+	private Parameter p;
+	private CompactGraph graph;
+	private double k;
+	private double[] x;
+	private double[] y;
+	private LayoutKernel kernel;
+	private double t;
+
+	@Setup
+	public void setup() {
+		p = BenchmarkGraphs.parameter(repulsionMode);
+		graph = CompactGraph.compile(BenchmarkGraphs.generate(graphType, vertices, p));
+		int area = Math.min(p.getFrameWidth() * p.getFrameWidth(), p.getFrameHeight() * p.getFrameHeight());
+		k = Simulation.optimalDistance(area, graph.getVertexCount());
+		int n = graph.getVertexCount();
+		x = new double[n];
+		y = new double[n];
+		Random random = new Random(1);
+		for (int i = 0; i < n; i++) {
+			x[i] = random.nextDouble() * p.getFrameWidth();
+			y[i] = random.nextDouble() * p.getFrameHeight();
+		}
+		t = p.getFrameWidth() / 10;
+	}
+
+	@Setup(Level.Iteration)
+	public void place() throws ParseException {
+		kernel = new LayoutKernel(graph, p, k, ForceCompiler.compile(p.getAttractiveForce()),
+				ForceCompiler.compile(p.getRepulsiveForce()));
+		kernel.setPositions(0, graph.getVertexCount(), x, y);
+		kernel.reorder(vertexOrder);
+	}
+
+	@Benchmark
+	public double step() {
+		return kernel.step(t);
+	}
+}
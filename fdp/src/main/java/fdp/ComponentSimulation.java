@@ -0,0 +1,531 @@
+package fdp;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntUnaryOperator;
+
+import org.jgrapht.Graph;
+
+import fdp.force.ForceCompiler;
+import fdp.graph.CompactGraph;
+import fdp.graph.Edge;
+import fdp.graph.Vertex;
+import fdp.layout.RectanglePacker;
+import fdp.layout.Snapshot;
+import fdp.layout.SnapshotBuffer;
+import fdp.metrics.IterationListener;
+import parsii.tokenizer.ParseException;
+
+/**
+ * Lays out every connected component of a graph on its own and packs the
+ * results into the frame. Vertices of different components do not repel each
+ * other, which saves most of the work of the exact repulsion for graphs with
+ * many components and keeps small components from being pushed to the edges
+ * of the frame.
+ * <p>
+ * Every component gets a frame whose area is its share of the vertices, so
+ * its optimal distance is the one of the whole graph. The components are laid
+ * out in parallel on the workers of the {@link LayoutScheduler}, largest
+ * first, and packed by their bounding boxes with a
+ * {@link RectanglePacker} once all are finished. A graph with a single
+ * component is laid out like by a {@link Simulation}.
+ * <p>
+ * Run in slices as {@link SteppedLayout}, every slice advances all components
+ * on the same workers, so paced and paused layouts lay out their components
+ * in parallel as well.
+ */
+public class ComponentSimulation implements SteppedLayout {
+
+	/**
+	 * Nanoseconds between two snapshots of all components while they are
+	 * laid out.
+	 */
+	private static final long PUBLISH_INTERVAL = TimeUnit.MILLISECONDS.toNanos(15);
+
+	private final CompactGraph graph;
+	private final Parameter parameter;
+	private SnapshotBuffer snapshots;
+	private IterationListener listener;
+
+	private double[] x;
+	private double[] y;
+
+	// the components of the current run, set up by prepare()
+	private Simulation single;
+	private int[][] members;
+	private int[] order;
+	private Simulation[] simulations;
+	private SnapshotBuffer[] buffers;
+	private boolean[] running;
+	private double[] widths;
+	private double[] heights;
+	private double[] left;
+	private double[] top;
+	private double scale;
+	// nanoTime of the last snapshot of all components
+	private long published;
+
+	/**
+	 * Creates a new ComponentSimulation.
+	 *
+	 * @param graph the graph to layout
+	 * @param p parameters for the simulation of every component
+	 * @throws ParseException when the Strings in p that represent the force
+	 *             functions are malformed or empty
+	 */
+	public ComponentSimulation(Graph<Vertex, Edge> graph, Parameter p) throws ParseException {
+		this(CompactGraph.compile(graph), p);
+	}
+
+	/**
+	 * Creates a new ComponentSimulation of a compiled graph.
+	 *
+	 * @param graph the graph to layout
+	 * @param p parameters for the simulation of every component
+	 * @throws ParseException when the Strings in p that represent the force
+	 *             functions are malformed or empty
+	 */
+	public ComponentSimulation(CompactGraph graph, Parameter p) throws ParseException {
+		this.graph = graph;
+		this.parameter = p;
+		// fail early instead of on the first component
+		ForceCompiler.compile(p.getAttractiveForce());
+		ForceCompiler.compile(p.getRepulsiveForce());
+	}
+
+	/**
+	 * Lays out all components in parallel. If the thread is interrupted, the
+	 * components stop after their current step, are packed anyway and the
+	 * interrupt status is kept.
+	 *
+	 * @return the highest number of iterations a component used
+	 * @throws ParseException
+	 */
+	int startSimulation() throws ParseException {
+		if (!prepare()) {
+			return 0;
+		}
+		if (single != null) {
+			int iterations = single.startSimulation();
+			copyPositions(single);
+			return iterations;
+		}
+
+		Thread caller = Thread.currentThread();
+		int iterations = forEachComponent(c -> {
+			Simulation simulation = simulations[c];
+			simulation.begin();
+			try {
+				// an interrupt of the caller stops the components on other workers as well
+				while (simulation.advance(Integer.MAX_VALUE, PUBLISH_INTERVAL) && !caller.isInterrupted()) {
+					publishIfDue();
+				}
+			} catch (RuntimeException | Error e) {
+				simulation.end();
+				throw e;
+			}
+			return simulation.end();
+		});
+		finish(iterations);
+		return iterations;
+	}
+
+	/**
+	 * Runs a task for every component with a simulation on the workers of the
+	 * {@link LayoutScheduler}, largest first, as many at once as the
+	 * processors allow. Pausing or cancelling the whole layout reaches every
+	 * component, an interrupt of the calling thread keeps the components
+	 * that were not started yet from starting.
+	 *
+	 * @param task runs a component and returns its iterations
+	 * @return the highest number of iterations a component used
+	 */
+	private int forEachComponent(IntUnaryOperator task) {
+		int count = members.length;
+		int threads = Math.max(1, Math.min(count, Runtime.getRuntime().availableProcessors()
+				/ Math.max(1, parameter.getParallelism())));
+		Thread caller = Thread.currentThread();
+		AtomicInteger next = new AtomicInteger();
+		// every part takes the next component until none is left
+		Callable<Integer> part = () -> {
+			int iterations = 0;
+			int i;
+			while ((i = next.getAndIncrement()) < count && !caller.isInterrupted()) {
+				if (simulations[order[i]] != null) {
+					iterations = Math.max(iterations, task.applyAsInt(order[i]));
+				}
+			}
+			return iterations;
+		};
+		int iterations = 0;
+		for (Future<Integer> future : LayoutScheduler.invokeAll(Collections.nCopies(threads, part))) {
+			iterations = Math.max(iterations, getUninterruptibly(future));
+		}
+		return iterations;
+	}
+
+	/**
+	 * Splits the graph into its components and creates their simulations and
+	 * frames.
+	 *
+	 * @return false if the graph is empty
+	 * @throws ParseException
+	 */
+	private boolean prepare() throws ParseException {
+		int n = graph.getVertexCount();
+		x = new double[n];
+		y = new double[n];
+		single = null;
+		members = null;
+		if (n == 0) {
+			return false;
+		}
+
+		int[] component = graph.components();
+		int count = 0;
+		for (int c : component) {
+			count = Math.max(count, c + 1);
+		}
+		if (count <= 1) {
+			single = new Simulation(graph, parameter);
+			single.setSnapshots(snapshots);
+			single.setListener(listener);
+			return true;
+		}
+
+		members = members(component, count);
+		double frameWidth = parameter.getFrameWidth();
+		double frameHeight = parameter.getFrameHeight();
+		widths = new double[count];
+		heights = new double[count];
+		simulations = new Simulation[count];
+		buffers = new SnapshotBuffer[count];
+		for (int c = 0; c < count; c++) {
+			double share = Math.sqrt((double) members[c].length / n);
+			widths[c] = Math.max(1, Math.round(frameWidth * share));
+			heights[c] = Math.max(1, Math.round(frameHeight * share));
+			if (members[c].length == 1) {
+				// a single vertex does not move
+				continue;
+			}
+			Parameter p = new Parameter(parameter);
+			p.setFrameWidth((int) widths[c]);
+			p.setFrameHeight((int) heights[c]);
+			simulations[c] = new Simulation(graph.subgraph(members[c]), p);
+			simulations[c].setListener(listener);
+			if (snapshots != null) {
+				buffers[c] = new SnapshotBuffer();
+				simulations[c].setSnapshots(buffers[c]);
+			}
+		}
+
+		// the frames are drawn where they would be packed while the components are laid out
+		left = new double[count];
+		top = new double[count];
+		scale = RectanglePacker.pack(widths, heights, frameWidth, frameHeight, 1, left, top);
+
+		Integer[] sorted = new Integer[count];
+		for (int c = 0; c < count; c++) {
+			sorted[c] = c;
+		}
+		// the largest components take longest, start them first
+		Arrays.sort(sorted, Comparator.comparingInt((Integer c) -> -members[c].length));
+		order = new int[count];
+		for (int c = 0; c < count; c++) {
+			order[c] = sorted[c];
+		}
+		return true;
+	}
+
+	/**
+	 * Packs the finished components and publishes the final positions.
+	 */
+	private void finish(int iterations) {
+		pack(members, simulations);
+		if (snapshots != null) {
+			snapshots.publish(graph, iterations, 0, x, y);
+		}
+		Vertex[] vertices = graph.getVertices();
+		if (vertices != null) {
+			for (int i = 0; i < x.length; i++) {
+				vertices[i].getPos().set(x[i], y[i]);
+			}
+		}
+	}
+
+	private void copyPositions(Simulation simulation) {
+		System.arraycopy(simulation.getKernel().getX(), 0, x, 0, x.length);
+		System.arraycopy(simulation.getKernel().getY(), 0, y, 0, y.length);
+	}
+
+	@Override
+	public void begin() {
+		try {
+			if (!prepare()) {
+				return;
+			}
+		} catch (ParseException e) {
+			// the constructor compiled the same forces
+			throw new IllegalStateException(e);
+		}
+		if (single != null) {
+			single.begin();
+			return;
+		}
+		running = new boolean[members.length];
+		for (int c = 0; c < members.length; c++) {
+			if (simulations[c] != null) {
+				simulations[c].begin();
+				running[c] = true;
+			}
+		}
+		if (snapshots != null) {
+			publishFrames();
+		}
+	}
+
+	/**
+	 * Advances every component that is not finished yet in parallel, like
+	 * {@link #startSimulation()} does, largest first. Every component runs at
+	 * least one step, even if the ones before on the same worker used up the
+	 * budget.
+	 */
+	@Override
+	public boolean advance(int target, long budgetNanos) {
+		if (single != null) {
+			return single.advance(target, budgetNanos);
+		}
+		if (members == null) {
+			return false;
+		}
+		long start = System.nanoTime();
+		forEachComponent(c -> {
+			if (running[c]) {
+				long remaining = budgetNanos == Long.MAX_VALUE ? Long.MAX_VALUE
+						: Math.max(0, budgetNanos - (System.nanoTime() - start));
+				running[c] = simulations[c].advance(target, remaining);
+			}
+			return 0;
+		});
+		boolean more = false;
+		for (boolean r : running) {
+			more |= r;
+		}
+		if (snapshots != null) {
+			publishFrames();
+		}
+		return more && !Thread.currentThread().isInterrupted();
+	}
+
+	@Override
+	public int end() {
+		if (single != null) {
+			int iterations = single.end();
+			copyPositions(single);
+			return iterations;
+		}
+		if (members == null) {
+			return 0;
+		}
+		int iterations = 0;
+		for (Simulation simulation : simulations) {
+			if (simulation != null) {
+				iterations = Math.max(iterations, simulation.end());
+			}
+		}
+		finish(iterations);
+		return iterations;
+	}
+
+	@Override
+	public int getIteration() {
+		if (single != null) {
+			return single.getIteration();
+		}
+		int iteration = 0;
+		if (simulations != null) {
+			for (Simulation simulation : simulations) {
+				if (simulation != null) {
+					iteration = Math.max(iteration, simulation.getIteration());
+				}
+			}
+		}
+		return iteration;
+	}
+
+	/**
+	 * Groups the vertices by their component.
+	 */
+	private static int[][] members(int[] component, int count) {
+		int[] sizes = new int[count];
+		for (int c : component) {
+			sizes[c]++;
+		}
+		int[][] members = new int[count][];
+		for (int c = 0; c < count; c++) {
+			members[c] = new int[sizes[c]];
+			sizes[c] = 0;
+		}
+		for (int i = 0; i < component.length; i++) {
+			members[component[i]][sizes[component[i]]++] = i;
+		}
+		return members;
+	}
+
+	/**
+	 * Publishes the latest snapshots of all components placed in their frames.
+	 */
+	private void publishFrames() {
+		int iteration = 0;
+		double temperature = 0;
+		for (int c = 0; c < members.length; c++) {
+			Snapshot snapshot = buffers[c] == null ? null : buffers[c].latest();
+			for (int i = 0; i < members[c].length; i++) {
+				int v = members[c][i];
+				double localX = snapshot == null ? widths[c] / 2 : snapshot.getX(i);
+				double localY = snapshot == null ? heights[c] / 2 : snapshot.getY(i);
+				x[v] = left[c] + localX * scale;
+				y[v] = top[c] + localY * scale;
+			}
+			if (snapshot != null) {
+				iteration = Math.max(iteration, snapshot.getIteration());
+				temperature = Math.max(temperature, snapshot.getTemperature());
+			}
+		}
+		snapshots.publish(graph, iteration, temperature, x, y);
+	}
+
+	/**
+	 * Packs the bounding boxes of the finished components, keeping the optimal
+	 * distance of the whole graph between them.
+	 */
+	private void pack(int[][] members, Simulation[] simulations) {
+		int count = members.length;
+		int frameWidth = parameter.getFrameWidth();
+		int frameHeight = parameter.getFrameHeight();
+		double margin = Simulation.optimalDistance(Math.min(frameWidth * frameWidth, frameHeight * frameHeight),
+				graph.getVertexCount());
+		double[] minX = new double[count];
+		double[] minY = new double[count];
+		double[] widths = new double[count];
+		double[] heights = new double[count];
+		double[][] cx = new double[count][];
+		double[][] cy = new double[count][];
+		for (int c = 0; c < count; c++) {
+			// components that were never started, e.g. after an interrupt, have all vertices at 0
+			boolean started = simulations[c] != null && simulations[c].getKernel() != null;
+			cx[c] = started ? simulations[c].getKernel().getX() : new double[members[c].length];
+			cy[c] = started ? simulations[c].getKernel().getY() : new double[members[c].length];
+			double maxX = Double.NEGATIVE_INFINITY;
+			double maxY = Double.NEGATIVE_INFINITY;
+			minX[c] = Double.POSITIVE_INFINITY;
+			minY[c] = Double.POSITIVE_INFINITY;
+			for (int i = 0; i < members[c].length; i++) {
+				minX[c] = Math.min(minX[c], cx[c][i]);
+				minY[c] = Math.min(minY[c], cy[c][i]);
+				maxX = Math.max(maxX, cx[c][i]);
+				maxY = Math.max(maxY, cy[c][i]);
+			}
+			widths[c] = maxX - minX[c] + margin;
+			heights[c] = maxY - minY[c] + margin;
+		}
+		double[] left = new double[count];
+		double[] top = new double[count];
+		double scale = RectanglePacker.pack(widths, heights, frameWidth, frameHeight, 1, left, top);
+		for (int c = 0; c < count; c++) {
+			for (int i = 0; i < members[c].length; i++) {
+				int v = members[c][i];
+				// the margin is split between both sides of the box
+				x[v] = left[c] + (cx[c][i] - minX[c] + margin / 2) * scale;
+				y[v] = top[c] + (cy[c][i] - minY[c] + margin / 2) * scale;
+			}
+		}
+	}
+
+	/**
+	 * Publishes the snapshots of all components unless that was done less
+	 * than the publish interval ago. Called by the tasks of all components.
+	 */
+	private void publishIfDue() {
+		if (snapshots == null) {
+			return;
+		}
+		synchronized (this) {
+			long now = System.nanoTime();
+			if (now - published >= PUBLISH_INTERVAL) {
+				published = now;
+				publishFrames();
+			}
+		}
+	}
+
+	private static int getUninterruptibly(Future<Integer> future) {
+		boolean interrupted = Thread.interrupted();
+		try {
+			while (true) {
+				try {
+					return future.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (CancellationException e) {
+					// never started
+					return 0;
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Layout of a component failed", e.getCause());
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Sets a buffer the positions of all components are published to while
+	 * they are laid out, each in the frame it is packed into at first, and
+	 * once more after the final packing.
+	 *
+	 * @param snapshots the buffer or null
+	 */
+	public void setSnapshots(SnapshotBuffer snapshots) {
+		this.snapshots = snapshots;
+	}
+
+	/**
+	 * Sets a listener that receives the measurements of every iteration of
+	 * every component, which is reported as a simulation of its own. The
+	 * listener is called from several threads at once.
+	 *
+	 * @param listener the listener or null
+	 */
+	public void setListener(IterationListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * @return x-coordinates of the vertices after the simulation
+	 */
+	public double[] getX() {
+		return x;
+	}
+
+	/**
+	 * @return y-coordinates of the vertices after the simulation
+	 */
+	public double[] getY() {
+		return y;
+	}
+
+	@Override
+	public Integer call() throws Exception {
+		return startSimulation();
+	}
+}
@@ -0,0 +1,18 @@
+package fdp;
+
+/**
+ * Receives the results of a cooling rate search while it is running.
+ */
+public interface CoolingRateListener {
+
+	/**
+	 * Called from a worker thread whenever the average iterations of a cooling
+	 * rate are known, and again whenever the adaptive search refines them with
+	 * more samples.
+	 * 
+	 * @param configuration index of the graph configuration
+	 * @param coolingRate the cooling rate
+	 * @param iterations the average iterations used until equilibrium
+	 */
+	void rateEvaluated(int configuration, double coolingRate, double iterations);
+}
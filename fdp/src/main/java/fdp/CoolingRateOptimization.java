@@ -0,0 +1,137 @@
+package fdp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import parsii.tokenizer.ParseException;
+
+/**
+ * Searches the optimal cooling rate for several graph configurations at once.
+ * All simulations of all configurations run as batch layouts of the default
+ * {@link LayoutScheduler}, so interactive layouts go first. The configurations
+ * are searched concurrently so the workers stay busy until the end, every
+ * search is a batch layout itself that runs queued simulations while it waits
+ * for its own. The remaining simulations are cancelled when the search is
+ * finished or cancelled.
+ */
+public class CoolingRateOptimization {
+
+	private final List<GraphConfiguration> configs;
+	private final double from;
+	private final double to;
+	private final double stepSize;
+	private final int sampleSize;
+	private final boolean adaptive;
+	private CoolingRateListener listener;
+
+	// runs the searches as well, so cancelling it stops both
+	private final ExecutorService simulations = LayoutScheduler.getDefault().executor(LayoutPriority.BATCH);
+	private volatile boolean cancelled = false;
+
+	/**
+	 * Creates a new search.
+	 * 
+	 * @param configs the graph configurations, their parameters are not changed
+	 * @param from lowest cooling rate, must be greater 0 and less than to
+	 * @param to highest cooling rate, must be less than 1
+	 * @param stepSize distance between tested rates or, if adaptive, the
+	 *            resolution the optimum is searched with, must be greater 0
+	 * @param sampleSize number of samples taken for every cooling rate, at most
+	 *            if adaptive
+	 * @param adaptive true for the adaptive search of
+	 *            {@link CoolingRateOptimizer#optimize(double, double, double)},
+	 *            false to test every rate
+	 */
+	public CoolingRateOptimization(List<GraphConfiguration> configs, double from, double to, double stepSize,
+			int sampleSize, boolean adaptive) {
+		this.configs = configs;
+		this.from = from;
+		this.to = to;
+		this.stepSize = stepSize;
+		this.sampleSize = sampleSize;
+		this.adaptive = adaptive;
+	}
+
+	/**
+	 * Sets a listener that receives the results of every cooling rate as soon
+	 * as they are known. It is called from worker threads.
+	 * 
+	 * @param listener the listener or null
+	 */
+	public void setListener(CoolingRateListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Runs the search and waits for it to finish, can only be called once.
+	 * The calling thread runs queued simulations meanwhile.
+	 * 
+	 * @return the optimum of every configuration
+	 * @throws ParseException when the force functions of a configuration are
+	 *             malformed or empty
+	 * @throws CancellationException when the search was cancelled
+	 * @throws InterruptedException when the calling thread was interrupted
+	 */
+	public List<CoolingRateOptimum> run() throws ParseException, InterruptedException {
+		try {
+			// interrupted simulations end early, their results must not be reported
+			CoolingRateListener reporter = (configuration, coolingRate, iterations) -> {
+				if (!cancelled && listener != null) {
+					listener.rateEvaluated(configuration, coolingRate, iterations);
+				}
+			};
+			List<CoolingRateOptimizer> optimizers = new ArrayList<>();
+			for (int i = 0; i < configs.size(); i++) {
+				CoolingRateOptimizer optimizer = new CoolingRateOptimizer(configs.get(i), sampleSize, simulations);
+				optimizer.setListener(reporter, i);
+				optimizers.add(optimizer);
+			}
+			List<Future<CoolingRateOptimum>> results = new ArrayList<>();
+			for (CoolingRateOptimizer optimizer : optimizers) {
+				results.add(simulations.submit(
+						() -> adaptive ? optimizer.optimize(from, to, stepSize) : optimizer.sweep(from, to, stepSize)));
+			}
+			// a search that is cancelled before it started never finishes
+			LayoutScheduler.await(() -> cancelled || results.stream().allMatch(Future::isDone));
+			if (cancelled) {
+				throw new CancellationException("Cooling rate search was cancelled");
+			}
+			List<CoolingRateOptimum> optima = new ArrayList<>();
+			for (Future<CoolingRateOptimum> result : results) {
+				optima.add(result.get());
+			}
+			if (cancelled) {
+				throw new CancellationException("Cooling rate search was cancelled");
+			}
+			return optima;
+		} catch (ExecutionException | RuntimeException e) {
+			if (cancelled) {
+				throw new CancellationException("Cooling rate search was cancelled");
+			}
+			throw new IllegalStateException("Cooling rate search failed", e);
+		} finally {
+			shutdown();
+		}
+	}
+
+	/**
+	 * Cancels the search, running simulations stop after their current step.
+	 * Can be called from any thread.
+	 */
+	public void cancel() {
+		cancelled = true;
+		shutdown();
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	private void shutdown() {
+		simulations.shutdownNow();
+	}
+}
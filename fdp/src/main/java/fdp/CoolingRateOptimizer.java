@@ -0,0 +1,300 @@
+package fdp;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import fdp.graph.CompactGraph;
+import parsii.tokenizer.ParseException;
+
+/**
+ * Searches the cooling rate that needs the least iterations until mechanical
+ * equilibrium with far fewer simulations than testing every rate.
+ * <p>
+ * First a race between cooling rates spread logarithmically over the range:
+ * every round all remaining rates get more samples, rates that are
+ * significantly worse than the best one are dropped, and of the rest only the
+ * better half is kept (successive halving). Then a golden section search
+ * narrows down the optimum between the neighbours of the winner until the
+ * interval is smaller than the resolution.
+ * <p>
+ * The n-th sample of every rate uses the same graph, so differences between
+ * rates are not hidden by differences between the graphs.
+ * <p>
+ * Simulations are streamed to the executor: a few per thread are queued at any
+ * time and the next one is submitted as soon as one finishes, so the threads
+ * never wait for the slowest sample of a rate. While the search waits for a
+ * simulation, it runs queued layouts of the {@link LayoutScheduler} itself, so
+ * a search on a worker of the scheduler does not keep the worker idle.
+ */
+public class CoolingRateOptimizer {
+
+	private static final int GRID_SIZE = 16;
+	private static final int FIRST_SAMPLES = 3;
+	// two-sided 95% quantile of the normal distribution
+	private static final double Z = 1.96;
+	private static final double GOLDEN_RATIO = (Math.sqrt(5) - 1) / 2;
+
+	private final List<CompactGraph> graphs = new ArrayList<>();
+	private final Parameter parameter;
+	private final ExecutorService executor;
+	private final int window = 2 * Runtime.getRuntime().availableProcessors();
+
+	private CoolingRateListener listener;
+	private int configuration;
+
+	private final Map<Double, Estimate> estimates = new TreeMap<>();
+	private int simulations;
+
+	/**
+	 * Creates a new optimizer and generates the sample graphs.
+	 * 
+	 * @param config the GraphGenerator and parameters as GraphConfiguration
+	 *            object, the parameters are not changed
+	 * @param sampleSize number of graphs every cooling rate is tested with at
+	 *            most
+	 * @param executor runs the simulations, submits them to the
+	 *            {@link LayoutScheduler} the search runs on or the default one
+	 * @throws ParseException when the force functions are malformed or empty
+	 */
+	public CoolingRateOptimizer(GraphConfiguration config, int sampleSize, ExecutorService executor)
+			throws ParseException {
+		this.parameter = new Parameter(config.getParameter());
+		this.parameter.setEquilibriumCriterion(true);
+		this.parameter.setFrameDelay(0);
+		this.executor = executor;
+		for (int i = 0; i < sampleSize; i++) {
+			CompactGraph graph = CompactGraph.compile(config.generateGraph());
+			// without Vertex objects the samples can be simulated concurrently
+			graphs.add(new CompactGraph(graph.getVertexCount(), graph.getOffsets(), graph.getTargets(), null));
+		}
+		// fail early instead of in every simulation
+		new Simulation(graphs.get(0), parameter);
+	}
+
+	/**
+	 * Sets a listener that is notified whenever a cooling rate has been
+	 * evaluated.
+	 * 
+	 * @param listener the listener or null
+	 * @param configuration index passed to the listener
+	 */
+	public void setListener(CoolingRateListener listener, int configuration) {
+		this.listener = listener;
+		this.configuration = configuration;
+	}
+
+	/**
+	 * Tests every cooling rate from from to to in steps of stepSize with the
+	 * full number of samples.
+	 * 
+	 * @param from lowest cooling rate, must be greater 0
+	 * @param to highest cooling rate, must be less than 1
+	 * @param stepSize distance between two tested rates, must be greater 0
+	 * @return the best rate tested
+	 * @throws InterruptedException
+	 * @throws ExecutionException when a simulation failed
+	 */
+	public CoolingRateOptimum sweep(double from, double to, double stepSize)
+			throws InterruptedException, ExecutionException {
+		List<Estimate> rates = new ArrayList<>();
+		for (int i = 0; from + i * stepSize <= to; i++) {
+			rates.add(estimate(from + i * stepSize));
+		}
+		sample(rates, graphs.size());
+		return result(graphs.size());
+	}
+
+	/**
+	 * Searches the optimal cooling rate.
+	 * 
+	 * @param from lowest cooling rate, must be greater 0 and less than to
+	 * @param to highest cooling rate, must be less than 1
+	 * @param resolution the optimum is searched until the remaining interval is
+	 *            smaller
+	 * @return the optimum
+	 * @throws InterruptedException
+	 * @throws ExecutionException when a simulation failed
+	 */
+	public CoolingRateOptimum optimize(double from, double to, double resolution)
+			throws InterruptedException, ExecutionException {
+		int sampleSize = graphs.size();
+
+		List<Estimate> grid = new ArrayList<>();
+		for (int i = 0; i < GRID_SIZE; i++) {
+			grid.add(estimate(from * Math.pow(to / from, i / (double) (GRID_SIZE - 1))));
+		}
+
+		// race the grid points, each round with twice the samples
+		List<Estimate> alive = new ArrayList<>(grid);
+		int samples = Math.min(FIRST_SAMPLES, sampleSize);
+		while (alive.size() > 1) {
+			sample(alive, samples);
+			Estimate best = best(alive);
+			alive.removeIf(e -> significantlyWorse(e, best));
+			alive.sort(Comparator.comparingDouble(Estimate::mean));
+			if (alive.size() > 1) {
+				alive.subList((alive.size() + 1) / 2, alive.size()).clear();
+			}
+			samples = Math.min(sampleSize, 2 * samples);
+		}
+		Estimate winner = alive.get(0);
+		sample(alive, sampleSize);
+
+		// golden section search between the neighbours of the winner
+		int w = grid.indexOf(winner);
+		double lo = grid.get(Math.max(w - 1, 0)).rate;
+		double hi = grid.get(Math.min(w + 1, GRID_SIZE - 1)).rate;
+		Estimate c = estimate(hi - GOLDEN_RATIO * (hi - lo));
+		Estimate d = estimate(lo + GOLDEN_RATIO * (hi - lo));
+		List<Estimate> pair = new ArrayList<>();
+		pair.add(c);
+		pair.add(d);
+		sample(pair, sampleSize);
+		while (hi - lo > resolution) {
+			Estimate next;
+			if (c.mean() < d.mean()) {
+				hi = d.rate;
+				d = c;
+				next = c = estimate(hi - GOLDEN_RATIO * (hi - lo));
+			} else {
+				lo = c.rate;
+				c = d;
+				next = d = estimate(lo + GOLDEN_RATIO * (hi - lo));
+			}
+			pair.clear();
+			pair.add(next);
+			sample(pair, sampleSize);
+		}
+
+		return result(sampleSize);
+	}
+
+	/**
+	 * Builds the result from all rates with the full number of samples.
+	 */
+	private CoolingRateOptimum result(int sampleSize) {
+		List<Estimate> complete = new ArrayList<>();
+		TreeMap<Double, Double> evaluations = new TreeMap<>();
+		for (Estimate e : estimates.values()) {
+			if (e.count > 0) {
+				evaluations.put(e.rate, e.mean());
+			}
+			if (e.count == sampleSize) {
+				complete.add(e);
+			}
+		}
+		Estimate best = best(complete);
+		double lower = best.rate;
+		double upper = best.rate;
+		for (Estimate e : complete) {
+			if (!significantlyWorse(e, best)) {
+				lower = Math.min(lower, e.rate);
+				upper = Math.max(upper, e.rate);
+			}
+		}
+		double error = sampleSize > 1 ? Z * best.standardError() : Double.NaN;
+		return new CoolingRateOptimum(best.rate, lower, upper, best.mean(), error, simulations, evaluations);
+	}
+
+	/**
+	 * Simulates every given rate until it has the given number of samples.
+	 * Rates are reported to the listener as soon as all their samples are in.
+	 */
+	private void sample(List<Estimate> rates, int samples) throws InterruptedException, ExecutionException {
+		// the rate every running simulation belongs to
+		Map<Future<Integer>, Estimate> running = new HashMap<>();
+		for (Estimate e : rates) {
+			Parameter p = new Parameter(parameter);
+			p.setCoolingRate(e.rate);
+			for (int i = e.count; i < samples; i++) {
+				if (running.size() == window) {
+					collect(running, samples);
+				}
+				CompactGraph graph = graphs.get(i);
+				// the simulation is created by the worker, it compiles the forces
+				running.put(executor.submit(() -> new Simulation(graph, p).call()), e);
+			}
+		}
+		while (!running.isEmpty()) {
+			collect(running, samples);
+		}
+	}
+
+	/**
+	 * Waits for one of the running simulations and adds its result.
+	 */
+	private void collect(Map<Future<Integer>, Estimate> running, int samples)
+			throws InterruptedException, ExecutionException {
+		LayoutScheduler.await(() -> running.keySet().stream().anyMatch(Future::isDone));
+		Future<Integer> result = running.keySet().stream().filter(Future::isDone).findFirst().get();
+		Estimate e = running.remove(result);
+		e.add(result.get());
+		simulations++;
+		if (e.count == samples && listener != null) {
+			listener.rateEvaluated(configuration, e.rate, e.mean());
+		}
+	}
+
+	private Estimate estimate(double rate) {
+		return estimates.computeIfAbsent(rate, Estimate::new);
+	}
+
+	private static Estimate best(List<Estimate> rates) {
+		return rates.stream().min(Comparator.comparingDouble(Estimate::mean)).get();
+	}
+
+	/**
+	 * @return true if the average iterations of e are higher than those of
+	 *         best with 95% confidence
+	 */
+	private static boolean significantlyWorse(Estimate e, Estimate best) {
+		double se = Math.sqrt(e.variance() / e.count + best.variance() / best.count);
+		return e.mean() - best.mean() > Z * se;
+	}
+
+	/**
+	 * Running mean and variance of the iterations of one cooling rate.
+	 */
+	private static class Estimate {
+
+		private final double rate;
+		private int count;
+		private double sum;
+		private double sumOfSquares;
+
+		Estimate(double rate) {
+			this.rate = rate;
+		}
+
+		void add(int iterations) {
+			count++;
+			sum += iterations;
+			sumOfSquares += (double) iterations * iterations;
+		}
+
+		double mean() {
+			return sum / count;
+		}
+
+		/**
+		 * @return the sample variance, infinite for less than two samples
+		 */
+		double variance() {
+			if (count < 2) {
+				return Double.POSITIVE_INFINITY;
+			}
+			return Math.max(0, (sumOfSquares - sum * sum / count) / (count - 1));
+		}
+
+		double standardError() {
+			return Math.sqrt(variance() / count);
+		}
+	}
+}
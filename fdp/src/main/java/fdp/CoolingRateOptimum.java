@@ -0,0 +1,82 @@
+package fdp;
+
+import java.util.Collections;
+import java.util.SortedMap;
+
+/**
+ * Result of an adaptive cooling rate search, see {@link CoolingRateOptimizer}.
+ */
+public class CoolingRateOptimum {
+
+	private final double coolingRate;
+	private final double lower;
+	private final double upper;
+	private final double iterations;
+	private final double iterationsError;
+	private final int simulations;
+	private final SortedMap<Double, Double> evaluations;
+
+	CoolingRateOptimum(double coolingRate, double lower, double upper, double iterations, double iterationsError,
+			int simulations, SortedMap<Double, Double> evaluations) {
+		this.coolingRate = coolingRate;
+		this.lower = lower;
+		this.upper = upper;
+		this.iterations = iterations;
+		this.iterationsError = iterationsError;
+		this.simulations = simulations;
+		this.evaluations = Collections.unmodifiableSortedMap(evaluations);
+	}
+
+	/**
+	 * @return the cooling rate with the least average iterations
+	 */
+	public double getCoolingRate() {
+		return coolingRate;
+	}
+
+	/**
+	 * @return the lowest cooling rate that is not significantly worse than the
+	 *         optimum, the lower end of the 95% confidence interval
+	 */
+	public double getLower() {
+		return lower;
+	}
+
+	/**
+	 * @return the highest cooling rate that is not significantly worse than the
+	 *         optimum, the upper end of the 95% confidence interval
+	 */
+	public double getUpper() {
+		return upper;
+	}
+
+	/**
+	 * @return the average iterations used at the optimum
+	 */
+	public double getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * @return half the width of the 95% confidence interval of the average
+	 *         iterations at the optimum
+	 */
+	public double getIterationsError() {
+		return iterationsError;
+	}
+
+	/**
+	 * @return number of simulations run by the search
+	 */
+	public int getSimulations() {
+		return simulations;
+	}
+
+	/**
+	 * @return the average iterations of every cooling rate tested, sorted by
+	 *         cooling rate
+	 */
+	public SortedMap<Double, Double> getEvaluations() {
+		return evaluations;
+	}
+}
@@ -1,35 +1,105 @@
 package fdp;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.stream.IntStream;
+import java.util.concurrent.TimeUnit;
 
 import org.jgrapht.Graph;
 
 import fdp.graph.Edge;
 import fdp.graph.Vertex;
+import fdp.layout.SnapshotBuffer;
 import javafx.scene.chart.XYChart.Data;
 import parsii.tokenizer.ParseException;
 
 public class ForceDirectedPlacement {
 
 	/**
-	 * Simulates the force-directed placement layout algorithm in a new Thread.
+	 * Simulates the force-directed placement layout algorithm as interactive
+	 * layout of the default {@link LayoutScheduler}. With a frame delay, the
+	 * simulation is paced to a step per frame delay, otherwise it runs as fast
+	 * as possible.
 	 * 
 	 * @param graph the graph to layout
 	 * @param parameter parameters for the simulation
+	 * @param snapshots the buffer the positions are published to after every step
+	 * @return the handle to pause, cancel or wait for the simulation
 	 * @throws ParseException when the Strings in parameter that represent the force functions are malformed or empty
 	 */
-	public static void simulate(Graph<Vertex, Edge> graph, Parameter parameter) throws ParseException {
-		Executors.newSingleThreadExecutor().submit(new Simulation(graph, parameter));
+	public static LayoutHandle<Integer> simulate(Graph<Vertex, Edge> graph, Parameter parameter, SnapshotBuffer snapshots) throws ParseException {
+		// every connected component is laid out on its own
+		ComponentSimulation simulation = new ComponentSimulation(graph, parameter);
+		// the positions are drawn while the simulation is running
+		simulation.setSnapshots(snapshots);
+		if (parameter.getFrameDelay() > 0) {
+			return LayoutScheduler.getDefault().submit(simulation, LayoutPriority.INTERACTIVE,
+					TimeUnit.MILLISECONDS.toNanos(parameter.getFrameDelay()));
+		}
+		return LayoutScheduler.getDefault().submit(simulation, LayoutPriority.INTERACTIVE);
 	}
 	
+	/**
+	 * Simulates the force-directed placement layout algorithm as an
+	 * {@link IncrementalLayout} on the default {@link LayoutScheduler}. Unlike
+	 * {@link #simulate(Graph, Parameter, SnapshotBuffer)}, the whole graph is
+	 * laid out as one, but vertices and edges can be added and removed while
+	 * the simulation is running and afterwards, which only moves the vertices
+	 * around the changes. The frame delay paces the runs like there.
+	 * 
+	 * @param graph the graph to layout, only changed through the layout afterwards
+	 * @param parameter parameters for the simulation
+	 * @param snapshots the buffer the positions are published to after every step
+	 * @return the layout to queue changes to, pause or cancel its runs
+	 * @throws ParseException when the Strings in parameter that represent the force functions are malformed or empty
+	 */
+	public static IncrementalLayout simulateIncrementally(Graph<Vertex, Edge> graph, Parameter parameter, SnapshotBuffer snapshots) throws ParseException {
+		IncrementalLayout layout = new IncrementalLayout(graph, parameter);
+		layout.setSnapshots(snapshots);
+		layout.start(LayoutScheduler.getDefault(), LayoutPriority.INTERACTIVE,
+				TimeUnit.MILLISECONDS.toNanos(parameter.getFrameDelay()));
+		return layout;
+	}
+
+	/**
+	 * Simulates the multilevel variant of the force-directed placement as
+	 * interactive layout of the default {@link LayoutScheduler}, see
+	 * {@link MultilevelSimulation}. It runs as fast as possible, the frame
+	 * delay is not used.
+	 * 
+	 * @param graph the graph to layout
+	 * @param parameter parameters for the simulation of every level
+	 * @param snapshots the buffer the positions of every level are published to after every step
+	 * @return the handle to pause, cancel or wait for the simulation
+	 * @throws ParseException when the Strings in parameter that represent the force functions are malformed or empty
+	 */
+	public static LayoutHandle<Integer> simulateMultilevel(Graph<Vertex, Edge> graph, Parameter parameter, SnapshotBuffer snapshots) throws ParseException {
+		MultilevelSimulation simulation = new MultilevelSimulation(graph, parameter);
+		simulation.setSnapshots(snapshots);
+		return LayoutScheduler.getDefault().submit(simulation, LayoutPriority.INTERACTIVE);
+	}
+
+	/**
+	 * Searches the optimal cooling rate for the Graph generated by the given GraphGenerator and the given forces
+	 * adaptively, see {@link CoolingRateOptimizer}. Needs a small fraction of the simulations of
+	 * {@link #optimizeCoolingRate(GraphConfiguration, double, double, double, int)}.
+	 * 
+	 * @param config the GraphGenerator and parameters as GraphConfiguration object
+	 * @param from lowest cooling rate, must be greater 0 and less than to.
+	 * @param to highest cooling rate, must be less than 1.
+	 * @param resolution the search stops once the optimum is known up to resolution, must be greater 0.
+	 * @param sampleSize maximum number of samples taken for every cooling rate tested
+	 * @return the optimum with its confidence interval and the average iterations of every cooling rate tested
+	 * @throws ParseException
+	 * @throws InterruptedException
+	 */
+	public static CoolingRateOptimum findOptimalCoolingRate(GraphConfiguration config, double from, double to, double resolution, int sampleSize) throws ParseException, InterruptedException {
+		return new CoolingRateOptimization(Collections.singletonList(config), from, to, resolution, sampleSize, true).run().get(0);
+	}
+
 	/**
 	 * Tries to find optimal cooling rates for the Graph generated by the given GraphGenerator and the given forces.
+	 * Use {@link CoolingRateOptimization} to get results while the search is running or to cancel it.
 	 * 
 	 * @param config the GraphGenerator and parameters as GraphConfiguration object
 	 * @param from initial cooling rate, must be greater 0 and less than 1.
@@ -38,43 +108,12 @@ public class ForceDirectedPlacement {
 	 * @param sampleSize for every cooling rate tested, sampleSize samples are taken and the average iterations used is calculated from them
 	 * @return a list of XYChart.Data objects, containing a mapping between cooling rate and iterations
 	 * @throws ParseException
+	 * @throws InterruptedException
 	 */
-	public static List<Data<Double, Integer>> optimizeCoolingRate(GraphConfiguration config, double from, double to, double stepSize, int sampleSize) throws ParseException {
-		
-		Parameter p = config.getParameter();
+	public static List<Data<Double, Integer>> optimizeCoolingRate(GraphConfiguration config, double from, double to, double stepSize, int sampleSize) throws ParseException, InterruptedException {
+		CoolingRateOptimum optimum = new CoolingRateOptimization(Collections.singletonList(config), from, to, stepSize, sampleSize, false).run().get(0);
 		List<Data<Double, Integer>> chartValues = new ArrayList<>();
-		ExecutorService exec = Executors.newFixedThreadPool(sampleSize);
-		List<Future<Integer>> currResults = new ArrayList<>();
-		config.getParameter().setEquilibriumCriterion(true);
-		p.setFrameDelay(0);
-		
-		// need sampleSize objects of the same graph, because we will simulate them in parallel
-		List<Graph<Vertex, Edge>> graphs = new ArrayList<>();
-		IntStream.range(0, sampleSize).forEach(i -> graphs.add(config.generateGraph()));
-		
-		// for every cooling rate to test, simulate sampleSize graph layouts in parallel, retrieve the iterations used until equilibrium,
-		// and calculate the average number of iterations for that cooling rate
-		for (double currentCoolingRate = from; currentCoolingRate <= to; currentCoolingRate += stepSize) {
-			int iterationsUsed = 0;
-			p.setCoolingRate(currentCoolingRate);
-			for (int i = 0; i < sampleSize; i++) {
-				currResults.add(exec.submit(new Simulation(graphs.get(i), p)));
-			}
-			// collect the results, i.e. wait for all threads to finish
-			for (Future<Integer> result : currResults) {
-				try {
-					iterationsUsed += result.get();
-				} catch (InterruptedException | ExecutionException e) {
-					e.printStackTrace();
-				}
-			}
-			// get average and save the result
-			iterationsUsed /= sampleSize;
-			chartValues.add(new Data<>(currentCoolingRate, iterationsUsed));
-			
-			currResults.clear();
-		}
-		
+		optimum.getEvaluations().forEach((rate, iterations) -> chartValues.add(new Data<>(rate, (int) Math.round(iterations))));
 		return chartValues;
 	}
 }
@@ -0,0 +1,94 @@
+package fdp;
+
+import org.jgrapht.generate.GnmRandomGraphGenerator;
+import org.jgrapht.generate.GraphGenerator;
+import org.jgrapht.generate.GridGraphGenerator;
+import org.jgrapht.generate.HyperCubeGraphGenerator;
+import org.jgrapht.generate.LinearGraphGenerator;
+import org.jgrapht.generate.RingGraphGenerator;
+import org.jgrapht.generate.StarGraphGenerator;
+import org.jgrapht.generate.WheelGraphGenerator;
+
+import fdp.graph.Edge;
+import fdp.graph.Vertex;
+
+/**
+ * The families of graphs that can be generated for a simulation.
+ */
+public enum GraphType {
+
+	RANDOM("Random"),
+	LINEAR("Linear"),
+	GRID("Grid"),
+	RING("Ring"),
+	STAR("Star"),
+	WHEEL("Wheel"),
+	HYPER_CUBE("Hyper Cube");
+
+	private final String displayName;
+
+	private GraphType(String displayName) {
+		this.displayName = displayName;
+	}
+
+	/**
+	 * Creates a generator for a graph of this type.
+	 * 
+	 * @param size number of vertices, the side length for {@link #GRID} and
+	 *            the dimension for {@link #HYPER_CUBE}
+	 * @return the generator
+	 */
+	public GraphGenerator<Vertex, Edge, ?> createGenerator(int size) {
+		switch (this) {
+		case RANDOM:
+			return new GnmRandomGraphGenerator<>(size, size);
+		case LINEAR:
+			return new LinearGraphGenerator<>(size);
+		case GRID:
+			return new GridGraphGenerator<>(size, size);
+		case RING:
+			return new RingGraphGenerator<>(size);
+		case STAR:
+			return new StarGraphGenerator<>(size);
+		case WHEEL:
+			return new WheelGraphGenerator<>(size);
+		default:
+			return new HyperCubeGraphGenerator<>(size);
+		}
+	}
+
+	/**
+	 * Calculates the size argument of {@link #createGenerator(int)} that
+	 * results in about the given number of vertices.
+	 * 
+	 * @param vertexCount the desired number of vertices
+	 * @return the size
+	 */
+	public int sizeFor(int vertexCount) {
+		switch (this) {
+		case GRID:
+			return Math.max(1, (int) Math.round(Math.sqrt(vertexCount)));
+		case HYPER_CUBE:
+			return Math.max(1, (int) Math.round(Math.log(vertexCount) / Math.log(2)));
+		default:
+			return vertexCount;
+		}
+	}
+
+	public String getDisplayName() {
+		return displayName;
+	}
+
+	/**
+	 * @param displayName
+	 * @return the type with the given display name, null if there is none
+	 */
+	public static GraphType fromDisplayName(String displayName) {
+		for (GraphType type : values()) {
+			if (type.displayName.equals(displayName)) {
+				return type;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,539 @@
+package fdp;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.DoubleBinaryOperator;
+
+import org.jgrapht.Graph;
+import org.jgrapht.Graphs;
+
+import fdp.force.ForceCompiler;
+import fdp.graph.CompactGraph;
+import fdp.graph.Edge;
+import fdp.graph.Vertex;
+import fdp.layout.LayoutKernel;
+import fdp.layout.SnapshotBuffer;
+import parsii.tokenizer.ParseException;
+
+/**
+ * Keeps the layout of a graph up to date while vertices and edges are added
+ * and removed, instead of laying out the changed graph from scratch.
+ * <p>
+ * The first run lays out the whole graph, by a {@link Simulation} or by a
+ * {@link ComponentSimulation} if it has several connected components, unless
+ * the initial placement is {@link InitialPlacement#KEEP}, which takes the
+ * positions of the Vertex objects as they are. Changes can be queued at any
+ * time from any thread: while a run is going on, it applies them between two
+ * steps, otherwise the next run does, which is submitted by the change itself
+ * once the layout was started on a scheduler. Components are laid out on
+ * kernels of their own, so changes queued meanwhile wait until they are
+ * packed.
+ * <p>
+ * The kernel and its compact graph are kept between runs and patched by every
+ * change. New vertices are placed next to their neighbours, then only the
+ * vertices within a few hops of a change are simulated, starting at a low
+ * temperature. These steps use grid repulsion: all other vertices keep their
+ * positions, and those closer than the cutoff still push the moving ones, so
+ * a small change costs time in proportion to the size of the affected region
+ * rather than the graph.
+ */
+public class IncrementalLayout implements SteppedLayout {
+
+	// vertices up to this many hops away from a change may move
+	private static final int RADIUS = 2;
+	private static final int MAX_ITERATIONS = 50;
+
+	private final Graph<Vertex, Edge> graph;
+	private final Parameter parameter;
+	private final Random random = new Random();
+
+	private final Queue<Change> changes = new ConcurrentLinkedQueue<>();
+
+	// the layout of the whole graph in the first run and its graph, null afterwards
+	private SteppedLayout initial;
+	private CompactGraph compact;
+	// null while the components of the first run are laid out
+	private LayoutKernel kernel;
+	private final DoubleBinaryOperator attractiveForce;
+	private final DoubleBinaryOperator repulsiveForce;
+	// the Vertex object of every graph index of the kernel and its inverse
+	private final List<Vertex> vertices = new ArrayList<>();
+	private final Map<Vertex, Integer> index = new IdentityHashMap<>();
+	private final double k;
+	private final double initialTemperature;
+	private final double coolingRate;
+	private final int maxIterations;
+
+	// the vertices that move in the current run, by graph index in active
+	private final Set<Vertex> region = new LinkedHashSet<>();
+	private int[] active = new int[0];
+	private double t;
+	private int steps;
+	private boolean equilibriumReached;
+	private int iteration;
+
+	private SnapshotBuffer snapshots;
+
+	private volatile LayoutScheduler scheduler;
+	private LayoutPriority priority;
+	private long stepNanos;
+	// true from submitting a run until it ends
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	private volatile LayoutHandle<Integer> handle;
+
+	/**
+	 * Creates a new incremental layout.
+	 *
+	 * @param graph the graph, changed by the runs of the layout only
+	 * @param p parameters for the simulation
+	 * @throws ParseException when the force functions are malformed or empty
+	 */
+	public IncrementalLayout(Graph<Vertex, Edge> graph, Parameter p) throws ParseException {
+		this.graph = graph;
+		this.parameter = p;
+
+		this.attractiveForce = ForceCompiler.compile(p.getAttractiveForce());
+		this.repulsiveForce = ForceCompiler.compile(p.getRepulsiveForce());
+
+		compact = CompactGraph.compile(graph);
+		Collections.addAll(vertices, compact.getVertices());
+		for (int i = 0; i < vertices.size(); i++) {
+			index.put(vertices.get(i), i);
+		}
+		k = Simulation.optimalDistance(area(), Math.max(vertices.size(), 1));
+		if (p.getInitialPlacement() == InitialPlacement.KEEP) {
+			endInitial();
+		} else if (Arrays.stream(compact.components()).anyMatch(c -> c > 0)) {
+			initial = new ComponentSimulation(compact, p);
+		} else {
+			initial = new Simulation(compact, p);
+		}
+
+		boolean equi = p.isEquilibriumCriterion();
+		maxIterations = (int) Math.min(MAX_ITERATIONS, equi ? p.getMaxIterations() : p.getCriterion());
+		// the rest of the layout is settled, so moving a vertex by about k is enough
+		initialTemperature = Math.max(k, 1);
+		coolingRate = Math.max(p.getCoolingRate(), 1 - Math.pow(1 / initialTemperature, 1.0 / maxIterations));
+	}
+
+	/**
+	 * Queues the insertion of a vertex, it is placed close to the neighbours
+	 * it has after all changes queued so far.
+	 *
+	 * @param v the new vertex
+	 */
+	public void addVertex(Vertex v) {
+		addVertex(v, Collections.emptyList());
+	}
+
+	/**
+	 * Queues the insertion of a vertex together with edges to vertices that
+	 * are in the graph or queued for insertion, so it is placed close to them.
+	 *
+	 * @param v the new vertex
+	 * @param neighbours the vertices v is connected to
+	 */
+	public void addVertex(Vertex v, Collection<Vertex> neighbours) {
+		List<Vertex> copy = new ArrayList<>(neighbours);
+		queue((affected, added) -> {
+			if (graph.addVertex(v)) {
+				index.put(v, kernel.addVertex(v, v.getPos().x, v.getPos().y));
+				vertices.add(v);
+				added.add(v);
+				affected.add(v);
+			}
+			for (Vertex u : copy) {
+				connect(v, u, affected);
+			}
+		});
+	}
+
+	/**
+	 * Queues the deletion of a vertex and its edges.
+	 *
+	 * @param v the vertex to remove
+	 */
+	public void removeVertex(Vertex v) {
+		queue((affected, added) -> {
+			if (graph.containsVertex(v)) {
+				affected.addAll(Graphs.neighborListOf(graph, v));
+				graph.removeVertex(v);
+				int i = index.remove(v);
+				// the last vertex takes the index of the removed one
+				int moved = kernel.removeVertex(i);
+				Vertex last = vertices.remove(moved);
+				if (moved != i) {
+					vertices.set(i, last);
+					index.put(last, i);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Queues the insertion of an edge between two vertices that are in the
+	 * graph or queued for insertion.
+	 */
+	public void addEdge(Vertex v, Vertex u) {
+		queue((affected, added) -> connect(v, u, affected));
+	}
+
+	/**
+	 * Queues the deletion of the edge between two vertices.
+	 */
+	public void removeEdge(Vertex v, Vertex u) {
+		queue((affected, added) -> {
+			if (graph.removeEdge(v, u) != null) {
+				kernel.removeEdge(index.get(v), index.get(u));
+				affected.add(v);
+				affected.add(u);
+			}
+		});
+	}
+
+	private void connect(Vertex v, Vertex u, Set<Vertex> affected) {
+		if (graph.containsVertex(v) && graph.containsVertex(u) && graph.addEdge(v, u) != null) {
+			kernel.addEdge(index.get(v), index.get(u));
+			affected.add(v);
+			affected.add(u);
+		}
+	}
+
+	private void queue(Change change) {
+		changes.add(change);
+		if (scheduler != null && scheduled.compareAndSet(false, true)) {
+			submit();
+		}
+	}
+
+	/**
+	 * Runs the layout on a scheduler. Every later change submits another run
+	 * to it unless a run is queued or going on already.
+	 *
+	 * @param scheduler the scheduler
+	 * @param priority the priority of the runs
+	 * @param stepNanos the time between two steps of a paced run, 0 to run as
+	 *            fast as possible
+	 * @return the handle of the first run
+	 * @throws RejectedExecutionException if the queue of the priority is full
+	 *             or the scheduler was shut down
+	 */
+	public LayoutHandle<Integer> start(LayoutScheduler scheduler, LayoutPriority priority, long stepNanos) {
+		this.priority = priority;
+		this.stepNanos = stepNanos;
+		this.scheduler = scheduler;
+		scheduled.set(true);
+		submit();
+		return handle;
+	}
+
+	private void submit() {
+		try {
+			handle = stepNanos > 0 ? scheduler.submit(this, priority, stepNanos) : scheduler.submit(this, priority);
+		} catch (RejectedExecutionException e) {
+			// the next change tries again
+			scheduled.set(false);
+			throw e;
+		}
+	}
+
+	/**
+	 * Runs the layout on the calling thread until no changes are left. Must
+	 * not be called while a run on a scheduler is going on.
+	 *
+	 * @return number of iterations simulated
+	 */
+	public synchronized int relayout() {
+		begin();
+		try {
+			while (advance(Integer.MAX_VALUE, Long.MAX_VALUE)) {
+				// runs until the changes are settled
+			}
+		} finally {
+			end();
+		}
+		return iteration;
+	}
+
+	@Override
+	public void begin() {
+		iteration = 0;
+		region.clear();
+		active = new int[0];
+		if (initial instanceof Simulation) {
+			((Simulation) initial).setSnapshots(snapshots);
+		} else if (initial instanceof ComponentSimulation) {
+			((ComponentSimulation) initial).setSnapshots(snapshots);
+		}
+		if (initial != null) {
+			initial.begin();
+			if (initial instanceof Simulation) {
+				kernel = ((Simulation) initial).getKernel();
+			}
+		}
+		applyChanges();
+		publish();
+	}
+
+	@Override
+	public boolean advance(int target, long budgetNanos) {
+		long start = System.nanoTime();
+		while (iteration < target && !interrupted()) {
+			applyChanges();
+			if (initial != null) {
+				boolean more;
+				if (kernel != null) {
+					// one step at a time, so changes are applied between them
+					more = initial.advance(iteration + 1, Long.MAX_VALUE);
+				} else {
+					more = initial.advance(target, budgetNanos == Long.MAX_VALUE ? budgetNanos
+							: Math.max(0, budgetNanos - (System.nanoTime() - start)));
+				}
+				iteration = initial.getIteration();
+				if (!more && !interrupted()) {
+					// later changes only move the vertices around them
+					endInitial();
+				}
+			} else if (!settled()) {
+				simulateStep();
+			}
+			if (!needsSteps() || budgetNanos != Long.MAX_VALUE && System.nanoTime() - start >= budgetNanos) {
+				break;
+			}
+		}
+		return needsSteps() && !interrupted();
+	}
+
+	/**
+	 * Copies the positions of the moved vertices into the Vertex objects and
+	 * submits another run if changes were queued meanwhile.
+	 */
+	@Override
+	public int end() {
+		if (initial != null) {
+			// stopped early, the layout stays as far as it got
+			endInitial();
+		} else {
+			for (Vertex v : region) {
+				int i = index.get(v);
+				v.getPos().set(kernel.getX(i), kernel.getY(i));
+			}
+		}
+		scheduled.set(false);
+		if (scheduler != null && !changes.isEmpty() && scheduled.compareAndSet(false, true)) {
+			try {
+				submit();
+			} catch (RejectedExecutionException e) {
+				// the next change tries again
+			}
+		}
+		return iteration;
+	}
+
+	@Override
+	public int getIteration() {
+		return iteration;
+	}
+
+	/**
+	 * Ends the first run and sets up the kernel of the later ones.
+	 */
+	private void endInitial() {
+		if (initial != null) {
+			initial.end();
+			initial = null;
+		}
+		if (kernel == null) {
+			// the components were laid out on kernels of their own
+			kernel = new LayoutKernel(compact, parameter, k, attractiveForce, repulsiveForce);
+			kernel.readPositions();
+		}
+		compact = null;
+		// from now on, only a few vertices move in a step
+		kernel.setRepulsionMode(RepulsionMode.GRID);
+	}
+
+	/**
+	 * @return true if the region of the changes is settled or there is none
+	 */
+	private boolean settled() {
+		return active.length == 0 || steps >= maxIterations || equilibriumReached;
+	}
+
+	private boolean needsSteps() {
+		return initial != null || !settled() || !changes.isEmpty();
+	}
+
+	/**
+	 * Simulates a step of the vertices around the changes.
+	 */
+	private void simulateStep() {
+		double maxForce = kernel.step(t, active);
+		t = Math.max(t * (1 - coolingRate), 1);
+		steps++;
+		iteration++;
+		equilibriumReached = parameter.isEquilibriumCriterion() && maxForce <= parameter.getCriterion();
+		publish();
+		// waits while paused, stops the loop if cancelled
+		LayoutScheduler.checkpoint();
+	}
+
+	private void publish() {
+		if (snapshots != null && initial == null) {
+			snapshots.publish(kernel.getGraph(), iteration, t, kernel.getX(), kernel.getY());
+		}
+	}
+
+	/**
+	 * Applies all queued changes. Outside the first run, the vertices within
+	 * {@link #RADIUS} hops of the changes join the moving region and the
+	 * region starts over at a low temperature.
+	 */
+	private void applyChanges() {
+		if (changes.isEmpty() || kernel == null) {
+			return;
+		}
+		Set<Vertex> affected = new LinkedHashSet<>();
+		Set<Vertex> added = new LinkedHashSet<>();
+		Change change;
+		while ((change = changes.poll()) != null) {
+			change.apply(affected, added);
+		}
+		affected.removeIf(v -> !index.containsKey(v));
+		added.removeIf(v -> !index.containsKey(v));
+		place(added);
+		if (initial != null) {
+			// the whole graph is moving anyway
+			return;
+		}
+
+		region.removeIf(v -> !index.containsKey(v));
+		// breadth first search from the affected vertices
+		Map<Vertex, Integer> depth = new IdentityHashMap<>();
+		Queue<Vertex> queue = new ArrayDeque<>();
+		for (Vertex v : affected) {
+			depth.put(v, 0);
+			queue.add(v);
+		}
+		while (!queue.isEmpty()) {
+			Vertex v = queue.poll();
+			region.add(v);
+			int d = depth.get(v);
+			if (d == RADIUS) {
+				continue;
+			}
+			for (Vertex u : Graphs.neighborListOf(graph, v)) {
+				if (!depth.containsKey(u)) {
+					depth.put(u, d + 1);
+					queue.add(u);
+				}
+			}
+		}
+		active = new int[region.size()];
+		int count = 0;
+		for (Vertex v : region) {
+			active[count++] = index.get(v);
+		}
+		t = initialTemperature;
+		steps = 0;
+		equilibriumReached = false;
+	}
+
+	/**
+	 * Places every new vertex at the centre of its neighbours that have a
+	 * position, or randomly if it has none.
+	 */
+	private void place(Set<Vertex> added) {
+		Set<Vertex> unplaced = new LinkedHashSet<>(added);
+		boolean progress = true;
+		while (!unplaced.isEmpty()) {
+			boolean placedAny = false;
+			for (Iterator<Vertex> it = unplaced.iterator(); it.hasNext();) {
+				Vertex v = it.next();
+				double x = 0;
+				double y = 0;
+				int count = 0;
+				for (Vertex u : Graphs.neighborListOf(graph, v)) {
+					if (!unplaced.contains(u)) {
+						x += kernel.getX(index.get(u));
+						y += kernel.getY(index.get(u));
+						count++;
+					}
+				}
+				if (count > 0 || !progress) {
+					if (count > 0) {
+						// a little apart from the centre, vertices on the same spot do not repel
+						x = x / count + (random.nextDouble() - 0.5) * k / 2;
+						y = y / count + (random.nextDouble() - 0.5) * k / 2;
+					} else {
+						x = random.nextDouble() * parameter.getFrameWidth();
+						y = random.nextDouble() * parameter.getFrameHeight();
+					}
+					kernel.setPositions(index.get(v), 1, new double[] { x }, new double[] { y });
+					it.remove();
+					placedAny = true;
+				}
+			}
+			// vertices without placed neighbours are placed randomly in the next round
+			progress = placedAny;
+		}
+	}
+
+	private int area() {
+		return Math.min(parameter.getFrameWidth() * parameter.getFrameWidth(),
+				parameter.getFrameHeight() * parameter.getFrameHeight());
+	}
+
+	private static boolean interrupted() {
+		return Thread.currentThread().isInterrupted();
+	}
+
+	/**
+	 * Sets a buffer the positions are published to after every step.
+	 *
+	 * @param snapshots the buffer or null
+	 */
+	public void setSnapshots(SnapshotBuffer snapshots) {
+		this.snapshots = snapshots;
+	}
+
+	/**
+	 * @return the handle of the last run submitted to the scheduler, null if
+	 *         the layout was not started on one
+	 */
+	public LayoutHandle<Integer> getHandle() {
+		return handle;
+	}
+
+	public Graph<Vertex, Edge> getGraph() {
+		return graph;
+	}
+
+	/**
+	 * A queued change of the graph.
+	 */
+	private interface Change {
+
+		/**
+		 * Applies the change to the graph and the kernel.
+		 *
+		 * @param affected receives the vertices whose surroundings changed
+		 * @param added receives the new vertices
+		 */
+		void apply(Set<Vertex> affected, Set<Vertex> added);
+	}
+}
@@ -0,0 +1,36 @@
+package fdp;
+
+/**
+ * Ways to assign positions to the vertices before the first simulation step.
+ */
+public enum InitialPlacement {
+
+	/**
+	 * Every vertex is placed uniformly at random inside the frame.
+	 */
+	RANDOM,
+
+	/**
+	 * Vertices are placed in the layers of a breadth-first search, see
+	 * {@link fdp.layout.BfsPlacement}.
+	 */
+	BFS,
+
+	/**
+	 * Vertices are placed by multidimensional scaling of their graph distances
+	 * to a few pivots, see {@link fdp.layout.PivotMds}.
+	 */
+	PIVOT_MDS,
+
+	/**
+	 * Vertices are placed at two eigenvectors of the Laplacian, see
+	 * {@link fdp.layout.SpectralPlacement}.
+	 */
+	SPECTRAL,
+
+	/**
+	 * The current positions of the vertices are kept, e.g. to refine an
+	 * existing layout.
+	 */
+	KEEP
+}
@@ -0,0 +1,206 @@
+package fdp;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A layout submitted to a {@link LayoutScheduler}. Besides waiting for its
+ * result, it can be paused, resumed and cancelled from any thread. A running
+ * layout reacts after its current step: a paused layout waits on its worker
+ * until it is resumed, a cancelled one stops as if its thread was
+ * interrupted. A {@link SteppedLayout} is run in slices and pauses after its
+ * current slice, it does not keep a worker while it is paused.
+ *
+ * @param <T> the result of the layout, e.g. the number of iterations
+ */
+public final class LayoutHandle<T> implements Future<T> {
+
+	final LayoutScheduler scheduler;
+	final LayoutPriority priority;
+	private final Callable<T> layout;
+	final CompletableFuture<T> result = new CompletableFuture<>();
+
+	// a stepped layout and the time between two of its steps if it is paced, otherwise null and 0
+	final SteppedLayout stepped;
+	final long stepNanos;
+	// only used by the worker running the next slice
+	private boolean begun;
+	private long due;
+
+	// guarded by the lock of the scheduler
+	boolean paused;
+	boolean cancelled;
+	Thread runner;
+	// a stepped layout that was paused between two slices
+	boolean parked;
+
+	LayoutHandle(LayoutScheduler scheduler, Callable<T> layout, LayoutPriority priority) {
+		this.scheduler = scheduler;
+		this.layout = layout;
+		this.priority = priority;
+		this.stepped = null;
+		this.stepNanos = 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	LayoutHandle(LayoutScheduler scheduler, SteppedLayout layout, LayoutPriority priority, long stepNanos) {
+		this.scheduler = scheduler;
+		this.layout = (Callable<T>) layout;
+		this.priority = priority;
+		this.stepped = layout;
+		this.stepNanos = stepNanos;
+	}
+
+	/**
+	 * Runs the layout, or the next slice of a stepped layout.
+	 *
+	 * @return true if the stepped layout needs another slice
+	 */
+	boolean run() {
+		if (stepped == null) {
+			try {
+				result.complete(layout.call());
+			} catch (Throwable e) {
+				result.completeExceptionally(e);
+			}
+			return false;
+		}
+		if (!begun && result.isCancelled()) {
+			// cancelled before the first slice
+			return false;
+		}
+		boolean more = false;
+		try {
+			if (!begun) {
+				stepped.begin();
+				begun = true;
+				due = System.nanoTime();
+			}
+			more = !result.isCancelled() && slice();
+		} catch (Throwable e) {
+			result.completeExceptionally(e);
+		}
+		if (!more && begun) {
+			try {
+				// also ends a cancelled layout, which releases its threads
+				@SuppressWarnings("unchecked")
+				T iterations = (T) Integer.valueOf(stepped.end());
+				result.complete(iterations);
+			} catch (Throwable e) {
+				result.completeExceptionally(e);
+			}
+		}
+		return more;
+	}
+
+	/**
+	 * Runs the steps that are due, but no more than fit into a frame. A
+	 * layout whose steps take longer than the step time falls behind instead
+	 * of catching up later. A layout that is not paced runs as many steps as
+	 * fit into the budget of a slice.
+	 */
+	private boolean slice() {
+		if (stepNanos == 0) {
+			return stepped.advance(Integer.MAX_VALUE, LayoutScheduler.SLICE_BUDGET_NANOS);
+		}
+		long now = System.nanoTime();
+		if (now - due < 0) {
+			return true;
+		}
+		long steps = Math.min((now - due) / stepNanos + 1, Math.max(1, LayoutScheduler.FRAME_NANOS / stepNanos));
+		due += steps * stepNanos;
+		if (now - due > LayoutScheduler.FRAME_NANOS) {
+			due = now;
+		}
+		return stepped.advance(stepped.getIteration() + (int) steps, LayoutScheduler.SLICE_BUDGET_NANOS);
+	}
+
+	/**
+	 * @return nanoTime the next slice of a paced layout is due, now if it has
+	 *         not begun
+	 */
+	long nextSlice() {
+		return begun ? due : System.nanoTime();
+	}
+
+	/**
+	 * Pauses the layout after its current step, or before its first step if
+	 * it has not started yet. A paused layout keeps its worker, unless it is
+	 * a {@link SteppedLayout}, which pauses after its current slice.
+	 */
+	public void pause() {
+		scheduler.pause(this, true);
+	}
+
+	/**
+	 * Resumes a paused layout.
+	 */
+	public void resume() {
+		scheduler.pause(this, false);
+	}
+
+	public boolean isPaused() {
+		return scheduler.isPaused(this);
+	}
+
+	public LayoutPriority getPriority() {
+		return priority;
+	}
+
+	/**
+	 * Cancels the layout. A queued layout is never started, a running one
+	 * stops after its current step and keeps the positions it reached. The
+	 * handle is done at once.
+	 *
+	 * @param mayInterruptIfRunning false lets a running layout finish
+	 * @return false if the layout was already done
+	 */
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		return scheduler.cancel(this, mayInterruptIfRunning);
+	}
+
+	/**
+	 * Cancels the layout, see {@link #cancel(boolean)}.
+	 */
+	public void cancel() {
+		cancel(true);
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return result.isCancelled();
+	}
+
+	@Override
+	public boolean isDone() {
+		return result.isDone();
+	}
+
+	@Override
+	public T get() throws InterruptedException, ExecutionException {
+		return result.get();
+	}
+
+	@Override
+	public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		return result.get(timeout, unit);
+	}
+
+	/**
+	 * Waits for the layout without being interruptible.
+	 *
+	 * @return the result of the layout
+	 * @throws CancellationException if the layout was cancelled
+	 * @throws CompletionException if the layout failed
+	 */
+	public T join() {
+		return result.join();
+	}
+}
@@ -0,0 +1,20 @@
+package fdp;
+
+/**
+ * Priorities of the layouts run by a {@link LayoutScheduler}.
+ */
+public enum LayoutPriority {
+
+	/**
+	 * Layouts that are watched while they run, e.g. in the main window. They
+	 * are started before any queued batch layout and preempt running batch
+	 * layouts after their current step.
+	 */
+	INTERACTIVE,
+
+	/**
+	 * Layouts nobody watches step by step, e.g. the simulations of a cooling
+	 * rate search.
+	 */
+	BATCH
+}
@@ -0,0 +1,790 @@
+package fdp;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs layouts on a bounded number of workers, one layout per worker at a
+ * time, so the number of threads stays the same however many layouts are
+ * submitted. Workers are started when layouts are queued and end after a
+ * minute without work. On JVMs with virtual threads the workers can be virtual
+ * threads.
+ * <p>
+ * Queued interactive layouts are started before queued batch layouts. A
+ * running batch layout checks for queued interactive layouts after every step
+ * and runs them on its own worker before it continues, so interactive layouts
+ * start within a step even if all workers are busy with batch layouts.
+ * <p>
+ * Every priority has a queue of limited capacity. Submitting a layout to a
+ * full queue is rejected, which keeps callers from queuing more work than the
+ * workers can take.
+ * <p>
+ * Layouts learn about being paused or cancelled through
+ * {@link #checkpoint()}, which {@link Simulation} calls after every step.
+ * <p>
+ * A {@link SteppedLayout} is run in slices of a few milliseconds and gives its
+ * worker back while it is paused, so paused layouts never keep a worker. It
+ * can also be paced for an animation, see
+ * {@link #submit(SteppedLayout, LayoutPriority, long)}, then it gives its
+ * worker back between the slices as well, so a worker is never kept waiting
+ * for the next frame.
+ * <p>
+ * Layouts that split their work run the parts on the same workers with
+ * {@link #invokeAll(List)}, and layouts that wait for other layouts run queued
+ * layouts meanwhile with {@link #await(BooleanSupplier)}, so neither starts
+ * threads of its own.
+ */
+public class LayoutScheduler {
+
+	/**
+	 * Default number of layouts that can be queued per priority.
+	 */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	private static final long KEEP_ALIVE_SECONDS = 60;
+
+	/**
+	 * Time between two slices of a paced layout, a frame at 60 Hz.
+	 */
+	static final long FRAME_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+
+	/**
+	 * Time a slice of a stepped layout may take. A paced layout yields until
+	 * the next frame after that even if steps are due, other stepped layouts
+	 * check whether they were paused.
+	 */
+	static final long SLICE_BUDGET_NANOS = FRAME_NANOS / 2;
+
+	// re-queues paced layouts when their next slice is due, shared by all schedulers
+	private static final ScheduledThreadPoolExecutor PACER = new ScheduledThreadPoolExecutor(1, r -> {
+		Thread thread = new Thread(r, "layout-pacer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	static {
+		PACER.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+		PACER.allowCoreThreadTimeOut(true);
+		PACER.setRemoveOnCancelPolicy(true);
+	}
+
+	private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+	// the layout running on the current thread
+	private static final ThreadLocal<LayoutHandle<?>> CURRENT = new ThreadLocal<>();
+
+	private static LayoutScheduler defaultScheduler;
+
+	private final int workers;
+	private final int capacity;
+	private final ThreadFactory threads;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition work = lock.newCondition();
+	private final Condition resumed = lock.newCondition();
+	private final Condition completed = lock.newCondition();
+	// counts the layouts that finished, so waiting threads do not miss one
+	private long completions;
+	private final Deque<LayoutHandle<?>> interactive = new ArrayDeque<>();
+	private final Deque<LayoutHandle<?>> batch = new ArrayDeque<>();
+	private final List<LayoutHandle<?>> running = new ArrayList<>();
+	private int started;
+	private int idle;
+	private boolean shutdown;
+
+	/**
+	 * Creates a new scheduler.
+	 *
+	 * @param workers the number of layouts run at once, at least 1
+	 * @param capacity the number of layouts that can be queued per priority
+	 * @param virtualThreads true to run the workers on virtual threads if the
+	 *            JVM has them
+	 */
+	public LayoutScheduler(int workers, int capacity, boolean virtualThreads) {
+		if (workers < 1 || capacity < 1) {
+			throw new IllegalArgumentException("Workers and capacity must be at least 1");
+		}
+		this.workers = workers;
+		this.capacity = capacity;
+		ThreadFactory factory = virtualThreads ? virtualThreadFactory() : null;
+		this.threads = factory != null ? factory : r -> {
+			Thread thread = new Thread(r, "layout-worker-" + THREAD_NUMBER.incrementAndGet());
+			// never keeps the application alive
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * @return the scheduler shared by the application, with a worker per
+	 *         processor on virtual threads if available
+	 */
+	public static synchronized LayoutScheduler getDefault() {
+		if (defaultScheduler == null) {
+			int processors = Runtime.getRuntime().availableProcessors();
+			// a cooling rate search keeps a few simulations per processor queued
+			defaultScheduler = new LayoutScheduler(processors, Math.max(DEFAULT_CAPACITY, 16 * processors), true);
+		}
+		return defaultScheduler;
+	}
+
+	/**
+	 * @return a factory of virtual threads, or null before Java 21
+	 */
+	private static ThreadFactory virtualThreadFactory() {
+		try {
+			Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "layout-worker-",
+					1L);
+			return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Queues a layout.
+	 *
+	 * @param layout the layout, e.g. a {@link Simulation}
+	 * @param priority the priority of the layout
+	 * @return the handle of the queued layout
+	 * @throws RejectedExecutionException if the queue of the priority is full
+	 *             or the scheduler was shut down
+	 */
+	public <T> LayoutHandle<T> submit(Callable<T> layout, LayoutPriority priority) {
+		return admit(new LayoutHandle<>(this, layout, priority));
+	}
+
+	/**
+	 * Queues a layout that is run in slices as fast as it can. Unlike other
+	 * layouts it does not keep its worker while it is paused.
+	 *
+	 * @param layout the layout, e.g. a {@link Simulation}
+	 * @param priority the priority of the layout
+	 * @return the handle of the queued layout, its result is the number of
+	 *         iterations
+	 * @throws RejectedExecutionException if the queue of the priority is full
+	 *             or the scheduler was shut down
+	 */
+	public LayoutHandle<Integer> submit(SteppedLayout layout, LayoutPriority priority) {
+		return admit(new LayoutHandle<>(this, layout, priority, 0));
+	}
+
+	/**
+	 * Queues a layout that is paced for an animation: it runs a step every
+	 * stepNanos, in slices of the steps due every frame. A layout whose steps
+	 * take longer runs as fast as it can, but still in slices.
+	 *
+	 * @param layout the layout, e.g. a {@link Simulation}
+	 * @param priority the priority of the layout
+	 * @param stepNanos the time between two steps
+	 * @return the handle of the queued layout, its result is the number of
+	 *         iterations
+	 * @throws RejectedExecutionException if the queue of the priority is full
+	 *             or the scheduler was shut down
+	 */
+	public LayoutHandle<Integer> submit(SteppedLayout layout, LayoutPriority priority, long stepNanos) {
+		if (stepNanos <= 0) {
+			throw new IllegalArgumentException("Step time must be positive");
+		}
+		return admit(new LayoutHandle<>(this, layout, priority, stepNanos));
+	}
+
+	private <T> LayoutHandle<T> admit(LayoutHandle<T> handle) {
+		lock.lock();
+		try {
+			if (shutdown) {
+				throw new RejectedExecutionException("Layout scheduler is shut down");
+			}
+			if (queue(handle).size() >= capacity) {
+				throw new RejectedExecutionException(
+						capacity + " " + handle.priority + " layouts are already queued");
+			}
+			enqueue(handle);
+		} finally {
+			lock.unlock();
+		}
+		return handle;
+	}
+
+	private Deque<LayoutHandle<?>> queue(LayoutHandle<?> handle) {
+		return handle.priority == LayoutPriority.INTERACTIVE ? interactive : batch;
+	}
+
+	/**
+	 * Queues a layout and starts a worker for it if none is idle. Called with
+	 * the lock held.
+	 */
+	private void enqueue(LayoutHandle<?> handle) {
+		enqueue(handle, false);
+	}
+
+	private void enqueue(LayoutHandle<?> handle, boolean first) {
+		if (first) {
+			queue(handle).addFirst(handle);
+		} else {
+			queue(handle).add(handle);
+		}
+		if (interactive.size() + batch.size() > idle && started < workers) {
+			started++;
+			threads.newThread(this::work).start();
+		}
+		work.signal();
+	}
+
+	/**
+	 * Queues the next slice of a stepped layout, of a paced one once it is
+	 * due, or parks the layout if it was paused.
+	 */
+	private void schedule(LayoutHandle<?> handle) {
+		if (handle.stepNanos == 0) {
+			lock.lock();
+			try {
+				park(handle);
+			} finally {
+				lock.unlock();
+			}
+			return;
+		}
+		long delay = Math.max(handle.nextSlice() - System.nanoTime(), FRAME_NANOS / 4);
+		PACER.schedule(() -> {
+			lock.lock();
+			try {
+				park(handle);
+			} finally {
+				lock.unlock();
+			}
+		}, delay, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Parks a paused stepped layout until it is resumed or cancelled, or
+	 * queues its next slice. Called with the lock held.
+	 */
+	private void park(LayoutHandle<?> handle) {
+		if (handle.paused && !handle.cancelled) {
+			handle.parked = true;
+		} else {
+			enqueue(handle);
+		}
+	}
+
+	/**
+	 * Wakes the threads waiting for layouts to finish. Called with the lock
+	 * held.
+	 */
+	private void signalCompletion() {
+		completions++;
+		completed.signalAll();
+	}
+
+	/**
+	 * Returns an executor that submits everything to this scheduler with the
+	 * given priority. Shutting the executor down cancels the layouts submitted
+	 * through it, but not the scheduler.
+	 *
+	 * @param priority the priority of the layouts
+	 * @return a new executor
+	 */
+	public ExecutorService executor(LayoutPriority priority) {
+		return new PriorityExecutor(priority);
+	}
+
+	/**
+	 * Stops accepting layouts and cancels all queued and running ones.
+	 */
+	public void shutdown() {
+		List<LayoutHandle<?>> cancelled = new ArrayList<>();
+		lock.lock();
+		try {
+			shutdown = true;
+			cancelled.addAll(interactive);
+			cancelled.addAll(batch);
+			cancelled.addAll(running);
+			work.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		for (LayoutHandle<?> handle : cancelled) {
+			handle.cancel(true);
+		}
+	}
+
+	/**
+	 * Lets the layout running on the current thread react to its handle:
+	 * runs queued interactive layouts first if it is a batch layout, waits
+	 * while it is paused and interrupts the thread if it was cancelled. Does
+	 * nothing on threads that do not run a layout of a scheduler.
+	 */
+	public static void checkpoint() {
+		LayoutHandle<?> handle = CURRENT.get();
+		if (handle != null) {
+			handle.scheduler.checkpoint(handle);
+		}
+	}
+
+	/**
+	 * Wraps a task that is run on another thread on behalf of the layout
+	 * running on the current thread, e.g. a part of it, so pausing and
+	 * cancelling the layout also reaches the task.
+	 *
+	 * @param task the task
+	 * @return the task bound to the current layout
+	 */
+	public static <T> Callable<T> propagate(Callable<T> task) {
+		LayoutHandle<?> handle = CURRENT.get();
+		if (handle == null) {
+			return task;
+		}
+		return () -> {
+			LayoutHandle<?> outer = CURRENT.get();
+			CURRENT.set(handle);
+			try {
+				return task.call();
+			} finally {
+				CURRENT.set(outer);
+			}
+		};
+	}
+
+	/**
+	 * Runs tasks in parallel on behalf of the layout running on the current
+	 * thread, e.g. its parts, on the workers of its scheduler with its
+	 * priority, or as batch layouts of the default scheduler on other
+	 * threads. The tasks are queued ahead of the other layouts, as the layout
+	 * already has a worker, and are bound to it like by
+	 * {@link #propagate(Callable)}. The calling thread runs the first task and
+	 * every task no worker took yet itself, so the tasks finish even if all
+	 * workers are busy, and waits for the others without being
+	 * interruptible. The interrupt status is kept.
+	 *
+	 * @param tasks the tasks
+	 * @return the finished tasks in the order they were given
+	 * @throws RejectedExecutionException if the scheduler was shut down
+	 */
+	public static <T> List<Future<T>> invokeAll(List<? extends Callable<T>> tasks) {
+		LayoutHandle<?> current = CURRENT.get();
+		LayoutScheduler scheduler = current != null ? current.scheduler : getDefault();
+		LayoutPriority priority = current != null ? current.priority : LayoutPriority.BATCH;
+		List<LayoutHandle<T>> parts = new ArrayList<>();
+		for (Callable<T> task : tasks) {
+			parts.add(new LayoutHandle<>(scheduler, propagate(task), priority));
+		}
+		scheduler.invoke(parts);
+		return new ArrayList<>(parts);
+	}
+
+	private void invoke(List<? extends LayoutHandle<?>> parts) {
+		lock.lock();
+		try {
+			if (shutdown) {
+				throw new RejectedExecutionException("Layout scheduler is shut down");
+			}
+			// bypasses the capacity, the parts belong to a layout that was admitted already
+			for (int i = parts.size() - 1; i > 0; i--) {
+				enqueue(parts.get(i), true);
+			}
+		} finally {
+			lock.unlock();
+		}
+		for (int i = 0; i < parts.size(); i++) {
+			LayoutHandle<?> part = parts.get(i);
+			boolean taken;
+			lock.lock();
+			try {
+				taken = i == 0 || queue(part).remove(part);
+			} finally {
+				lock.unlock();
+			}
+			if (taken) {
+				// keeps the interrupt status, it is the one of the calling layout
+				execute(part);
+				continue;
+			}
+			lock.lock();
+			try {
+				while (!part.isDone()) {
+					completed.awaitUninterruptibly();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Waits until a condition holds, e.g. until layouts the current layout
+	 * submitted have finished, and runs queued layouts on the current thread
+	 * meanwhile. A layout that waits this way does not keep its worker idle
+	 * and cannot wait forever because all workers wait for layouts that are
+	 * still queued. The condition is checked whenever a layout of the
+	 * scheduler finishes, which is the one of the layout running on the
+	 * current thread or the default scheduler. It must not block.
+	 *
+	 * @param condition the condition
+	 * @throws InterruptedException if the thread was interrupted or its
+	 *             layout was cancelled
+	 */
+	public static void await(BooleanSupplier condition) throws InterruptedException {
+		LayoutHandle<?> current = CURRENT.get();
+		(current != null ? current.scheduler : getDefault()).await(current, condition);
+	}
+
+	private void await(LayoutHandle<?> current, BooleanSupplier condition) throws InterruptedException {
+		Thread thread = Thread.currentThread();
+		while (true) {
+			long seen;
+			lock.lock();
+			try {
+				if (Thread.interrupted() || current != null && current.cancelled) {
+					throw new InterruptedException();
+				}
+				seen = completions;
+			} finally {
+				lock.unlock();
+			}
+			if (condition.getAsBoolean()) {
+				return;
+			}
+			LayoutHandle<?> next;
+			boolean runner;
+			lock.lock();
+			try {
+				next = poll(true);
+				if (next == null) {
+					while (completions == seen && (current == null || !current.cancelled)) {
+						completed.await();
+					}
+					continue;
+				}
+				// cancelling the waiting layout meanwhile must not interrupt the other one
+				runner = current != null && current.runner == thread;
+				if (runner) {
+					current.runner = null;
+				}
+			} finally {
+				lock.unlock();
+			}
+			try {
+				run(next);
+			} finally {
+				if (runner) {
+					lock.lock();
+					current.runner = thread;
+					lock.unlock();
+				}
+			}
+		}
+	}
+
+	private void work() {
+		while (true) {
+			LayoutHandle<?> handle;
+			lock.lock();
+			try {
+				while ((handle = poll(true)) == null) {
+					if (shutdown) {
+						started--;
+						return;
+					}
+					idle++;
+					boolean timedOut;
+					try {
+						timedOut = !work.await(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						// a cancelled layout that just finished, nothing to stop
+						timedOut = false;
+					} finally {
+						idle--;
+					}
+					if (timedOut && interactive.isEmpty() && batch.isEmpty()) {
+						started--;
+						return;
+					}
+				}
+			} finally {
+				lock.unlock();
+			}
+			run(handle);
+		}
+	}
+
+	/**
+	 * @return the next queued layout, interactive ones first, or null
+	 */
+	private LayoutHandle<?> poll(boolean anyPriority) {
+		LayoutHandle<?> handle = interactive.poll();
+		return handle != null || !anyPriority ? handle : batch.poll();
+	}
+
+	private void run(LayoutHandle<?> handle) {
+		boolean more;
+		try {
+			more = execute(handle);
+		} finally {
+			// a cancel that came after the last step must not reach the next layout
+			Thread.interrupted();
+		}
+		if (more) {
+			schedule(handle);
+		}
+	}
+
+	/**
+	 * Runs a layout on the current thread. A stepped layout runs slices until
+	 * it is finished or paused, a paced one a single slice.
+	 *
+	 * @return true if the stepped layout needs another slice
+	 */
+	private boolean execute(LayoutHandle<?> handle) {
+		Thread thread = Thread.currentThread();
+		lock.lock();
+		try {
+			// a stepped layout that was cancelled after its first slice still has to end
+			if (handle.cancelled && handle.stepped == null) {
+				return false;
+			}
+			if (handle.stepped != null && handle.paused && !handle.cancelled) {
+				// paused before the slice, it does not need the worker
+				return true;
+			}
+			handle.runner = thread;
+			running.add(handle);
+		} finally {
+			lock.unlock();
+		}
+		LayoutHandle<?> outer = CURRENT.get();
+		CURRENT.set(handle);
+		boolean more = false;
+		try {
+			more = handle.run();
+			while (more && handle.stepNanos == 0 && proceeds(handle)) {
+				more = handle.run();
+			}
+		} finally {
+			CURRENT.set(outer);
+			lock.lock();
+			try {
+				handle.runner = null;
+				running.remove(handle);
+				if (!more) {
+					signalCompletion();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+		return more;
+	}
+
+	/**
+	 * @return false if the stepped layout was paused and gives its worker back
+	 */
+	private boolean proceeds(LayoutHandle<?> handle) {
+		lock.lock();
+		try {
+			return !handle.paused || handle.cancelled;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void checkpoint(LayoutHandle<?> handle) {
+		Thread thread = Thread.currentThread();
+		lock.lock();
+		try {
+			if (handle.priority == LayoutPriority.BATCH && handle.runner == thread) {
+				LayoutHandle<?> preempting;
+				while ((preempting = poll(false)) != null) {
+					// cancelling this layout meanwhile must not interrupt the other one
+					handle.runner = null;
+					lock.unlock();
+					try {
+						run(preempting);
+					} finally {
+						lock.lock();
+						handle.runner = thread;
+					}
+				}
+			}
+			// stepped layouts are paused between their slices
+			while (handle.paused && !handle.cancelled && handle.stepped == null) {
+				try {
+					resumed.await();
+				} catch (InterruptedException e) {
+					thread.interrupt();
+					return;
+				}
+			}
+			if (handle.cancelled) {
+				thread.interrupt();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	boolean cancel(LayoutHandle<?> handle, boolean mayInterruptIfRunning) {
+		lock.lock();
+		try {
+			// cancel returns true for a layout that was cancelled already
+			if (handle.result.isDone() || !handle.result.cancel(false)) {
+				return false;
+			}
+			handle.cancelled = true;
+			if (handle.stepped == null) {
+				queue(handle).remove(handle);
+			} else if (handle.parked) {
+				// ends the layout on a worker
+				handle.parked = false;
+				enqueue(handle);
+			}
+			if (mayInterruptIfRunning && handle.runner != null) {
+				handle.runner.interrupt();
+			}
+			resumed.signalAll();
+			signalCompletion();
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void pause(LayoutHandle<?> handle, boolean paused) {
+		lock.lock();
+		try {
+			handle.paused = paused;
+			if (!paused && handle.parked) {
+				handle.parked = false;
+				enqueue(handle);
+			}
+			resumed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	boolean isPaused(LayoutHandle<?> handle) {
+		lock.lock();
+		try {
+			return handle.paused;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Submits to the scheduler with a fixed priority and keeps the handles to
+	 * cancel them on shutdown.
+	 */
+	private class PriorityExecutor extends AbstractExecutorService {
+
+		private final LayoutPriority priority;
+		private final List<LayoutHandle<?>> handles = new ArrayList<>();
+		private boolean terminated;
+
+		PriorityExecutor(LayoutPriority priority) {
+			this.priority = priority;
+		}
+
+		@Override
+		public void execute(Runnable command) {
+			synchronized (handles) {
+				if (terminated) {
+					throw new RejectedExecutionException("Executor is shut down");
+				}
+				handles.removeIf(LayoutHandle::isDone);
+				handles.add(LayoutScheduler.this.submit(Executors.callable(command), priority));
+			}
+		}
+
+		@Override
+		public void shutdown() {
+			synchronized (handles) {
+				terminated = true;
+			}
+			// the executor may be terminated already
+			lock.lock();
+			try {
+				signalCompletion();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public List<Runnable> shutdownNow() {
+			Collection<LayoutHandle<?>> cancelled;
+			synchronized (handles) {
+				terminated = true;
+				cancelled = new ArrayList<>(handles);
+				handles.clear();
+			}
+			for (LayoutHandle<?> handle : cancelled) {
+				handle.cancel(true);
+			}
+			return new ArrayList<>();
+		}
+
+		@Override
+		public boolean isShutdown() {
+			synchronized (handles) {
+				return terminated;
+			}
+		}
+
+		@Override
+		public boolean isTerminated() {
+			synchronized (handles) {
+				return terminated && handles.stream().allMatch(LayoutHandle::isDone);
+			}
+		}
+
+		@Override
+		public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+			long deadline = System.nanoTime() + unit.toNanos(timeout);
+			while (true) {
+				long seen;
+				lock.lock();
+				try {
+					seen = completions;
+				} finally {
+					lock.unlock();
+				}
+				if (isTerminated()) {
+					return true;
+				}
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					return false;
+				}
+				lock.lock();
+				try {
+					// woken when one of the layouts finished
+					while (completions == seen && remaining > 0) {
+						remaining = completed.awaitNanos(remaining);
+					}
+				} finally {
+					lock.unlock();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package fdp;
+
+import java.util.function.DoubleBinaryOperator;
+
+import fdp.force.ForceCompiler;
+import fdp.io.MappedLayout;
+import fdp.layout.MappedKernel;
+import fdp.layout.StepPools;
+import parsii.tokenizer.ParseException;
+
+/**
+ * Simulation of a graph whose layout is kept in a {@link MappedLayout}, for
+ * graphs that do not fit into the heap. It runs the grid variant on the mapped
+ * buffers with {@link MappedKernel} and writes its progress to the file after
+ * every step. A layout that was started before continues from its last step
+ * with its temperature, so a layout in equilibrium is not simulated again.
+ * <p>
+ * The vertices start at random positions and the temperature is reduced by
+ * the cooling rate, the initial placement, adaptive cooling and the repulsion
+ * mode of the parameters are not used. The stop criterion is the same as of
+ * {@link Simulation}.
+ */
+public class MappedSimulation implements SteppedLayout {
+
+	private final MappedLayout layout;
+	private final Parameter parameter;
+	private final DoubleBinaryOperator attractiveForce;
+	private final DoubleBinaryOperator repulsiveForce;
+
+	private MappedKernel kernel;
+	private int iteration;
+	private double t;
+	private boolean equilibriumReached;
+
+	/**
+	 * Creates a new simulation of a mapped layout.
+	 *
+	 * @param layout the layout, stays open after the simulation
+	 * @param p parameters for the simulation, the frame is the one of the layout
+	 * @throws ParseException when the force expressions are malformed
+	 */
+	public MappedSimulation(MappedLayout layout, Parameter p) throws ParseException {
+		this.layout = layout;
+		this.parameter = p;
+		attractiveForce = ForceCompiler.compile(p.getAttractiveForce());
+		repulsiveForce = ForceCompiler.compile(p.getRepulsiveForce());
+	}
+
+	/**
+	 * Places the vertices of a new layout or resumes the progress of the file.
+	 */
+	@Override
+	public void begin() {
+		double k;
+		if (layout.isStarted()) {
+			k = layout.getOptimalDistance();
+			iteration = layout.getIteration();
+			t = layout.getTemperature();
+			equilibriumReached = layout.isEquilibriumReached();
+		} else {
+			int area = Math.min(layout.getFrameWidth() * layout.getFrameWidth(),
+					layout.getFrameHeight() * layout.getFrameHeight());
+			k = Simulation.optimalDistance(area, layout.getVertexCount());
+			iteration = 0;
+			t = parameter.getInitialTemperature() > 0 ? parameter.getInitialTemperature()
+					: layout.getFrameWidth() / 10;
+			equilibriumReached = false;
+		}
+		kernel = new MappedKernel(layout, k, attractiveForce, repulsiveForce);
+		kernel.setPool(StepPools.get(parameter.getParallelism()));
+		if (!layout.isStarted()) {
+			kernel.randomizePositions();
+			layout.start(k, t);
+		}
+	}
+
+	@Override
+	public boolean advance(int target, long budgetNanos) {
+		long start = System.nanoTime();
+		while (!finished() && iteration < target && !Thread.currentThread().isInterrupted()) {
+			simulateStep();
+			if (budgetNanos != Long.MAX_VALUE && System.nanoTime() - start >= budgetNanos) {
+				break;
+			}
+		}
+		return !finished() && !Thread.currentThread().isInterrupted();
+	}
+
+	/**
+	 * @return true if the stop criterion is met
+	 */
+	private boolean finished() {
+		if (parameter.isEquilibriumCriterion()) {
+			// mechanical equilibrium, but at most the maximum of iterations
+			return equilibriumReached || iteration >= parameter.getMaxIterations();
+		}
+		return iteration >= parameter.getCriterion();
+	}
+
+	private void simulateStep() {
+		double maxForce = kernel.step(t);
+		equilibriumReached = maxForce <= parameter.getCriterion();
+		// always let vertices move at least 1px
+		t = Math.max(t * (1 - parameter.getCoolingRate()), 1);
+		iteration++;
+		layout.setProgress(iteration, t, equilibriumReached);
+		// waits while paused, stops the loop if cancelled
+		LayoutScheduler.checkpoint();
+	}
+
+	/**
+	 * Writes the layout to the storage device.
+	 */
+	@Override
+	public int end() {
+		layout.force();
+		return iteration;
+	}
+
+	@Override
+	public int getIteration() {
+		return iteration;
+	}
+}
@@ -0,0 +1,221 @@
+package fdp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import org.jgrapht.Graph;
+import org.jgrapht.Graphs;
+import org.jgrapht.graph.SimpleGraph;
+
+import fdp.force.ForceCompiler;
+import fdp.graph.Edge;
+import fdp.graph.EdgeFactory;
+import fdp.graph.Vertex;
+import fdp.layout.SnapshotBuffer;
+import fdp.metrics.IterationListener;
+import parsii.tokenizer.ParseException;
+
+/**
+ * Multilevel variant of the force-directed placement in the style of Walshaw.
+ * The graph is repeatedly coarsened by collapsing a maximal matching until it
+ * is small, the coarsest graph is laid out from random positions, and every
+ * finer level starts from the interpolated layout of the level above with a
+ * low temperature. Only the coarsest level has to be untangled, so the finer
+ * levels need few iterations.
+ */
+public class MultilevelSimulation implements Callable<Integer> {
+
+	/**
+	 * Coarsening stops once a level has at most this many vertices.
+	 */
+	private static final int COARSEST_SIZE = 32;
+
+	/**
+	 * Coarsening stops if a level has more than this fraction of the vertices
+	 * of the level below, e.g. for stars where hardly any edges can be matched.
+	 */
+	private static final double MIN_REDUCTION = 0.8;
+
+	/**
+	 * Initial temperature of the refinement levels in multiples of their
+	 * optimal distance.
+	 */
+	private static final double REFINEMENT_TEMPERATURE = 2;
+
+	/**
+	 * Maximum number of iterations of the refinement levels, they start close
+	 * to their final layout.
+	 */
+	private static final int REFINEMENT_ITERATIONS = 100;
+
+	private final Graph<Vertex, Edge> graph;
+	private final Parameter parameter;
+	private final Random random = new Random();
+	private boolean observed = false;
+	private SnapshotBuffer snapshots;
+	private IterationListener listener;
+
+	/**
+	 * Creates a new MultilevelSimulation.
+	 * 
+	 * @param graph the graph to layout
+	 * @param p parameters for the simulation of every level
+	 * @throws ParseException when the Strings in p that represent the force
+	 *             functions are malformed or empty
+	 */
+	public MultilevelSimulation(Graph<Vertex, Edge> graph, Parameter p) throws ParseException {
+		this.graph = graph;
+		this.parameter = p;
+		// fail early instead of on the first level
+		ForceCompiler.compile(p.getAttractiveForce());
+		ForceCompiler.compile(p.getRepulsiveForce());
+	}
+
+	/**
+	 * Runs the multilevel layout.
+	 * 
+	 * @return number of iterations used on all levels together
+	 * @throws ParseException
+	 */
+	private int startSimulation() throws ParseException {
+
+		// coarsen, levels.get(0) is the original graph
+		List<Graph<Vertex, Edge>> levels = new ArrayList<>();
+		List<Map<Vertex, Vertex>> parents = new ArrayList<>();
+		levels.add(graph);
+		Graph<Vertex, Edge> current = graph;
+		while (current.vertexSet().size() > COARSEST_SIZE) {
+			Map<Vertex, Vertex> parent = new IdentityHashMap<>();
+			Graph<Vertex, Edge> coarse = coarsen(current, parent);
+			if (coarse.vertexSet().size() > MIN_REDUCTION * current.vertexSet().size()) {
+				break;
+			}
+			levels.add(coarse);
+			parents.add(parent);
+			current = coarse;
+		}
+
+		// layout the coarsest level from scratch
+		int iterations = 0;
+		iterations += simulate(current, parameter, current == graph);
+
+		// interpolate and refine every finer level
+		for (int level = levels.size() - 2; level >= 0; level--) {
+			Graph<Vertex, Edge> fine = levels.get(level);
+			Map<Vertex, Vertex> parent = parents.get(level);
+			int area = Math.min(parameter.getFrameWidth() * parameter.getFrameWidth(),
+					parameter.getFrameHeight() * parameter.getFrameHeight());
+			double k = Simulation.optimalDistance(area, fine.vertexSet().size());
+
+			for (Vertex v : fine.vertexSet()) {
+				// start close to the coarse vertex that v was collapsed into
+				Vertex p = parent.get(v);
+				double x = p.getPos().x + (random.nextDouble() - 0.5) * k / 2;
+				double y = p.getPos().y + (random.nextDouble() - 0.5) * k / 2;
+				v.getPos().set(Math.min(parameter.getFrameWidth(), Math.max(0, x)),
+						Math.min(parameter.getFrameHeight(), Math.max(0, y)));
+			}
+
+			Parameter refinement = new Parameter(parameter);
+			refinement.setInitialPlacement(InitialPlacement.KEEP);
+			double t = Math.max(REFINEMENT_TEMPERATURE * k, 1);
+			refinement.setInitialTemperature(t);
+			// cool down to the minimum temperature of 1 within the iterations available
+			refinement.setCoolingRate(Math.max(parameter.getCoolingRate(), 1 - Math.pow(1 / t, 1.0 / REFINEMENT_ITERATIONS)));
+			refinement.setMaxIterations(Math.min(parameter.getMaxIterations(), REFINEMENT_ITERATIONS));
+			if (!parameter.isEquilibriumCriterion()) {
+				refinement.setCriterion(Math.min(parameter.getCriterion(), REFINEMENT_ITERATIONS));
+			}
+			iterations += simulate(fine, refinement, level == 0);
+		}
+		return iterations;
+	}
+
+	private int simulate(Graph<Vertex, Edge> g, Parameter p, boolean finest) throws ParseException {
+		Simulation simulation = new Simulation(g, p);
+		simulation.setObserved(observed && finest);
+		simulation.setSnapshots(snapshots);
+		simulation.setListener(listener);
+		return simulation.startSimulation();
+	}
+
+	/**
+	 * Collapses a random maximal matching of the graph. Every vertex is matched
+	 * with its unmatched neighbour of lowest degree, if there is one.
+	 * 
+	 * @param g the graph to coarsen
+	 * @param parent receives the coarse vertex of every vertex of g
+	 * @return the coarse graph
+	 */
+	private Graph<Vertex, Edge> coarsen(Graph<Vertex, Edge> g, Map<Vertex, Vertex> parent) {
+		Graph<Vertex, Edge> coarse = new SimpleGraph<>(new EdgeFactory());
+		List<Vertex> order = new ArrayList<>(g.vertexSet());
+		Collections.shuffle(order, random);
+
+		for (Vertex v : order) {
+			if (parent.containsKey(v)) {
+				continue;
+			}
+			Vertex match = null;
+			for (Vertex u : Graphs.neighborListOf(g, v)) {
+				if (!parent.containsKey(u) && (match == null || g.edgesOf(u).size() < g.edgesOf(match).size())) {
+					match = u;
+				}
+			}
+			Vertex c = new Vertex();
+			coarse.addVertex(c);
+			parent.put(v, c);
+			if (match != null) {
+				parent.put(match, c);
+			}
+		}
+		for (Edge e : g.edgeSet()) {
+			Vertex cv = parent.get(e.getV());
+			Vertex cu = parent.get(e.getU());
+			if (cv != cu) {
+				coarse.addEdge(cv, cu);
+			}
+		}
+		return coarse;
+	}
+
+	/**
+	 * Sets whether the positions of the vertices of the original graph are
+	 * observed while the refinement of the finest level is running.
+	 * 
+	 * @param observed
+	 */
+	public void setObserved(boolean observed) {
+		this.observed = observed;
+	}
+
+	/**
+	 * Sets a buffer the positions of every level are published to while it is
+	 * refined, see {@link Simulation#setSnapshots(SnapshotBuffer)}.
+	 * 
+	 * @param snapshots the buffer or null
+	 */
+	public void setSnapshots(SnapshotBuffer snapshots) {
+		this.snapshots = snapshots;
+	}
+
+	/**
+	 * Sets a listener that receives the measurements of every iteration of
+	 * every level, which is reported as a simulation of its own.
+	 * 
+	 * @param listener the listener or null
+	 */
+	public void setListener(IterationListener listener) {
+		this.listener = listener;
+	}
+
+	@Override
+	public Integer call() throws Exception {
+		return startSimulation();
+	}
+}
@@ -14,6 +14,46 @@ public class Parameter {
 	private double criterionValue;
 	private double coolingRateValue;
 	private int frameDelayValue;
+	private RepulsionMode repulsionMode = RepulsionMode.EXACT;
+	private double theta = 0.8;
+	private int parallelism = 1;
+	private InitialPlacement initialPlacement = InitialPlacement.RANDOM;
+	private double initialTemperature = 0;
+	private int maxIterations = 1000;
+	private boolean adaptiveCooling = false;
+	private int convergenceWindow = 20;
+	private double convergenceTolerance = 0.01;
+	private VertexOrder vertexOrder = VertexOrder.NONE;
+	private int reorderInterval = 50;
+
+	public Parameter() {
+	}
+
+	/**
+	 * Creates a copy of the given parameters.
+	 * @param p
+	 */
+	public Parameter(Parameter p) {
+		this.frameWidth = p.frameWidth;
+		this.frameHeight = p.frameHeight;
+		this.equilibriumCriterion = p.equilibriumCriterion;
+		this.attractiveForceString = p.attractiveForceString;
+		this.repulsiveForceString = p.repulsiveForceString;
+		this.criterionValue = p.criterionValue;
+		this.coolingRateValue = p.coolingRateValue;
+		this.frameDelayValue = p.frameDelayValue;
+		this.repulsionMode = p.repulsionMode;
+		this.theta = p.theta;
+		this.parallelism = p.parallelism;
+		this.initialPlacement = p.initialPlacement;
+		this.initialTemperature = p.initialTemperature;
+		this.maxIterations = p.maxIterations;
+		this.adaptiveCooling = p.adaptiveCooling;
+		this.convergenceWindow = p.convergenceWindow;
+		this.convergenceTolerance = p.convergenceTolerance;
+		this.vertexOrder = p.vertexOrder;
+		this.reorderInterval = p.reorderInterval;
+	}
 
 	public int getFrameWidth() {
 		return frameWidth;
@@ -79,4 +119,123 @@ public class Parameter {
 		this.frameDelayValue = frameDelayValue;
 	}
 
+	public RepulsionMode getRepulsionMode() {
+		return repulsionMode;
+	}
+
+	public void setRepulsionMode(RepulsionMode repulsionMode) {
+		this.repulsionMode = repulsionMode;
+	}
+
+	/**
+	 * @return the Barnes-Hut opening angle, smaller values are more accurate but slower
+	 */
+	public double getTheta() {
+		return theta;
+	}
+
+	public void setTheta(double theta) {
+		this.theta = theta;
+	}
+
+	/**
+	 * @return number of threads a single simulation step is split across
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	public InitialPlacement getInitialPlacement() {
+		return initialPlacement;
+	}
+
+	public void setInitialPlacement(InitialPlacement initialPlacement) {
+		this.initialPlacement = initialPlacement;
+	}
+
+	/**
+	 * @return the temperature of the first step, 0 means a tenth of the frame width
+	 */
+	public double getInitialTemperature() {
+		return initialTemperature;
+	}
+
+	public void setInitialTemperature(double initialTemperature) {
+		this.initialTemperature = initialTemperature;
+	}
+
+	/**
+	 * @return maximum number of iterations when simulating until mechanical equilibrium
+	 */
+	public int getMaxIterations() {
+		return maxIterations;
+	}
+
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * @return whether the temperature is controlled by the energy of the
+	 *         system instead of the cooling rate, see
+	 *         {@link fdp.layout.AdaptiveCooling}
+	 */
+	public boolean isAdaptiveCooling() {
+		return adaptiveCooling;
+	}
+
+	public void setAdaptiveCooling(boolean adaptiveCooling) {
+		this.adaptiveCooling = adaptiveCooling;
+	}
+
+	/**
+	 * @return number of iterations the energy is compared over to detect
+	 *         convergence with adaptive cooling
+	 */
+	public int getConvergenceWindow() {
+		return convergenceWindow;
+	}
+
+	public void setConvergenceWindow(int convergenceWindow) {
+		this.convergenceWindow = convergenceWindow;
+	}
+
+	/**
+	 * @return relative variation of the energy over the convergence window
+	 *         below which a simulation until mechanical equilibrium stops
+	 */
+	public double getConvergenceTolerance() {
+		return convergenceTolerance;
+	}
+
+	public void setConvergenceTolerance(double convergenceTolerance) {
+		this.convergenceTolerance = convergenceTolerance;
+	}
+
+	/**
+	 * @return the order the vertices are kept in memory during the simulation
+	 */
+	public VertexOrder getVertexOrder() {
+		return vertexOrder;
+	}
+
+	public void setVertexOrder(VertexOrder vertexOrder) {
+		this.vertexOrder = vertexOrder;
+	}
+
+	/**
+	 * @return number of iterations after which the {@link VertexOrder#HILBERT}
+	 *         order is renewed
+	 */
+	public int getReorderInterval() {
+		return reorderInterval;
+	}
+
+	public void setReorderInterval(int reorderInterval) {
+		this.reorderInterval = reorderInterval;
+	}
 }
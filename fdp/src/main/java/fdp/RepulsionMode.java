@@ -0,0 +1,26 @@
+package fdp;
+
+/**
+ * Strategies for calculating the repulsive forces during a simulation step.
+ */
+public enum RepulsionMode {
+
+	/**
+	 * Every vertex is compared with every other vertex, O(|V|^2) per step. This
+	 * is the reference the approximating modes are compared against.
+	 */
+	EXACT,
+
+	/**
+	 * Distant groups of vertices are approximated by their center of mass
+	 * using a quadtree that is rebuilt every step, O(|V| log |V|) per step.
+	 */
+	BARNES_HUT,
+
+	/**
+	 * The grid variant of Fruchterman and Reingold: vertices only repel
+	 * vertices closer than 2k, which are found in the neighbouring cells of a
+	 * spatial hash. Close to O(|V|) per step for evenly distributed vertices.
+	 */
+	GRID
+}
@@ -1,43 +1,67 @@
 package fdp;
 
-import java.util.concurrent.Callable;
-
-import javax.vecmath.Vector2d;
+import java.util.function.DoubleBinaryOperator;
 
 import org.jgrapht.Graph;
 
+import fdp.graph.CompactGraph;
 import fdp.graph.Edge;
 import fdp.graph.Vertex;
-import parsii.eval.Expression;
-import parsii.eval.Parser;
-import parsii.eval.Scope;
-import parsii.eval.Variable;
+import fdp.force.ForceCompiler;
+import fdp.io.TrajectoryRecorder;
+import fdp.layout.AdaptiveCooling;
+import fdp.layout.BfsPlacement;
+import fdp.layout.LayoutKernel;
+import fdp.layout.PivotMds;
+import fdp.layout.SnapshotBuffer;
+import fdp.layout.SpectralPlacement;
+import fdp.layout.StepPools;
+import fdp.metrics.IterationListener;
+import fdp.metrics.IterationMetrics;
 import parsii.tokenizer.ParseException;
 
-public class Simulation implements Callable<Integer> {
+public class Simulation implements SteppedLayout {
 
-	private Graph<Vertex, Edge> graph;
+	private CompactGraph graph;
+	private Parameter parameter;
 
 	private int frameWidth;
 	private int frameHeight;
 	private boolean equi;
 	private double criterion;
 	private double coolingRate;
-	private int delay;
+	private boolean observed = false;
 	
 	private static final double C = 0.4;
 
+	/**
+	 * Factor the temperature is changed by with adaptive cooling. Hu proposes
+	 * 0.9, the slower change keeps the temperature high for longer, which
+	 * untangles grids with fewer crossings.
+	 */
+	private static final double ADAPTIVE_RATIO = 0.95;
+
+	/**
+	 * Initial temperature after a structured placement in multiples of the
+	 * optimal distance.
+	 */
+	private static final double STRUCTURED_TEMPERATURE = 1;
+
 	private int iteration = 0;
 
 	private int area;
 	private double k;
 	private double t;
 
-	private Scope scope = Scope.create();
-	private Variable varD = scope.getVariable("d");
-	private Variable varK = scope.getVariable("k");
-	private Expression attractiveForceExpr;
-	private Expression repulsiveForceExpr;
+	private DoubleBinaryOperator attractiveForce;
+	private DoubleBinaryOperator repulsiveForce;
+
+	private LayoutKernel kernel;
+	private AdaptiveCooling adaptiveCooling;
+	private TrajectoryRecorder recorder;
+	private SnapshotBuffer snapshots;
+	private IterationListener listener;
+	private IterationMetrics metrics;
 
 	private boolean equilibriumReached = false;
 
@@ -49,49 +73,142 @@ public class Simulation implements Callable<Integer> {
 	 * @throws ParseException
 	 */
 	public Simulation(Graph<Vertex, Edge> graph, Parameter p) throws ParseException {
+		this(CompactGraph.compile(graph), p);
+	}
+
+	/**
+	 * Creates a new Simulation of a compiled graph. If the graph has no Vertex
+	 * objects, the resulting positions are only available from the kernel.
+	 * 
+	 * @param graph
+	 * @param p
+	 * @throws ParseException
+	 */
+	public Simulation(CompactGraph graph, Parameter p) throws ParseException {
 		this.graph = graph;
+		this.parameter = p;
 		this.frameWidth = p.getFrameWidth();
 		this.frameHeight = p.getFrameHeight();
 		this.equi = p.isEquilibriumCriterion();
 		this.criterion = p.getCriterion();
 		this.coolingRate = p.getCoolingRate();
-		this.delay = p.getFrameDelay();
 
-		// parse the force strings into Expressions that can be evaluated multiple times
-		attractiveForceExpr = Parser.parse(p.getAttractiveForce(), scope);
-		repulsiveForceExpr = Parser.parse(p.getRepulsiveForce(), scope);
+		// compile the force strings into functions that can be evaluated multiple times
+		attractiveForce = ForceCompiler.compile(p.getAttractiveForce());
+		repulsiveForce = ForceCompiler.compile(p.getRepulsiveForce());
 	}
 
 	/**
-	 * Starts the simulation.
+	 * Starts the simulation. If the thread is interrupted, the simulation stops
+	 * after the current step and keeps the interrupt status. Run by a
+	 * {@link LayoutScheduler}, it can also be paused and cancelled after every
+	 * step.
 	 * 
 	 * @return number of iterations used until criterion is met
 	 */
-	private int startSimulation() {
+	int startSimulation() {
+		begin();
+		try {
+			while (advance(Integer.MAX_VALUE, Long.MAX_VALUE)) {
+				// runs until the criterion is met
+			}
+		} finally {
+			end();
+		}
+		return iteration;
+	}
+
+	/**
+	 * Prepares the first step: places the vertices and publishes the initial
+	 * positions.
+	 */
+	@Override
+	public void begin() {
 
 		iteration = 0;
 		equilibriumReached = false;
 
 		area = Math.min(frameWidth * frameWidth, frameHeight * frameHeight);
-		k = C * Math.sqrt(area / graph.vertexSet().size());
-		t = frameWidth / 10;
+		k = optimalDistance(area, graph.getVertexCount());
+		t = parameter.getInitialTemperature() > 0 ? parameter.getInitialTemperature() : frameWidth / 10;
+
+		kernel = new LayoutKernel(graph, parameter, k, attractiveForce, repulsiveForce);
+		kernel.setPool(StepPools.get(parameter.getParallelism()));
+
+		switch (parameter.getInitialPlacement()) {
+		case KEEP:
+			kernel.readPositions();
+			break;
+		case BFS:
+		case PIVOT_MDS:
+		case SPECTRAL:
+			place(parameter.getInitialPlacement());
+			break;
+		default:
+			// assign random initial positions to all vertices
+			kernel.randomizePositions();
+		}
+		// once the vertices are placed, so the Hilbert order follows their positions
+		kernel.reorder(parameter.getVertexOrder());
+		adaptiveCooling = null;
+		if (parameter.isAdaptiveCooling()) {
+			adaptiveCooling = new AdaptiveCooling(ADAPTIVE_RATIO, t, 1, parameter.getConvergenceWindow(),
+					parameter.getConvergenceTolerance());
+		}
 
-		// assign random initial positions to all vertices
-		for (Vertex v : graph.vertexSet()) {
-			v.randomPos(frameWidth, frameHeight);
+		if (observed) {
+			kernel.writePositions();
+		}
+		if (snapshots != null) {
+			snapshots.publish(kernel.getGraph(), 0, t, kernel.getX(), kernel.getY());
+		}
+		if (recorder != null) {
+			recorder.start(graph.getVertexCount(), frameWidth, frameHeight);
+			recorder.record(0, t, kernel.getX(), kernel.getY());
 		}
+		if (listener != null) {
+			kernel.setMeasured(true);
+			metrics = new IterationMetrics();
+			metrics.setVertexCount(graph.getVertexCount());
+			listener.simulationStarted(graph.getVertexCount(), graph.getEdgeCount());
+		}
+	}
 
-		if (equi) {
-			// simulate until mechanical equilibrium
-			while (!equilibriumReached && iteration < 1000) {
-				simulateStep();
-			}
-		} else {
-			// simulate iterations-steps
-			for (int i = 0; i < criterion; i++) {
-				simulateStep();
+	@Override
+	public boolean advance(int target, long budgetNanos) {
+		long start = System.nanoTime();
+		while (!finished() && iteration < target && !interrupted()) {
+			simulateStep();
+			if (budgetNanos != Long.MAX_VALUE && System.nanoTime() - start >= budgetNanos) {
+				break;
 			}
 		}
+		return !finished() && !interrupted();
+	}
+
+	/**
+	 * @return true if the stop criterion is met
+	 */
+	private boolean finished() {
+		if (equi) {
+			// mechanical equilibrium, but at most the maximum of iterations
+			return equilibriumReached || iteration >= parameter.getMaxIterations();
+		}
+		// iterations-steps
+		return iteration >= criterion;
+	}
+
+	/**
+	 * Copies the positions into the Vertex objects.
+	 */
+	@Override
+	public int end() {
+		if (listener != null) {
+			listener.simulationFinished(iteration);
+		}
+		if (kernel != null) {
+			kernel.writePositions();
+		}
 		return iteration;
 	}
 
@@ -100,106 +217,160 @@ public class Simulation implements Callable<Integer> {
 	 */
 	private void simulateStep() {
 
-		// calculate repulsive forces (from every vertex to every other)
-		for (Vertex v : graph.vertexSet()) {
-			// reset displacement vector for new calculation
-			v.getDisp().set(0, 0);
-			for (Vertex u : graph.vertexSet()) {
-				if (!v.equals(u)) {
-					// normalized difference position vector of v and u
-					Vector2d deltaPos = new Vector2d();
-					deltaPos.sub(v.getPos(), u.getPos());
-					double length = deltaPos.length();
-					deltaPos.normalize();
-
-					// displacement depending on repulsive force
-					deltaPos.scale(this.forceRepulsive(length, k));
-					v.getDisp().add(deltaPos);
-				}
-			}
+		long start = listener != null ? System.nanoTime() : 0;
+		double maxForce = kernel.step(t);
+		if (listener != null) {
+			measured(System.nanoTime() - start, maxForce);
 		}
+		// no equilibrium if one vertex has too high net force
+		equilibriumReached = maxForce <= criterion;
 
-		// calculate attractive forces (only between neighbors)
-		for (Edge e : graph.edgeSet()) {
+		if (observed) {
+			kernel.writePositions();
+		}
 
-			// normalized difference position vector of v and u
-			Vector2d deltaPos = new Vector2d();
-			deltaPos.sub(e.getV().getPos(), e.getU().getPos());
-			double length = deltaPos.length();
-			deltaPos.normalize();
+		if (adaptiveCooling != null) {
+			t = adaptiveCooling.cool(t, kernel.getEnergy());
+			// the energy hardly changes any more, even if single vertices still oscillate
+			equilibriumReached |= adaptiveCooling.isConverged();
+		} else {
+			// reduce the temperature as the layout approaches a better
+			// configuration but always let vertices move at least 1px
+			t = Math.max(t * (1 - coolingRate), 1);
+		}
 
-			// displacements depending on attractive force
-			deltaPos.scale(this.forceAttractive(length, k));
+		iteration++;
 
-			e.getV().getDisp().sub(deltaPos);
-			e.getU().getDisp().add(deltaPos);
+		if (parameter.getVertexOrder() == VertexOrder.HILBERT && parameter.getReorderInterval() > 0
+				&& iteration % parameter.getReorderInterval() == 0) {
+			// the vertices moved, so neighbours in the plane drifted apart in memory
+			kernel.reorder(VertexOrder.HILBERT);
 		}
 
-		// assume equilibrium
-		equilibriumReached = true;
+		if (snapshots != null) {
+			snapshots.publish(kernel.getGraph(), iteration, t, kernel.getX(), kernel.getY());
+		}
+		if (recorder != null) {
+			recorder.record(iteration, t, kernel.getX(), kernel.getY());
+		}
+		if (listener != null) {
+			metrics.setIteration(iteration);
+			listener.iterationCompleted(metrics);
+		}
+		// waits while paused, stops the loop if cancelled
+		LayoutScheduler.checkpoint();
+	}
 
-		for (Vertex v : graph.vertexSet()) {
+	/**
+	 * Collects the measurements of the step that was just simulated.
+	 */
+	private void measured(long stepNanos, double maxForce) {
+		metrics.setTemperature(t);
+		metrics.setStepNanos(stepNanos);
+		metrics.setRepulsionNanos(kernel.getRepulsionNanos());
+		metrics.setAttractionNanos(kernel.getAttractionNanos());
+		metrics.setDisplacementNanos(kernel.getDisplacementNanos());
+		metrics.setMaxForce(maxForce);
+		metrics.setMaxDisplacement(kernel.getMaxDisplacement());
+		metrics.setMeanDisplacement(kernel.getMeanDisplacement());
+		metrics.setEnergy(kernel.getEnergy());
+	}
 
-			Vector2d disp = new Vector2d(v.getDisp());
-			double length = disp.length();
+	/**
+	 * Places the vertices by one of the structured placements, which start
+	 * close to a layout, so unless an initial temperature is given the
+	 * simulation starts at a temperature of a few optimal distances instead
+	 * of a tenth of the frame.
+	 */
+	private void place(InitialPlacement placement) {
+		int n = graph.getVertexCount();
+		double[] px = new double[n];
+		double[] py = new double[n];
+		switch (placement) {
+		case BFS:
+			BfsPlacement.place(graph, px, py);
+			break;
+		case PIVOT_MDS:
+			PivotMds.place(graph, px, py);
+			break;
+		default:
+			SpectralPlacement.place(graph, px, py);
+		}
+		kernel.placePositions(px, py);
+		if (parameter.getInitialTemperature() <= 0) {
+			t = Math.min(t, Math.max(STRUCTURED_TEMPERATURE * k, 1));
+		}
+	}
 
-			// no equilibrium if one vertex has too high net force
-			if (length > criterion) {
-				equilibriumReached = false;
-			}
-			// System.out.print((int)length + "; ");
-			// limit maximum displacement by temperature t
-			disp.normalize();
-			disp.scale(Math.min(length, t));
-			v.getPos().add(disp);
+	private static boolean interrupted() {
+		return Thread.currentThread().isInterrupted();
+	}
 
-			// prevent being displaced outside the frame
-			v.getPos().x = Math.min(frameWidth, Math.max(0.0, v.getPos().x));
-			v.getPos().y = Math.min(frameHeight, Math.max(0.0, v.getPos().y));
-		}
-		// System.out.println();
-		// reduce the temperature as the layout approaches a better
-		// configuration but always let vertices move at least 1px
-		t = Math.max(t * (1 - coolingRate), 1);
+	/**
+	 * Calculates the optimal distance between vertices for the given area.
+	 * 
+	 * @param area the area available to the layout
+	 * @param vertexCount number of vertices in the layout
+	 * @return the optimal distance k
+	 */
+	public static double optimalDistance(int area, int vertexCount) {
+		return C * Math.sqrt(area / vertexCount);
+	}
 
-		// System.out.println("t: " + (float) t);
+	/**
+	 * Sets whether the positions of the Vertex objects are observed while the
+	 * simulation is running, e.g. by an animation. If so, they are updated
+	 * after every step, otherwise only once the simulation is finished.
+	 * 
+	 * @param observed
+	 */
+	public void setObserved(boolean observed) {
+		this.observed = observed;
+	}
 
-		try {
-			Thread.sleep(delay);
-		} catch (InterruptedException e1) {
-			e1.printStackTrace();
-		}
-		iteration++;
+	/**
+	 * Sets a buffer the positions are published to after every step, starting
+	 * with the initial positions. Unlike the Vertex objects of an observed
+	 * simulation, the snapshots can be read safely while the simulation is
+	 * running.
+	 * 
+	 * @param snapshots the buffer or null
+	 */
+	public void setSnapshots(SnapshotBuffer snapshots) {
+		this.snapshots = snapshots;
 	}
 
 	/**
-	 * Calculates the amount of the attractive force between vertices using the
-	 * expression entered by the user.
+	 * Sets a listener that receives the measurements of every iteration. Only
+	 * simulations with a listener take the measurements.
 	 * 
-	 * @param d
-	 *            the distance between the two vertices
-	 * @param k
-	 * @return amount of force
+	 * @param listener the listener or null
 	 */
-	private double forceAttractive(double d, double k) {
-		varD.setValue(d);
-		varK.setValue(k);
-		return attractiveForceExpr.evaluate();
+	public void setListener(IterationListener listener) {
+		this.listener = listener;
 	}
 
 	/**
-	 * Calculates the amount of the repulsive force between vertices using the
-	 * expression entered by the user.
+	 * Sets a recorder that receives the positions after every step, starting
+	 * with the initial positions. The recorder is started by the simulation but
+	 * has to be closed by the caller.
 	 * 
-	 * @param d
-	 *            the distance between the two vertices
-	 * @param k
-	 * @return amount of force
-	 */
-	private double forceRepulsive(double d, double k) {
-		varD.setValue(d);
-		varK.setValue(k);
-		return repulsiveForceExpr.evaluate();
+	 * @param recorder the recorder or null to record nothing
+	 */
+	public void setRecorder(TrajectoryRecorder recorder) {
+		this.recorder = recorder;
+	}
+
+	@Override
+	public int getIteration() {
+		return iteration;
+	}
+
+	/**
+	 * @return the kernel of the running or last run, null before the simulation is started
+	 */
+	public LayoutKernel getKernel() {
+		return kernel;
 	}
 
 	@Override
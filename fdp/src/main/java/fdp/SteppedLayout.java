@@ -0,0 +1,59 @@
+package fdp;
+
+import java.util.concurrent.Callable;
+
+/**
+ * A layout that can be run in slices of a few steps. Between two slices it
+ * does not need a thread, so a {@link LayoutScheduler} can pace it for an
+ * animation and run other layouts on the worker meanwhile. Run with
+ * {@link #call()}, it runs flat out from the first to the last step.
+ */
+public interface SteppedLayout extends Callable<Integer> {
+
+	/**
+	 * Prepares the first step, e.g. places the vertices.
+	 */
+	void begin();
+
+	/**
+	 * Runs steps until the layout is finished, it reached the target
+	 * iteration or the time budget is used up. At least one step is run if
+	 * the layout is not finished and below the target. Stops early if the
+	 * thread is interrupted.
+	 *
+	 * @param target the iteration to stop at
+	 * @param budgetNanos the time the slice may take, checked after every
+	 *            step, Long.MAX_VALUE for no limit
+	 * @return true if the layout needs more steps
+	 */
+	boolean advance(int target, long budgetNanos);
+
+	/**
+	 * Finishes the layout after the last slice, also if it was stopped early.
+	 *
+	 * @return the number of iterations used
+	 */
+	int end();
+
+	/**
+	 * @return the number of steps run so far
+	 */
+	int getIteration();
+
+	/**
+	 * Runs all steps.
+	 */
+	@Override
+	default Integer call() throws Exception {
+		begin();
+		try {
+			while (advance(Integer.MAX_VALUE, Long.MAX_VALUE)) {
+				// the budget never runs out
+			}
+		} catch (RuntimeException | Error e) {
+			end();
+			throw e;
+		}
+		return end();
+	}
+}
@@ -0,0 +1,29 @@
+package fdp;
+
+/**
+ * Orders in which the layout kernel keeps the vertices in memory. Vertices
+ * that are close in memory are loaded together, so an order that keeps
+ * neighbours close cuts the cache misses of a step on large graphs.
+ */
+public enum VertexOrder {
+
+	/**
+	 * The order of the graph, e.g. the iteration order of its vertex set.
+	 */
+	NONE,
+
+	/**
+	 * Vertices sorted along a Hilbert curve through their positions, renewed
+	 * every few iterations as they move. Vertices close in the plane are
+	 * close in memory, which helps the repulsion and, once the layout has
+	 * unfolded, the attraction.
+	 */
+	HILBERT,
+
+	/**
+	 * Reverse Cuthill-McKee order of the adjacency, computed once since the
+	 * graph does not change. Neighbours in the graph are close in memory,
+	 * which helps the attraction from the first step on.
+	 */
+	RCM
+}
@@ -0,0 +1,488 @@
+package fdp.cli;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntToDoubleFunction;
+
+import javax.management.JMException;
+
+import org.jgrapht.Graph;
+import org.jgrapht.graph.SimpleGraph;
+
+import fdp.ComponentSimulation;
+import fdp.GraphConfiguration;
+import fdp.GraphType;
+import fdp.InitialPlacement;
+import fdp.MappedSimulation;
+import fdp.MultilevelSimulation;
+import fdp.Parameter;
+import fdp.RepulsionMode;
+import fdp.Simulation;
+import fdp.VertexOrder;
+import fdp.graph.CompactGraph;
+import fdp.graph.Edge;
+import fdp.graph.EdgeFactory;
+import fdp.graph.Vertex;
+import fdp.io.GraphImporter;
+import fdp.io.ImportedGraph;
+import fdp.io.MappedLayout;
+import fdp.io.TrajectoryRecorder;
+import fdp.metrics.IterationListener;
+import fdp.metrics.SimulationStats;
+import parsii.tokenizer.ParseException;
+
+/**
+ * Headless entry point that lays out many graphs in a batch without loading
+ * JavaFX. Graphs are laid out on a bounded pool of workers and the coordinates
+ * of every graph are written as soon as its layout is finished.
+ */
+public class BatchLayout {
+
+	private static final String USAGE = String.join(System.lineSeparator(),
+			"Usage: java -cp fdp.jar fdp.cli.BatchLayout [options] <graph>...",
+			"  <graph>                  edge list, .graphml or .fdpg file,",
+			"                           or generator spec <type>:<size>, e.g. grid:30, with the",
+			"                           types random, linear, grid, ring, star, wheel, hyper-cube",
+			"                           '-' reads further graphs from stdin, one per line",
+			"Options:",
+			"  --width <px>             frame width (default 800)",
+			"  --height <px>            frame height (default 600)",
+			"  --attractive <expr>      attractive force (default (d * d) / k)",
+			"  --repulsive <expr>       repulsive force (default (k * k) / d)",
+			"  --cooling-rate <c>       cooling rate (default 0.01)",
+			"  --iterations <n>         simulate n iterations",
+			"  --threshold <t>          simulate until mechanical equilibrium (default 15)",
+			"  --max-iterations <n>     iteration cap for mechanical equilibrium (default 1000)",
+			"  --adaptive               control the temperature by the energy instead of the cooling",
+			"                           rate, and stop once the energy converged",
+			"  --tolerance <r>          relative energy change below which --adaptive stops (default 0.01)",
+			"  --placement <p>          initial placement random, bfs, pivot-mds or spectral,",
+			"                           all but random start at a low temperature (default random)",
+			"  --repulsion <mode>       exact, barnes-hut or grid (default exact)",
+			"  --theta <theta>          Barnes-Hut opening angle (default 0.8)",
+			"  --order <o>              order of the vertices in memory none, hilbert or rcm",
+			"                           (default none)",
+			"  --reorder-interval <n>   iterations after which the hilbert order is renewed",
+			"                           (default 50)",
+			"  --multilevel             use the multilevel layout",
+			"  --threads <n>            threads per layout (default 1)",
+			"  --workers <n>            layouts running at once (default: number of cores)",
+			"  --output <dir>           write one <name>.layout file per graph instead of stdout",
+			"  --record <n>             also record every n-th iteration to <name>.fdpt in the",
+			"                           output directory, not with --multilevel",
+			"  --mapped <dir>           keep the layout of every graph in a memory-mapped",
+			"                           <name>.fdpl file in dir and resume it if it exists, for",
+			"                           graphs larger than the heap, uses the grid repulsion and",
+			"                           random placement, not with --multilevel, --record or --adaptive",
+			"  --metrics                measure every iteration, publish the stats as the MBean",
+			"                           fdp:type=SimulationStats,name=batch and as Flight Recorder",
+			"                           events fdp.Iteration, and print a summary to stderr");
+
+	private final Parameter parameter = new Parameter();
+	private boolean multilevel = false;
+	private int workers = Runtime.getRuntime().availableProcessors();
+	private Path outputDirectory;
+	private int recordInterval = 0;
+	private Path mappedDirectory;
+	private boolean metrics = false;
+	private SimulationStats stats;
+	private IterationListener listener;
+	private final List<String> graphs = new ArrayList<>();
+
+	private Writer stdout;
+	private final AtomicInteger failures = new AtomicInteger();
+
+	public static void main(String[] args) throws Exception {
+		BatchLayout batch = new BatchLayout();
+		try {
+			batch.parseArguments(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+		System.exit(batch.run() ? 0 : 1);
+	}
+
+	BatchLayout() {
+		parameter.setFrameWidth(800);
+		parameter.setFrameHeight(600);
+		parameter.setAttractiveForce("(d * d) / k");
+		parameter.setRepulsiveForce("(k * k) / d");
+		parameter.setCoolingRate(0.01);
+		parameter.setEquilibriumCriterion(true);
+		parameter.setCriterion(15);
+		parameter.setFrameDelay(0);
+	}
+
+	private void parseArguments(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (!arg.startsWith("--")) {
+				graphs.add(arg);
+				continue;
+			}
+			if (arg.equals("--multilevel")) {
+				multilevel = true;
+				continue;
+			}
+			if (arg.equals("--adaptive")) {
+				parameter.setAdaptiveCooling(true);
+				continue;
+			}
+			if (arg.equals("--metrics")) {
+				metrics = true;
+				continue;
+			}
+			if (i + 1 == args.length) {
+				throw new IllegalArgumentException("Missing value for " + arg);
+			}
+			String value = args[++i];
+			try {
+				switch (arg) {
+				case "--width":
+					parameter.setFrameWidth(Integer.parseInt(value));
+					break;
+				case "--height":
+					parameter.setFrameHeight(Integer.parseInt(value));
+					break;
+				case "--attractive":
+					parameter.setAttractiveForce(value);
+					break;
+				case "--repulsive":
+					parameter.setRepulsiveForce(value);
+					break;
+				case "--cooling-rate":
+					parameter.setCoolingRate(Double.parseDouble(value));
+					break;
+				case "--iterations":
+					parameter.setEquilibriumCriterion(false);
+					parameter.setCriterion(Integer.parseInt(value));
+					break;
+				case "--threshold":
+					parameter.setEquilibriumCriterion(true);
+					parameter.setCriterion(Double.parseDouble(value));
+					break;
+				case "--max-iterations":
+					parameter.setMaxIterations(Integer.parseInt(value));
+					break;
+				case "--tolerance":
+					parameter.setConvergenceTolerance(Double.parseDouble(value));
+					break;
+				case "--placement":
+					parameter.setInitialPlacement(InitialPlacement.valueOf(value.toUpperCase(Locale.ROOT).replace('-', '_')));
+					break;
+				case "--repulsion":
+					parameter.setRepulsionMode(RepulsionMode.valueOf(value.toUpperCase(Locale.ROOT).replace('-', '_')));
+					break;
+				case "--theta":
+					parameter.setTheta(Double.parseDouble(value));
+					break;
+				case "--order":
+					parameter.setVertexOrder(VertexOrder.valueOf(value.toUpperCase(Locale.ROOT)));
+					break;
+				case "--reorder-interval":
+					parameter.setReorderInterval(Integer.parseInt(value));
+					break;
+				case "--threads":
+					parameter.setParallelism(Integer.parseInt(value));
+					break;
+				case "--workers":
+					workers = Integer.parseInt(value);
+					break;
+				case "--output":
+					outputDirectory = Paths.get(value);
+					break;
+				case "--record":
+					recordInterval = Integer.parseInt(value);
+					break;
+				case "--mapped":
+					mappedDirectory = Paths.get(value);
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown option " + arg);
+				}
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid value for " + arg + ": " + value);
+			}
+		}
+		if (graphs.isEmpty()) {
+			throw new IllegalArgumentException("No graphs given");
+		}
+		if (workers < 1) {
+			throw new IllegalArgumentException("Invalid value for --workers: " + workers);
+		}
+		if (recordInterval < 0 || recordInterval > 0 && (outputDirectory == null || multilevel)) {
+			throw new IllegalArgumentException("--record needs a positive interval, --output and no --multilevel");
+		}
+		if (mappedDirectory != null && (multilevel || recordInterval > 0 || parameter.isAdaptiveCooling())) {
+			throw new IllegalArgumentException("--mapped cannot be combined with --multilevel, --record or --adaptive");
+		}
+	}
+
+	/**
+	 * Lays out all graphs.
+	 *
+	 * @return true if all layouts succeeded
+	 */
+	boolean run() throws IOException, InterruptedException, JMException {
+		// validate the forces once instead of failing for every graph
+		try {
+			new Simulation(new SimpleGraph<Vertex, Edge>(new EdgeFactory()), parameter);
+		} catch (ParseException e) {
+			System.err.println("Invalid force expression: " + e.getMessage());
+			return false;
+		}
+		if (outputDirectory != null) {
+			Files.createDirectories(outputDirectory);
+		}
+		if (mappedDirectory != null) {
+			Files.createDirectories(mappedDirectory);
+		}
+		stdout = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+		if (metrics) {
+			stats = new SimulationStats().register("batch");
+			listener = IterationListener.of(stats, IterationListener.flightRecorder());
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		// at most two layouts per worker are waiting, so reading thousands of specs stays cheap
+		Semaphore pending = new Semaphore(2 * workers);
+		try {
+			for (String graph : graphs) {
+				if (graph.equals("-")) {
+					BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+					String line;
+					while ((line = in.readLine()) != null) {
+						if (!line.trim().isEmpty()) {
+							submit(pool, pending, line.trim());
+						}
+					}
+				} else {
+					submit(pool, pending, graph);
+				}
+			}
+		} finally {
+			pool.shutdown();
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+			stdout.flush();
+			if (stats != null) {
+				printStats();
+				stats.unregister();
+			}
+		}
+		return failures.get() == 0;
+	}
+
+	private void submit(ExecutorService pool, Semaphore pending, String graph) throws InterruptedException {
+		pending.acquire();
+		pool.execute(() -> {
+			try {
+				layout(graph);
+			} catch (Exception e) {
+				failures.incrementAndGet();
+				System.err.println(graph + ": " + e);
+			} finally {
+				pending.release();
+			}
+		});
+	}
+
+	/**
+	 * Loads, lays out and writes a single graph.
+	 */
+	private void layout(String spec) throws Exception {
+		if (mappedDirectory != null) {
+			layoutMapped(spec);
+			return;
+		}
+		String name;
+		CompactGraph compact;
+		ImportedGraph imported = null;
+
+		int colon = spec.lastIndexOf(':');
+		GraphType type = colon > 0 ? graphType(spec.substring(0, colon)) : null;
+		if (type != null && !Files.exists(Paths.get(spec))) {
+			int size = Integer.parseInt(spec.substring(colon + 1));
+			Graph<Vertex, Edge> graph = new GraphConfiguration(type.createGenerator(size), parameter).generateGraph();
+			compact = CompactGraph.compile(graph);
+			name = spec.replace(':', '_');
+		} else {
+			Path file = Paths.get(spec);
+			imported = GraphImporter.read(file);
+			compact = imported.getGraph();
+			name = file.getFileName().toString();
+		}
+
+		double[] x;
+		double[] y;
+		int iterations;
+		if (multilevel) {
+			Vertex[] vertices = compact.getVertices();
+			if (vertices == null) {
+				vertices = new Vertex[compact.getVertexCount()];
+			}
+			Graph<Vertex, Edge> graph = toGraph(compact, vertices);
+			MultilevelSimulation simulation = new MultilevelSimulation(graph, parameter);
+			simulation.setListener(listener);
+			iterations = simulation.call();
+			x = new double[vertices.length];
+			y = new double[vertices.length];
+			for (int i = 0; i < vertices.length; i++) {
+				x[i] = vertices[i].getPos().x;
+				y[i] = vertices[i].getPos().y;
+			}
+		} else if (recordInterval > 0) {
+			// a trajectory is recorded of a single system
+			Simulation simulation = new Simulation(compact, parameter);
+			simulation.setListener(listener);
+			try (TrajectoryRecorder recorder = new TrajectoryRecorder(outputDirectory.resolve(name + ".fdpt"),
+					recordInterval)) {
+				simulation.setRecorder(recorder);
+				iterations = simulation.call();
+			}
+			x = simulation.getKernel().getX();
+			y = simulation.getKernel().getY();
+		} else {
+			// every connected component is laid out on its own
+			ComponentSimulation simulation = new ComponentSimulation(compact, parameter);
+			simulation.setListener(listener);
+			iterations = simulation.call();
+			x = simulation.getX();
+			y = simulation.getY();
+		}
+
+		write(name, compact.getVertexCount(), compact.getEdgeCount(), imported, iterations, i -> x[i], i -> y[i]);
+	}
+
+	/**
+	 * Lays out a single graph in a memory-mapped layout file and writes it.
+	 * The file of an earlier run is resumed, then only graphs with labels are
+	 * read again. Binary graphs are copied into the file without loading them
+	 * into the heap.
+	 */
+	private void layoutMapped(String spec) throws Exception {
+		Path file = Paths.get(spec);
+		int colon = spec.lastIndexOf(':');
+		GraphType type = colon > 0 ? graphType(spec.substring(0, colon)) : null;
+		boolean generated = type != null && !Files.exists(file);
+		boolean binary = !generated && file.getFileName().toString().endsWith(GraphImporter.BINARY_EXTENSION);
+		String name = generated ? spec.replace(':', '_') : file.getFileName().toString();
+
+		Path mapped = mappedDirectory.resolve(name + ".fdpl");
+		boolean resumed = Files.exists(mapped);
+		ImportedGraph imported = null;
+		if (!generated && !binary) {
+			imported = GraphImporter.read(file);
+		}
+		MappedLayout layout;
+		if (resumed) {
+			layout = MappedLayout.open(mapped);
+		} else if (generated) {
+			int size = Integer.parseInt(spec.substring(colon + 1));
+			Graph<Vertex, Edge> graph = new GraphConfiguration(type.createGenerator(size), parameter).generateGraph();
+			layout = MappedLayout.create(mapped, CompactGraph.compile(graph), parameter.getFrameWidth(),
+					parameter.getFrameHeight());
+		} else if (binary) {
+			layout = MappedLayout.create(mapped, file, parameter.getFrameWidth(), parameter.getFrameHeight());
+		} else {
+			layout = MappedLayout.create(mapped, imported.getGraph(), parameter.getFrameWidth(),
+					parameter.getFrameHeight());
+		}
+		try {
+			if (imported != null && imported.getGraph().getVertexCount() != layout.getVertexCount()) {
+				throw new IOException(mapped + ": layout of a different graph");
+			}
+			int iterations = new MappedSimulation(layout, parameter).call();
+			write(name, layout.getVertexCount(), layout.getEdgeCount(), imported, iterations, layout.getX()::get,
+					layout.getY()::get);
+		} finally {
+			layout.close();
+		}
+	}
+
+	private void write(String name, int vertexCount, int edgeCount, ImportedGraph imported, int iterations,
+			IntToDoubleFunction x, IntToDoubleFunction y) throws IOException {
+		if (outputDirectory != null) {
+			try (Writer out = Files.newBufferedWriter(outputDirectory.resolve(name + ".layout"), StandardCharsets.UTF_8)) {
+				write(out, name, vertexCount, edgeCount, imported, iterations, x, y);
+			}
+		} else {
+			synchronized (stdout) {
+				write(stdout, name, vertexCount, edgeCount, imported, iterations, x, y);
+				stdout.flush();
+			}
+		}
+	}
+
+	private void printStats() {
+		System.err.println(String.format(Locale.ROOT,
+				"simulations=%d iterations=%d step: mean=%.3fms p50<%.3fms p90<%.3fms p99<%.3fms max=%.3fms"
+						+ " (repulsion=%.3fms attraction=%.3fms displacement=%.3fms)",
+				stats.getSimulations(), stats.getIterations(), stats.getMeanStepMillis(), stats.getStepMillis50(),
+				stats.getStepMillis90(), stats.getStepMillis99(), stats.getMaxStepMillis(),
+				stats.getMeanRepulsionMillis(), stats.getMeanAttractionMillis(), stats.getMeanDisplacementMillis()));
+	}
+
+	private static void write(Writer out, String name, int vertexCount, int edgeCount, ImportedGraph imported,
+			int iterations, IntToDoubleFunction x, IntToDoubleFunction y) throws IOException {
+		out.write("# " + name + " vertices=" + vertexCount + " edges=" + edgeCount + " iterations=" + iterations
+				+ "\n");
+		StringBuilder line = new StringBuilder();
+		for (int i = 0; i < vertexCount; i++) {
+			line.setLength(0);
+			line.append(imported == null ? Integer.toString(i) : imported.getLabel(i)).append(' ');
+			line.append(String.format(Locale.ROOT, "%.3f %.3f", x.applyAsDouble(i), y.applyAsDouble(i))).append('\n');
+			out.write(line.toString());
+		}
+	}
+
+	/**
+	 * Builds a Graph with the same vertex indices as the compact graph, using
+	 * the given Vertex objects or creating them if they are null.
+	 */
+	private static Graph<Vertex, Edge> toGraph(CompactGraph compact, Vertex[] vertices) {
+		Graph<Vertex, Edge> graph = new SimpleGraph<>(new EdgeFactory());
+		for (int i = 0; i < vertices.length; i++) {
+			if (vertices[i] == null) {
+				vertices[i] = new Vertex();
+			}
+			graph.addVertex(vertices[i]);
+		}
+		int[] offsets = compact.getOffsets();
+		int[] targets = compact.getTargets();
+		for (int i = 0; i < vertices.length; i++) {
+			for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+				if (i < targets[e]) {
+					graph.addEdge(vertices[i], vertices[targets[e]]);
+				}
+			}
+		}
+		return graph;
+	}
+
+	static GraphType graphType(String name) {
+		for (GraphType type : GraphType.values()) {
+			if (type.name().replace('_', '-').equalsIgnoreCase(name)) {
+				return type;
+			}
+		}
+		return null;
+	}
+}
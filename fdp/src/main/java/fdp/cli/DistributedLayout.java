@@ -0,0 +1,253 @@
+package fdp.cli;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import fdp.GraphConfiguration;
+import fdp.GraphType;
+import fdp.Parameter;
+import fdp.RepulsionMode;
+import fdp.distributed.DistributedSimulation;
+import fdp.distributed.LocalWorkers;
+import fdp.force.ForceCompiler;
+import fdp.graph.CompactGraph;
+import fdp.io.GraphImporter;
+import fdp.io.ImportedGraph;
+import parsii.tokenizer.ParseException;
+
+/**
+ * Lays out a graph with a {@link DistributedSimulation} on worker processes
+ * started on this machine, once for every given number of workers, and
+ * reports how the time of the steps scales with the workers.
+ */
+public class DistributedLayout {
+
+	private static final String USAGE = String.join(System.lineSeparator(),
+			"Usage: java -cp fdp.jar fdp.cli.DistributedLayout [options] <graph>",
+			"  <graph>                  edge list, .graphml or .fdpg file, or generator spec",
+			"                           <type>:<size> as for fdp.cli.BatchLayout",
+			"Options:",
+			"  --workers <n>[,<n>...]   numbers of worker processes, the layout is run and timed",
+			"                           once for each (default 1,2,4)",
+			"  --width <px>             frame width (default 800)",
+			"  --height <px>            frame height (default 600)",
+			"  --attractive <expr>      attractive force (default (d * d) / k)",
+			"  --repulsive <expr>       repulsive force (default (k * k) / d)",
+			"  --cooling-rate <c>       cooling rate (default 0.01)",
+			"  --iterations <n>         simulate n iterations (default 100)",
+			"  --threshold <t>          simulate until mechanical equilibrium instead",
+			"  --repulsion <mode>       repulsion within a partition exact, barnes-hut or grid",
+			"                           (default barnes-hut)",
+			"  --theta <theta>          opening angle of Barnes-Hut and the far field (default 0.8)",
+			"  --levels <n>             the far field summary has 2^n cells per side (default 5)",
+			"  --worker-option <opt>    JVM option of the worker processes, may be repeated",
+			"  --output <file>          write the layout of the last run as label x y lines");
+
+	private final Parameter parameter = new Parameter();
+	private final List<Integer> workerCounts = new ArrayList<>();
+	private final List<String> workerOptions = new ArrayList<>();
+	private int levels = DistributedSimulation.DEFAULT_LEVELS;
+	private Path output;
+	private String graph;
+
+	private long setupNanos;
+	private long stepNanos;
+
+	public static void main(String[] args) throws Exception {
+		DistributedLayout layout = new DistributedLayout();
+		try {
+			layout.parseArguments(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+		layout.run();
+	}
+
+	DistributedLayout() {
+		parameter.setFrameWidth(800);
+		parameter.setFrameHeight(600);
+		parameter.setAttractiveForce("(d * d) / k");
+		parameter.setRepulsiveForce("(k * k) / d");
+		parameter.setCoolingRate(0.01);
+		parameter.setEquilibriumCriterion(false);
+		parameter.setCriterion(100);
+		parameter.setRepulsionMode(RepulsionMode.BARNES_HUT);
+	}
+
+	private void parseArguments(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (!arg.startsWith("--")) {
+				if (graph != null) {
+					throw new IllegalArgumentException("Only one graph can be given");
+				}
+				graph = arg;
+				continue;
+			}
+			if (i + 1 == args.length) {
+				throw new IllegalArgumentException("Missing value for " + arg);
+			}
+			String value = args[++i];
+			try {
+				switch (arg) {
+				case "--workers":
+					for (String count : value.split(",")) {
+						workerCounts.add(Integer.parseInt(count.trim()));
+					}
+					break;
+				case "--width":
+					parameter.setFrameWidth(Integer.parseInt(value));
+					break;
+				case "--height":
+					parameter.setFrameHeight(Integer.parseInt(value));
+					break;
+				case "--attractive":
+					parameter.setAttractiveForce(value);
+					break;
+				case "--repulsive":
+					parameter.setRepulsiveForce(value);
+					break;
+				case "--cooling-rate":
+					parameter.setCoolingRate(Double.parseDouble(value));
+					break;
+				case "--iterations":
+					parameter.setEquilibriumCriterion(false);
+					parameter.setCriterion(Integer.parseInt(value));
+					break;
+				case "--threshold":
+					parameter.setEquilibriumCriterion(true);
+					parameter.setCriterion(Double.parseDouble(value));
+					break;
+				case "--repulsion":
+					parameter.setRepulsionMode(RepulsionMode.valueOf(value.toUpperCase(Locale.ROOT).replace('-', '_')));
+					break;
+				case "--theta":
+					parameter.setTheta(Double.parseDouble(value));
+					break;
+				case "--levels":
+					levels = Integer.parseInt(value);
+					break;
+				case "--worker-option":
+					workerOptions.add(value);
+					break;
+				case "--output":
+					output = Paths.get(value);
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown option " + arg);
+				}
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid value for " + arg + ": " + value);
+			}
+		}
+		if (graph == null) {
+			throw new IllegalArgumentException("No graph given");
+		}
+		if (workerCounts.isEmpty()) {
+			workerCounts.add(1);
+			workerCounts.add(2);
+			workerCounts.add(4);
+		}
+		for (int count : workerCounts) {
+			if (count < 1) {
+				throw new IllegalArgumentException("Invalid value for --workers: " + count);
+			}
+		}
+		if (levels < 0 || levels > 12) {
+			throw new IllegalArgumentException("Invalid value for --levels: " + levels);
+		}
+	}
+
+	private void run() throws Exception {
+		// validate the forces once instead of failing in every worker
+		try {
+			ForceCompiler.compile(parameter.getAttractiveForce());
+			ForceCompiler.compile(parameter.getRepulsiveForce());
+		} catch (ParseException e) {
+			System.err.println("Invalid force expression: " + e.getMessage());
+			System.exit(1);
+		}
+		ImportedGraph imported = null;
+		CompactGraph compact;
+		int colon = graph.lastIndexOf(':');
+		GraphType type = colon > 0 ? BatchLayout.graphType(graph.substring(0, colon)) : null;
+		if (type != null && !Files.exists(Paths.get(graph))) {
+			int size = Integer.parseInt(graph.substring(colon + 1));
+			compact = CompactGraph.compile(new GraphConfiguration(type.createGenerator(size), parameter).generateGraph());
+		} else {
+			imported = GraphImporter.read(Paths.get(graph));
+			compact = imported.getGraph();
+		}
+		System.out.println(String.format(Locale.ROOT, "%s vertices=%d edges=%d repulsion=%s", graph,
+				compact.getVertexCount(), compact.getEdgeCount(), parameter.getRepulsionMode()));
+
+		double firstStepMillis = 0;
+		double firstCriticalMillis = 0;
+		DistributedSimulation simulation = null;
+		for (int count : workerCounts) {
+			simulation = layout(compact, count);
+			int iterations = Math.max(1, simulation.getIteration());
+			double stepMillis = stepNanos / 1e6 / iterations;
+			double criticalMillis = simulation.getCriticalPathNanos() / 1e6 / iterations;
+			double exchangeMillis = simulation.getExchangeNanos() / 1e6 / iterations;
+			if (firstStepMillis == 0) {
+				firstStepMillis = stepMillis;
+				firstCriticalMillis = criticalMillis;
+			}
+			System.out.println(String.format(Locale.ROOT,
+					"workers=%d iterations=%d setup=%.0fms step=%.2fms speedup=%.2f"
+							+ " critical-path=%.2fms exchange=%.2fms speedup=%.2f",
+					simulation.getWorkerCount(), simulation.getIteration(), setupNanos / 1e6, stepMillis,
+					firstStepMillis / stepMillis, criticalMillis, exchangeMillis, firstCriticalMillis / criticalMillis));
+		}
+
+		if (output != null) {
+			try (Writer out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+				double[] x = simulation.getX();
+				double[] y = simulation.getY();
+				for (int i = 0; i < compact.getVertexCount(); i++) {
+					out.write((imported == null ? Integer.toString(i) : imported.getLabel(i))
+							+ String.format(Locale.ROOT, " %.3f %.3f%n", x[i], y[i]));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Starts the worker processes and runs the layout with them.
+	 */
+	private DistributedSimulation layout(CompactGraph compact, int count) throws IOException, InterruptedException {
+		try (ServerSocket server = new ServerSocket(0, count, InetAddress.getLoopbackAddress())) {
+			long start = System.nanoTime();
+			DistributedSimulation simulation = new DistributedSimulation(compact, parameter, server, count, levels);
+			try (LocalWorkers workers = new LocalWorkers(server.getLocalPort(), simulation.getWorkerCount(),
+					workerOptions)) {
+				simulation.begin();
+				long begun = System.nanoTime();
+				try {
+					while (simulation.advance(Integer.MAX_VALUE, Long.MAX_VALUE)) {
+						// runs until the criterion is met
+					}
+					stepNanos = System.nanoTime() - begun;
+				} finally {
+					simulation.end();
+				}
+				setupNanos = begun - start;
+				workers.await(10, TimeUnit.SECONDS);
+				return simulation;
+			}
+		}
+	}
+}
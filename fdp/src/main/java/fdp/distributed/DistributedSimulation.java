@@ -0,0 +1,322 @@
+package fdp.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import fdp.LayoutScheduler;
+import fdp.Parameter;
+import fdp.Simulation;
+import fdp.SteppedLayout;
+import fdp.graph.CompactGraph;
+
+/**
+ * Coordinator of a layout that is split across worker processes, see
+ * {@link LayoutWorker}. The graph is split into one {@link Partition} per
+ * worker. Every step, each worker gets the positions of its halo from the
+ * last step and the {@link FarField} summary of all partitions, moves its own
+ * vertices and sends back the positions of its boundary vertices and the
+ * summary of its vertices. The positions of all vertices are collected once
+ * the layout is finished.
+ * <p>
+ * All workers step at the same time, the coordinator only waits for the
+ * slowest one and adds up the summaries. Writing the messages and reading the
+ * answers is on the critical path of every step, see
+ * {@link #getCriticalPathNanos()}. The vertices start at random
+ * positions and the temperature is reduced by the cooling rate, the stop
+ * criterion is the same as of {@link Simulation}. Vertices of other
+ * partitions repel by their summary, apart from the halo, so the result
+ * approximates the repulsion like Barnes-Hut.
+ */
+public class DistributedSimulation implements SteppedLayout {
+
+	/** grid of 32 x 32 cells for the summaries */
+	public static final int DEFAULT_LEVELS = 5;
+
+	private final CompactGraph graph;
+	private final Parameter parameter;
+	private final ServerSocket server;
+	private final int workerCount;
+	private final int levels;
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	private Partition[] partitions;
+	private Socket[] sockets;
+	private DataInputStream[] inputs;
+	private DataOutputStream[] outputs;
+	private FarField field;
+	private FarField received;
+
+	private final double[] x;
+	private final double[] y;
+	private double t;
+	private int iteration;
+	private boolean equilibriumReached;
+	private long criticalNanos;
+	private long exchangeNanos;
+
+	/**
+	 * Creates a new distributed simulation. The workers connect to the server
+	 * socket once the simulation begins.
+	 *
+	 * @param graph the graph to layout
+	 * @param p parameters for the simulation
+	 * @param server the socket the workers connect to, stays open
+	 * @param workerCount number of workers, at most the number of vertices
+	 * @param levels the summaries have 2^levels cells per side
+	 */
+	public DistributedSimulation(CompactGraph graph, Parameter p, ServerSocket server, int workerCount, int levels) {
+		this.graph = graph;
+		this.parameter = p;
+		this.server = server;
+		this.workerCount = Math.max(1, Math.min(workerCount, graph.getVertexCount()));
+		this.levels = levels;
+		this.x = new double[graph.getVertexCount()];
+		this.y = new double[graph.getVertexCount()];
+	}
+
+	/**
+	 * Splits the graph, waits for the workers to connect and sends them their
+	 * partitions.
+	 */
+	@Override
+	public void begin() {
+		int n = graph.getVertexCount();
+		int frameWidth = parameter.getFrameWidth();
+		int frameHeight = parameter.getFrameHeight();
+		double k = Simulation.optimalDistance(Math.min(frameWidth * frameWidth, frameHeight * frameHeight), n);
+		t = parameter.getInitialTemperature() > 0 ? parameter.getInitialTemperature() : frameWidth / 10;
+		iteration = 0;
+		equilibriumReached = false;
+		criticalNanos = 0;
+		exchangeNanos = 0;
+		for (int i = 0; i < n; i++) {
+			x[i] = Math.random() * frameWidth;
+			y[i] = Math.random() * frameHeight;
+		}
+
+		partitions = Partition.split(graph, workerCount);
+		sockets = new Socket[workerCount];
+		inputs = new DataInputStream[workerCount];
+		outputs = new DataOutputStream[workerCount];
+		field = new FarField(levels, frameWidth, frameHeight);
+		received = new FarField(levels, frameWidth, frameHeight);
+		try {
+			for (int w = 0; w < workerCount; w++) {
+				sockets[w] = server.accept();
+				sockets[w].setTcpNoDelay(true);
+				inputs[w] = new DataInputStream(new BufferedInputStream(sockets[w].getInputStream(), 1 << 16));
+				outputs[w] = new DataOutputStream(new BufferedOutputStream(sockets[w].getOutputStream(), 1 << 16));
+				setup(outputs[w], partitions[w], k);
+			}
+			for (int w = 0; w < workerCount; w++) {
+				received.read(inputs[w]);
+				field.add(received, 1);
+			}
+		} catch (IOException e) {
+			close();
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void setup(DataOutputStream out, Partition partition, double k) throws IOException {
+		out.writeInt(Protocol.SETUP);
+		out.writeInt(parameter.getFrameWidth());
+		out.writeInt(parameter.getFrameHeight());
+		out.writeUTF(parameter.getAttractiveForce());
+		out.writeUTF(parameter.getRepulsiveForce());
+		out.writeUTF(parameter.getRepulsionMode().name());
+		out.writeDouble(parameter.getTheta());
+		out.writeDouble(k);
+		out.writeInt(levels);
+		CompactGraph local = partition.local;
+		out.writeInt(partition.vertices.length);
+		Protocol.writeInts(out, local.getOffsets(), local.getVertexCount() + 1);
+		Protocol.writeInts(out, local.getTargets(), local.getTargets().length);
+		Protocol.writeInts(out, partition.boundary, partition.boundary.length);
+		for (int v : partition.vertices) {
+			out.writeDouble(x[v]);
+		}
+		for (int v : partition.halo) {
+			out.writeDouble(x[v]);
+		}
+		for (int v : partition.vertices) {
+			out.writeDouble(y[v]);
+		}
+		for (int v : partition.halo) {
+			out.writeDouble(y[v]);
+		}
+		out.flush();
+	}
+
+	@Override
+	public boolean advance(int target, long budgetNanos) {
+		long start = System.nanoTime();
+		while (!finished() && iteration < target && !Thread.currentThread().isInterrupted()) {
+			try {
+				simulateStep();
+			} catch (IOException e) {
+				close();
+				throw new UncheckedIOException(e);
+			}
+			if (budgetNanos != Long.MAX_VALUE && System.nanoTime() - start >= budgetNanos) {
+				break;
+			}
+		}
+		return !finished() && !Thread.currentThread().isInterrupted();
+	}
+
+	/**
+	 * @return true if the stop criterion is met
+	 */
+	private boolean finished() {
+		if (parameter.isEquilibriumCriterion()) {
+			// mechanical equilibrium, but at most the maximum of iterations
+			return equilibriumReached || iteration >= parameter.getMaxIterations();
+		}
+		return iteration >= parameter.getCriterion();
+	}
+
+	private void simulateStep() throws IOException {
+		long start = threads.getCurrentThreadCpuTime();
+		// all workers get their messages before any answer is read, so they step at the same time
+		for (int w = 0; w < workerCount; w++) {
+			DataOutputStream out = outputs[w];
+			out.writeInt(Protocol.STEP);
+			out.writeDouble(t);
+			field.write(out);
+			for (int v : partitions[w].halo) {
+				out.writeDouble(x[v]);
+			}
+			for (int v : partitions[w].halo) {
+				out.writeDouble(y[v]);
+			}
+			out.flush();
+		}
+		double maxForce = 0;
+		long slowest = 0;
+		field.clear();
+		for (int w = 0; w < workerCount; w++) {
+			DataInputStream in = inputs[w];
+			maxForce = Math.max(maxForce, in.readDouble());
+			received.read(in);
+			field.add(received, 1);
+			int[] vertices = partitions[w].vertices;
+			for (int b : partitions[w].boundary) {
+				x[vertices[b]] = in.readDouble();
+				y[vertices[b]] = in.readDouble();
+			}
+			slowest = Math.max(slowest, in.readLong());
+		}
+		// the coordinator writes and reads one worker after the other, waiting takes no CPU time
+		long exchange = threads.getCurrentThreadCpuTime() - start;
+		exchangeNanos += exchange;
+		criticalNanos += slowest + exchange;
+
+		// no equilibrium if one vertex has too high net force
+		equilibriumReached = maxForce <= parameter.getCriterion();
+		// always let vertices move at least 1px
+		t = Math.max(t * (1 - parameter.getCoolingRate()), 1);
+		iteration++;
+		// waits while paused, stops the loop if cancelled
+		LayoutScheduler.checkpoint();
+	}
+
+	/**
+	 * Collects the positions of all vertices and lets the workers exit.
+	 */
+	@Override
+	public int end() {
+		if (sockets == null) {
+			return iteration;
+		}
+		try {
+			for (DataOutputStream out : outputs) {
+				out.writeInt(Protocol.FINISH);
+				out.flush();
+			}
+			for (int w = 0; w < workerCount; w++) {
+				int[] vertices = partitions[w].vertices;
+				for (int v : vertices) {
+					x[v] = inputs[w].readDouble();
+				}
+				for (int v : vertices) {
+					y[v] = inputs[w].readDouble();
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			close();
+		}
+		return iteration;
+	}
+
+	private void close() {
+		if (sockets == null) {
+			return;
+		}
+		for (Socket socket : sockets) {
+			if (socket != null) {
+				try {
+					socket.close();
+				} catch (IOException e) {
+					// the worker is gone already
+				}
+			}
+		}
+		sockets = null;
+	}
+
+	@Override
+	public int getIteration() {
+		return iteration;
+	}
+
+	public int getWorkerCount() {
+		return workerCount;
+	}
+
+	/**
+	 * @return the CPU time the slowest worker took for its part of every step
+	 *         plus the CPU time the coordinator took to exchange the messages
+	 *         of the step, summed up over all steps, the time the steps would
+	 *         take with a core for every worker and the coordinator apart from
+	 *         the latency of the sockets
+	 */
+	public long getCriticalPathNanos() {
+		return criticalNanos;
+	}
+
+	/**
+	 * @return the CPU time the coordinator took to write the messages of every
+	 *         step, read the answers and add up the summaries, summed up over
+	 *         all steps
+	 */
+	public long getExchangeNanos() {
+		return exchangeNanos;
+	}
+
+	/**
+	 * @return x-coordinates of the vertices, of all vertices once the
+	 *         simulation ended
+	 */
+	public double[] getX() {
+		return x;
+	}
+
+	/**
+	 * @return y-coordinates of the vertices, of all vertices once the
+	 *         simulation ended
+	 */
+	public double[] getY() {
+		return y;
+	}
+}
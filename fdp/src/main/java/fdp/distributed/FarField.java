@@ -0,0 +1,205 @@
+package fdp.distributed;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Coarse summary of the vertices of other partitions: the number of vertices
+ * and the sum of their positions in every cell of a square grid over the
+ * frame. Summaries are added and subtracted cell by cell, so the coordinator
+ * only sends the sum of all partitions and every worker removes its own
+ * vertices.
+ * <p>
+ * For the forces, the grid is combined into a pyramid of coarser grids, which
+ * is traversed like the quadtree of Barnes-Hut: a cell that is small compared
+ * to its distance and does not contain the position acts with all its
+ * vertices at their center of mass, other cells are opened. The cells of the
+ * grid itself cannot be opened. Where they would be, their vertices are taken
+ * as spread over the cell: the distance to their center of mass is softened
+ * by half the side of the cell, so a center of mass right next to a position
+ * does not push it away with a force far beyond the one of the vertices it
+ * stands for.
+ */
+public class FarField {
+
+	// cells with fewer vertices are empty, apart from rounding after subtracting
+	private static final double EMPTY = 0.5;
+
+	private final int levels;
+	private final int resolution;
+	private final double cellSize;
+
+	// per level l the 4^l cells, cell cx + cy * 2^l, the last level is the grid
+	private final double[][] count;
+	private final double[][] sumX;
+	private final double[][] sumY;
+
+	/**
+	 * Creates an empty summary.
+	 *
+	 * @param levels the grid has 2^levels cells per side
+	 * @param frameWidth width of the frame
+	 * @param frameHeight height of the frame
+	 */
+	public FarField(int levels, int frameWidth, int frameHeight) {
+		this.levels = levels;
+		this.resolution = 1 << levels;
+		// square cells over the larger side, positions on the far border fall into the last cell
+		this.cellSize = Math.max(Math.max(frameWidth, frameHeight), 1) / (double) resolution;
+		count = new double[levels + 1][];
+		sumX = new double[levels + 1][];
+		sumY = new double[levels + 1][];
+		for (int l = 0; l <= levels; l++) {
+			count[l] = new double[1 << 2 * l];
+			sumX[l] = new double[1 << 2 * l];
+			sumY[l] = new double[1 << 2 * l];
+		}
+	}
+
+	public void clear() {
+		Arrays.fill(count[levels], 0);
+		Arrays.fill(sumX[levels], 0);
+		Arrays.fill(sumY[levels], 0);
+	}
+
+	/**
+	 * Adds a vertex to its cell, or removes it with a weight of -1.
+	 */
+	public void add(double x, double y, double weight) {
+		int cell = cell(x) + cell(y) * resolution;
+		count[levels][cell] += weight;
+		sumX[levels][cell] += weight * x;
+		sumY[levels][cell] += weight * y;
+	}
+
+	/**
+	 * Adds the cells of another summary of the same size, or subtracts them
+	 * with a weight of -1.
+	 */
+	public void add(FarField other, double weight) {
+		double[] c = other.count[levels];
+		double[] sx = other.sumX[levels];
+		double[] sy = other.sumY[levels];
+		for (int i = 0; i < c.length; i++) {
+			count[levels][i] += weight * c[i];
+			sumX[levels][i] += weight * sx[i];
+			sumY[levels][i] += weight * sy[i];
+		}
+	}
+
+	private int cell(double coordinate) {
+		return Math.min(resolution - 1, Math.max(0, (int) (coordinate / cellSize)));
+	}
+
+	/**
+	 * Sums up the coarser levels, needed after the grid changed and before
+	 * the forces are accumulated.
+	 */
+	public void build() {
+		for (int l = levels - 1; l >= 0; l--) {
+			int side = 1 << l;
+			double[] c = count[l + 1];
+			double[] sx = sumX[l + 1];
+			double[] sy = sumY[l + 1];
+			for (int cy = 0; cy < side; cy++) {
+				for (int cx = 0; cx < side; cx++) {
+					int child = 2 * cx + 2 * cy * 2 * side;
+					int upper = child + 2 * side;
+					int cell = cx + cy * side;
+					count[l][cell] = c[child] + c[child + 1] + c[upper] + c[upper + 1];
+					sumX[l][cell] = sx[child] + sx[child + 1] + sx[upper] + sx[upper + 1];
+					sumY[l][cell] = sy[child] + sy[child + 1] + sy[upper] + sy[upper + 1];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the repulsive force of all summarized vertices on a position.
+	 *
+	 * @param x x-coordinate of the position
+	 * @param y y-coordinate of the position
+	 * @param theta opening angle, cells whose side is smaller than theta times
+	 *            their distance are not opened unless they contain the
+	 *            position
+	 * @param force the repulsive force as function of distance and k
+	 * @param k the optimal distance between vertices
+	 * @param result receives the x- and y-component of the force
+	 */
+	public void accumulate(double x, double y, double theta, DoubleBinaryOperator force, double k,
+			double[] result) {
+		result[0] = 0;
+		result[1] = 0;
+		accumulate(0, 0, 0, x, y, theta, force, k, result);
+	}
+
+	private void accumulate(int level, int cx, int cy, double x, double y, double theta, DoubleBinaryOperator force,
+			double k, double[] result) {
+		int cell = cx + (cy << level);
+		double c = count[level][cell];
+		if (c < EMPTY) {
+			return;
+		}
+		double dx = x - sumX[level][cell] / c;
+		double dy = y - sumY[level][cell] / c;
+		double d = Math.sqrt(dx * dx + dy * dy);
+		double size = cellSize * (1 << levels - level);
+		// never approximate a cell containing the position itself
+		boolean contains = x >= cx * size && x < (cx + 1) * size && y >= cy * size && y < (cy + 1) * size;
+		if (!contains && size < theta * d) {
+			apply(c, dx, dy, d, force, k, result);
+			return;
+		}
+		if (level == levels) {
+			// near, but there are no finer cells to open
+			apply(c, dx, dy, Math.sqrt(d * d + size * size / 4), force, k, result);
+			return;
+		}
+		for (int oy = 0; oy < 2; oy++) {
+			for (int ox = 0; ox < 2; ox++) {
+				accumulate(level + 1, 2 * cx + ox, 2 * cy + oy, x, y, theta, force, k, result);
+			}
+		}
+	}
+
+	/**
+	 * Adds the repulsive force of c vertices at distance d in the direction
+	 * (dx, dy).
+	 */
+	private static void apply(double c, double dx, double dy, double d, DoubleBinaryOperator force, double k,
+			double[] result) {
+		double length = Math.sqrt(dx * dx + dy * dy);
+		if (length > 0) {
+			double f = c * force.applyAsDouble(d, k) / length;
+			result[0] += dx * f;
+			result[1] += dy * f;
+		}
+	}
+
+	void write(DataOutput out) throws IOException {
+		write(out, count[levels]);
+		write(out, sumX[levels]);
+		write(out, sumY[levels]);
+	}
+
+	void read(DataInput in) throws IOException {
+		read(in, count[levels]);
+		read(in, sumX[levels]);
+		read(in, sumY[levels]);
+	}
+
+	private static void write(DataOutput out, double[] values) throws IOException {
+		for (double value : values) {
+			out.writeDouble(value);
+		}
+	}
+
+	private static void read(DataInput in, double[] values) throws IOException {
+		for (int i = 0; i < values.length; i++) {
+			values[i] = in.readDouble();
+		}
+	}
+}
@@ -0,0 +1,183 @@
+package fdp.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.Socket;
+import java.util.function.DoubleBinaryOperator;
+
+import fdp.Parameter;
+import fdp.RepulsionMode;
+import fdp.force.ForceCompiler;
+import fdp.graph.CompactGraph;
+import fdp.layout.LayoutKernel;
+import parsii.tokenizer.ParseException;
+
+/**
+ * Worker process of a {@link DistributedSimulation}. It connects to the
+ * coordinator, receives its partition and simulates the steps of its own
+ * vertices: the repulsion and attraction within the partition and from its
+ * halo are computed by a {@link LayoutKernel}, the repulsion of all other
+ * vertices from the {@link FarField} summary of the other partitions.
+ */
+public class LayoutWorker {
+
+	private final DataInputStream in;
+	private final DataOutputStream out;
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	private int own;
+	private int haloCount;
+	private int[] active;
+	private int[] boundary;
+	private double theta;
+	private double k;
+	private DoubleBinaryOperator repulsiveForce;
+	private LayoutKernel kernel;
+
+	private FarField field;
+	private FarField ownField;
+	private double[] haloX;
+	private double[] haloY;
+	private double[] forceX;
+	private double[] forceY;
+	private final double[] force = new double[2];
+
+	public static void main(String[] args) throws Exception {
+		if (args.length != 2) {
+			System.err.println("Usage: java -cp fdp.jar fdp.distributed.LayoutWorker <host> <port>");
+			System.exit(2);
+		}
+		try (Socket socket = new Socket(args[0], Integer.parseInt(args[1]))) {
+			socket.setTcpNoDelay(true);
+			new LayoutWorker(socket).run();
+		}
+	}
+
+	LayoutWorker(Socket socket) throws IOException {
+		in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+		out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+	}
+
+	/**
+	 * Answers the messages of the coordinator until it finishes the layout.
+	 */
+	void run() throws IOException, ParseException {
+		while (true) {
+			int command = in.readInt();
+			switch (command) {
+			case Protocol.SETUP:
+				setup();
+				break;
+			case Protocol.STEP:
+				step();
+				break;
+			case Protocol.FINISH:
+				finish();
+				return;
+			default:
+				throw new IOException("Unknown command " + command);
+			}
+			out.flush();
+		}
+	}
+
+	private void setup() throws IOException, ParseException {
+		Parameter p = new Parameter();
+		p.setFrameWidth(in.readInt());
+		p.setFrameHeight(in.readInt());
+		p.setAttractiveForce(in.readUTF());
+		p.setRepulsiveForce(in.readUTF());
+		p.setRepulsionMode(RepulsionMode.valueOf(in.readUTF()));
+		p.setTheta(theta = in.readDouble());
+		k = in.readDouble();
+		int levels = in.readInt();
+
+		own = in.readInt();
+		int[] offsets = Protocol.readInts(in);
+		int[] targets = Protocol.readInts(in);
+		boundary = Protocol.readInts(in);
+		int n = offsets.length - 1;
+		haloCount = n - own;
+		double[] x = new double[n];
+		double[] y = new double[n];
+		Protocol.readDoubles(in, x, n);
+		Protocol.readDoubles(in, y, n);
+
+		repulsiveForce = ForceCompiler.compile(p.getRepulsiveForce());
+		kernel = new LayoutKernel(new CompactGraph(n, offsets, targets, null), p, k,
+				ForceCompiler.compile(p.getAttractiveForce()), repulsiveForce);
+		kernel.setPositions(0, n, x, y);
+		active = new int[own];
+		for (int i = 0; i < own; i++) {
+			active[i] = i;
+		}
+		field = new FarField(levels, p.getFrameWidth(), p.getFrameHeight());
+		ownField = new FarField(levels, p.getFrameWidth(), p.getFrameHeight());
+		haloX = new double[haloCount];
+		haloY = new double[haloCount];
+		forceX = new double[n];
+		forceY = new double[n];
+
+		summarize();
+		ownField.write(out);
+	}
+
+	private void step() throws IOException {
+		// includes reading and writing the messages, waiting for them takes no CPU time
+		long start = threads.getCurrentThreadCpuTime();
+		double t = in.readDouble();
+		field.read(in);
+		Protocol.readDoubles(in, haloX, haloCount);
+		Protocol.readDoubles(in, haloY, haloCount);
+
+		kernel.setPositions(own, haloCount, haloX, haloY);
+		// the other partitions: all vertices but the own ones and the halo, which the kernel knows
+		field.add(ownField, -1);
+		for (int j = 0; j < haloCount; j++) {
+			field.add(haloX[j], haloY[j], -1);
+		}
+		field.build();
+		double[] x = kernel.getX();
+		double[] y = kernel.getY();
+		for (int i = 0; i < own; i++) {
+			field.accumulate(x[i], y[i], theta, repulsiveForce, k, force);
+			forceX[i] = force[0];
+			forceY[i] = force[1];
+		}
+		double maxForce = kernel.step(t, active, forceX, forceY);
+		summarize();
+
+		out.writeDouble(maxForce);
+		ownField.write(out);
+		x = kernel.getX();
+		y = kernel.getY();
+		for (int b : boundary) {
+			out.writeDouble(x[b]);
+			out.writeDouble(y[b]);
+		}
+		out.writeLong(threads.getCurrentThreadCpuTime() - start);
+	}
+
+	/**
+	 * Summarizes the own vertices at their current positions.
+	 */
+	private void summarize() {
+		double[] x = kernel.getX();
+		double[] y = kernel.getY();
+		ownField.clear();
+		for (int i = 0; i < own; i++) {
+			ownField.add(x[i], y[i], 1);
+		}
+	}
+
+	private void finish() throws IOException {
+		Protocol.writeDoubles(out, kernel.getX(), own);
+		Protocol.writeDoubles(out, kernel.getY(), own);
+		out.flush();
+	}
+}
@@ -0,0 +1,69 @@
+package fdp.distributed;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Worker processes of a {@link DistributedSimulation} on this machine. They
+ * run {@link LayoutWorker} with the JVM and the class path of this process and
+ * connect to a port on the loopback address. Closing destroys the processes
+ * that are still running.
+ */
+public class LocalWorkers implements Closeable {
+
+	private final List<Process> processes = new ArrayList<>();
+
+	/**
+	 * Starts the worker processes.
+	 *
+	 * @param port the port of the coordinator on the loopback address
+	 * @param count number of workers
+	 * @param options JVM options of the worker processes
+	 * @throws IOException when a process cannot be started, the ones already
+	 *             started are destroyed
+	 */
+	public LocalWorkers(int port, int count, List<String> options) throws IOException {
+		List<String> command = new ArrayList<>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		command.addAll(options);
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(LayoutWorker.class.getName());
+		command.add(InetAddress.getLoopbackAddress().getHostAddress());
+		command.add(Integer.toString(port));
+		try {
+			for (int w = 0; w < count; w++) {
+				processes.add(new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.INHERIT)
+						.redirectError(ProcessBuilder.Redirect.INHERIT).start());
+			}
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Waits until the workers have exited, e.g. after the layout ended.
+	 *
+	 * @param timeout the maximum time to wait for each worker
+	 * @param unit the unit of the timeout
+	 * @throws InterruptedException when the thread is interrupted while waiting
+	 */
+	public void await(long timeout, TimeUnit unit) throws InterruptedException {
+		for (Process process : processes) {
+			process.waitFor(timeout, unit);
+		}
+	}
+
+	@Override
+	public void close() {
+		for (Process process : processes) {
+			process.destroy();
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package fdp.distributed;
+
+import java.util.Arrays;
+
+import fdp.graph.CompactGraph;
+import fdp.layout.VertexOrdering;
+
+/**
+ * The part of a graph simulated by one worker. The vertices are cut into
+ * blocks of equal size in Reverse Cuthill-McKee order, so most neighbours fall
+ * into the same block and the blocks are compact regions once the layout has
+ * unfolded. A worker moves its own vertices and sees the neighbours owned by
+ * other workers, its halo, at their positions of the last step.
+ */
+final class Partition {
+
+	/** global indices of the own vertices, local index i is vertices[i] */
+	final int[] vertices;
+	/** global indices of the halo, local index vertices.length + j is halo[j] */
+	final int[] halo;
+	/** local indices of the own vertices in the halo of another partition */
+	final int[] boundary;
+	/** the own vertices followed by the halo and the edges between them */
+	final CompactGraph local;
+
+	private Partition(int[] vertices, int[] halo, int[] boundary, CompactGraph local) {
+		this.vertices = vertices;
+		this.halo = halo;
+		this.boundary = boundary;
+		this.local = local;
+	}
+
+	/**
+	 * Splits a graph into partitions.
+	 *
+	 * @param graph the graph to split
+	 * @param count number of partitions, at most the number of vertices
+	 * @return the partitions
+	 */
+	static Partition[] split(CompactGraph graph, int count) {
+		int n = graph.getVertexCount();
+		int[] offsets = graph.getOffsets();
+		int[] targets = graph.getTargets();
+		int[] order = VertexOrdering.reverseCuthillMcKee(offsets, targets, n);
+		int[] start = new int[count + 1];
+		int[] part = new int[n];
+		for (int p = 0; p < count; p++) {
+			start[p + 1] = (int) ((long) (p + 1) * n / count);
+			for (int i = start[p]; i < start[p + 1]; i++) {
+				part[order[i]] = p;
+			}
+		}
+
+		Partition[] partitions = new Partition[count];
+		// partition that last added a vertex to its halo, so every halo vertex is added once
+		int[] seen = new int[n];
+		Arrays.fill(seen, -1);
+		int[] halo = new int[n];
+		int[] boundary = new int[n];
+		for (int p = 0; p < count; p++) {
+			int[] own = Arrays.copyOfRange(order, start[p], start[p + 1]);
+			int haloCount = 0;
+			int boundaryCount = 0;
+			for (int i = 0; i < own.length; i++) {
+				boolean onBoundary = false;
+				for (int e = offsets[own[i]]; e < offsets[own[i] + 1]; e++) {
+					int u = targets[e];
+					if (part[u] != p) {
+						onBoundary = true;
+						if (seen[u] != p) {
+							seen[u] = p;
+							halo[haloCount++] = u;
+						}
+					}
+				}
+				if (onBoundary) {
+					boundary[boundaryCount++] = i;
+				}
+			}
+			int[] local = new int[own.length + haloCount];
+			System.arraycopy(own, 0, local, 0, own.length);
+			System.arraycopy(halo, 0, local, own.length, haloCount);
+			partitions[p] = new Partition(own, Arrays.copyOf(halo, haloCount), Arrays.copyOf(boundary, boundaryCount),
+					graph.subgraph(local));
+		}
+		return partitions;
+	}
+}
@@ -0,0 +1,59 @@
+package fdp.distributed;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Messages between the coordinator and a worker. Every message from the
+ * coordinator starts with its command, the worker answers every message but
+ * the setup.
+ * <ul>
+ * <li>{@link #SETUP}: the parameters, the local graph with its own vertices
+ * first and the halo after, the own vertices on the boundary and the initial
+ * positions of all local vertices. The worker answers with the summary of its
+ * vertices.</li>
+ * <li>{@link #STEP}: the temperature, the summary of all partitions and the
+ * positions of the halo. The worker answers with the highest net force, the
+ * summary of its vertices, the positions of its boundary vertices and the CPU
+ * time it took for the step.</li>
+ * <li>{@link #FINISH}: the worker answers with the positions of its own
+ * vertices and exits.</li>
+ * </ul>
+ */
+final class Protocol {
+
+	static final int SETUP = 1;
+	static final int STEP = 2;
+	static final int FINISH = 3;
+
+	private Protocol() {
+	}
+
+	static void writeInts(DataOutput out, int[] values, int length) throws IOException {
+		out.writeInt(length);
+		for (int i = 0; i < length; i++) {
+			out.writeInt(values[i]);
+		}
+	}
+
+	static int[] readInts(DataInput in) throws IOException {
+		int[] values = new int[in.readInt()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = in.readInt();
+		}
+		return values;
+	}
+
+	static void writeDoubles(DataOutput out, double[] values, int length) throws IOException {
+		for (int i = 0; i < length; i++) {
+			out.writeDouble(values[i]);
+		}
+	}
+
+	static void readDoubles(DataInput in, double[] values, int length) throws IOException {
+		for (int i = 0; i < length; i++) {
+			values[i] = in.readDouble();
+		}
+	}
+}
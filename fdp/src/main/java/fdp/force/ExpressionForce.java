@@ -0,0 +1,77 @@
+package fdp.force;
+
+import java.util.function.DoubleBinaryOperator;
+
+import parsii.eval.Expression;
+import parsii.eval.Parser;
+import parsii.eval.Scope;
+import parsii.eval.Variable;
+import parsii.tokenizer.ParseException;
+
+/**
+ * A force entered by the user as expression of the distance d and the optimal
+ * distance k, evaluated with parsii. Parsii expressions read their variables
+ * from a mutable Scope, so every thread evaluates its own copy of the
+ * expression and the force can be used by several threads at once.
+ */
+public class ExpressionForce implements DoubleBinaryOperator {
+
+	private final String expression;
+	private final ThreadLocal<Evaluator> evaluator;
+
+	/**
+	 * Creates a new ExpressionForce.
+	 * 
+	 * @param expression the force as function of d and k
+	 * @throws ParseException when the expression is malformed or empty
+	 */
+	public ExpressionForce(String expression) throws ParseException {
+		this.expression = expression;
+		// parse once up front, so that errors are reported to the caller
+		Evaluator first = new Evaluator(expression);
+		this.evaluator = ThreadLocal.withInitial(() -> {
+			try {
+				return new Evaluator(expression);
+			} catch (ParseException e) {
+				// cannot happen, the expression has already been parsed successfully
+				throw new IllegalStateException(e);
+			}
+		});
+		this.evaluator.set(first);
+	}
+
+	@Override
+	public double applyAsDouble(double d, double k) {
+		return evaluator.get().evaluate(d, k);
+	}
+
+	public String getExpression() {
+		return expression;
+	}
+
+	@Override
+	public String toString() {
+		return expression;
+	}
+
+	/**
+	 * A parsed expression together with the scope holding its variables.
+	 */
+	private static class Evaluator {
+
+		private final Scope scope = Scope.create();
+		private final Variable varD = scope.getVariable("d");
+		private final Variable varK = scope.getVariable("k");
+		private final Expression expr;
+
+		Evaluator(String expression) throws ParseException {
+			expr = Parser.parse(expression, scope);
+		}
+
+		double evaluate(double d, double k) {
+			varD.setValue(d);
+			varK.setValue(k);
+			return expr.evaluate();
+		}
+	}
+}
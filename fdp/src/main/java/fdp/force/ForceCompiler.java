@@ -0,0 +1,634 @@
+package fdp.force;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+import parsii.tokenizer.ParseException;
+
+/**
+ * Compiles force expressions of the distance d and the optimal distance k into
+ * stateless {@link DoubleBinaryOperator}s that are safe for concurrent use and
+ * small enough to be inlined by the JIT.
+ * <p>
+ * Common force laws are recognised and mapped to specialised implementations:
+ * products and quotients of powers of d and k like {@code k*k/d},
+ * {@code d*d/k} or {@code sqrt(d)/k}, optionally multiplied by a logarithm of
+ * such a product like {@code k*log(d/k)}. Other expressions are compiled into a
+ * tree of lambdas. Expressions using anything else than numbers, d, k, the
+ * arithmetic operators and a few common functions are evaluated by parsii,
+ * just like expressions whose compiled form disagrees with parsii.
+ * Specialised products of powers implement {@link PowerLaw}.
+ */
+public class ForceCompiler {
+
+	// sample points the compiled form is checked against parsii with
+	private static final double[] SAMPLE_D = { 0.5, 1, 3.7, 10, 42.5, 150, 800 };
+	private static final double[] SAMPLE_K = { 1, 7.3, 25, 60 };
+	private static final double TOLERANCE = 1e-9;
+
+	private ForceCompiler() {
+	}
+
+	/**
+	 * Compiles a force expression.
+	 *
+	 * @param expression the force as function of d and k, in parsii syntax
+	 * @return an operator that calculates the force from d and k
+	 * @throws ParseException when the expression is malformed or empty
+	 */
+	public static DoubleBinaryOperator compile(String expression) throws ParseException {
+		// parsii is the reference and also reports syntax errors
+		ExpressionForce reference = new ExpressionForce(expression);
+
+		Node ast = new ExpressionParser(expression).parse();
+		if (ast == null) {
+			return reference;
+		}
+		DoubleBinaryOperator compiled = specialise(ast);
+		if (compiled == null) {
+			compiled = ast.compile();
+		}
+		return agree(compiled, reference) ? compiled : reference;
+	}
+
+	/**
+	 * Tries to map the expression to one of the specialised force laws.
+	 *
+	 * @return the specialised operator, or null if the expression has no known
+	 *         form
+	 */
+	private static DoubleBinaryOperator specialise(Node ast) {
+		Monomial m = Monomial.of(ast);
+		if (m != null) {
+			return m.toOperator();
+		}
+		return LogForce.of(ast);
+	}
+
+	private static boolean agree(DoubleBinaryOperator compiled, DoubleBinaryOperator reference) {
+		for (double d : SAMPLE_D) {
+			for (double k : SAMPLE_K) {
+				double a = compiled.applyAsDouble(d, k);
+				double b = reference.applyAsDouble(d, k);
+				if (Double.isNaN(a) || Double.isNaN(b)) {
+					if (Double.isNaN(a) != Double.isNaN(b)) {
+						return false;
+					}
+				} else if (a != b
+						&& Math.abs(a - b) > TOLERANCE * Math.max(1, Math.max(Math.abs(a), Math.abs(b)))) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The force c * d^a * k^b.
+	 */
+	static final class Monomial {
+
+		final double c;
+		final double a;
+		final double b;
+
+		Monomial(double c, double a, double b) {
+			this.c = c;
+			this.a = a;
+			this.b = b;
+		}
+
+		/**
+		 * @return the expression as monomial, or null if it is none
+		 */
+		static Monomial of(Node node) {
+			switch (node.kind) {
+			case CONSTANT:
+				return new Monomial(node.value, 0, 0);
+			case D:
+				return new Monomial(1, 1, 0);
+			case K:
+				return new Monomial(1, 0, 1);
+			case NEGATE: {
+				Monomial m = of(node.left);
+				return m == null ? null : new Monomial(-m.c, m.a, m.b);
+			}
+			case MULTIPLY: {
+				Monomial l = of(node.left);
+				Monomial r = l == null ? null : of(node.right);
+				return r == null ? null : new Monomial(l.c * r.c, l.a + r.a, l.b + r.b);
+			}
+			case DIVIDE: {
+				Monomial l = of(node.left);
+				Monomial r = l == null ? null : of(node.right);
+				if (r == null || r.c == 0) {
+					return null;
+				}
+				return new Monomial(l.c / r.c, l.a - r.a, l.b - r.b);
+			}
+			case POWER:
+				if (node.right.kind == Kind.CONSTANT) {
+					return pow(of(node.left), node.right.value);
+				}
+				return null;
+			case FUNCTION:
+				if ("sqrt".equals(node.name)) {
+					return pow(of(node.args.get(0)), 0.5);
+				}
+				return null;
+			default:
+				return null;
+			}
+		}
+
+		private static Monomial pow(Monomial m, double e) {
+			// (c * d^a * k^b)^e only splits up for positive c or integer e
+			if (m == null || (m.c < 0 && e != Math.rint(e))) {
+				return null;
+			}
+			return new Monomial(Math.pow(m.c, e), m.a * e, m.b * e);
+		}
+
+		DoubleBinaryOperator toOperator() {
+			if (c == 1 && a == -1 && b == 2) {
+				return new KkOverD();
+			}
+			if (c == 1 && a == 2 && b == -1) {
+				return new DdOverK();
+			}
+			return new MonomialForce(c, a, b);
+		}
+
+		double evaluate(double d, double k) {
+			return c * pow(d, a) * pow(k, b);
+		}
+
+		/**
+		 * Math.pow with a fast path for small integer exponents.
+		 */
+		static double pow(double x, double e) {
+			if (e == 0) {
+				return 1;
+			} else if (e == 1) {
+				return x;
+			} else if (e == 2) {
+				return x * x;
+			} else if (e == -1) {
+				return 1 / x;
+			} else if (e == -2) {
+				return 1 / (x * x);
+			} else if (e == 0.5) {
+				return Math.sqrt(x);
+			} else if (e == 3) {
+				return x * x * x;
+			}
+			return Math.pow(x, e);
+		}
+	}
+
+	/**
+	 * The repulsive force of Fruchterman and Reingold, k * k / d.
+	 */
+	static final class KkOverD implements PowerLaw {
+
+		@Override
+		public double applyAsDouble(double d, double k) {
+			return k * k / d;
+		}
+
+		@Override
+		public double getCoefficient() {
+			return 1;
+		}
+
+		@Override
+		public double getDistanceExponent() {
+			return -1;
+		}
+
+		@Override
+		public double getOptimalDistanceExponent() {
+			return 2;
+		}
+
+		@Override
+		public String toString() {
+			return "k*k/d";
+		}
+	}
+
+	/**
+	 * The attractive force of Fruchterman and Reingold, d * d / k.
+	 */
+	static final class DdOverK implements PowerLaw {
+
+		@Override
+		public double applyAsDouble(double d, double k) {
+			return d * d / k;
+		}
+
+		@Override
+		public double getCoefficient() {
+			return 1;
+		}
+
+		@Override
+		public double getDistanceExponent() {
+			return 2;
+		}
+
+		@Override
+		public double getOptimalDistanceExponent() {
+			return -1;
+		}
+
+		@Override
+		public String toString() {
+			return "d*d/k";
+		}
+	}
+
+	/**
+	 * Any other force of the form c * d^a * k^b.
+	 */
+	static final class MonomialForce implements PowerLaw {
+
+		private final double c;
+		private final double a;
+		private final double b;
+
+		MonomialForce(double c, double a, double b) {
+			this.c = c;
+			this.a = a;
+			this.b = b;
+		}
+
+		@Override
+		public double applyAsDouble(double d, double k) {
+			return c * Monomial.pow(d, a) * Monomial.pow(k, b);
+		}
+
+		@Override
+		public double getCoefficient() {
+			return c;
+		}
+
+		@Override
+		public double getDistanceExponent() {
+			return a;
+		}
+
+		@Override
+		public double getOptimalDistanceExponent() {
+			return b;
+		}
+
+		@Override
+		public String toString() {
+			return c + "*d^" + a + "*k^" + b;
+		}
+	}
+
+	/**
+	 * Forces of the form M1 * log(M2) with monomials M1 and M2, e.g. the
+	 * spring force c1 * log(d / c2) of Eades.
+	 */
+	static final class LogForce implements DoubleBinaryOperator {
+
+		private final Monomial outer;
+		private final Monomial inner;
+		private final double scale;
+
+		LogForce(Monomial outer, Monomial inner, double scale) {
+			this.outer = outer;
+			this.inner = inner;
+			this.scale = scale;
+		}
+
+		/**
+		 * @return the expression as LogForce, or null if it has another form
+		 */
+		static LogForce of(Node node) {
+			switch (node.kind) {
+			case FUNCTION:
+				if ("ln".equals(node.name) || "log".equals(node.name)) {
+					Monomial inner = Monomial.of(node.args.get(0));
+					if (inner == null) {
+						return null;
+					}
+					double scale = "ln".equals(node.name) ? 1 : 1 / Math.log(10);
+					return new LogForce(new Monomial(1, 0, 0), inner, scale);
+				}
+				return null;
+			case MULTIPLY: {
+				LogForce f = of(node.right);
+				Monomial m = Monomial.of(node.left);
+				if (f == null || m == null) {
+					f = of(node.left);
+					m = Monomial.of(node.right);
+				}
+				return f == null || m == null ? null : f.times(m);
+			}
+			case DIVIDE: {
+				LogForce f = of(node.left);
+				Monomial m = Monomial.of(node.right);
+				if (f == null || m == null || m.c == 0) {
+					return null;
+				}
+				return f.times(new Monomial(1 / m.c, -m.a, -m.b));
+			}
+			case NEGATE: {
+				LogForce f = of(node.left);
+				return f == null ? null : f.times(new Monomial(-1, 0, 0));
+			}
+			default:
+				return null;
+			}
+		}
+
+		private LogForce times(Monomial m) {
+			return new LogForce(new Monomial(outer.c * m.c, outer.a + m.a, outer.b + m.b), inner, scale);
+		}
+
+		@Override
+		public double applyAsDouble(double d, double k) {
+			return outer.evaluate(d, k) * Math.log(inner.evaluate(d, k)) * scale;
+		}
+	}
+
+	enum Kind {
+		CONSTANT, D, K, NEGATE, ADD, SUBTRACT, MULTIPLY, DIVIDE, MODULO, POWER, FUNCTION
+	}
+
+	/**
+	 * Node of the syntax tree of an expression.
+	 */
+	static final class Node {
+
+		final Kind kind;
+		double value;
+		Node left;
+		Node right;
+		String name;
+		List<Node> args;
+
+		Node(Kind kind) {
+			this.kind = kind;
+		}
+
+		static Node constant(double value) {
+			Node n = new Node(Kind.CONSTANT);
+			n.value = value;
+			return n;
+		}
+
+		static Node binary(Kind kind, Node left, Node right) {
+			Node n = new Node(kind);
+			n.left = left;
+			n.right = right;
+			return n;
+		}
+
+		/**
+		 * Compiles the node into a tree of lambdas that only capture immutable
+		 * state.
+		 */
+		DoubleBinaryOperator compile() {
+			switch (kind) {
+			case CONSTANT: {
+				double v = value;
+				return (d, k) -> v;
+			}
+			case D:
+				return (d, k) -> d;
+			case K:
+				return (d, k) -> k;
+			case NEGATE: {
+				DoubleBinaryOperator l = left.compile();
+				return (d, k) -> -l.applyAsDouble(d, k);
+			}
+			case FUNCTION:
+				return compileFunction();
+			default:
+			}
+			DoubleBinaryOperator l = left.compile();
+			DoubleBinaryOperator r = right.compile();
+			switch (kind) {
+			case ADD:
+				return (d, k) -> l.applyAsDouble(d, k) + r.applyAsDouble(d, k);
+			case SUBTRACT:
+				return (d, k) -> l.applyAsDouble(d, k) - r.applyAsDouble(d, k);
+			case MULTIPLY:
+				return (d, k) -> l.applyAsDouble(d, k) * r.applyAsDouble(d, k);
+			case DIVIDE:
+				return (d, k) -> l.applyAsDouble(d, k) / r.applyAsDouble(d, k);
+			case MODULO:
+				return (d, k) -> l.applyAsDouble(d, k) % r.applyAsDouble(d, k);
+			default:
+				return (d, k) -> Math.pow(l.applyAsDouble(d, k), r.applyAsDouble(d, k));
+			}
+		}
+
+		private DoubleBinaryOperator compileFunction() {
+			DoubleBinaryOperator a = args.get(0).compile();
+			if (args.size() == 2) {
+				DoubleBinaryOperator b = args.get(1).compile();
+				if ("min".equals(name)) {
+					return (d, k) -> Math.min(a.applyAsDouble(d, k), b.applyAsDouble(d, k));
+				}
+				return (d, k) -> Math.max(a.applyAsDouble(d, k), b.applyAsDouble(d, k));
+			}
+			DoubleUnaryOperator f = UNARY_FUNCTIONS.get(name);
+			return (d, k) -> f.applyAsDouble(a.applyAsDouble(d, k));
+		}
+	}
+
+	private static final Map<String, DoubleUnaryOperator> UNARY_FUNCTIONS = new HashMap<>();
+
+	static {
+		UNARY_FUNCTIONS.put("sqrt", Math::sqrt);
+		UNARY_FUNCTIONS.put("ln", Math::log);
+		UNARY_FUNCTIONS.put("log", Math::log10);
+		UNARY_FUNCTIONS.put("exp", Math::exp);
+		UNARY_FUNCTIONS.put("abs", Math::abs);
+		UNARY_FUNCTIONS.put("sin", Math::sin);
+		UNARY_FUNCTIONS.put("cos", Math::cos);
+		UNARY_FUNCTIONS.put("tan", Math::tan);
+		UNARY_FUNCTIONS.put("sinh", Math::sinh);
+		UNARY_FUNCTIONS.put("cosh", Math::cosh);
+		UNARY_FUNCTIONS.put("tanh", Math::tanh);
+		UNARY_FUNCTIONS.put("atan", Math::atan);
+	}
+
+	/**
+	 * Recursive descent parser for the subset of the parsii syntax the
+	 * compiler supports. Operator precedence and associativity follow parsii,
+	 * e.g. {@code -2^2} is 4 and {@code 2^3^2} is 64.
+	 */
+	static final class ExpressionParser {
+
+		/**
+		 * Thrown by the parser only, for anything it does not support, so
+		 * that other exceptions still surface.
+		 */
+		private static final class Unsupported extends Exception {
+
+			private static final long serialVersionUID = 1L;
+
+			Unsupported(String reason) {
+				super(reason, null, false, false);
+			}
+		}
+
+		private final String input;
+		private int pos;
+
+		ExpressionParser(String input) {
+			this.input = input;
+		}
+
+		/**
+		 * @return the syntax tree, or null if the expression uses anything the
+		 *         compiler does not support
+		 */
+		Node parse() {
+			try {
+				Node n = term();
+				skipWhitespace();
+				return pos == input.length() ? n : null;
+			} catch (Unsupported e) {
+				return null;
+			}
+		}
+
+		private Node term() throws Unsupported {
+			Node n = product();
+			while (true) {
+				if (accept('+')) {
+					n = Node.binary(Kind.ADD, n, product());
+				} else if (accept('-')) {
+					n = Node.binary(Kind.SUBTRACT, n, product());
+				} else {
+					return n;
+				}
+			}
+		}
+
+		private Node product() throws Unsupported {
+			Node n = power();
+			while (true) {
+				if (accept('*')) {
+					n = Node.binary(Kind.MULTIPLY, n, power());
+				} else if (accept('/')) {
+					n = Node.binary(Kind.DIVIDE, n, power());
+				} else if (accept('%')) {
+					n = Node.binary(Kind.MODULO, n, power());
+				} else {
+					return n;
+				}
+			}
+		}
+
+		private Node power() throws Unsupported {
+			Node n = unary();
+			while (accept('^')) {
+				n = Node.binary(Kind.POWER, n, unary());
+			}
+			return n;
+		}
+
+		private Node unary() throws Unsupported {
+			if (accept('-')) {
+				Node n = new Node(Kind.NEGATE);
+				n.left = unary();
+				return n;
+			}
+			accept('+');
+			return atom();
+		}
+
+		private Node atom() throws Unsupported {
+			skipWhitespace();
+			if (accept('(')) {
+				Node n = term();
+				expect(')');
+				return n;
+			}
+			if (pos < input.length() && (Character.isDigit(input.charAt(pos)) || input.charAt(pos) == '.')) {
+				return number();
+			}
+			int start = pos;
+			while (pos < input.length() && Character.isLetterOrDigit(input.charAt(pos))) {
+				pos++;
+			}
+			String name = input.substring(start, pos);
+			if (accept('(')) {
+				return function(name);
+			}
+			if ("d".equals(name)) {
+				return new Node(Kind.D);
+			}
+			if ("k".equals(name)) {
+				return new Node(Kind.K);
+			}
+			throw new Unsupported(name);
+		}
+
+		private Node number() throws Unsupported {
+			int start = pos;
+			while (pos < input.length() && (Character.isDigit(input.charAt(pos)) || input.charAt(pos) == '.')) {
+				pos++;
+			}
+			// parsii allows quantifiers like 3k, leave those to parsii
+			if (pos < input.length() && Character.isLetter(input.charAt(pos))) {
+				throw new Unsupported(input.substring(start));
+			}
+			try {
+				return Node.constant(Double.parseDouble(input.substring(start, pos)));
+			} catch (NumberFormatException e) {
+				throw new Unsupported(input.substring(start, pos));
+			}
+		}
+
+		private Node function(String name) throws Unsupported {
+			Node n = new Node(Kind.FUNCTION);
+			n.name = name;
+			n.args = new ArrayList<>();
+			n.args.add(term());
+			while (accept(',')) {
+				n.args.add(term());
+			}
+			expect(')');
+			boolean binary = "min".equals(name) || "max".equals(name);
+			if (binary ? n.args.size() != 2 : n.args.size() != 1 || !UNARY_FUNCTIONS.containsKey(name)) {
+				throw new Unsupported(name);
+			}
+			return n;
+		}
+
+		private boolean accept(char c) {
+			skipWhitespace();
+			if (pos < input.length() && input.charAt(pos) == c) {
+				pos++;
+				return true;
+			}
+			return false;
+		}
+
+		private void expect(char c) throws Unsupported {
+			if (!accept(c)) {
+				throw new Unsupported(String.valueOf(c));
+			}
+		}
+
+		private void skipWhitespace() {
+			while (pos < input.length() && Character.isWhitespace(input.charAt(pos))) {
+				pos++;
+			}
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package fdp.force;
+
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * A force of the form c * d^a * k^b. Kernels that evaluate a force for many
+ * pairs of vertices at once can read its terms and evaluate it without
+ * calling it for every pair.
+ */
+public interface PowerLaw extends DoubleBinaryOperator {
+
+	/**
+	 * @return the constant factor c
+	 */
+	double getCoefficient();
+
+	/**
+	 * @return the exponent a of the distance d
+	 */
+	double getDistanceExponent();
+
+	/**
+	 * @return the exponent b of the optimal distance k
+	 */
+	double getOptimalDistanceExponent();
+}
@@ -0,0 +1,178 @@
+package fdp.graph;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.jgrapht.Graph;
+
+/**
+ * Immutable, index based representation of an undirected graph in compressed
+ * sparse row (CSR) format. The neighbours of vertex i are
+ * {@code targets[offsets[i]]} to {@code targets[offsets[i + 1] - 1]}, every
+ * edge is stored once for each of its two endpoints.
+ */
+public class CompactGraph {
+
+	private final int vertexCount;
+	private final int[] offsets;
+	private final int[] targets;
+	private final Vertex[] vertices;
+
+	/**
+	 * Creates a new CompactGraph from existing CSR arrays, the arrays are not
+	 * copied.
+	 *
+	 * @param vertexCount number of vertices
+	 * @param offsets start of the neighbours of every vertex in targets, of
+	 *            length vertexCount + 1
+	 * @param targets the concatenated neighbour lists
+	 * @param vertices the Vertex object for every index or null if there are
+	 *            none
+	 */
+	public CompactGraph(int vertexCount, int[] offsets, int[] targets, Vertex[] vertices) {
+		this.vertexCount = vertexCount;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.vertices = vertices;
+	}
+
+	/**
+	 * Compiles a Graph into its compact representation. Vertex indices follow
+	 * the iteration order of the vertex set.
+	 *
+	 * @param graph the graph to compile
+	 * @return the compiled graph
+	 */
+	public static CompactGraph compile(Graph<Vertex, Edge> graph) {
+		int n = graph.vertexSet().size();
+		Vertex[] vertices = graph.vertexSet().toArray(new Vertex[n]);
+		Map<Vertex, Integer> index = new IdentityHashMap<>(2 * n);
+		for (int i = 0; i < n; i++) {
+			index.put(vertices[i], i);
+		}
+
+		int[] offsets = new int[n + 1];
+		for (Edge e : graph.edgeSet()) {
+			offsets[index.get(e.getV()) + 1]++;
+			offsets[index.get(e.getU()) + 1]++;
+		}
+		for (int i = 0; i < n; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+
+		int[] targets = new int[offsets[n]];
+		int[] fill = new int[n];
+		for (Edge e : graph.edgeSet()) {
+			int v = index.get(e.getV());
+			int u = index.get(e.getU());
+			targets[offsets[v] + fill[v]++] = u;
+			targets[offsets[u] + fill[u]++] = v;
+		}
+		return new CompactGraph(n, offsets, targets, vertices);
+	}
+
+	public int getVertexCount() {
+		return vertexCount;
+	}
+
+	/**
+	 * @return number of undirected edges
+	 */
+	public int getEdgeCount() {
+		return targets.length / 2;
+	}
+
+	public int[] getOffsets() {
+		return offsets;
+	}
+
+	public int[] getTargets() {
+		return targets;
+	}
+
+	/**
+	 * @return the Vertex objects indexed like the compact graph, null if the
+	 *         graph was not compiled from a Graph
+	 */
+	public Vertex[] getVertices() {
+		return vertices;
+	}
+
+	/**
+	 * Finds the connected components with a breadth-first search.
+	 *
+	 * @return the component of every vertex, components are numbered from 0 in
+	 *         the order of their lowest vertex index
+	 */
+	public int[] components() {
+		int[] component = new int[vertexCount];
+		Arrays.fill(component, -1);
+		int[] queue = new int[vertexCount];
+		int count = 0;
+		for (int start = 0; start < vertexCount; start++) {
+			if (component[start] >= 0) {
+				continue;
+			}
+			component[start] = count;
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = start;
+			while (head < tail) {
+				int v = queue[head++];
+				for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+					int u = targets[e];
+					if (component[u] < 0) {
+						component[u] = count;
+						queue[tail++] = u;
+					}
+				}
+			}
+			count++;
+		}
+		return component;
+	}
+
+	/**
+	 * Creates the subgraph induced by the given vertices. Vertex i of the
+	 * subgraph is vertex {@code vertices[i]} of this graph.
+	 *
+	 * @param subset indices of the vertices in this graph, without duplicates
+	 * @return the subgraph, with the Vertex objects of this graph if it has any
+	 */
+	public CompactGraph subgraph(int[] subset) {
+		int[] local = new int[vertexCount];
+		Arrays.fill(local, -1);
+		for (int i = 0; i < subset.length; i++) {
+			local[subset[i]] = i;
+		}
+		int[] subOffsets = new int[subset.length + 1];
+		for (int i = 0; i < subset.length; i++) {
+			int v = subset[i];
+			int degree = 0;
+			for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+				if (local[targets[e]] >= 0) {
+					degree++;
+				}
+			}
+			subOffsets[i + 1] = subOffsets[i] + degree;
+		}
+		int[] subTargets = new int[subOffsets[subset.length]];
+		for (int i = 0, t = 0; i < subset.length; i++) {
+			int v = subset[i];
+			for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+				if (local[targets[e]] >= 0) {
+					subTargets[t++] = local[targets[e]];
+				}
+			}
+		}
+		Vertex[] subVertices = null;
+		if (vertices != null) {
+			subVertices = new Vertex[subset.length];
+			for (int i = 0; i < subset.length; i++) {
+				subVertices[i] = vertices[subset[i]];
+			}
+		}
+		return new CompactGraph(subset.length, subOffsets, subTargets, subVertices);
+	}
+}
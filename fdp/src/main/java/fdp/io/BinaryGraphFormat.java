@@ -0,0 +1,135 @@
+package fdp.io;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import fdp.graph.CompactGraph;
+
+/**
+ * Compact binary format that stores the CSR arrays of a {@link CompactGraph}
+ * as they are, so reading a graph is a bulk copy from a memory-mapped file.
+ * <p>
+ * All values are big-endian 32 bit integers: the magic number, the format
+ * version, the number of vertices n, the length m of the neighbour lists
+ * (twice the number of edges), then n + 1 offsets and m targets. Vertices
+ * have no labels besides their index.
+ */
+public class BinaryGraphFormat {
+
+	/** "FDPG" */
+	private static final int MAGIC = 0x46445047;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+	// ints mapped at once, keeps a mapping below 2 GiB
+	private static final int CHUNK = 1 << 28;
+
+	private BinaryGraphFormat() {
+	}
+
+	/**
+	 * Reads a graph in binary format.
+	 * 
+	 * @param file the file to read
+	 * @return the graph, vertices are labeled by their index
+	 * @throws IOException when the file cannot be read or is not in binary
+	 *             format
+	 */
+	public static ImportedGraph read(Path file) throws IOException {
+		try (MappedInput in = new MappedInput(file)) {
+			int[] header = readHeader(in, file);
+			int n = header[0];
+			int m = header[1];
+			int[] offsets = readInts(in, n + 1);
+			int[] targets = readInts(in, m);
+			if (offsets[0] != 0 || offsets[n] != m) {
+				throw new IOException(file + ": invalid offsets");
+			}
+			return new ImportedGraph(new CompactGraph(n, offsets, targets, null), null);
+		}
+	}
+
+	/**
+	 * Reads and checks the header of a binary graph.
+	 *
+	 * @return the number of vertices n and the length m of the neighbour lists
+	 */
+	static int[] readHeader(MappedInput in, Path file) throws IOException {
+		IntBuffer header = in.map(HEADER_SIZE).asIntBuffer();
+		if (header.get() != MAGIC || header.get() != VERSION) {
+			throw new IOException(file + ": not a binary graph file of version " + VERSION);
+		}
+		int n = header.get();
+		int m = header.get();
+		if (n < 0 || m < 0) {
+			throw new IOException(file + ": invalid header");
+		}
+		return new int[] { n, m };
+	}
+
+	private static int[] readInts(MappedInput in, int length) throws IOException {
+		int[] values = new int[length];
+		for (int from = 0; from < length; from += CHUNK) {
+			int count = Math.min(CHUNK, length - from);
+			in.map(4L * count).asIntBuffer().get(values, from, count);
+		}
+		return values;
+	}
+
+	/**
+	 * Copies the next length integers of the file into the buffer at its
+	 * position, without an array of all of them on the heap.
+	 */
+	static void copyInts(MappedInput in, IntBuffer to, int length) throws IOException {
+		for (int from = 0; from < length; from += CHUNK) {
+			int count = Math.min(CHUNK, length - from);
+			to.put(in.map(4L * count).asIntBuffer());
+		}
+	}
+
+	/**
+	 * Writes a graph in binary format.
+	 * 
+	 * @param graph the graph to write
+	 * @param file the file to write, replaced if it exists
+	 * @throws IOException when the file cannot be written
+	 */
+	public static void write(CompactGraph graph, Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(graph.getVertexCount()).putInt(graph.getTargets().length);
+			writeInts(channel, buffer, graph.getOffsets(), graph.getVertexCount() + 1);
+			writeInts(channel, buffer, graph.getTargets(), graph.getTargets().length);
+			flush(channel, buffer);
+		}
+	}
+
+	private static void writeInts(FileChannel channel, ByteBuffer buffer, int[] values, int length)
+			throws IOException {
+		for (int from = 0; from < length;) {
+			if (buffer.remaining() < 4) {
+				flush(channel, buffer);
+			}
+			// bulk copy as many values as fit behind the bytes already in the buffer
+			IntBuffer ints = buffer.slice().asIntBuffer();
+			int count = Math.min(ints.remaining(), length - from);
+			ints.put(values, from, count);
+			((Buffer) buffer).position(buffer.position() + 4 * count);
+			from += count;
+		}
+	}
+
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		// cast keeps the Java 8 signatures of Buffer
+		((Buffer) buffer).flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		((Buffer) buffer).clear();
+	}
+}
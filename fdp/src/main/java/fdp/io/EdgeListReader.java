@@ -0,0 +1,87 @@
+package fdp.io;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import fdp.graph.CompactGraph;
+
+/**
+ * Reads undirected graphs from edge list and CSV files. Every line holds the
+ * labels of the two endpoints of an edge separated by whitespace, commas or
+ * semicolons, further columns like weights are ignored. Labels may be quoted
+ * with double quotes. Empty lines and lines starting with # or % are ignored,
+ * as are self loops and duplicate edges.
+ * <p>
+ * The file is memory-mapped and parsed byte by byte, labels are interned
+ * without creating Strings.
+ */
+public class EdgeListReader {
+
+	private EdgeListReader() {
+	}
+
+	/**
+	 * Reads an edge list file.
+	 * 
+	 * @param file the file to read
+	 * @return the graph
+	 * @throws IOException when the file cannot be read or a line has less than
+	 *             two labels
+	 */
+	public static ImportedGraph read(Path file) throws IOException {
+		LabelTable labels = new LabelTable();
+		int[] ends = new int[1024];
+		int endCount = 0;
+
+		try (MappedInput in = new MappedInput(file)) {
+			int lineNumber = 0;
+			int c = in.read();
+			while (c != -1) {
+				lineNumber++;
+				while (c == ' ' || c == '\t') {
+					c = in.read();
+				}
+				if (c == '#' || c == '%') {
+					while (c != '\n' && c != -1) {
+						c = in.read();
+					}
+				}
+				int column = 0;
+				while (c != '\n' && c != -1) {
+					if (isSeparator(c)) {
+						c = in.read();
+						continue;
+					}
+					boolean quoted = c == '"';
+					if (quoted) {
+						c = in.read();
+					}
+					while (c != -1 && (quoted ? c != '"' : c != '\n' && !isSeparator(c))) {
+						if (column < 2) {
+							labels.append(c);
+						}
+						c = in.read();
+					}
+					if (quoted && c == '"') {
+						c = in.read();
+					}
+					if (column < 2) {
+						ends = EdgeLists.ensureCapacity(ends, endCount);
+						ends[endCount++] = labels.end();
+					}
+					column++;
+				}
+				if (column == 1) {
+					throw new IOException(file + ":" + lineNumber + ": expected two vertex labels");
+				}
+				c = in.read();
+			}
+		}
+		CompactGraph graph = EdgeLists.toCompactGraph(labels.size(), ends, endCount / 2);
+		return new ImportedGraph(graph, labels);
+	}
+
+	private static boolean isSeparator(int c) {
+		return c == ' ' || c == '\t' || c == ',' || c == ';' || c == '\r';
+	}
+}
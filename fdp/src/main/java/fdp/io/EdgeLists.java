@@ -0,0 +1,77 @@
+package fdp.io;
+
+import java.util.Arrays;
+
+import fdp.graph.CompactGraph;
+
+/**
+ * Builds {@link CompactGraph}s from plain lists of edges.
+ */
+final class EdgeLists {
+
+	private EdgeLists() {
+	}
+
+	/**
+	 * Makes room for two more edge endpoints.
+	 *
+	 * @param ends the endpoints read so far
+	 * @param endCount number of endpoints in ends
+	 * @return ends or a larger copy of it
+	 */
+	static int[] ensureCapacity(int[] ends, int endCount) {
+		if (endCount + 2 <= ends.length) {
+			return ends;
+		}
+		return Arrays.copyOf(ends, (int) Math.min(Integer.MAX_VALUE - 8, 2L * ends.length));
+	}
+
+	/**
+	 * Builds the CSR adjacency of an undirected graph. Self loops and duplicate
+	 * edges are dropped.
+	 * 
+	 * @param vertexCount number of vertices
+	 * @param ends endpoints of the edges, edge e connects ends[2e] and ends[2e + 1]
+	 * @param edgeCount number of edges
+	 * @return the graph
+	 */
+	static CompactGraph toCompactGraph(int vertexCount, int[] ends, int edgeCount) {
+		int[] offsets = new int[vertexCount + 1];
+		for (int e = 0; e < 2 * edgeCount; e += 2) {
+			if (ends[e] != ends[e + 1]) {
+				offsets[ends[e] + 1]++;
+				offsets[ends[e + 1] + 1]++;
+			}
+		}
+		for (int i = 0; i < vertexCount; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+		int[] targets = new int[offsets[vertexCount]];
+		int[] fill = Arrays.copyOf(offsets, vertexCount);
+		for (int e = 0; e < 2 * edgeCount; e += 2) {
+			int v = ends[e];
+			int u = ends[e + 1];
+			if (v != u) {
+				targets[fill[v]++] = u;
+				targets[fill[u]++] = v;
+			}
+		}
+
+		// sort every neighbour list and drop duplicates in place
+		int write = 0;
+		int start = 0;
+		for (int i = 0; i < vertexCount; i++) {
+			int end = offsets[i + 1];
+			Arrays.sort(targets, start, end);
+			offsets[i] = write;
+			for (int e = start; e < end; e++) {
+				if (e == start || targets[e] != targets[e - 1]) {
+					targets[write++] = targets[e];
+				}
+			}
+			start = end;
+		}
+		offsets[vertexCount] = write;
+		return new CompactGraph(vertexCount, offsets, write == targets.length ? targets : Arrays.copyOf(targets, write), null);
+	}
+}
@@ -0,0 +1,37 @@
+package fdp.io;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Reads graph files in any of the supported formats, chosen by the file
+ * extension: .graphml for GraphML, .fdpg for the binary format and edge lists
+ * for everything else.
+ */
+public class GraphImporter {
+
+	/** Extension of files in {@link BinaryGraphFormat}. */
+	public static final String BINARY_EXTENSION = ".fdpg";
+
+	private GraphImporter() {
+	}
+
+	/**
+	 * Reads a graph file.
+	 * 
+	 * @param file the file to read
+	 * @return the graph
+	 * @throws IOException when the file cannot be read or parsed
+	 */
+	public static ImportedGraph read(Path file) throws IOException {
+		String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+		if (name.endsWith(".graphml")) {
+			return GraphMLReader.read(file);
+		}
+		if (name.endsWith(BINARY_EXTENSION)) {
+			return BinaryGraphFormat.read(file);
+		}
+		return EdgeListReader.read(file);
+	}
+}
@@ -0,0 +1,205 @@
+package fdp.io;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import fdp.graph.CompactGraph;
+
+/**
+ * Reads undirected graphs from GraphML files. Only the id attribute of node
+ * elements and the source and target attributes of edge elements are read,
+ * everything else including data and nested graphs is skipped. Ids are
+ * compared verbatim, entities in ids are not decoded. Self loops and duplicate
+ * edges are ignored.
+ * <p>
+ * Instead of a full XML parser the memory-mapped file is scanned for tags
+ * byte by byte, so reading does not create a String per element.
+ */
+public class GraphMLReader {
+
+	private static final byte[] NODE = { 'n', 'o', 'd', 'e' };
+	private static final byte[] EDGE = { 'e', 'd', 'g', 'e' };
+	private static final byte[] ID = { 'i', 'd' };
+	private static final byte[] SOURCE = { 's', 'o', 'u', 'r', 'c', 'e' };
+	private static final byte[] TARGET = { 't', 'a', 'r', 'g', 'e', 't' };
+
+	private final Path file;
+	private final MappedInput in;
+	private final LabelTable labels = new LabelTable();
+	private int[] ends = new int[1024];
+	private int endCount;
+
+	// name of the current element or attribute without namespace prefix
+	private final byte[] name = new byte[16];
+	private int nameLength;
+
+	private GraphMLReader(Path file, MappedInput in) {
+		this.file = file;
+		this.in = in;
+	}
+
+	/**
+	 * Reads a GraphML file.
+	 * 
+	 * @param file the file to read
+	 * @return the graph
+	 * @throws IOException when the file cannot be read or an edge misses its
+	 *             source or target
+	 */
+	public static ImportedGraph read(Path file) throws IOException {
+		try (MappedInput in = new MappedInput(file)) {
+			GraphMLReader reader = new GraphMLReader(file, in);
+			reader.parse();
+			CompactGraph graph = EdgeLists.toCompactGraph(reader.labels.size(), reader.ends, reader.endCount / 2);
+			return new ImportedGraph(graph, reader.labels);
+		}
+	}
+
+	private void parse() throws IOException {
+		int c;
+		while ((c = in.read()) != -1) {
+			if (c != '<') {
+				continue;
+			}
+			c = in.read();
+			if (c == '!') {
+				skipDeclaration();
+			} else if (c == '?' || c == '/') {
+				skipTo('>');
+			} else {
+				c = readName(c);
+				if (is(NODE)) {
+					element(c, false);
+				} else if (is(EDGE)) {
+					element(c, true);
+				} else if (c != '>') {
+					skipTo('>');
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the attributes of a node or edge element up to the closing bracket.
+	 *
+	 * @param c the first character after the element name
+	 */
+	private void element(int c, boolean edge) throws IOException {
+		int source = -1;
+		int target = -1;
+		while (c != '>') {
+			if (c == -1) {
+				throw new IOException(file + ": unexpected end of file");
+			}
+			if (isWhitespace(c) || c == '/') {
+				c = in.read();
+				continue;
+			}
+			c = readName(c);
+			while (c != '=' && c != -1) {
+				c = in.read();
+			}
+			int quote = in.read();
+			while (isWhitespace(quote)) {
+				quote = in.read();
+			}
+			if (quote != '"' && quote != '\'') {
+				throw new IOException(file + ": expected quoted attribute value");
+			}
+			boolean read = edge ? is(SOURCE) || is(TARGET) : is(ID);
+			boolean isTarget = is(TARGET);
+			while ((c = in.read()) != quote) {
+				if (c == -1) {
+					throw new IOException(file + ": unexpected end of file");
+				}
+				if (read) {
+					labels.append(c);
+				}
+			}
+			if (read) {
+				int index = labels.end();
+				if (isTarget) {
+					target = index;
+				} else {
+					source = index;
+				}
+			}
+			c = in.read();
+		}
+		if (edge) {
+			if (source == -1 || target == -1) {
+				throw new IOException(file + ": edge without source or target");
+			}
+			ends = EdgeLists.ensureCapacity(ends, endCount);
+			ends[endCount++] = source;
+			ends[endCount++] = target;
+		}
+	}
+
+	/**
+	 * Reads a name and returns the first character after it. A namespace
+	 * prefix is dropped, names longer than the buffer are cut.
+	 */
+	private int readName(int c) throws IOException {
+		nameLength = 0;
+		while (c != -1 && c != '>' && c != '/' && c != '=' && !isWhitespace(c)) {
+			if (c == ':') {
+				nameLength = 0;
+			} else if (nameLength < name.length) {
+				name[nameLength++] = (byte) c;
+			}
+			c = in.read();
+		}
+		return c;
+	}
+
+	private boolean is(byte[] expected) {
+		if (nameLength != expected.length) {
+			return false;
+		}
+		for (int i = 0; i < nameLength; i++) {
+			if (name[i] != expected[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Skips a comment, CDATA section or document type declaration after
+	 * {@code <!}.
+	 */
+	private void skipDeclaration() throws IOException {
+		int c = in.read();
+		if (c == '-') {
+			skipTo('-', '-', '>');
+		} else if (c == '[') {
+			skipTo(']', ']', '>');
+		} else if (c != '>') {
+			skipTo('>');
+		}
+	}
+
+	private void skipTo(int end) throws IOException {
+		int c;
+		while ((c = in.read()) != end && c != -1) {
+		}
+	}
+
+	private void skipTo(int first, int second, int end) throws IOException {
+		int previous = 0;
+		int beforePrevious = 0;
+		int c;
+		while ((c = in.read()) != -1) {
+			if (c == end && previous == second && beforePrevious == first) {
+				return;
+			}
+			beforePrevious = previous;
+			previous = c;
+		}
+	}
+
+	private static boolean isWhitespace(int c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+	}
+}
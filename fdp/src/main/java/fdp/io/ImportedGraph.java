@@ -0,0 +1,36 @@
+package fdp.io;
+
+import fdp.graph.CompactGraph;
+
+/**
+ * A graph read from a file together with the labels its vertices have in the
+ * file.
+ */
+public class ImportedGraph {
+
+	private final CompactGraph graph;
+	private final LabelTable labels;
+
+	/**
+	 * @param graph the graph, vertex indices match the labels
+	 * @param labels the label of every vertex, null if the vertices are only
+	 *            known by their index
+	 */
+	ImportedGraph(CompactGraph graph, LabelTable labels) {
+		this.graph = graph;
+		this.labels = labels;
+	}
+
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * @param i index of the vertex
+	 * @return the label of vertex i in the file, or i if the file has no
+	 *         labels
+	 */
+	public String getLabel(int i) {
+		return labels == null ? Integer.toString(i) : labels.get(i);
+	}
+}
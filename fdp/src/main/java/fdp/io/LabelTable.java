@@ -0,0 +1,176 @@
+package fdp.io;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Assigns consecutive indices to vertex labels. A label is appended byte by
+ * byte and looked up in an open addressing hash table over a shared byte pool,
+ * so no String is created while a file is parsed.
+ * <p>
+ * Most large edge lists label their vertices with integers. Labels that are
+ * non-negative integers without leading zeros are looked up in an array
+ * indexed by their value instead, which costs a single memory access. The
+ * array only grows to a small multiple of the number of labels seen, sparse
+ * integers such as the ones of SNAP datasets are hashed like other labels.
+ */
+final class LabelTable {
+
+	// numeric labels up to this value are looked up directly, 256 MiB at most
+	private static final int DENSE_LIMIT = 1 << 26;
+
+	private byte[] bytes = new byte[1 << 16];
+	private int size;
+	// label i is bytes[starts[i]] to bytes[starts[i + 1] - 1]
+	private int[] starts = new int[1024];
+	private int count;
+
+	// hash in the high and index + 1 in the low half, 0 for an empty slot
+	private long[] table = new long[2048];
+	private int tableCount;
+	// index + 1 of numeric labels by their value, 0 if not seen yet
+	private int[] dense = new int[1024];
+	// true once a numeric label below DENSE_LIMIT was hashed, which dense misses have to look up
+	private boolean sparse;
+
+	private int hash;
+	private boolean numeric;
+	private long value;
+
+	/**
+	 * Appends a byte to the label being read.
+	 */
+	void append(int b) {
+		int length = size - starts[count];
+		if (size == bytes.length) {
+			bytes = Arrays.copyOf(bytes, bytes.length * 2);
+		}
+		bytes[size++] = (byte) b;
+		hash = 31 * hash + b;
+		boolean digit = b >= '0' && b <= '9';
+		if (length == 0) {
+			numeric = digit;
+			value = b - '0';
+		} else if (numeric) {
+			// a leading zero would give two labels the same value
+			numeric = digit && value != 0 && value < DENSE_LIMIT;
+			value = 10 * value + b - '0';
+		}
+	}
+
+	/**
+	 * Finishes the label being read.
+	 *
+	 * @return the index of the label, a new one if it was not seen before
+	 */
+	int end() {
+		int h = hash;
+		hash = 0;
+		if (numeric && value < DENSE_LIMIT) {
+			numeric = false;
+			// values far beyond the labels seen would make the array mostly empty
+			if (value < 4L * count + 1024) {
+				return endNumeric((int) value, h);
+			}
+			sparse = true;
+		}
+		numeric = false;
+		return endHashed(h);
+	}
+
+	/**
+	 * Looks up the label being read in the hash table, adds it if it is new.
+	 */
+	private int endHashed(int h) {
+		int start = starts[count];
+		int length = size - start;
+		h *= 0x9E3779B1;
+		// the table index uses the low bits, fold the well mixed high bits into them
+		h ^= h >>> 16;
+		int mask = table.length - 1;
+		for (int slot = h & mask;; slot = (slot + 1) & mask) {
+			long entry = table[slot];
+			if (entry == 0) {
+				table[slot] = (long) h << 32 | (count + 1);
+				if (2 * ++tableCount > table.length) {
+					rehash();
+				}
+				return add();
+			}
+			if ((int) (entry >>> 32) == h) {
+				int i = (int) entry - 1;
+				if (equals(i, start, length)) {
+					// drop the bytes of the known label again
+					size = start;
+					return i;
+				}
+			}
+		}
+	}
+
+	private int endNumeric(int v, int h) {
+		if (v >= dense.length) {
+			dense = Arrays.copyOf(dense, Math.min(DENSE_LIMIT, Math.max(v + 1, 2 * dense.length)));
+		}
+		int i = dense[v] - 1;
+		if (i >= 0) {
+			size = starts[count];
+			return i;
+		}
+		// the label may have been hashed while the array was smaller
+		i = sparse ? endHashed(h) : add();
+		dense[v] = i + 1;
+		return i;
+	}
+
+	private boolean equals(int i, int start, int length) {
+		int from = starts[i];
+		if (starts[i + 1] - from != length) {
+			return false;
+		}
+		for (int b = 0; b < length; b++) {
+			if (bytes[from + b] != bytes[start + b]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int add() {
+		if (count + 2 > starts.length) {
+			starts = Arrays.copyOf(starts, starts.length * 2);
+		}
+		starts[++count] = size;
+		return count - 1;
+	}
+
+	private void rehash() {
+		long[] old = table;
+		table = new long[old.length * 2];
+		int mask = table.length - 1;
+		for (long entry : old) {
+			if (entry != 0) {
+				int slot = (int) (entry >>> 32) & mask;
+				while (table[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				table[slot] = entry;
+			}
+		}
+	}
+
+	/**
+	 * @return number of distinct labels
+	 */
+	int size() {
+		return count;
+	}
+
+	/**
+	 * @param i index of the label
+	 * @return the label decoded as UTF-8
+	 */
+	String get(int i) {
+		return new String(bytes, starts[i], starts[i + 1] - starts[i], StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,79 @@
+package fdp.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file byte by byte through memory-mapped regions. Files larger than a
+ * single mapping are mapped region by region. Bytes are bulk copied from the
+ * mapping into a small array, reading single bytes from the mapped buffer is
+ * several times slower once the parsing loops get larger.
+ */
+final class MappedInput implements Closeable {
+
+	private static final long REGION_SIZE = 1L << 30;
+	private static final int BLOCK_SIZE = 1 << 16;
+
+	private final FileChannel channel;
+	private final long size;
+	private long position;
+	private MappedByteBuffer region;
+	private final byte[] block = new byte[BLOCK_SIZE];
+	private int blockPosition;
+	private int blockLength;
+
+	MappedInput(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		size = channel.size();
+	}
+
+	/**
+	 * @return the next byte as unsigned value or -1 at the end of the file
+	 */
+	int read() throws IOException {
+		if (blockPosition == blockLength && !nextBlock()) {
+			return -1;
+		}
+		return block[blockPosition++] & 0xff;
+	}
+
+	private boolean nextBlock() throws IOException {
+		if (region == null || !region.hasRemaining()) {
+			if (position == size) {
+				return false;
+			}
+			region = map(Math.min(REGION_SIZE, size - position));
+		}
+		blockLength = Math.min(BLOCK_SIZE, region.remaining());
+		blockPosition = 0;
+		region.get(block, 0, blockLength);
+		return true;
+	}
+
+	/**
+	 * Maps the next length bytes of the file, the caller reads them from the
+	 * returned buffer instead of using {@link #read()}.
+	 *
+	 * @param length number of bytes, at most {@link Integer#MAX_VALUE}
+	 * @return the mapped bytes
+	 * @throws IOException if the file ends before
+	 */
+	MappedByteBuffer map(long length) throws IOException {
+		if (position + length > size) {
+			throw new IOException("Unexpected end of file");
+		}
+		MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, position, length);
+		position += length;
+		return buffer;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,379 @@
+package fdp.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import fdp.graph.CompactGraph;
+
+/**
+ * Layout whose state is kept in a memory-mapped file instead of the heap: the
+ * CSR arrays of the graph, the positions and displacements of the vertices,
+ * the grid index of the repulsion and the progress of the simulation. A
+ * layout holds a few buffer objects on the heap, whatever the size of the
+ * graph, and the pages of the file are cached and written back by the
+ * operating system.
+ * <p>
+ * The file starts with a header of 64 bytes: the magic number, the format
+ * version, the number of vertices n, the length m of the neighbour lists, the
+ * frame width and height, the iteration, whether the mechanical equilibrium
+ * was reached, the optimal distance and the temperature. It is followed by the n + 1 offsets,
+ * the m targets, the x- and y-coordinates, the x- and y-displacements, the
+ * heads of the grid buckets, the next vertex in each bucket and the cell
+ * coordinates of the vertices, each section aligned to 8 bytes. All values
+ * are little-endian. Every section is a mapping of its own and has to be
+ * smaller than 2 GiB, so a layout has at most about 268 million vertices and
+ * 536 million neighbour entries.
+ * <p>
+ * The progress is written to the header after every step, so a layout that
+ * was stopped, even by a crash of the JVM, is resumed by opening its file
+ * again. At worst the last step was applied to some of the vertices only.
+ */
+public final class MappedLayout implements Closeable {
+
+	/** "FDPL" */
+	private static final int MAGIC = 0x4644504C;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 64;
+
+	private static final int VERTEX_COUNT = 8;
+	private static final int LENGTH = 12;
+	private static final int FRAME_WIDTH = 16;
+	private static final int FRAME_HEIGHT = 20;
+	private static final int ITERATION = 24;
+	private static final int EQUILIBRIUM = 28;
+	private static final int OPTIMAL_DISTANCE = 32;
+	private static final int TEMPERATURE = 40;
+
+	private final FileChannel channel;
+	private final List<MappedByteBuffer> mappings = new ArrayList<>();
+	private final MappedByteBuffer header;
+	private final int n;
+	private final int m;
+	private long position = HEADER_SIZE;
+
+	private final IntBuffer offsets;
+	private final IntBuffer targets;
+	private final DoubleBuffer x;
+	private final DoubleBuffer y;
+	private final DoubleBuffer dispX;
+	private final DoubleBuffer dispY;
+	private final IntBuffer gridHead;
+	private final IntBuffer gridNext;
+	private final IntBuffer cellX;
+	private final IntBuffer cellY;
+
+	private MappedLayout(FileChannel channel, MappedByteBuffer header) throws IOException {
+		this.channel = channel;
+		this.header = header;
+		this.n = header.getInt(VERTEX_COUNT);
+		this.m = header.getInt(LENGTH);
+		mappings.add(header);
+		offsets = mapInts(n + 1L);
+		targets = mapInts(m);
+		x = mapDoubles(n);
+		y = mapDoubles(n);
+		dispX = mapDoubles(n);
+		dispY = mapDoubles(n);
+		gridHead = mapInts(bucketCount(n));
+		gridNext = mapInts(n);
+		cellX = mapInts(n);
+		cellY = mapInts(n);
+	}
+
+	/**
+	 * Creates a layout file of a graph. The vertices are not placed yet.
+	 *
+	 * @param file the file to create, replaced if it exists
+	 * @param graph the graph to layout
+	 * @param frameWidth width of the frame
+	 * @param frameHeight height of the frame
+	 * @return the layout, to be closed by the caller
+	 * @throws IOException when the file cannot be written or the graph is too
+	 *             large for the format
+	 */
+	public static MappedLayout create(Path file, CompactGraph graph, int frameWidth, int frameHeight)
+			throws IOException {
+		MappedLayout layout = create(file, graph.getVertexCount(), graph.getTargets().length, frameWidth,
+				frameHeight);
+		layout.offsets.put(graph.getOffsets(), 0, graph.getVertexCount() + 1);
+		layout.targets.put(graph.getTargets());
+		return layout;
+	}
+
+	/**
+	 * Creates a layout file of a graph in {@link BinaryGraphFormat}. The
+	 * adjacency is copied region by region, so the graph never has to fit into
+	 * the heap. The vertices are not placed yet.
+	 *
+	 * @param file the file to create, replaced if it exists
+	 * @param binaryGraph the graph to layout
+	 * @param frameWidth width of the frame
+	 * @param frameHeight height of the frame
+	 * @return the layout, to be closed by the caller
+	 * @throws IOException when a file cannot be read or written, the graph is
+	 *             not in binary format or too large for the layout format
+	 */
+	public static MappedLayout create(Path file, Path binaryGraph, int frameWidth, int frameHeight)
+			throws IOException {
+		try (MappedInput in = new MappedInput(binaryGraph)) {
+			int[] size = BinaryGraphFormat.readHeader(in, binaryGraph);
+			MappedLayout layout = create(file, size[0], size[1], frameWidth, frameHeight);
+			try {
+				BinaryGraphFormat.copyInts(in, layout.offsets, size[0] + 1);
+				BinaryGraphFormat.copyInts(in, layout.targets, size[1]);
+				if (layout.offsets.get(0) != 0 || layout.offsets.get(size[0]) != size[1]) {
+					throw new IOException(binaryGraph + ": invalid offsets");
+				}
+			} catch (IOException | RuntimeException e) {
+				layout.close();
+				throw e;
+			}
+			return layout;
+		}
+	}
+
+	private static MappedLayout create(Path file, int n, int m, int frameWidth, int frameHeight)
+			throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			MappedByteBuffer header = channel.map(MapMode.READ_WRITE, 0, HEADER_SIZE);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(0, MAGIC).putInt(4, VERSION).putInt(VERTEX_COUNT, n).putInt(LENGTH, m);
+			header.putInt(FRAME_WIDTH, frameWidth).putInt(FRAME_HEIGHT, frameHeight);
+			header.putInt(ITERATION, -1).putInt(EQUILIBRIUM, 0);
+			return new MappedLayout(channel, header);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Opens an existing layout file, e.g. to resume the layout.
+	 *
+	 * @param file the file to open
+	 * @return the layout, to be closed by the caller
+	 * @throws IOException when the file cannot be read or is not a layout file
+	 */
+	public static MappedLayout open(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			if (channel.size() < HEADER_SIZE) {
+				throw new IOException(file + ": not a layout file");
+			}
+			MappedByteBuffer header = channel.map(MapMode.READ_WRITE, 0, HEADER_SIZE);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+				throw new IOException(file + ": not a layout file of version " + VERSION);
+			}
+			if (header.getInt(VERTEX_COUNT) < 0 || header.getInt(LENGTH) < 0) {
+				throw new IOException(file + ": invalid header");
+			}
+			// mapping the sections would extend a truncated file
+			if (channel.size() < fileSize(header.getInt(VERTEX_COUNT), header.getInt(LENGTH))) {
+				throw new IOException(file + ": truncated layout file");
+			}
+			return new MappedLayout(channel, header);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return twice as many grid buckets as vertices like {@link fdp.layout.SpatialHash}, a power of two
+	 */
+	private static int bucketCount(int n) {
+		return Integer.highestOneBit(Math.max(2 * n - 1, 1)) << 1;
+	}
+
+	private static long fileSize(long n, long m) {
+		long[] sections = { 4 * (n + 1), 4 * m, 8 * n, 8 * n, 8 * n, 8 * n, 4L * bucketCount((int) n), 4 * n, 4 * n,
+				4 * n };
+		long size = HEADER_SIZE;
+		for (long length : sections) {
+			size += align(length);
+		}
+		return size;
+	}
+
+	private static long align(long length) {
+		return (length + 7) & ~7L;
+	}
+
+	private IntBuffer mapInts(long length) throws IOException {
+		return map(4 * length).asIntBuffer();
+	}
+
+	private DoubleBuffer mapDoubles(long length) throws IOException {
+		return map(8 * length).asDoubleBuffer();
+	}
+
+	private MappedByteBuffer map(long length) throws IOException {
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("Graph too large for a layout file");
+		}
+		MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, position, length);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		mappings.add(buffer);
+		position += align(length);
+		return buffer;
+	}
+
+	/**
+	 * Records the start of the simulation after the vertices were placed.
+	 *
+	 * @param k the optimal distance between vertices
+	 * @param temperature the initial temperature
+	 */
+	public void start(double k, double temperature) {
+		header.putDouble(OPTIMAL_DISTANCE, k);
+		setProgress(0, temperature, false);
+	}
+
+	/**
+	 * Records the progress of the simulation, usually after every step.
+	 *
+	 * @param iteration number of steps simulated
+	 * @param temperature the temperature of the next step
+	 * @param equilibriumReached whether the highest net force of the last step
+	 *            was below the threshold
+	 */
+	public void setProgress(int iteration, double temperature, boolean equilibriumReached) {
+		header.putDouble(TEMPERATURE, temperature);
+		header.putInt(EQUILIBRIUM, equilibriumReached ? 1 : 0);
+		header.putInt(ITERATION, iteration);
+	}
+
+	/**
+	 * @return true if the simulation was started, i.e. the vertices were placed
+	 */
+	public boolean isStarted() {
+		return getIteration() >= 0;
+	}
+
+	/**
+	 * @return number of steps simulated, -1 if the simulation was not started
+	 */
+	public int getIteration() {
+		return header.getInt(ITERATION);
+	}
+
+	/**
+	 * @return true if the mechanical equilibrium was reached in the last step
+	 */
+	public boolean isEquilibriumReached() {
+		return header.getInt(EQUILIBRIUM) != 0;
+	}
+
+	public double getOptimalDistance() {
+		return header.getDouble(OPTIMAL_DISTANCE);
+	}
+
+	public double getTemperature() {
+		return header.getDouble(TEMPERATURE);
+	}
+
+	public int getVertexCount() {
+		return n;
+	}
+
+	/**
+	 * @return number of undirected edges
+	 */
+	public int getEdgeCount() {
+		return m / 2;
+	}
+
+	public int getFrameWidth() {
+		return header.getInt(FRAME_WIDTH);
+	}
+
+	public int getFrameHeight() {
+		return header.getInt(FRAME_HEIGHT);
+	}
+
+	/**
+	 * @return the n + 1 offsets of the neighbour lists, see {@link CompactGraph#getOffsets()}
+	 */
+	public IntBuffer getOffsets() {
+		return offsets;
+	}
+
+	/**
+	 * @return the m neighbours of all vertices, see {@link CompactGraph#getTargets()}
+	 */
+	public IntBuffer getTargets() {
+		return targets;
+	}
+
+	public DoubleBuffer getX() {
+		return x;
+	}
+
+	public DoubleBuffer getY() {
+		return y;
+	}
+
+	public DoubleBuffer getDispX() {
+		return dispX;
+	}
+
+	public DoubleBuffer getDispY() {
+		return dispY;
+	}
+
+	/**
+	 * @return the first vertex of every grid bucket, the number of buckets is
+	 *         a power of two
+	 */
+	public IntBuffer getGridHead() {
+		return gridHead;
+	}
+
+	/**
+	 * @return the next vertex in the grid bucket of every vertex
+	 */
+	public IntBuffer getGridNext() {
+		return gridNext;
+	}
+
+	public IntBuffer getCellX() {
+		return cellX;
+	}
+
+	public IntBuffer getCellY() {
+		return cellY;
+	}
+
+	/**
+	 * Writes all changes to the storage device, so they also survive a crash
+	 * of the operating system. Without, they are written back by the
+	 * operating system at some time.
+	 */
+	public void force() {
+		for (MappedByteBuffer mapping : mappings) {
+			mapping.force();
+		}
+	}
+
+	/**
+	 * Closes the file. The mappings are released once the buffers are garbage
+	 * collected, so they must not be used any more.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
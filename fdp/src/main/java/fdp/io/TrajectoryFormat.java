@@ -0,0 +1,32 @@
+package fdp.io;
+
+/**
+ * Layout of trajectory files written by {@link TrajectoryRecorder}.
+ * <p>
+ * A trajectory file starts with a header of big-endian values: the magic
+ * number, the format version, the number of vertices n, the number of frames,
+ * the recording interval and the frame width and height. The frames follow
+ * the header back to back. Every frame holds the iteration and the
+ * temperature, then the n x-coordinates and the n y-coordinates as float32.
+ * All frames have the same size, so frame i starts at
+ * {@code HEADER_SIZE + i * frameSize(n)}.
+ */
+final class TrajectoryFormat {
+
+	/** "FDPT" */
+	static final int MAGIC = 0x46445054;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 32;
+	static final int FRAME_COUNT_OFFSET = 12;
+
+	private TrajectoryFormat() {
+	}
+
+	/**
+	 * @param vertexCount number of vertices
+	 * @return the size of a frame in bytes
+	 */
+	static long frameSize(int vertexCount) {
+		return 8 + 8L * vertexCount;
+	}
+}
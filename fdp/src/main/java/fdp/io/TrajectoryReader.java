@@ -0,0 +1,143 @@
+package fdp.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads trajectory files written by {@link TrajectoryRecorder}. Frames have a
+ * fixed size, so any frame is found in constant time. The file is mapped in
+ * regions of whole frames on first access.
+ */
+public class TrajectoryReader implements Closeable {
+
+	// frames mapped at once, below the 2 GiB limit of a mapping
+	private static final long REGION_SIZE = 1 << 30;
+
+	private final FileChannel channel;
+	private final int vertexCount;
+	private final int frameCount;
+	private final int interval;
+	private final int frameWidth;
+	private final int frameHeight;
+	private final long frameSize;
+	private final int framesPerRegion;
+	private final MappedByteBuffer[] regions;
+
+	/**
+	 * Opens a trajectory file, frames recorded after opening are not visible.
+	 *
+	 * @param file the trajectory file
+	 * @throws IOException when the file cannot be read or is no trajectory
+	 */
+	public TrajectoryReader(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(TrajectoryFormat.HEADER_SIZE);
+			while (header.hasRemaining() && channel.read(header) >= 0) {
+			}
+			if (header.hasRemaining() || header.getInt(0) != TrajectoryFormat.MAGIC
+					|| header.getInt(4) != TrajectoryFormat.VERSION) {
+				throw new IOException(file + ": not a trajectory file of version " + TrajectoryFormat.VERSION);
+			}
+			vertexCount = header.getInt(8);
+			interval = header.getInt(16);
+			frameWidth = header.getInt(20);
+			frameHeight = header.getInt(24);
+			frameSize = TrajectoryFormat.frameSize(vertexCount);
+			// the recorder may have been killed before it could write the frame count
+			frameCount = (int) Math.min(header.getInt(TrajectoryFormat.FRAME_COUNT_OFFSET),
+					(channel.size() - TrajectoryFormat.HEADER_SIZE) / frameSize);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		framesPerRegion = (int) Math.max(1, REGION_SIZE / frameSize);
+		regions = new MappedByteBuffer[(frameCount + framesPerRegion - 1) / framesPerRegion];
+	}
+
+	public int getVertexCount() {
+		return vertexCount;
+	}
+
+	public int getFrameCount() {
+		return frameCount;
+	}
+
+	/**
+	 * @return the number of iterations between two frames
+	 */
+	public int getInterval() {
+		return interval;
+	}
+
+	public int getFrameWidth() {
+		return frameWidth;
+	}
+
+	public int getFrameHeight() {
+		return frameHeight;
+	}
+
+	/**
+	 * @param frame index of the frame
+	 * @return the iteration the frame was recorded at
+	 */
+	public int getIteration(int frame) throws IOException {
+		return region(frame).getInt(offset(frame));
+	}
+
+	/**
+	 * @param frame index of the frame
+	 * @return the temperature at the time the frame was recorded
+	 */
+	public double getTemperature(int frame) throws IOException {
+		return region(frame).getFloat(offset(frame) + 4);
+	}
+
+	/**
+	 * Reads the positions of a frame.
+	 *
+	 * @param frame index of the frame
+	 * @param x receives the x-coordinates, of at least vertex count length
+	 * @param y receives the y-coordinates, of at least vertex count length
+	 */
+	public void readFrame(int frame, float[] x, float[] y) throws IOException {
+		MappedByteBuffer region = region(frame);
+		int offset = offset(frame) + 8;
+		for (int i = 0; i < vertexCount; i++, offset += 4) {
+			x[i] = region.getFloat(offset);
+		}
+		for (int i = 0; i < vertexCount; i++, offset += 4) {
+			y[i] = region.getFloat(offset);
+		}
+	}
+
+	private MappedByteBuffer region(int frame) throws IOException {
+		if (frame < 0 || frame >= frameCount) {
+			throw new IndexOutOfBoundsException("frame " + frame + " of " + frameCount);
+		}
+		int r = frame / framesPerRegion;
+		if (regions[r] == null) {
+			long first = (long) r * framesPerRegion;
+			long frames = Math.min(framesPerRegion, frameCount - first);
+			regions[r] = channel.map(MapMode.READ_ONLY, TrajectoryFormat.HEADER_SIZE + first * frameSize,
+					frames * frameSize);
+		}
+		return regions[r];
+	}
+
+	private int offset(int frame) {
+		return (int) ((frame % framesPerRegion) * frameSize);
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,138 @@
+package fdp.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Records the positions of every Nth iteration of a simulation to a trajectory
+ * file, see {@link TrajectoryFormat}. Frames are written into memory-mapped
+ * regions of the file, so recording a frame costs about as much as copying the
+ * positions once. The frame count in the header is updated after every frame,
+ * so a trajectory can be read while it is still being recorded.
+ */
+public class TrajectoryRecorder implements Closeable {
+
+	// frames mapped at once, at least one
+	private static final long REGION_SIZE = 1 << 24;
+
+	private final FileChannel channel;
+	private final int interval;
+
+	private MappedByteBuffer header;
+	private MappedByteBuffer region;
+	private int vertexCount = -1;
+	private long frameSize;
+	private long regionStart;
+	private int frameCount;
+
+	/**
+	 * Creates a new recorder, the file is replaced if it exists.
+	 *
+	 * @param file the trajectory file
+	 * @param interval record every interval-th iteration
+	 * @throws IOException when the file cannot be created
+	 */
+	public TrajectoryRecorder(Path file, int interval) throws IOException {
+		if (interval < 1) {
+			throw new IllegalArgumentException("interval must be positive");
+		}
+		this.interval = interval;
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	/**
+	 * Writes the header, has to be called once before the first frame.
+	 *
+	 * @param vertexCount number of vertices of every frame
+	 * @param frameWidth width of the layout frame
+	 * @param frameHeight height of the layout frame
+	 */
+	public void start(int vertexCount, int frameWidth, int frameHeight) {
+		if (this.vertexCount != -1) {
+			throw new IllegalStateException("recording has already been started");
+		}
+		this.vertexCount = vertexCount;
+		this.frameSize = TrajectoryFormat.frameSize(vertexCount);
+		try {
+			header = channel.map(MapMode.READ_WRITE, 0, TrajectoryFormat.HEADER_SIZE);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		header.putInt(TrajectoryFormat.MAGIC).putInt(TrajectoryFormat.VERSION).putInt(vertexCount).putInt(0)
+				.putInt(interval).putInt(frameWidth).putInt(frameHeight);
+	}
+
+	/**
+	 * Records the positions if the iteration is a multiple of the interval.
+	 *
+	 * @param iteration the number of steps simulated so far
+	 * @param t the current temperature
+	 * @param x x-coordinates of the vertices
+	 * @param y y-coordinates of the vertices
+	 */
+	public void record(int iteration, double t, double[] x, double[] y) {
+		if (iteration % interval != 0) {
+			return;
+		}
+		if (vertexCount == -1) {
+			throw new IllegalStateException("recording has not been started");
+		}
+		long start = TrajectoryFormat.HEADER_SIZE + frameCount * frameSize;
+		try {
+			if (region == null || start + frameSize > regionStart + region.capacity()) {
+				regionStart = start;
+				long frames = Math.max(1, REGION_SIZE / frameSize);
+				region = channel.map(MapMode.READ_WRITE, start, frames * frameSize);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		int offset = (int) (start - regionStart);
+		region.putInt(offset, iteration);
+		region.putFloat(offset + 4, (float) t);
+		offset += 8;
+		for (int i = 0; i < vertexCount; i++, offset += 4) {
+			region.putFloat(offset, (float) x[i]);
+		}
+		for (int i = 0; i < vertexCount; i++, offset += 4) {
+			region.putFloat(offset, (float) y[i]);
+		}
+		header.putInt(TrajectoryFormat.FRAME_COUNT_OFFSET, ++frameCount);
+	}
+
+	/**
+	 * @return number of frames recorded so far
+	 */
+	public int getFrameCount() {
+		return frameCount;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (region != null) {
+				region.force();
+			}
+			if (header != null) {
+				header.force();
+			}
+			try {
+				// drop the unused rest of the last region
+				channel.truncate(TrajectoryFormat.HEADER_SIZE + frameCount * frameSize);
+			} catch (IOException e) {
+				// some platforms cannot truncate mapped files, readers only use the frame count
+			}
+		} finally {
+			region = null;
+			header = null;
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,238 @@
+package fdp.layout;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * The passes of a step that all kernels share: the attraction along the edges,
+ * the displacement and splitting the passes across a {@link ForkJoinPool}.
+ * The kernels differ in where they keep the positions, displacements and
+ * edges, {@link LayoutKernel} in arrays on the heap and {@link MappedKernel}
+ * in the buffers of a mapped layout, and the passes reach them through the
+ * accessors only. As long as only one kind of kernel is in use, the JIT
+ * compiles the accessors down to plain array or buffer reads.
+ * <p>
+ * Every vertex sums up its own forces in a fixed order and only writes its
+ * own entries, so the result does not depend on the number of threads.
+ */
+abstract class AbstractKernel {
+
+	/**
+	 * Sums up the repulsive and attractive forces.
+	 */
+	static final int FORCES = 0;
+	static final int REPULSION = 1;
+	static final int ATTRACTION = 2;
+	/**
+	 * Displaces the vertices by their forces.
+	 */
+	static final int DISPLACEMENT = 3;
+
+	final int frameWidth;
+	final int frameHeight;
+	final double k;
+	final DoubleBinaryOperator attractiveForce;
+	final DoubleBinaryOperator repulsiveForce;
+
+	private ForkJoinPool pool;
+	private int grain;
+
+	AbstractKernel(int frameWidth, int frameHeight, double k, DoubleBinaryOperator attractiveForce,
+			DoubleBinaryOperator repulsiveForce) {
+		this.frameWidth = frameWidth;
+		this.frameHeight = frameHeight;
+		this.k = k;
+		this.attractiveForce = attractiveForce;
+		this.repulsiveForce = repulsiveForce;
+	}
+
+	abstract int vertexCount();
+
+	abstract double x(int i);
+
+	abstract double y(int i);
+
+	abstract void setPosition(int i, double x, double y);
+
+	abstract double dispX(int i);
+
+	abstract double dispY(int i);
+
+	abstract void setDisplacement(int i, double fx, double fy);
+
+	/**
+	 * @return index of the first edge of vertex i
+	 */
+	abstract int edgeStart(int i);
+
+	/**
+	 * @return index after the last edge of vertex i
+	 */
+	abstract int edgeEnd(int i);
+
+	/**
+	 * @return the vertex edge e leads to
+	 */
+	abstract int target(int e);
+
+	/**
+	 * Sets the displacements of the vertices from to to - 1 to their
+	 * repulsive forces.
+	 */
+	abstract void repulse(int from, int to);
+
+	/**
+	 * Assigns random positions inside the frame to all vertices.
+	 */
+	public void randomizePositions() {
+		for (int i = 0, n = vertexCount(); i < n; i++) {
+			setPosition(i, Math.random() * frameWidth, Math.random() * frameHeight);
+		}
+	}
+
+	/**
+	 * Runs a pass over all vertices, split across the pool if one is set.
+	 *
+	 * @param pass the pass, e.g. {@link #FORCES}
+	 * @param t the temperature, i.e. the maximum displacement of a vertex
+	 * @return the highest net force acting on a vertex for the displacement
+	 *         pass, 0 for the others
+	 */
+	final double run(int pass, double t) {
+		if (pool == null) {
+			return run(pass, 0, vertexCount(), t);
+		}
+		return pool.invoke(new PassTask(0, vertexCount(), pass, t));
+	}
+
+	private double run(int pass, int from, int to, double t) {
+		switch (pass) {
+		case DISPLACEMENT:
+			return displace(from, to, t);
+		case REPULSION:
+			repulse(from, to);
+			break;
+		case ATTRACTION:
+			attract(from, to);
+			break;
+		default:
+			repulse(from, to);
+			attract(from, to);
+		}
+		return 0;
+	}
+
+	/**
+	 * Adds the attractive forces between the vertices from to to - 1 and their
+	 * neighbours to the displacements.
+	 */
+	void attract(int from, int to) {
+		for (int i = from; i < to; i++) {
+			double xi = x(i);
+			double yi = y(i);
+			double fx = 0;
+			double fy = 0;
+			for (int e = edgeStart(i), end = edgeEnd(i); e < end; e++) {
+				int j = target(e);
+				double dx = xi - x(j);
+				double dy = yi - y(j);
+				double d = Math.sqrt(dx * dx + dy * dy);
+				if (d > 0) {
+					double f = attractiveForce.applyAsDouble(d, k) / d;
+					fx -= dx * f;
+					fy -= dy * f;
+				}
+			}
+			setDisplacement(i, dispX(i) + fx, dispY(i) + fy);
+		}
+	}
+
+	/**
+	 * Displaces the vertices from to to - 1, limited by the temperature and the
+	 * frame.
+	 *
+	 * @return the highest net force acting on one of the vertices
+	 */
+	double displace(int from, int to, double t) {
+		double maxForce = 0;
+		for (int i = from; i < to; i++) {
+			double fx = dispX(i);
+			double fy = dispY(i);
+			double xi = x(i);
+			double yi = y(i);
+			double length = Math.sqrt(fx * fx + fy * fy);
+			maxForce = Math.max(maxForce, length);
+			if (length > 0) {
+				// limit maximum displacement by temperature t
+				double scale = Math.min(length, t) / length;
+				xi += fx * scale;
+				yi += fy * scale;
+			}
+			// prevent being displaced outside the frame
+			setPosition(i, Math.min(frameWidth, Math.max(0.0, xi)), Math.min(frameHeight, Math.max(0.0, yi)));
+		}
+		return maxForce;
+	}
+
+	/**
+	 * Sets the pool used to split the passes of a step, null runs them on the
+	 * calling thread. The forces have to be safe for concurrent use.
+	 *
+	 * @param pool
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+		if (pool != null) {
+			// a few ranges per thread to balance uneven work, e.g. of Barnes-Hut
+			grain = Math.max(64, vertexCount() / (pool.getParallelism() * 8));
+		}
+	}
+
+	/**
+	 * Sums up the squared net forces of the last step, which is the energy of
+	 * the system as used by Hu. Takes a pass over all vertices.
+	 *
+	 * @return the energy before the last step was taken
+	 */
+	public double getEnergy() {
+		double energy = 0;
+		for (int i = 0, n = vertexCount(); i < n; i++) {
+			energy += dispX(i) * dispX(i) + dispY(i) * dispY(i);
+		}
+		return energy;
+	}
+
+	/**
+	 * Runs one pass over a range of vertices, splitting it in halves until it
+	 * is small enough.
+	 */
+	private class PassTask extends RecursiveTask<Double> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+		private final int pass;
+		private final double t;
+
+		PassTask(int from, int to, int pass, double t) {
+			this.from = from;
+			this.to = to;
+			this.pass = pass;
+			this.t = t;
+		}
+
+		@Override
+		protected Double compute() {
+			if (to - from <= grain) {
+				return run(pass, from, to, t);
+			}
+			int mid = (from + to) >>> 1;
+			PassTask left = new PassTask(from, mid, pass, t);
+			left.fork();
+			double right = new PassTask(mid, to, pass, t).compute();
+			return Math.max(left.join(), right);
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package fdp.layout;
+
+/**
+ * Adaptive step length control after Hu, "Efficient and high quality
+ * force-directed graph drawing" (2005), together with a convergence test on
+ * the energy of the system, i.e. the sum of the squared net forces.
+ * <p>
+ * As long as the energy decreases, the temperature is kept and raised after
+ * every {@link #PATIENCE} such steps in a row, so a layout that is making
+ * progress speeds up. A step that raises the energy cools the temperature
+ * down. The layout has converged once the mean energy of the last
+ * {@code window} steps differs by less than the tolerance from the mean of the
+ * window before, relative to that mean. Comparing means over windows ignores
+ * the oscillation of single steps, which does not end while vertices keep
+ * moving by the minimum temperature.
+ */
+public class AdaptiveCooling {
+
+	/**
+	 * Number of steps in a row with decreasing energy before the temperature
+	 * is raised.
+	 */
+	private static final int PATIENCE = 5;
+
+	private final double ratio;
+	private final double maxTemperature;
+	private final double minTemperature;
+	private final double tolerance;
+
+	private final double[] energies;
+	private int count;
+
+	private double previousEnergy = Double.POSITIVE_INFINITY;
+	private int progress;
+
+	/**
+	 * Creates a new adaptive cooling.
+	 *
+	 * @param ratio the factor a temperature is cooled down by, between 0 and
+	 *            1, Hu proposes 0.9
+	 * @param maxTemperature the temperature is never raised above this
+	 * @param minTemperature the temperature is never cooled below this
+	 * @param window number of steps whose mean energy is compared
+	 * @param tolerance the relative change of the mean energy between two
+	 *            windows below which the layout has converged
+	 */
+	public AdaptiveCooling(double ratio, double maxTemperature, double minTemperature, int window,
+			double tolerance) {
+		this.ratio = ratio;
+		this.maxTemperature = maxTemperature;
+		this.minTemperature = minTemperature;
+		this.tolerance = tolerance;
+		// the last two windows
+		this.energies = new double[2 * Math.max(1, window)];
+	}
+
+	/**
+	 * Computes the temperature of the next step.
+	 *
+	 * @param t the temperature of the step just simulated
+	 * @param energy the energy of the system before that step was taken
+	 * @return the temperature of the next step
+	 */
+	public double cool(double t, double energy) {
+		energies[count++ % energies.length] = energy;
+		if (energy < previousEnergy) {
+			if (++progress >= PATIENCE) {
+				progress = 0;
+				t /= ratio;
+			}
+		} else {
+			progress = 0;
+			t *= ratio;
+		}
+		previousEnergy = energy;
+		return Math.min(maxTemperature, Math.max(minTemperature, t));
+	}
+
+	/**
+	 * @return true if the mean energy of the last window steps changed less
+	 *         than the tolerance compared to the window before
+	 */
+	public boolean isConverged() {
+		if (count < energies.length) {
+			return false;
+		}
+		int window = energies.length / 2;
+		double previous = 0;
+		double last = 0;
+		for (int i = 0; i < window; i++) {
+			previous += energies[(count + i) % energies.length];
+			last += energies[(count + window + i) % energies.length];
+		}
+		return Math.abs(last - previous) <= tolerance * previous;
+	}
+}
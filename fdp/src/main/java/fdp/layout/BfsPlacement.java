@@ -0,0 +1,119 @@
+package fdp.layout;
+
+import java.util.Arrays;
+
+import fdp.graph.CompactGraph;
+
+/**
+ * Places the vertices in the layers of a breadth-first search. The search
+ * starts at a peripheral vertex, found by searching twice, so the layers run
+ * along the longest path of the graph. Layer d becomes the row d and every
+ * vertex is placed at its rank within the layer, spread over the width of the
+ * widest layer. Children are visited in the order of their parents, so
+ * neighbouring layers keep the same left to right order. Runs in O(|V| +
+ * |E|).
+ */
+public class BfsPlacement {
+
+	private BfsPlacement() {
+	}
+
+	/**
+	 * Computes the positions of all vertices, components one after another
+	 * from left to right.
+	 *
+	 * @param graph the graph to place
+	 * @param x receives the x-coordinates, in units of one vertex distance
+	 * @param y receives the y-coordinates, in units of one layer
+	 */
+	public static void place(CompactGraph graph, double[] x, double[] y) {
+		int n = graph.getVertexCount();
+		int[] layer = new int[n];
+		Arrays.fill(layer, -1);
+		int[] seen = new int[n];
+		Arrays.fill(seen, -1);
+		int[] queue = new int[n];
+		double left = 0;
+
+		for (int start = 0; start < n; start++) {
+			if (layer[start] >= 0) {
+				continue;
+			}
+			// the last vertex found from any vertex is close to the periphery
+			int size = sweep(graph, start, seen, 2 * start, queue);
+			size = sweep(graph, queue[size - 1], seen, 2 * start + 1, queue);
+			size = layers(graph, queue[size - 1], layer, queue);
+
+			// the widest layer spans the component
+			int depth = layer[queue[size - 1]] + 1;
+			int[] widths = new int[depth];
+			for (int i = 0; i < size; i++) {
+				widths[layer[queue[i]]]++;
+			}
+			int widest = 0;
+			for (int width : widths) {
+				widest = Math.max(widest, width);
+			}
+			int[] rank = new int[depth];
+			for (int i = 0; i < size; i++) {
+				int v = queue[i];
+				int d = layer[v];
+				x[v] = left + (rank[d]++ + 0.5) * widest / widths[d];
+				y[v] = d;
+			}
+			left += widest + 1;
+		}
+	}
+
+	/**
+	 * Runs a breadth-first search that marks every vertex found with the
+	 * stamp.
+	 *
+	 * @return number of vertices found, queue holds them in the order found
+	 */
+	private static int sweep(CompactGraph graph, int root, int[] seen, int stamp, int[] queue) {
+		int[] offsets = graph.getOffsets();
+		int[] targets = graph.getTargets();
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = root;
+		seen[root] = stamp;
+		while (head < tail) {
+			int v = queue[head++];
+			for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+				int u = targets[e];
+				if (seen[u] != stamp) {
+					seen[u] = stamp;
+					queue[tail++] = u;
+				}
+			}
+		}
+		return tail;
+	}
+
+	/**
+	 * Runs a breadth-first search that sets the layer of every vertex found,
+	 * layer must be -1 for all of them.
+	 *
+	 * @return number of vertices found, queue holds them in the order found
+	 */
+	private static int layers(CompactGraph graph, int root, int[] layer, int[] queue) {
+		int[] offsets = graph.getOffsets();
+		int[] targets = graph.getTargets();
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = root;
+		layer[root] = 0;
+		while (head < tail) {
+			int v = queue[head++];
+			for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+				int u = targets[e];
+				if (layer[u] < 0) {
+					layer[u] = layer[v] + 1;
+					queue[tail++] = u;
+				}
+			}
+		}
+		return tail;
+	}
+}
@@ -0,0 +1,82 @@
+package fdp.layout;
+
+/**
+ * The grid variant of the repulsion by Fruchterman and Reingold. The plane is
+ * divided into square cells whose side length equals the cutoff radius, so all
+ * vertices closer than the cutoff are found in the 3x3 cells around a vertex.
+ * The cells are hashed to buckets, which the subclasses keep as linked lists
+ * of vertices in arrays or buffers of their own.
+ */
+abstract class Grid {
+
+	static final int NONE = -1;
+
+	final double cutoff;
+	final int mask;
+
+	/**
+	 * @param cutoff the cutoff radius, also the side length of a cell
+	 * @param buckets the number of buckets, a power of two
+	 */
+	Grid(double cutoff, int buckets) {
+		this.cutoff = cutoff;
+		this.mask = buckets - 1;
+	}
+
+	/**
+	 * @return the first vertex in bucket b, {@link #NONE} if it is empty
+	 */
+	abstract int head(int b);
+
+	/**
+	 * @return the vertex after i in its bucket, {@link #NONE} if it is the last
+	 */
+	abstract int next(int i);
+
+	abstract int cellX(int i);
+
+	abstract int cellY(int i);
+
+	/**
+	 * Sets the displacement of vertex i to the repulsive forces of all vertices
+	 * closer than the cutoff radius.
+	 *
+	 * @param kernel the kernel whose positions are hashed
+	 * @param i index of the vertex
+	 */
+	final void repulse(AbstractKernel kernel, int i) {
+		double xi = kernel.x(i);
+		double yi = kernel.y(i);
+		int cx = cellX(i);
+		int cy = cellY(i);
+		double fx = 0;
+		double fy = 0;
+		for (int ox = cx - 1; ox <= cx + 1; ox++) {
+			for (int oy = cy - 1; oy <= cy + 1; oy++) {
+				for (int j = head(hash(ox, oy)); j != NONE; j = next(j)) {
+					// buckets may be shared by several cells, only visit the cell itself
+					if (j == i || cellX(j) != ox || cellY(j) != oy) {
+						continue;
+					}
+					double dx = xi - kernel.x(j);
+					double dy = yi - kernel.y(j);
+					double d = Math.sqrt(dx * dx + dy * dy);
+					if (d > 0 && d < cutoff) {
+						double f = kernel.repulsiveForce.applyAsDouble(d, kernel.k) / d;
+						fx += dx * f;
+						fy += dy * f;
+					}
+				}
+			}
+		}
+		kernel.setDisplacement(i, fx, fy);
+	}
+
+	final int cell(double coordinate) {
+		return (int) Math.floor(coordinate / cutoff);
+	}
+
+	final int hash(int cx, int cy) {
+		return (cx * 0x9E3779B1 ^ cy * 0x85EBCA77) & mask;
+	}
+}
@@ -0,0 +1,943 @@
+package fdp.layout;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.DoubleBinaryOperator;
+
+import fdp.Parameter;
+import fdp.RepulsionMode;
+import fdp.VertexOrder;
+import fdp.force.PowerLaw;
+import fdp.graph.CompactGraph;
+import fdp.graph.Vertex;
+
+/**
+ * Runs the steps of the force-directed placement on primitive arrays. The
+ * positions and displacements of all vertices are kept in structure-of-arrays
+ * form and the edges are read from a {@link CompactGraph}, so a step does not
+ * allocate any objects. Positions are only copied from and to the
+ * {@link Vertex} objects on request.
+ * <p>
+ * If a {@link ForkJoinPool} is set, the force and displacement passes are split
+ * across it. The attraction, the displacement and the passes are shared with
+ * {@link MappedKernel}, see {@link AbstractKernel}.
+ * <p>
+ * On Java 17 and later with the module jdk.incubator.vector, the exact
+ * repulsion of {@link PowerLaw} forces such as k * k / d and the displacement
+ * process several vertices at once with SIMD instructions, see
+ * {@link VectorPasses}. The result differs from the scalar loops only by
+ * rounding.
+ * <p>
+ * The vertices can be kept in an order of their own, see
+ * {@link #reorder(VertexOrder)}, which keeps neighbours close in memory. All
+ * methods still take and return positions indexed like the graph.
+ * <p>
+ * A measured kernel also records how long the phases of the last step took
+ * and how far the vertices moved. Unmeasured kernels skip this work.
+ * <p>
+ * Vertices and edges can be added and removed while the kernel is in use, see
+ * {@link #addVertex(Vertex, double, double)}. Every change costs time in
+ * proportion to the degrees of the vertices involved: the edges of every
+ * vertex get some room to grow, a vertex whose edges outgrow it moves them to
+ * the end of the edge array. Removing a vertex moves the last vertex to its
+ * index. {@link #getGraph()} rebuilds the compact graph once after changes.
+ */
+public class LayoutKernel extends AbstractKernel {
+
+	private CompactGraph graph;
+	// true if vertices or edges changed since the graph was built
+	private boolean changed;
+	private Vertex[] vertices;
+	private int n;
+	// the edges of vertex i are targets[offsets[i]] to targets[ends[i] - 1]
+	private int[] offsets;
+	private int[] targets;
+	// null while the edges are packed as in the graph, so offsets[i + 1] is the end
+	private int[] ends;
+	// the edges of vertex i may grow up to limits[i]
+	private int[] limits;
+	// the edges are stored below used
+	private int used;
+
+	private double[] x;
+	private double[] y;
+	private double[] dispX;
+	private double[] dispY;
+
+	private RepulsionMode repulsionMode;
+	private final double theta;
+
+	private QuadTree quadTree;
+	private final VectorPasses vectorPasses = VectorPasses.INSTANCE;
+	// the exact repulsion with vectorPasses, as factor c * d^e of the distance vector
+	private final boolean vectorRepulsion;
+	private final double repulsionFactor;
+	private final int repulsionExponent;
+	private SpatialHash spatialHash;
+
+	// graph index of every vertex in the order of the kernel and its inverse, null in the order of the graph
+	private int[] order;
+	private int[] rank;
+	private double[] graphX;
+	private double[] graphY;
+
+	private boolean measured;
+	private long repulsionNanos;
+	private long attractionNanos;
+	private long displacementNanos;
+	private double maxDisplacement;
+	private double meanDisplacement;
+
+	/**
+	 * Creates a new kernel, initially all vertices are located at the origin.
+	 *
+	 * @param graph the graph to layout
+	 * @param p parameters for the simulation
+	 * @param k the optimal distance between vertices
+	 * @param attractiveForce the attractive force as function of distance and k
+	 * @param repulsiveForce the repulsive force as function of distance and k
+	 */
+	public LayoutKernel(CompactGraph graph, Parameter p, double k, DoubleBinaryOperator attractiveForce,
+			DoubleBinaryOperator repulsiveForce) {
+		super(p.getFrameWidth(), p.getFrameHeight(), k, attractiveForce, repulsiveForce);
+		this.graph = graph;
+		this.vertices = graph.getVertices();
+		this.n = graph.getVertexCount();
+		this.offsets = graph.getOffsets();
+		this.targets = graph.getTargets();
+		this.x = new double[n];
+		this.y = new double[n];
+		this.dispX = new double[n];
+		this.dispY = new double[n];
+		this.repulsionMode = p.getRepulsionMode();
+		this.theta = p.getTheta();
+		this.quadTree = repulsionMode == RepulsionMode.BARNES_HUT ? new QuadTree() : null;
+
+		double e = Double.NaN;
+		if (vectorPasses != null && repulsionMode == RepulsionMode.EXACT && repulsiveForce instanceof PowerLaw) {
+			// the force c * d^a * k^b divided by d
+			PowerLaw law = (PowerLaw) repulsiveForce;
+			e = law.getDistanceExponent() - 1;
+			this.repulsionFactor = law.getCoefficient() * Math.pow(k, law.getOptimalDistanceExponent());
+		} else {
+			this.repulsionFactor = 0;
+		}
+		this.vectorRepulsion = e == Math.rint(e) && Math.abs(e) <= VectorPasses.MAX_EXPONENT;
+		this.repulsionExponent = vectorRepulsion ? (int) e : 0;
+	}
+
+	@Override
+	public void randomizePositions() {
+		super.randomizePositions();
+		positionsChanged();
+	}
+
+	/**
+	 * Places the vertices at the given coordinates, e.g. of an initial
+	 * placement, stretched to fill the frame in both directions apart from a
+	 * small margin. Every vertex is moved by a small random distance as well,
+	 * since vertices at the same position would never repel each other.
+	 *
+	 * @param px x-coordinates of the vertices in any unit
+	 * @param py y-coordinates of the vertices in any unit
+	 */
+	public void placePositions(double[] px, double[] py) {
+		fit(toKernelOrder(px), x, frameWidth);
+		fit(toKernelOrder(py), y, frameHeight);
+		for (int i = 0; i < n; i++) {
+			x[i] = Math.min(frameWidth, Math.max(0.0, x[i] + (Math.random() - 0.5) * k / 10));
+			y[i] = Math.min(frameHeight, Math.max(0.0, y[i] + (Math.random() - 0.5) * k / 10));
+		}
+		positionsChanged();
+	}
+
+	/**
+	 * Maps the coordinates linearly to 5% to 95% of the length.
+	 */
+	private void fit(double[] from, double[] to, int length) {
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < n; i++) {
+			min = Math.min(min, from[i]);
+			max = Math.max(max, from[i]);
+		}
+		double margin = 0.05 * length;
+		double scale = max > min ? (length - 2 * margin) / (max - min) : 0;
+		for (int i = 0; i < n; i++) {
+			to[i] = scale > 0 ? margin + (from[i] - min) * scale : length / 2.0;
+		}
+	}
+
+	/**
+	 * Copies the positions of the Vertex objects into the kernel, keeps the
+	 * current positions if the graph has no Vertex objects.
+	 */
+	public void readPositions() {
+		if (vertices == null) {
+			positionsChanged();
+			return;
+		}
+		for (int i = 0; i < n; i++) {
+			x[i] = vertices[graphIndex(i)].getPos().x;
+			y[i] = vertices[graphIndex(i)].getPos().y;
+		}
+		positionsChanged();
+	}
+
+	/**
+	 * Copies the positions of the kernel into the Vertex objects, does nothing
+	 * if the graph has no Vertex objects.
+	 */
+	public void writePositions() {
+		if (vertices == null) {
+			return;
+		}
+		for (int i = 0; i < n; i++) {
+			vertices[graphIndex(i)].getPos().set(x[i], y[i]);
+		}
+	}
+
+	/**
+	 * Simulates a single step.
+	 *
+	 * @param t the temperature, i.e. the maximum displacement of a vertex
+	 * @return the highest net force acting on a vertex before the displacement
+	 */
+	public double step(double t) {
+		if (measured) {
+			return measuredStep(t);
+		}
+		if (quadTree != null) {
+			quadTree.build(x, y, n);
+		}
+		// all forces have to be known before any vertex is moved
+		run(FORCES, t);
+		double maxForce = run(DISPLACEMENT, t);
+		updateSpatialHash();
+		return maxForce;
+	}
+
+	/**
+	 * Simulates a single step like {@link #step(double)}, but runs the
+	 * repulsion and attraction in separate passes to time them, and sums up
+	 * the displacements afterwards.
+	 */
+	private double measuredStep(double t) {
+		long start = System.nanoTime();
+		if (quadTree != null) {
+			quadTree.build(x, y, n);
+		}
+		run(REPULSION, t);
+		long repulsed = System.nanoTime();
+		run(ATTRACTION, t);
+		long attracted = System.nanoTime();
+		double maxForce = run(DISPLACEMENT, t);
+		updateSpatialHash();
+		long displaced = System.nanoTime();
+		repulsionNanos = repulsed - start;
+		attractionNanos = attracted - repulsed;
+		displacementNanos = displaced - attracted;
+
+		// the displacements still hold the net forces of the step
+		double max = 0;
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			double moved = Math.min(Math.sqrt(dispX[i] * dispX[i] + dispY[i] * dispY[i]), t);
+			max = Math.max(max, moved);
+			sum += moved;
+		}
+		maxDisplacement = max;
+		meanDisplacement = n == 0 ? 0 : sum / n;
+		return maxForce;
+	}
+
+	private void updateSpatialHash() {
+		if (spatialHash != null) {
+			for (int i = 0; i < n; i++) {
+				spatialHash.update(i);
+			}
+		}
+	}
+
+	/**
+	 * Simulates a single step in which only the given vertices move. All other
+	 * vertices stay where they are but still repel and attract the moving
+	 * ones. With grid repulsion, a step costs time in proportion to the number
+	 * of moving vertices and their neighbours. Exact repulsion adds a pass
+	 * over all vertices for every moving one, Barnes-Hut the quadtree of all
+	 * vertices.
+	 *
+	 * @param t the temperature, i.e. the maximum displacement of a vertex
+	 * @param active graph indices of the vertices that move
+	 * @return the highest net force acting on a moving vertex before the
+	 *         displacement
+	 */
+	public double step(double t, int[] active) {
+		return step(t, active, null, null);
+	}
+
+	/**
+	 * Simulates a single step like {@link #step(double, int[])} and adds
+	 * further forces to the moving vertices before they are displaced, e.g.
+	 * of vertices that are not part of the kernel.
+	 *
+	 * @param t the temperature, i.e. the maximum displacement of a vertex
+	 * @param active graph indices of the vertices that move
+	 * @param forceX x-components of the further forces by graph index, null
+	 *            for none
+	 * @param forceY y-components of the further forces by graph index
+	 * @return the highest net force acting on a moving vertex before the
+	 *         displacement
+	 */
+	public double step(double t, int[] active, double[] forceX, double[] forceY) {
+		if (quadTree != null) {
+			quadTree.build(x, y, n);
+		}
+		for (int a : active) {
+			int i = kernelIndex(a);
+			repulse(i, i + 1);
+			attract(i, i + 1);
+			if (forceX != null) {
+				dispX[i] += forceX[a];
+				dispY[i] += forceY[a];
+			}
+		}
+		double maxForce = 0;
+		for (int a : active) {
+			int i = kernelIndex(a);
+			maxForce = Math.max(maxForce, displace(i, i + 1, t));
+		}
+		if (spatialHash != null) {
+			for (int a : active) {
+				spatialHash.update(kernelIndex(a));
+			}
+		}
+		return maxForce;
+	}
+
+	/**
+	 * Moves the vertices from to from + count - 1 to the given positions as
+	 * they are, e.g. vertices that are simulated elsewhere.
+	 *
+	 * @param from graph index of the first vertex
+	 * @param count number of vertices
+	 * @param px x-coordinates of the vertices, the first one of the vertex from
+	 * @param py y-coordinates of the vertices, the first one of the vertex from
+	 */
+	public void setPositions(int from, int count, double[] px, double[] py) {
+		for (int j = 0; j < count; j++) {
+			int i = kernelIndex(from + j);
+			x[i] = px[j];
+			y[i] = py[j];
+			if (spatialHash != null) {
+				spatialHash.update(i);
+			}
+		}
+		if (spatialHash == null) {
+			positionsChanged();
+		}
+	}
+
+	/**
+	 * Adds a vertex without edges.
+	 *
+	 * @param vertex the Vertex object the positions are copied to, ignored if
+	 *            the graph has no Vertex objects
+	 * @param px x-coordinate of the vertex, kept inside the frame
+	 * @param py y-coordinate of the vertex, kept inside the frame
+	 * @return graph index of the new vertex, the former vertex count
+	 */
+	public int addVertex(Vertex vertex, double px, double py) {
+		editable();
+		boolean grown = n == x.length;
+		if (grown) {
+			int capacity = Math.max(2 * n, 16);
+			x = Arrays.copyOf(x, capacity);
+			y = Arrays.copyOf(y, capacity);
+			dispX = Arrays.copyOf(dispX, capacity);
+			dispY = Arrays.copyOf(dispY, capacity);
+			offsets = Arrays.copyOf(offsets, capacity + 1);
+			ends = Arrays.copyOf(ends, capacity);
+			limits = Arrays.copyOf(limits, capacity);
+			if (vertices != null) {
+				vertices = Arrays.copyOf(vertices, capacity);
+			}
+		}
+		int i = n++;
+		x[i] = Math.min(frameWidth, Math.max(0.0, px));
+		y[i] = Math.min(frameHeight, Math.max(0.0, py));
+		dispX[i] = 0;
+		dispY[i] = 0;
+		// no room for edges, the first one moves them to the end
+		offsets[i] = used;
+		ends[i] = used;
+		limits[i] = used;
+		if (vertices != null) {
+			vertices[i] = vertex;
+		}
+		if (grown) {
+			// the hash refers to the old arrays
+			positionsChanged();
+		} else if (spatialHash != null) {
+			spatialHash.add(i);
+		}
+		changed = true;
+		return i;
+	}
+
+	/**
+	 * Removes a vertex and its edges. The last vertex takes its index, so the
+	 * graph indices stay dense.
+	 *
+	 * @param v graph index of the vertex
+	 * @return the former graph index of the vertex that now has index v, v
+	 *         itself if it was the last one
+	 */
+	public int removeVertex(int v) {
+		editable();
+		for (int e = offsets[v]; e < ends[v]; e++) {
+			if (targets[e] != v) {
+				removeTarget(targets[e], v);
+			}
+		}
+		if (spatialHash != null) {
+			spatialHash.remove(v);
+		}
+		int last = --n;
+		if (last != v) {
+			if (spatialHash != null) {
+				spatialHash.remove(last);
+			}
+			x[v] = x[last];
+			y[v] = y[last];
+			dispX[v] = dispX[last];
+			dispY[v] = dispY[last];
+			offsets[v] = offsets[last];
+			ends[v] = ends[last];
+			limits[v] = limits[last];
+			for (int e = offsets[v]; e < ends[v]; e++) {
+				int u = targets[e];
+				if (u == last) {
+					targets[e] = v;
+				} else {
+					replaceTarget(u, last, v);
+				}
+			}
+			if (vertices != null) {
+				vertices[v] = vertices[last];
+			}
+			if (spatialHash != null) {
+				spatialHash.add(v);
+			}
+		}
+		if (vertices != null) {
+			vertices[last] = null;
+		}
+		changed = true;
+		return last;
+	}
+
+	/**
+	 * Adds an edge between two vertices.
+	 *
+	 * @param v graph index of one vertex
+	 * @param u graph index of the other vertex
+	 */
+	public void addEdge(int v, int u) {
+		editable();
+		addTarget(v, u);
+		addTarget(u, v);
+		changed = true;
+	}
+
+	/**
+	 * Removes an edge between two vertices, does nothing if there is none.
+	 *
+	 * @param v graph index of one vertex
+	 * @param u graph index of the other vertex
+	 */
+	public void removeEdge(int v, int u) {
+		editable();
+		if (removeTarget(v, u)) {
+			removeTarget(u, v);
+			changed = true;
+		}
+	}
+
+	/**
+	 * Prepares the edges and indices for a change: unpacks the edges and
+	 * returns to the order of the graph.
+	 */
+	private void editable() {
+		if (order != null) {
+			permute(rank);
+			order = null;
+			rank = null;
+			graphX = null;
+			graphY = null;
+		}
+		if (ends == null) {
+			// copies, the arrays may be the ones of the graph
+			ends = Arrays.copyOfRange(offsets, 1, x.length + 1);
+			limits = ends.clone();
+			offsets = Arrays.copyOf(offsets, x.length + 1);
+			targets = Arrays.copyOf(targets, Math.max(2 * targets.length, 16));
+			used = offsets[n];
+			if (vertices != null) {
+				vertices = Arrays.copyOf(vertices, x.length);
+			}
+		}
+	}
+
+	private void addTarget(int v, int u) {
+		if (ends[v] == limits[v]) {
+			int degree = ends[v] - offsets[v];
+			int capacity = 2 * degree + 2;
+			if (used + capacity > targets.length) {
+				// room for at least n more edges, so packing costs O(1) per edge added
+				pack(2 * (edgeCount() + capacity) + n);
+			}
+			// moves the edges to the end, the old ones are left unused until the next packing
+			System.arraycopy(targets, offsets[v], targets, used, degree);
+			offsets[v] = used;
+			ends[v] = used + degree;
+			limits[v] = used + capacity;
+			used += capacity;
+		}
+		targets[ends[v]++] = u;
+	}
+
+	/**
+	 * Removes one edge from v to u.
+	 *
+	 * @return false if v has no edge to u
+	 */
+	private boolean removeTarget(int v, int u) {
+		for (int e = offsets[v]; e < ends[v]; e++) {
+			if (targets[e] == u) {
+				targets[e] = targets[--ends[v]];
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void replaceTarget(int v, int from, int to) {
+		for (int e = offsets[v]; e < ends[v]; e++) {
+			if (targets[e] == from) {
+				targets[e] = to;
+			}
+		}
+	}
+
+	/**
+	 * Packs the edges of all vertices without room between them, like the
+	 * edges of a graph.
+	 */
+	private void pack() {
+		if (ends != null) {
+			pack(edgeCount());
+			ends = null;
+			limits = null;
+		}
+	}
+
+	/**
+	 * Moves the edges of all vertices to the start of a new array of the
+	 * given length, each without room to grow.
+	 */
+	private void pack(int length) {
+		int[] packed = new int[length];
+		int position = 0;
+		for (int i = 0; i < n; i++) {
+			int degree = ends[i] - offsets[i];
+			System.arraycopy(targets, offsets[i], packed, position, degree);
+			offsets[i] = position;
+			position += degree;
+			ends[i] = position;
+			limits[i] = position;
+		}
+		offsets[n] = position;
+		targets = packed;
+		used = position;
+	}
+
+	/**
+	 * @return the end of the edges of vertex i in the kernel order
+	 */
+	private int end(int i) {
+		return ends == null ? offsets[i + 1] : ends[i];
+	}
+
+	/**
+	 * @return number of edges counted in both directions
+	 */
+	private int edgeCount() {
+		if (ends == null) {
+			return offsets[n];
+		}
+		int count = 0;
+		for (int i = 0; i < n; i++) {
+			count += ends[i] - offsets[i];
+		}
+		return count;
+	}
+
+	/**
+	 * Changes the way the vertices repel each other for the following steps,
+	 * e.g. to the grid for steps of a few vertices.
+	 *
+	 * @param mode the repulsion mode
+	 */
+	public void setRepulsionMode(RepulsionMode mode) {
+		repulsionMode = mode;
+		if (mode == RepulsionMode.BARNES_HUT && quadTree == null) {
+			quadTree = new QuadTree();
+		} else if (mode != RepulsionMode.BARNES_HUT) {
+			quadTree = null;
+		}
+		spatialHash = null;
+		positionsChanged();
+	}
+
+	/**
+	 * Changes the order the vertices are kept in memory and rewrites the edges
+	 * to the new indices. Does nothing for {@link VertexOrder#NONE}, so the
+	 * kernel keeps any earlier order.
+	 *
+	 * @param vertexOrder the order, the Hilbert order follows the current
+	 *            positions
+	 */
+	public void reorder(VertexOrder vertexOrder) {
+		switch (vertexOrder) {
+		case HILBERT:
+			permute(VertexOrdering.hilbert(x, y, n));
+			break;
+		case RCM:
+			pack();
+			permute(VertexOrdering.reverseCuthillMcKee(offsets, targets, n));
+			break;
+		default:
+			// keeps the order
+		}
+	}
+
+	/**
+	 * Moves the vertex at index permutation[i] to index i.
+	 */
+	private void permute(int[] permutation) {
+		int[] newIndex = new int[n];
+		for (int i = 0; i < n; i++) {
+			newIndex[permutation[i]] = i;
+		}
+		// new arrays, the old ones may be the ones of the graph
+		int[] newOffsets = new int[n + 1];
+		int[] newTargets = new int[edgeCount()];
+		for (int i = 0; i < n; i++) {
+			int v = permutation[i];
+			int position = newOffsets[i];
+			for (int e = offsets[v], end = end(v); e < end; e++) {
+				newTargets[position++] = newIndex[targets[e]];
+			}
+			newOffsets[i + 1] = position;
+		}
+		offsets = newOffsets;
+		targets = newTargets;
+		ends = null;
+		limits = null;
+
+		double[] scratch = new double[n];
+		permute(x, permutation, scratch);
+		permute(y, permutation, scratch);
+		permute(dispX, permutation, scratch);
+		permute(dispY, permutation, scratch);
+
+		int[] newOrder = new int[n];
+		for (int i = 0; i < n; i++) {
+			newOrder[i] = graphIndex(permutation[i]);
+		}
+		order = newOrder;
+		if (rank == null) {
+			rank = new int[n];
+		}
+		for (int i = 0; i < n; i++) {
+			rank[order[i]] = i;
+		}
+		positionsChanged();
+	}
+
+	private static void permute(double[] values, int[] permutation, double[] scratch) {
+		for (int i = 0; i < permutation.length; i++) {
+			scratch[i] = values[permutation[i]];
+		}
+		System.arraycopy(scratch, 0, values, 0, permutation.length);
+	}
+
+	private int graphIndex(int i) {
+		return order == null ? i : order[i];
+	}
+
+	private int kernelIndex(int v) {
+		return rank == null ? v : rank[v];
+	}
+
+	/**
+	 * @return the values indexed like the graph in the order of the kernel
+	 */
+	private double[] toKernelOrder(double[] values) {
+		if (order == null) {
+			return values;
+		}
+		double[] result = new double[n];
+		for (int i = 0; i < n; i++) {
+			result[i] = values[order[i]];
+		}
+		return result;
+	}
+
+	/**
+	 * @return the values in the order of the kernel indexed like the graph,
+	 *         written to the given array, allocated if it is null
+	 */
+	private double[] toGraphOrder(double[] values, double[] result) {
+		if (result == null || result.length != n) {
+			result = new double[n];
+		}
+		for (int i = 0; i < n; i++) {
+			result[order[i]] = values[i];
+		}
+		return result;
+	}
+
+	@Override
+	void repulse(int from, int to) {
+		switch (repulsionMode) {
+		case BARNES_HUT:
+			for (int i = from; i < to; i++) {
+				dispX[i] = 0;
+				dispY[i] = 0;
+				quadTree.accumulate(i, theta, repulsiveForce, k, dispX, dispY);
+			}
+			break;
+		case GRID:
+			for (int i = from; i < to; i++) {
+				spatialHash.repulse(this, i);
+			}
+			break;
+		default:
+			if (vectorRepulsion) {
+				vectorPasses.repulse(x, y, n, from, to, repulsionFactor, repulsionExponent, dispX, dispY);
+				break;
+			}
+			// from every vertex to every other
+			for (int i = from; i < to; i++) {
+				double xi = x[i];
+				double yi = y[i];
+				double fx = 0;
+				double fy = 0;
+				for (int j = 0; j < n; j++) {
+					double dx = xi - x[j];
+					double dy = yi - y[j];
+					double d = Math.sqrt(dx * dx + dy * dy);
+					// also skips j == i
+					if (d > 0) {
+						double f = repulsiveForce.applyAsDouble(d, k) / d;
+						fx += dx * f;
+						fy += dy * f;
+					}
+				}
+				dispX[i] = fx;
+				dispY[i] = fy;
+			}
+		}
+	}
+
+	/**
+	 * Displaces the vertices with SIMD instructions if available.
+	 */
+	@Override
+	double displace(int from, int to, double t) {
+		if (vectorPasses != null) {
+			return vectorPasses.displace(x, y, dispX, dispY, from, to, t, frameWidth, frameHeight);
+		}
+		return super.displace(from, to, t);
+	}
+
+	/**
+	 * Rebuilds the spatial hash after positions were set from outside.
+	 */
+	private void positionsChanged() {
+		if (repulsionMode == RepulsionMode.GRID) {
+			// cells of size 2k, as proposed by Fruchterman and Reingold
+			spatialHash = new SpatialHash(x, y, n, 2 * k);
+		}
+	}
+
+	/**
+	 * Sets whether the following steps are measured, see the getters of the
+	 * last step such as {@link #getRepulsionNanos()}. Measured steps split the
+	 * force pass in two and sum up the displacements in an extra pass.
+	 * 
+	 * @param measured
+	 */
+	public void setMeasured(boolean measured) {
+		this.measured = measured;
+	}
+
+	/**
+	 * @return time the repulsion of the last measured step took, including
+	 *         building the quadtree
+	 */
+	public long getRepulsionNanos() {
+		return repulsionNanos;
+	}
+
+	/**
+	 * @return time the attraction of the last measured step took
+	 */
+	public long getAttractionNanos() {
+		return attractionNanos;
+	}
+
+	/**
+	 * @return time the displacement of the last measured step took
+	 */
+	public long getDisplacementNanos() {
+		return displacementNanos;
+	}
+
+	/**
+	 * @return distance the farthest moved vertex of the last measured step was
+	 *         displaced, before it was kept inside the frame
+	 */
+	public double getMaxDisplacement() {
+		return maxDisplacement;
+	}
+
+	/**
+	 * @return mean distance the vertices of the last measured step were
+	 *         displaced, before they were kept inside the frame
+	 */
+	public double getMeanDisplacement() {
+		return meanDisplacement;
+	}
+
+	/**
+	 * @return the graph as it is now, rebuilt after vertices or edges changed
+	 */
+	public CompactGraph getGraph() {
+		if (changed) {
+			int[] newOffsets = new int[n + 1];
+			int[] newTargets = new int[edgeCount()];
+			for (int v = 0; v < n; v++) {
+				int i = kernelIndex(v);
+				int position = newOffsets[v];
+				for (int e = offsets[i], end = end(i); e < end; e++) {
+					newTargets[position++] = graphIndex(targets[e]);
+				}
+				newOffsets[v + 1] = position;
+			}
+			graph = new CompactGraph(n, newOffsets, newTargets, vertices == null ? null : Arrays.copyOf(vertices, n));
+			changed = false;
+		}
+		return graph;
+	}
+
+	public int getVertexCount() {
+		return n;
+	}
+
+	/**
+	 * @param v graph index of a vertex
+	 * @return x-coordinate of the vertex
+	 */
+	public double getX(int v) {
+		return x[kernelIndex(v)];
+	}
+
+	/**
+	 * @param v graph index of a vertex
+	 * @return y-coordinate of the vertex
+	 */
+	public double getY(int v) {
+		return y[kernelIndex(v)];
+	}
+
+	/**
+	 * @return the x-coordinates indexed like the graph, after a
+	 *         {@link #reorder(VertexOrder)} a copy that is overwritten by the
+	 *         next call, after vertices were added possibly longer than the
+	 *         vertex count
+	 */
+	public double[] getX() {
+		if (order == null) {
+			return x;
+		}
+		return graphX = toGraphOrder(x, graphX);
+	}
+
+	/**
+	 * @return the y-coordinates indexed like the graph, after a
+	 *         {@link #reorder(VertexOrder)} a copy that is overwritten by the
+	 *         next call, after vertices were added possibly longer than the
+	 *         vertex count
+	 */
+	public double[] getY() {
+		if (order == null) {
+			return y;
+		}
+		return graphY = toGraphOrder(y, graphY);
+	}
+
+	@Override
+	int vertexCount() {
+		return n;
+	}
+
+	@Override
+	double x(int i) {
+		return x[i];
+	}
+
+	@Override
+	double y(int i) {
+		return y[i];
+	}
+
+	@Override
+	void setPosition(int i, double px, double py) {
+		x[i] = px;
+		y[i] = py;
+	}
+
+	@Override
+	double dispX(int i) {
+		return dispX[i];
+	}
+
+	@Override
+	double dispY(int i) {
+		return dispY[i];
+	}
+
+	@Override
+	void setDisplacement(int i, double fx, double fy) {
+		dispX[i] = fx;
+		dispY[i] = fy;
+	}
+
+	@Override
+	int edgeStart(int i) {
+		return offsets[i];
+	}
+
+	@Override
+	int edgeEnd(int i) {
+		return end(i);
+	}
+
+	@Override
+	int target(int e) {
+		return targets[e];
+	}
+}
@@ -0,0 +1,185 @@
+package fdp.layout;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.DoubleBinaryOperator;
+
+import fdp.io.MappedLayout;
+
+/**
+ * Runs the steps of the force-directed placement directly on the buffers of a
+ * {@link MappedLayout}, so the heap stays small however large the graph is.
+ * The repulsion is the grid variant with a cutoff radius of 2k, see
+ * {@link Grid}, since the exact repulsion is out of reach for graphs of that
+ * size anyway.
+ * <p>
+ * The grid is rebuilt at the start of every step as singly linked buckets in
+ * the mapped file, which costs a sequential pass over the vertices. The
+ * attraction, the displacement and splitting the passes across a
+ * {@link ForkJoinPool} are the ones of {@link LayoutKernel}, see
+ * {@link AbstractKernel}.
+ */
+public class MappedKernel extends AbstractKernel {
+
+	private final int n;
+	private final IntBuffer offsets;
+	private final IntBuffer targets;
+	private final DoubleBuffer x;
+	private final DoubleBuffer y;
+	private final DoubleBuffer dispX;
+	private final DoubleBuffer dispY;
+
+	private final MappedGrid grid;
+
+	/**
+	 * Creates a new kernel on the current positions of the layout.
+	 *
+	 * @param layout the layout whose buffers are read and written
+	 * @param k the optimal distance between vertices
+	 * @param attractiveForce the attractive force as function of distance and k
+	 * @param repulsiveForce the repulsive force as function of distance and k
+	 */
+	public MappedKernel(MappedLayout layout, double k, DoubleBinaryOperator attractiveForce,
+			DoubleBinaryOperator repulsiveForce) {
+		super(layout.getFrameWidth(), layout.getFrameHeight(), k, attractiveForce, repulsiveForce);
+		this.n = layout.getVertexCount();
+		this.offsets = layout.getOffsets();
+		this.targets = layout.getTargets();
+		this.x = layout.getX();
+		this.y = layout.getY();
+		this.dispX = layout.getDispX();
+		this.dispY = layout.getDispY();
+		// cells of size 2k, as proposed by Fruchterman and Reingold
+		this.grid = new MappedGrid(layout, 2 * k);
+	}
+
+	/**
+	 * Simulates a single step.
+	 *
+	 * @param t the temperature, i.e. the maximum displacement of a vertex
+	 * @return the highest net force acting on a vertex before the displacement
+	 */
+	public double step(double t) {
+		grid.build();
+		// all forces have to be known before any vertex is moved
+		run(FORCES, t);
+		return run(DISPLACEMENT, t);
+	}
+
+	@Override
+	void repulse(int from, int to) {
+		for (int i = from; i < to; i++) {
+			grid.repulse(this, i);
+		}
+	}
+
+	@Override
+	int vertexCount() {
+		return n;
+	}
+
+	@Override
+	double x(int i) {
+		return x.get(i);
+	}
+
+	@Override
+	double y(int i) {
+		return y.get(i);
+	}
+
+	@Override
+	void setPosition(int i, double px, double py) {
+		x.put(i, px);
+		y.put(i, py);
+	}
+
+	@Override
+	double dispX(int i) {
+		return dispX.get(i);
+	}
+
+	@Override
+	double dispY(int i) {
+		return dispY.get(i);
+	}
+
+	@Override
+	void setDisplacement(int i, double fx, double fy) {
+		dispX.put(i, fx);
+		dispY.put(i, fy);
+	}
+
+	@Override
+	int edgeStart(int i) {
+		return offsets.get(i);
+	}
+
+	@Override
+	int edgeEnd(int i) {
+		return offsets.get(i + 1);
+	}
+
+	@Override
+	int target(int e) {
+		return targets.get(e);
+	}
+
+	/**
+	 * The grid in the buffers of the layout.
+	 */
+	private class MappedGrid extends Grid {
+
+		private final IntBuffer head;
+		private final IntBuffer next;
+		private final IntBuffer cellX;
+		private final IntBuffer cellY;
+
+		MappedGrid(MappedLayout layout, double cutoff) {
+			super(cutoff, layout.getGridHead().capacity());
+			this.head = layout.getGridHead();
+			this.next = layout.getGridNext();
+			this.cellX = layout.getCellX();
+			this.cellY = layout.getCellY();
+		}
+
+		/**
+		 * Links every vertex into the bucket of its cell.
+		 */
+		void build() {
+			for (int b = 0; b <= mask; b++) {
+				head.put(b, NONE);
+			}
+			for (int i = 0; i < n; i++) {
+				int cx = cell(x.get(i));
+				int cy = cell(y.get(i));
+				int b = hash(cx, cy);
+				cellX.put(i, cx);
+				cellY.put(i, cy);
+				next.put(i, head.get(b));
+				head.put(b, i);
+			}
+		}
+
+		@Override
+		int head(int b) {
+			return head.get(b);
+		}
+
+		@Override
+		int next(int i) {
+			return next.get(i);
+		}
+
+		@Override
+		int cellX(int i) {
+			return cellX.get(i);
+		}
+
+		@Override
+		int cellY(int i) {
+			return cellY.get(i);
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package fdp.layout;
+
+import java.util.Arrays;
+
+import fdp.graph.CompactGraph;
+
+/**
+ * Places the vertices by PivotMDS after Brandes and Pich, "Eigensolver
+ * methods for progressive multidimensional scaling of large data" (2006).
+ * Classical multidimensional scaling of the graph distances is approximated
+ * from the distances to a few pivots only, which are picked one after another
+ * as the vertex farthest from all pivots so far. Runs in O(p (|V| + |E|) + p^2
+ * |V|) for p pivots.
+ */
+public class PivotMds {
+
+	/**
+	 * Number of pivots, Brandes and Pich report that 50 hardly differ from
+	 * classical MDS.
+	 */
+	public static final int PIVOTS = 50;
+
+	private PivotMds() {
+	}
+
+	/**
+	 * Computes the positions of all vertices. Vertices of other components
+	 * than a pivot count as one further than the farthest vertex found.
+	 *
+	 * @param graph the graph to place
+	 * @param x receives the x-coordinates, in units of graph distance
+	 * @param y receives the y-coordinates, in units of graph distance
+	 */
+	public static void place(CompactGraph graph, double[] x, double[] y) {
+		int n = graph.getVertexCount();
+		int p = Math.min(PIVOTS, n);
+		if (p < 3) {
+			// at most two vertices, on a line
+			for (int i = 0; i < n; i++) {
+				x[i] = i;
+				y[i] = 0;
+			}
+			return;
+		}
+
+		// squared distances from every pivot, the first pivot is arbitrary
+		double[][] c = new double[p][n];
+		int[] distance = new int[n];
+		int[] nearest = new int[n];
+		Arrays.fill(nearest, Integer.MAX_VALUE);
+		int[] queue = new int[n];
+		int pivot = 0;
+		for (int j = 0; j < p; j++) {
+			int farthest = bfs(graph, pivot, distance, queue);
+			int next = pivot;
+			for (int i = 0; i < n; i++) {
+				int d = distance[i] < 0 ? farthest + 1 : distance[i];
+				c[j][i] = (double) d * d;
+				nearest[i] = Math.min(nearest[i], d);
+				if (nearest[i] > nearest[next]) {
+					next = i;
+				}
+			}
+			pivot = next;
+		}
+
+		// double centering
+		double[] rowMeans = new double[n];
+		double total = 0;
+		for (int j = 0; j < p; j++) {
+			double sum = 0;
+			for (int i = 0; i < n; i++) {
+				sum += c[j][i];
+				rowMeans[i] += c[j][i] / p;
+			}
+			double columnMean = sum / n;
+			total += columnMean;
+			for (int i = 0; i < n; i++) {
+				c[j][i] -= columnMean;
+			}
+		}
+		double grandMean = total / p;
+		for (int j = 0; j < p; j++) {
+			for (int i = 0; i < n; i++) {
+				c[j][i] = -0.5 * (c[j][i] - rowMeans[i] + grandMean);
+			}
+		}
+
+		// the largest eigenvectors of C^T C give the directions in pivot space
+		double[][] ctc = new double[p][p];
+		for (int a = 0; a < p; a++) {
+			for (int b = a; b < p; b++) {
+				double sum = 0;
+				for (int i = 0; i < n; i++) {
+					sum += c[a][i] * c[b][i];
+				}
+				ctc[a][b] = sum;
+				ctc[b][a] = sum;
+			}
+		}
+		double[][] vectors = SymmetricEigen.decompose(ctc);
+		int[] largest = SymmetricEigen.largest(ctc, 2);
+		for (int i = 0; i < n; i++) {
+			double sx = 0;
+			double sy = 0;
+			for (int j = 0; j < p; j++) {
+				sx += c[j][i] * vectors[j][largest[0]];
+				sy += c[j][i] * vectors[j][largest[1]];
+			}
+			x[i] = sx;
+			y[i] = sy;
+		}
+	}
+
+	/**
+	 * Sets the distance of every vertex from the root, -1 if it cannot be
+	 * reached.
+	 *
+	 * @return the largest distance found
+	 */
+	private static int bfs(CompactGraph graph, int root, int[] distance, int[] queue) {
+		int[] offsets = graph.getOffsets();
+		int[] targets = graph.getTargets();
+		Arrays.fill(distance, -1);
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = root;
+		distance[root] = 0;
+		while (head < tail) {
+			int v = queue[head++];
+			for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+				int u = targets[e];
+				if (distance[u] < 0) {
+					distance[u] = distance[v] + 1;
+					queue[tail++] = u;
+				}
+			}
+		}
+		return distance[queue[tail - 1]];
+	}
+}
@@ -0,0 +1,246 @@
+package fdp.layout;
+
+import java.util.Arrays;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Array backed quadtree used for Barnes-Hut approximation of the repulsive
+ * forces. The node arrays are kept between builds, so rebuilding the tree every
+ * iteration does not allocate once the tree has reached its working size.
+ * <p>
+ * After {@link #build(double[], double[], int)}, the tree is read-only and
+ * {@link #accumulate} may be called concurrently for different vertices.
+ */
+public class QuadTree {
+
+	/**
+	 * Vertices that end up in a cell smaller than this depth allows are
+	 * aggregated into a single leaf instead of splitting forever.
+	 */
+	private static final int MAX_DEPTH = 24;
+
+	private static final int NONE = -1;
+
+	private double[] x;
+	private double[] y;
+
+	// per node: lower left corner and side length of the square cell
+	private double[] minX;
+	private double[] minY;
+	private double[] size;
+	// per node: number of vertices and the sum of their positions
+	private int[] mass;
+	private double[] sumX;
+	private double[] sumY;
+	// per node: index of the first of four consecutive children, or NONE for leaves
+	private int[] child;
+	// per leaf: index of the (first) vertex stored in it, or NONE if empty
+	private int[] body;
+
+	private int nodeCount;
+
+	public QuadTree() {
+		allocate(64);
+	}
+
+	/**
+	 * Rebuilds the tree from the given positions.
+	 *
+	 * @param x x-coordinates of the vertices
+	 * @param y y-coordinates of the vertices
+	 * @param n number of vertices to insert, i.e. the indices 0 to n - 1
+	 */
+	public void build(double[] x, double[] y, int n) {
+		this.x = x;
+		this.y = y;
+		nodeCount = 0;
+
+		double left = Double.POSITIVE_INFINITY;
+		double bottom = Double.POSITIVE_INFINITY;
+		double right = Double.NEGATIVE_INFINITY;
+		double top = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < n; i++) {
+			left = Math.min(left, x[i]);
+			right = Math.max(right, x[i]);
+			bottom = Math.min(bottom, y[i]);
+			top = Math.max(top, y[i]);
+		}
+		// slightly enlarge the root cell so that the maximum coordinates are inside
+		double side = Math.max(right - left, top - bottom) * 1.0001 + 1e-9;
+		newNode(left, bottom, side);
+
+		for (int i = 0; i < n; i++) {
+			insert(i);
+		}
+	}
+
+	/**
+	 * Adds the approximated repulsive displacement of all other vertices to
+	 * the displacement of vertex i.
+	 *
+	 * @param i index of the vertex
+	 * @param theta opening angle, cells whose side length divided by their
+	 *            distance is below theta are treated as a single vertex
+	 * @param force the repulsive force as function of distance and k
+	 * @param k the optimal distance between vertices
+	 * @param dispX x-components of the displacements, index i is updated
+	 * @param dispY y-components of the displacements, index i is updated
+	 */
+	public void accumulate(int i, double theta, DoubleBinaryOperator force, double k, double[] dispX, double[] dispY) {
+		if (nodeCount > 0) {
+			accumulate(0, i, theta, force, k, dispX, dispY);
+		}
+	}
+
+	private void accumulate(int node, int i, double theta, DoubleBinaryOperator force, double k, double[] dispX,
+			double[] dispY) {
+
+		int m = mass[node];
+		if (m == 0 || (m == 1 && body[node] == i)) {
+			return;
+		}
+		double xi = x[i];
+		double yi = y[i];
+		double cx = sumX[node];
+		double cy = sumY[node];
+		boolean containsI = xi >= minX[node] && xi < minX[node] + size[node] && yi >= minY[node]
+				&& yi < minY[node] + size[node];
+
+		if (child[node] == NONE) {
+			// leaf, possibly an aggregate of several vertices at maximum depth
+			if (containsI) {
+				m -= 1;
+				cx -= xi;
+				cy -= yi;
+				if (m == 0) {
+					return;
+				}
+			}
+			apply(i, m, cx / m, cy / m, force, k, dispX, dispY);
+			return;
+		}
+
+		double dx = xi - cx / m;
+		double dy = yi - cy / m;
+		double d = Math.sqrt(dx * dx + dy * dy);
+		// never approximate a cell containing the vertex itself
+		if (!containsI && size[node] < theta * d) {
+			apply(i, m, cx / m, cy / m, force, k, dispX, dispY);
+			return;
+		}
+		int c = child[node];
+		for (int q = 0; q < 4; q++) {
+			accumulate(c + q, i, theta, force, k, dispX, dispY);
+		}
+	}
+
+	/**
+	 * Adds the repulsive displacement of m vertices located at (cx, cy) to
+	 * vertex i.
+	 */
+	private void apply(int i, int m, double cx, double cy, DoubleBinaryOperator force, double k, double[] dispX,
+			double[] dispY) {
+		double dx = x[i] - cx;
+		double dy = y[i] - cy;
+		double d = Math.sqrt(dx * dx + dy * dy);
+		if (d > 0) {
+			double f = m * force.applyAsDouble(d, k) / d;
+			dispX[i] += dx * f;
+			dispY[i] += dy * f;
+		}
+	}
+
+	private void insert(int b) {
+		double bx = x[b];
+		double by = y[b];
+		int node = 0;
+		int depth = 0;
+		while (true) {
+			mass[node]++;
+			sumX[node] += bx;
+			sumY[node] += by;
+
+			if (child[node] == NONE) {
+				if (mass[node] == 1) {
+					// empty leaf
+					body[node] = b;
+					return;
+				}
+				if (depth >= MAX_DEPTH) {
+					// keep as aggregate
+					return;
+				}
+				// split the leaf and push its vertex down one level
+				int existing = body[node];
+				body[node] = NONE;
+				split(node);
+				int c = child[node] + quadrant(node, x[existing], y[existing]);
+				mass[c] = 1;
+				sumX[c] = x[existing];
+				sumY[c] = y[existing];
+				body[c] = existing;
+			}
+			node = child[node] + quadrant(node, bx, by);
+			depth++;
+		}
+	}
+
+	private int quadrant(int node, double px, double py) {
+		double half = size[node] / 2;
+		int q = px >= minX[node] + half ? 1 : 0;
+		if (py >= minY[node] + half) {
+			q |= 2;
+		}
+		return q;
+	}
+
+	private void split(int node) {
+		double half = size[node] / 2;
+		double left = minX[node];
+		double bottom = minY[node];
+		// children must be consecutive, their order matches quadrant()
+		int first = newNode(left, bottom, half);
+		newNode(left + half, bottom, half);
+		newNode(left, bottom + half, half);
+		newNode(left + half, bottom + half, half);
+		child[node] = first;
+	}
+
+	private int newNode(double left, double bottom, double side) {
+		if (nodeCount == mass.length) {
+			grow(mass.length * 2);
+		}
+		int node = nodeCount++;
+		minX[node] = left;
+		minY[node] = bottom;
+		size[node] = side;
+		mass[node] = 0;
+		sumX[node] = 0;
+		sumY[node] = 0;
+		child[node] = NONE;
+		body[node] = NONE;
+		return node;
+	}
+
+	private void allocate(int capacity) {
+		minX = new double[capacity];
+		minY = new double[capacity];
+		size = new double[capacity];
+		mass = new int[capacity];
+		sumX = new double[capacity];
+		sumY = new double[capacity];
+		child = new int[capacity];
+		body = new int[capacity];
+	}
+
+	private void grow(int capacity) {
+		minX = Arrays.copyOf(minX, capacity);
+		minY = Arrays.copyOf(minY, capacity);
+		size = Arrays.copyOf(size, capacity);
+		mass = Arrays.copyOf(mass, capacity);
+		sumX = Arrays.copyOf(sumX, capacity);
+		sumY = Arrays.copyOf(sumY, capacity);
+		child = Arrays.copyOf(child, capacity);
+		body = Arrays.copyOf(body, capacity);
+	}
+}
@@ -0,0 +1,109 @@
+package fdp.layout;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Packs rectangles into a frame with shelves: the rectangles are sorted by
+ * decreasing height and placed from left to right, a new shelf is started
+ * once a rectangle does not fit into the width of the strip. Several strip
+ * widths are tried and the packing that fits the frame with the largest scale
+ * is taken, so wide frames get few long shelves and tall frames many short
+ * ones. Runs in O(r log r) for r rectangles.
+ */
+public class RectanglePacker {
+
+	/**
+	 * Number of strip widths tried.
+	 */
+	private static final int CANDIDATES = 16;
+
+	private RectanglePacker() {
+	}
+
+	/**
+	 * Packs the rectangles and scales the packing to fit the frame, centering
+	 * it if it is smaller.
+	 *
+	 * @param widths widths of the rectangles
+	 * @param heights heights of the rectangles
+	 * @param frameWidth width of the frame
+	 * @param frameHeight height of the frame
+	 * @param maxScale the packing is scaled by at most this, 1 to never enlarge
+	 *            it
+	 * @param left receives the left edge of every rectangle in the frame
+	 * @param top receives the top edge of every rectangle in the frame
+	 * @return the scale the rectangles have to be drawn with
+	 */
+	public static double pack(double[] widths, double[] heights, double frameWidth, double frameHeight,
+			double maxScale, double[] left, double[] top) {
+		int r = widths.length;
+		if (r == 0) {
+			return 1;
+		}
+		Integer[] order = new Integer[r];
+		double area = 0;
+		double widest = 0;
+		double totalWidth = 0;
+		for (int i = 0; i < r; i++) {
+			order[i] = i;
+			area += widths[i] * heights[i];
+			widest = Math.max(widest, widths[i]);
+			totalWidth += widths[i];
+		}
+		Arrays.sort(order, Comparator.comparingDouble((Integer i) -> -heights[i]));
+
+		// a square packing scaled to the aspect ratio of the frame, and widths around it
+		double ideal = Math.max(widest, Math.sqrt(area * frameWidth / frameHeight));
+		double bestScale = -1;
+		double bestStrip = ideal;
+		for (int c = 0; c < CANDIDATES; c++) {
+			double strip = Math.min(totalWidth, Math.max(widest, ideal * Math.pow(2, (c - CANDIDATES / 2) / 4.0)));
+			double[] size = shelve(order, widths, heights, strip, null, null);
+			double scale = Math.min(frameWidth / size[0], frameHeight / size[1]);
+			if (scale > bestScale) {
+				bestScale = scale;
+				bestStrip = strip;
+			}
+		}
+		double[] size = shelve(order, widths, heights, bestStrip, left, top);
+		double scale = Math.min(maxScale, bestScale);
+		// center the packing
+		double offsetX = (frameWidth - size[0] * scale) / 2;
+		double offsetY = (frameHeight - size[1] * scale) / 2;
+		for (int i = 0; i < r; i++) {
+			left[i] = offsetX + left[i] * scale;
+			top[i] = offsetY + top[i] * scale;
+		}
+		return scale;
+	}
+
+	/**
+	 * Places the rectangles on shelves of the given width, unless left is
+	 * null, and returns the width and height of the packing.
+	 */
+	private static double[] shelve(Integer[] order, double[] widths, double[] heights, double strip, double[] left,
+			double[] top) {
+		double x = 0;
+		double y = 0;
+		double shelfHeight = 0;
+		double width = 0;
+		for (int i : order) {
+			if (x > 0 && x + widths[i] > strip) {
+				// start a new shelf below
+				y += shelfHeight;
+				x = 0;
+				shelfHeight = 0;
+			}
+			if (left != null) {
+				left[i] = x;
+				top[i] = y;
+			}
+			x += widths[i];
+			width = Math.max(width, x);
+			// the first rectangle of a shelf is the highest one
+			shelfHeight = Math.max(shelfHeight, heights[i]);
+		}
+		return new double[] { width, y + shelfHeight };
+	}
+}
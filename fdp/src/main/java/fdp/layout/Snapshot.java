@@ -0,0 +1,66 @@
+package fdp.layout;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fdp.graph.CompactGraph;
+
+/**
+ * Positions of all vertices after one iteration, published by a
+ * {@link SnapshotBuffer}. A snapshot returned by
+ * {@link SnapshotBuffer#latest()} never changes afterwards, so it can be read
+ * without locks while the simulation goes on.
+ */
+public class Snapshot {
+
+	final CompactGraph graph;
+	final double[] x;
+	final double[] y;
+	int iteration;
+	double temperature;
+	// see SnapshotBuffer
+	final AtomicInteger state = new AtomicInteger();
+
+	Snapshot(CompactGraph graph) {
+		this.graph = graph;
+		this.x = new double[graph.getVertexCount()];
+		this.y = new double[graph.getVertexCount()];
+	}
+
+	/**
+	 * @return the graph the positions belong to, vertex indices match
+	 */
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	public int getVertexCount() {
+		return x.length;
+	}
+
+	/**
+	 * @return number of steps simulated before the snapshot was taken
+	 */
+	public int getIteration() {
+		return iteration;
+	}
+
+	public double getTemperature() {
+		return temperature;
+	}
+
+	/**
+	 * @param i index of the vertex
+	 * @return x-coordinate of vertex i
+	 */
+	public double getX(int i) {
+		return x[i];
+	}
+
+	/**
+	 * @param i index of the vertex
+	 * @return y-coordinate of vertex i
+	 */
+	public double getY(int i) {
+		return y[i];
+	}
+}
@@ -0,0 +1,73 @@
+package fdp.layout;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import fdp.graph.CompactGraph;
+
+/**
+ * Hands the positions of a running simulation to readers such as the
+ * renderer without locks. The simulation copies its positions into a back
+ * buffer and swaps it with the published snapshot, readers always get a
+ * complete snapshot of a single iteration.
+ * <p>
+ * A reader claims the snapshot it gets. The writer reuses the snapshot it
+ * swapped out as its next back buffer only if no reader has claimed it,
+ * otherwise it allocates a new one, so a claimed snapshot is never written
+ * again. While nobody reads, publishing does not allocate.
+ */
+public class SnapshotBuffer {
+
+	static final int PUBLISHED = 0;
+	static final int CLAIMED = 1;
+	static final int RECYCLED = 2;
+
+	private final AtomicReference<Snapshot> latest = new AtomicReference<>();
+	// only accessed by the writer
+	private Snapshot back;
+
+	/**
+	 * Publishes the positions of an iteration. Must only be called by one
+	 * thread at a time.
+	 *
+	 * @param graph the graph the positions belong to
+	 * @param iteration number of steps simulated so far
+	 * @param temperature the current temperature
+	 * @param x x-coordinates of the vertices
+	 * @param y y-coordinates of the vertices
+	 */
+	public void publish(CompactGraph graph, int iteration, double temperature, double[] x, double[] y) {
+		Snapshot snapshot = back;
+		if (snapshot == null || snapshot.graph != graph) {
+			snapshot = new Snapshot(graph);
+		}
+		System.arraycopy(x, 0, snapshot.x, 0, snapshot.x.length);
+		System.arraycopy(y, 0, snapshot.y, 0, snapshot.y.length);
+		snapshot.iteration = iteration;
+		snapshot.temperature = temperature;
+		// the volatile write orders the copies before the publication
+		snapshot.state.set(PUBLISHED);
+		Snapshot previous = latest.getAndSet(snapshot);
+		back = previous != null && previous.state.compareAndSet(PUBLISHED, RECYCLED) ? previous : null;
+	}
+
+	/**
+	 * Returns the most recently published snapshot. Can be called from any
+	 * thread.
+	 *
+	 * @return the snapshot, which never changes afterwards, or null if nothing
+	 *         has been published yet
+	 */
+	public Snapshot latest() {
+		while (true) {
+			Snapshot snapshot = latest.get();
+			if (snapshot == null) {
+				return null;
+			}
+			int state = snapshot.state.get();
+			if (state == CLAIMED || state == PUBLISHED && snapshot.state.compareAndSet(PUBLISHED, CLAIMED)) {
+				return snapshot;
+			}
+			// the writer recycled it in the meantime, a newer one has been published
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package fdp.layout;
+
+import java.util.Arrays;
+
+/**
+ * Spatial hash for the grid variant of the Fruchterman-Reingold algorithm on
+ * the arrays of a {@link LayoutKernel}, see {@link Grid}.
+ * <p>
+ * Every vertex is kept in an intrusive doubly linked list of its bucket.
+ * {@link #update(int)} moves a vertex only if it crossed a cell border, so
+ * keeping the hash up to date costs O(1) per vertex and does not allocate.
+ * Vertices can also be added and removed one at a time, as long as their
+ * indices stay below the length of the coordinate arrays.
+ */
+public class SpatialHash extends Grid {
+
+	private final double[] x;
+	private final double[] y;
+
+	private final int[] head;
+	private final int[] next;
+	private final int[] prev;
+	private final int[] bucket;
+	private final int[] cellX;
+	private final int[] cellY;
+
+	/**
+	 * Creates a new hash and inserts the vertices 0 to n - 1 at their current
+	 * positions.
+	 *
+	 * @param x x-coordinates of the vertices, may be longer than n
+	 * @param y y-coordinates of the vertices, as long as x
+	 * @param n number of vertices
+	 * @param cutoff the cutoff radius, also the side length of a cell
+	 */
+	public SpatialHash(double[] x, double[] y, int n, double cutoff) {
+		super(cutoff, Integer.highestOneBit(Math.max(2 * n - 1, 1)) << 1);
+		this.x = x;
+		this.y = y;
+
+		head = new int[mask + 1];
+		Arrays.fill(head, NONE);
+		next = new int[x.length];
+		prev = new int[x.length];
+		bucket = new int[x.length];
+		cellX = new int[x.length];
+		cellY = new int[x.length];
+
+		for (int i = 0; i < n; i++) {
+			cellX[i] = cell(x[i]);
+			cellY[i] = cell(y[i]);
+			link(i, hash(cellX[i], cellY[i]));
+		}
+	}
+
+	/**
+	 * Moves vertex i to the bucket of its current position if it has left its
+	 * cell since the last update.
+	 *
+	 * @param i index of the vertex
+	 */
+	public void update(int i) {
+		int cx = cell(x[i]);
+		int cy = cell(y[i]);
+		if (cx == cellX[i] && cy == cellY[i]) {
+			return;
+		}
+		unlink(i);
+		cellX[i] = cx;
+		cellY[i] = cy;
+		link(i, hash(cx, cy));
+	}
+
+	/**
+	 * Inserts vertex i at its current position.
+	 *
+	 * @param i index of a vertex that is not in the hash
+	 */
+	public void add(int i) {
+		cellX[i] = cell(x[i]);
+		cellY[i] = cell(y[i]);
+		link(i, hash(cellX[i], cellY[i]));
+	}
+
+	/**
+	 * Removes vertex i, its index may be added again afterwards.
+	 *
+	 * @param i index of a vertex in the hash
+	 */
+	public void remove(int i) {
+		unlink(i);
+	}
+
+	@Override
+	int head(int b) {
+		return head[b];
+	}
+
+	@Override
+	int next(int i) {
+		return next[i];
+	}
+
+	@Override
+	int cellX(int i) {
+		return cellX[i];
+	}
+
+	@Override
+	int cellY(int i) {
+		return cellY[i];
+	}
+
+	private void link(int i, int b) {
+		bucket[i] = b;
+		prev[i] = NONE;
+		next[i] = head[b];
+		if (head[b] != NONE) {
+			prev[head[b]] = i;
+		}
+		head[b] = i;
+	}
+
+	private void unlink(int i) {
+		if (prev[i] != NONE) {
+			next[prev[i]] = next[i];
+		} else {
+			head[bucket[i]] = next[i];
+		}
+		if (next[i] != NONE) {
+			prev[next[i]] = prev[i];
+		}
+	}
+}
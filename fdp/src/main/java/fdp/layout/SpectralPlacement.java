@@ -0,0 +1,159 @@
+package fdp.layout;
+
+import java.util.Random;
+
+import fdp.graph.CompactGraph;
+
+/**
+ * Places the vertices at the two degree-normalized eigenvectors of the
+ * Laplacian with the smallest nonzero eigenvalues, as proposed by Koren, "On
+ * spectral graph drawing" (2003). They are the largest eigenvectors of the
+ * normalized adjacency matrix after the trivial one, which are approximated by
+ * a few steps of the Lanczos method. The second eigenvector is searched
+ * orthogonal to the first one in a run of its own, so graphs whose two
+ * eigenvalues coincide, like square grids, still get two dimensions. Runs in
+ * O(s (|E| + s |V|)) for s Lanczos steps.
+ */
+public class SpectralPlacement {
+
+	/**
+	 * Lanczos steps per eigenvector.
+	 */
+	public static final int STEPS = 40;
+
+	private SpectralPlacement() {
+	}
+
+	/**
+	 * Computes the positions of all vertices. Disconnected graphs are placed
+	 * poorly, since every component has its own trivial eigenvector.
+	 *
+	 * @param graph the graph to place
+	 * @param x receives the x-coordinates, of unit scale
+	 * @param y receives the y-coordinates, of unit scale
+	 */
+	public static void place(CompactGraph graph, double[] x, double[] y) {
+		int n = graph.getVertexCount();
+		int[] offsets = graph.getOffsets();
+		double[] scale = new double[n];
+		double[] trivial = new double[n];
+		for (int i = 0; i < n; i++) {
+			int degree = offsets[i + 1] - offsets[i];
+			scale[i] = degree == 0 ? 0 : 1 / Math.sqrt(degree);
+			trivial[i] = Math.sqrt(degree);
+		}
+		normalize(trivial);
+
+		Random random = new Random(n);
+		double[] first = lanczos(graph, scale, new double[][] { trivial }, random);
+		double[] second = lanczos(graph, scale, new double[][] { trivial, first }, random);
+		for (int i = 0; i < n; i++) {
+			// back to the generalized eigenvectors of L u = lambda D u
+			x[i] = first[i] * scale[i];
+			y[i] = second[i] * scale[i];
+		}
+	}
+
+	/**
+	 * Approximates the largest eigenvector of the normalized adjacency matrix
+	 * orthogonal to the given unit vectors.
+	 */
+	private static double[] lanczos(CompactGraph graph, double[] scale, double[][] deflate, Random random) {
+		int n = scale.length;
+		int steps = Math.max(1, Math.min(STEPS, n - deflate.length));
+		double[][] basis = new double[steps][];
+		double[] alpha = new double[steps];
+		double[] beta = new double[steps];
+
+		double[] v = new double[n];
+		for (int i = 0; i < n; i++) {
+			v[i] = random.nextDouble() - 0.5;
+		}
+		orthogonalize(v, deflate, deflate.length);
+		normalize(v);
+		int k = 0;
+		while (k < steps) {
+			basis[k] = v;
+			double[] w = multiply(graph, scale, v);
+			alpha[k] = dot(w, v);
+			// full reorthogonalization, the basis is small
+			orthogonalize(w, basis, k + 1);
+			orthogonalize(w, deflate, deflate.length);
+			double norm = Math.sqrt(dot(w, w));
+			k++;
+			if (k == steps || norm < 1e-10) {
+				break;
+			}
+			beta[k - 1] = norm;
+			for (int i = 0; i < n; i++) {
+				w[i] /= norm;
+			}
+			v = w;
+		}
+
+		// the largest Ritz vector of the tridiagonal matrix
+		double[][] t = new double[k][k];
+		for (int i = 0; i < k; i++) {
+			t[i][i] = alpha[i];
+			if (i + 1 < k) {
+				t[i][i + 1] = beta[i];
+				t[i + 1][i] = beta[i];
+			}
+		}
+		double[][] vectors = SymmetricEigen.decompose(t);
+		int largest = SymmetricEigen.largest(t, 1)[0];
+		double[] result = new double[n];
+		for (int j = 0; j < k; j++) {
+			double s = vectors[j][largest];
+			for (int i = 0; i < n; i++) {
+				result[i] += s * basis[j][i];
+			}
+		}
+		normalize(result);
+		return result;
+	}
+
+	/**
+	 * Multiplies with D^-1/2 A D^-1/2.
+	 */
+	private static double[] multiply(CompactGraph graph, double[] scale, double[] v) {
+		int[] offsets = graph.getOffsets();
+		int[] targets = graph.getTargets();
+		double[] w = new double[v.length];
+		for (int i = 0; i < v.length; i++) {
+			double sum = 0;
+			for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+				int j = targets[e];
+				sum += scale[j] * v[j];
+			}
+			w[i] = scale[i] * sum;
+		}
+		return w;
+	}
+
+	private static void orthogonalize(double[] w, double[][] basis, int count) {
+		for (int b = 0; b < count; b++) {
+			double d = dot(w, basis[b]);
+			for (int i = 0; i < w.length; i++) {
+				w[i] -= d * basis[b][i];
+			}
+		}
+	}
+
+	private static double dot(double[] a, double[] b) {
+		double sum = 0;
+		for (int i = 0; i < a.length; i++) {
+			sum += a[i] * b[i];
+		}
+		return sum;
+	}
+
+	private static void normalize(double[] v) {
+		double norm = Math.sqrt(dot(v, v));
+		if (norm > 0) {
+			for (int i = 0; i < v.length; i++) {
+				v[i] /= norm;
+			}
+		}
+	}
+}
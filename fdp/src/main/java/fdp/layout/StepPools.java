@@ -0,0 +1,35 @@
+package fdp.layout;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The pools the passes of a step are split across, one per parallelism for the
+ * whole application. Simulations share them instead of starting threads of
+ * their own for every run, so repeated or concurrent layouts, e.g. the
+ * samples of a cooling rate search, do not add threads. The tasks of different
+ * simulations simply queue up in the same pool.
+ * <p>
+ * The pools are never shut down, their threads are daemons and end after a
+ * while without work.
+ */
+public final class StepPools {
+
+	private static final ConcurrentMap<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+
+	private StepPools() {
+	}
+
+	/**
+	 * @param parallelism number of threads a step is split across
+	 * @return the shared pool of the given parallelism, or null if the steps
+	 *         are not split, i.e. for a parallelism of 1 or less
+	 */
+	public static ForkJoinPool get(int parallelism) {
+		if (parallelism <= 1) {
+			return null;
+		}
+		return POOLS.computeIfAbsent(parallelism, ForkJoinPool::new);
+	}
+}
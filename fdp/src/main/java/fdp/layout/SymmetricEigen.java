@@ -0,0 +1,105 @@
+package fdp.layout;
+
+/**
+ * Eigenvalues and eigenvectors of small dense symmetric matrices by cyclic
+ * Jacobi rotations, as needed by {@link PivotMds} and
+ * {@link SpectralPlacement}.
+ */
+final class SymmetricEigen {
+
+	private static final int MAX_SWEEPS = 50;
+
+	private SymmetricEigen() {
+	}
+
+	/**
+	 * Decomposes a symmetric matrix.
+	 *
+	 * @param a the matrix, overwritten, its diagonal receives the eigenvalues
+	 * @return the eigenvectors as columns, column j belongs to a[j][j]
+	 */
+	static double[][] decompose(double[][] a) {
+		int n = a.length;
+		double[][] v = new double[n][n];
+		for (int i = 0; i < n; i++) {
+			v[i][i] = 1;
+		}
+		for (int sweep = 0; sweep < MAX_SWEEPS; sweep++) {
+			double off = 0;
+			double total = 0;
+			for (int p = 0; p < n; p++) {
+				for (int q = 0; q < n; q++) {
+					total += a[p][q] * a[p][q];
+					if (p != q) {
+						off += a[p][q] * a[p][q];
+					}
+				}
+			}
+			if (off <= 1e-22 * total) {
+				break;
+			}
+			for (int p = 0; p < n - 1; p++) {
+				for (int q = p + 1; q < n; q++) {
+					if (a[p][q] != 0) {
+						rotate(a, v, p, q);
+					}
+				}
+			}
+		}
+		return v;
+	}
+
+	/**
+	 * Applies the rotation that zeroes a[p][q].
+	 */
+	private static void rotate(double[][] a, double[][] v, int p, int q) {
+		int n = a.length;
+		double theta = (a[q][q] - a[p][p]) / (2 * a[p][q]);
+		double t = Math.signum(theta) / (Math.abs(theta) + Math.sqrt(theta * theta + 1));
+		if (theta == 0) {
+			t = 1;
+		}
+		double c = 1 / Math.sqrt(t * t + 1);
+		double s = t * c;
+		for (int k = 0; k < n; k++) {
+			double akp = a[k][p];
+			double akq = a[k][q];
+			a[k][p] = c * akp - s * akq;
+			a[k][q] = s * akp + c * akq;
+		}
+		for (int k = 0; k < n; k++) {
+			double apk = a[p][k];
+			double aqk = a[q][k];
+			a[p][k] = c * apk - s * aqk;
+			a[q][k] = s * apk + c * aqk;
+		}
+		for (int k = 0; k < n; k++) {
+			double vkp = v[k][p];
+			double vkq = v[k][q];
+			v[k][p] = c * vkp - s * vkq;
+			v[k][q] = s * vkp + c * vkq;
+		}
+	}
+
+	/**
+	 * @param a a decomposed matrix
+	 * @param count number of indices to return
+	 * @return the indices of the count largest eigenvalues, largest first
+	 */
+	static int[] largest(double[][] a, int count) {
+		int n = a.length;
+		int[] result = new int[Math.min(count, n)];
+		boolean[] taken = new boolean[n];
+		for (int r = 0; r < result.length; r++) {
+			int best = -1;
+			for (int i = 0; i < n; i++) {
+				if (!taken[i] && (best < 0 || a[i][i] > a[best][best])) {
+					best = i;
+				}
+			}
+			taken[best] = true;
+			result[r] = best;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,55 @@
+package fdp.layout;
+
+/**
+ * Passes of a step that process several vertices at once with the SIMD
+ * instructions of the processor. The implementation uses the Vector API, which
+ * needs Java 17 and the module jdk.incubator.vector, so it is only compiled
+ * into the multi-release part of the JAR. On older JVMs or if the module was
+ * not added with {@code --add-modules jdk.incubator.vector}, {@link #INSTANCE}
+ * is null and the kernel runs its scalar loops.
+ */
+abstract class VectorPasses {
+
+	/**
+	 * Highest absolute exponent e of a pairwise factor c * d^e the repulsion
+	 * pass supports.
+	 */
+	static final int MAX_EXPONENT = 4;
+
+	/**
+	 * The passes of this JVM, or null if it has no Vector API.
+	 */
+	static final VectorPasses INSTANCE = load();
+
+	private static VectorPasses load() {
+		try {
+			return (VectorPasses) Class.forName("fdp.layout.SimdPasses").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			// Java 8, no jdk.incubator.vector or no SIMD registers
+			return null;
+		}
+	}
+
+	/**
+	 * Sets the displacements of the vertices from to to - 1 to the sum of the
+	 * repulsive forces of all vertices. The force between two vertices at
+	 * distance d is c * d^(e + 1) along the line between them, vertices at
+	 * the same position do not repel each other.
+	 *
+	 * @param c the constant factor of the force, including the optimal
+	 *            distance
+	 * @param e the exponent of the distance of the force divided by d, at
+	 *            most {@link #MAX_EXPONENT} in absolute value
+	 */
+	abstract void repulse(double[] x, double[] y, int n, int from, int to, double c, int e, double[] dispX,
+			double[] dispY);
+
+	/**
+	 * Displaces the vertices from to to - 1 by their displacements, limited
+	 * by the temperature, and keeps them inside the frame.
+	 *
+	 * @return the highest net force acting on one of the vertices
+	 */
+	abstract double displace(double[] x, double[] y, double[] dispX, double[] dispY, int from, int to, double t,
+			double frameWidth, double frameHeight);
+}
@@ -0,0 +1,174 @@
+package fdp.layout;
+
+import java.util.Arrays;
+
+/**
+ * Orders of the vertices that keep neighbours close in memory, see
+ * {@link LayoutKernel#reorder(fdp.VertexOrder)}. Both orders are returned as
+ * permutation: position i of the order holds the vertex that becomes vertex i.
+ */
+public class VertexOrdering {
+
+	// cells per side of the Hilbert curve, keeps the index below 2^30
+	private static final int HILBERT_BITS = 15;
+	// neighbour lists up to this length are sorted by insertion
+	private static final int INSERTION_SORT = 32;
+
+	private VertexOrdering() {
+	}
+
+	/**
+	 * Sorts the vertices along a Hilbert curve through the bounding box of
+	 * their positions, in O(|V| log |V|).
+	 *
+	 * @param x x-coordinates of the vertices
+	 * @param y y-coordinates of the vertices
+	 * @param n number of vertices
+	 * @return the vertices in the order of the curve
+	 */
+	public static int[] hilbert(double[] x, double[] y, int n) {
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < n; i++) {
+			minX = Math.min(minX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxX = Math.max(maxX, x[i]);
+			maxY = Math.max(maxY, y[i]);
+		}
+		int side = (1 << HILBERT_BITS) - 1;
+		double scale = side / Math.max(Math.max(maxX - minX, maxY - minY), Double.MIN_NORMAL);
+		// the index in the upper and the vertex in the lower half, so sorting the keys sorts the vertices
+		long[] keys = new long[n];
+		for (int i = 0; i < n; i++) {
+			int cx = (int) ((x[i] - minX) * scale);
+			int cy = (int) ((y[i] - minY) * scale);
+			keys[i] = (long) hilbertIndex(cx, cy) << 32 | i;
+		}
+		Arrays.sort(keys);
+		int[] order = new int[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = (int) keys[i];
+		}
+		return order;
+	}
+
+	/**
+	 * Index of a cell along the Hilbert curve of order {@link #HILBERT_BITS},
+	 * after Butz, "Alternative algorithm for Hilbert's space-filling curve"
+	 * (1971) in the iterative form of Warren, "Hacker's Delight".
+	 */
+	private static int hilbertIndex(int cx, int cy) {
+		int side = 1 << HILBERT_BITS;
+		int d = 0;
+		for (int s = side >> 1; s > 0; s >>= 1) {
+			int rx = (cx & s) != 0 ? 1 : 0;
+			int ry = (cy & s) != 0 ? 1 : 0;
+			d += s * s * ((3 * rx) ^ ry);
+			// rotate the quadrant so the curve continues where it entered
+			if (ry == 0) {
+				if (rx == 1) {
+					cx = side - 1 - cx;
+					cy = side - 1 - cy;
+				}
+				int swap = cx;
+				cx = cy;
+				cy = swap;
+			}
+		}
+		return d;
+	}
+
+	/**
+	 * Orders the vertices by Reverse Cuthill-McKee: a breadth-first search
+	 * from a vertex of lowest degree in every component that visits the
+	 * neighbours of a vertex by increasing degree, reversed at the end. The
+	 * neighbours of a vertex then have close indices, the bandwidth of the
+	 * adjacency matrix is small. Runs in O(|V| + |E| log D) for the highest
+	 * degree D.
+	 *
+	 * @param offsets start of the neighbours of every vertex in targets
+	 * @param targets the concatenated neighbour lists
+	 * @param n number of vertices
+	 * @return the vertices in Reverse Cuthill-McKee order
+	 */
+	public static int[] reverseCuthillMcKee(int[] offsets, int[] targets, int n) {
+		int[] degree = new int[n];
+		int maxDegree = 0;
+		for (int i = 0; i < n; i++) {
+			degree[i] = offsets[i + 1] - offsets[i];
+			maxDegree = Math.max(maxDegree, degree[i]);
+		}
+		// vertices by increasing degree, the candidates to start a component from
+		int[] start = new int[maxDegree + 2];
+		for (int i = 0; i < n; i++) {
+			start[degree[i] + 1]++;
+		}
+		for (int d = 0; d <= maxDegree; d++) {
+			start[d + 1] += start[d];
+		}
+		int[] byDegree = new int[n];
+		for (int i = 0; i < n; i++) {
+			byDegree[start[degree[i]]++] = i;
+		}
+
+		boolean[] visited = new boolean[n];
+		int[] queue = new int[n];
+		long[] keys = new long[n];
+		int tail = 0;
+		for (int candidate : byDegree) {
+			if (visited[candidate]) {
+				continue;
+			}
+			visited[candidate] = true;
+			int head = tail;
+			queue[tail++] = candidate;
+			while (head < tail) {
+				int v = queue[head++];
+				int from = tail;
+				for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+					int u = targets[e];
+					if (!visited[u]) {
+						visited[u] = true;
+						queue[tail++] = u;
+					}
+				}
+				sortByDegree(queue, from, tail, degree, keys);
+			}
+		}
+
+		for (int i = 0, j = n - 1; i < j; i++, j--) {
+			int swap = queue[i];
+			queue[i] = queue[j];
+			queue[j] = swap;
+		}
+		return queue;
+	}
+
+	/**
+	 * Sorts the vertices from to to - 1 by increasing degree, stable for
+	 * short ranges and by vertex index for equal degrees otherwise.
+	 */
+	private static void sortByDegree(int[] vertices, int from, int to, int[] degree, long[] keys) {
+		if (to - from <= INSERTION_SORT) {
+			for (int i = from + 1; i < to; i++) {
+				int v = vertices[i];
+				int j = i - 1;
+				while (j >= from && degree[vertices[j]] > degree[v]) {
+					vertices[j + 1] = vertices[j];
+					j--;
+				}
+				vertices[j + 1] = v;
+			}
+			return;
+		}
+		for (int i = from; i < to; i++) {
+			keys[i] = (long) degree[vertices[i]] << 32 | vertices[i];
+		}
+		Arrays.sort(keys, from, to);
+		for (int i = from; i < to; i++) {
+			vertices[i] = (int) keys[i];
+		}
+	}
+}
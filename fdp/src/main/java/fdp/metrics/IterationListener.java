@@ -0,0 +1,94 @@
+package fdp.metrics;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Receives the measurements of every iteration of a simulation. A simulation
+ * without listener does not measure anything.
+ * <p>
+ * Listeners are called on the thread running the simulation, so they should
+ * return quickly. A listener shared by simulations running at once has to be
+ * thread safe.
+ */
+public interface IterationListener {
+
+	/**
+	 * Called before the first iteration of a simulation.
+	 * 
+	 * @param vertexCount number of vertices of the graph
+	 * @param edgeCount number of edges of the graph
+	 */
+	default void simulationStarted(int vertexCount, int edgeCount) {
+	}
+
+	/**
+	 * Called after every iteration.
+	 * 
+	 * @param metrics the measurements of the iteration, only valid during the
+	 *            call since the object is reused for the next iteration
+	 */
+	void iterationCompleted(IterationMetrics metrics);
+
+	/**
+	 * Called once the simulation stopped, also if it was interrupted.
+	 * 
+	 * @param iterations number of iterations simulated
+	 */
+	default void simulationFinished(int iterations) {
+	}
+
+	/**
+	 * Combines listeners into one that calls them in the given order.
+	 * 
+	 * @param listeners the listeners, null entries are ignored
+	 * @return the combined listener, or null if there is none
+	 */
+	static IterationListener of(IterationListener... listeners) {
+		IterationListener[] all = Arrays.stream(listeners).filter(Objects::nonNull).toArray(IterationListener[]::new);
+		if (all.length <= 1) {
+			return all.length == 0 ? null : all[0];
+		}
+		return new IterationListener() {
+			@Override
+			public void simulationStarted(int vertexCount, int edgeCount) {
+				for (IterationListener l : all) {
+					l.simulationStarted(vertexCount, edgeCount);
+				}
+			}
+
+			@Override
+			public void iterationCompleted(IterationMetrics metrics) {
+				for (IterationListener l : all) {
+					l.iterationCompleted(metrics);
+				}
+			}
+
+			@Override
+			public void simulationFinished(int iterations) {
+				for (IterationListener l : all) {
+					l.simulationFinished(iterations);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Creates a listener that commits a Java Flight Recorder event for every
+	 * iteration while a recording with the event fdp.Iteration enabled is
+	 * running. The listener is only compiled into the multi-release part of
+	 * the JAR for Java 17 and later.
+	 * 
+	 * @return the listener, or null if the JVM has no Flight Recorder or runs
+	 *         the classes for older versions
+	 */
+	static IterationListener flightRecorder() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return (IterationListener) Class.forName("fdp.metrics.FlightRecorderListener").getDeclaredConstructor()
+					.newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+}
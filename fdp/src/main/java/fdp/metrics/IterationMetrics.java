@@ -0,0 +1,123 @@
+package fdp.metrics;
+
+/**
+ * Measurements of a single iteration of a simulation. Durations are in
+ * nanoseconds and distances in pixels.
+ */
+public class IterationMetrics {
+
+	private int iteration;
+	private int vertexCount;
+	private double temperature;
+	private long stepNanos;
+	private long repulsionNanos;
+	private long attractionNanos;
+	private long displacementNanos;
+	private double maxForce;
+	private double maxDisplacement;
+	private double meanDisplacement;
+	private double energy;
+
+	/**
+	 * @return number of the iteration, starting with 1
+	 */
+	public int getIteration() {
+		return iteration;
+	}
+
+	public void setIteration(int iteration) {
+		this.iteration = iteration;
+	}
+
+	public int getVertexCount() {
+		return vertexCount;
+	}
+
+	public void setVertexCount(int vertexCount) {
+		this.vertexCount = vertexCount;
+	}
+
+	/**
+	 * @return the temperature the iteration was simulated with
+	 */
+	public double getTemperature() {
+		return temperature;
+	}
+
+	public void setTemperature(double temperature) {
+		this.temperature = temperature;
+	}
+
+	/**
+	 * @return time the whole step took, without the frame delay
+	 */
+	public long getStepNanos() {
+		return stepNanos;
+	}
+
+	public void setStepNanos(long stepNanos) {
+		this.stepNanos = stepNanos;
+	}
+
+	public long getRepulsionNanos() {
+		return repulsionNanos;
+	}
+
+	public void setRepulsionNanos(long repulsionNanos) {
+		this.repulsionNanos = repulsionNanos;
+	}
+
+	public long getAttractionNanos() {
+		return attractionNanos;
+	}
+
+	public void setAttractionNanos(long attractionNanos) {
+		this.attractionNanos = attractionNanos;
+	}
+
+	public long getDisplacementNanos() {
+		return displacementNanos;
+	}
+
+	public void setDisplacementNanos(long displacementNanos) {
+		this.displacementNanos = displacementNanos;
+	}
+
+	/**
+	 * @return the highest net force acting on a vertex
+	 */
+	public double getMaxForce() {
+		return maxForce;
+	}
+
+	public void setMaxForce(double maxForce) {
+		this.maxForce = maxForce;
+	}
+
+	public double getMaxDisplacement() {
+		return maxDisplacement;
+	}
+
+	public void setMaxDisplacement(double maxDisplacement) {
+		this.maxDisplacement = maxDisplacement;
+	}
+
+	public double getMeanDisplacement() {
+		return meanDisplacement;
+	}
+
+	public void setMeanDisplacement(double meanDisplacement) {
+		this.meanDisplacement = meanDisplacement;
+	}
+
+	/**
+	 * @return sum of the squared net forces acting on the vertices
+	 */
+	public double getEnergy() {
+		return energy;
+	}
+
+	public void setEnergy(double energy) {
+		this.energy = energy;
+	}
+}
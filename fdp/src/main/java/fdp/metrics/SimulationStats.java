@@ -0,0 +1,251 @@
+package fdp.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Aggregates the iterations of any number of simulations into counters and a
+ * histogram of the step time, which can be read through JMX once the stats are
+ * registered. Can be shared by simulations running at once.
+ * <p>
+ * The histogram has one bucket per power of two microseconds, bucket i counts
+ * the steps that took less than 2^i microseconds and at least half of that.
+ * Percentiles are the upper bounds of their buckets, so they are at most twice
+ * the exact value.
+ */
+public class SimulationStats implements IterationListener, SimulationStatsMBean {
+
+	private static final int BUCKETS = 40;
+
+	private final LongAdder simulations = new LongAdder();
+	private final AtomicInteger running = new AtomicInteger();
+	private final LongAdder finishedSimulations = new LongAdder();
+	private final LongAdder finishedIterations = new LongAdder();
+	private final LongAdder iterations = new LongAdder();
+	private final LongAdder stepNanos = new LongAdder();
+	private final LongAdder repulsionNanos = new LongAdder();
+	private final LongAdder attractionNanos = new LongAdder();
+	private final LongAdder displacementNanos = new LongAdder();
+	private final AtomicLong maxStepNanos = new AtomicLong();
+	private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+	// of the iteration completed last by any simulation
+	private volatile double lastTemperature;
+	private volatile double lastEnergy;
+	private volatile double lastMaxDisplacement;
+	private volatile double lastMeanDisplacement;
+
+	private ObjectName name;
+
+	@Override
+	public void simulationStarted(int vertexCount, int edgeCount) {
+		simulations.increment();
+		running.incrementAndGet();
+	}
+
+	@Override
+	public void iterationCompleted(IterationMetrics metrics) {
+		long nanos = metrics.getStepNanos();
+		iterations.increment();
+		stepNanos.add(nanos);
+		repulsionNanos.add(metrics.getRepulsionNanos());
+		attractionNanos.add(metrics.getAttractionNanos());
+		displacementNanos.add(metrics.getDisplacementNanos());
+		if (nanos > maxStepNanos.get()) {
+			maxStepNanos.accumulateAndGet(nanos, Math::max);
+		}
+		histogram.incrementAndGet(bucket(nanos));
+
+		lastTemperature = metrics.getTemperature();
+		lastEnergy = metrics.getEnergy();
+		lastMaxDisplacement = metrics.getMaxDisplacement();
+		lastMeanDisplacement = metrics.getMeanDisplacement();
+	}
+
+	@Override
+	public void simulationFinished(int iterations) {
+		running.decrementAndGet();
+		finishedSimulations.increment();
+		finishedIterations.add(iterations);
+	}
+
+	private static int bucket(long nanos) {
+		long micros = Math.max(0, nanos / 1000);
+		return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+	}
+
+	/**
+	 * Registers the stats with the platform MBean server as
+	 * fdp:type=SimulationStats,name=<name>.
+	 * 
+	 * @param name distinguishes several stats in one JVM
+	 * @return this
+	 * @throws JMException if the name is taken or invalid
+	 */
+	public SimulationStats register(String name) throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName objectName = new ObjectName("fdp:type=SimulationStats,name=" + ObjectName.quote(name));
+		server.registerMBean(this, objectName);
+		this.name = objectName;
+		return this;
+	}
+
+	/**
+	 * Removes the stats from the platform MBean server, if registered.
+	 * 
+	 * @throws JMException
+	 */
+	public void unregister() throws JMException {
+		if (name != null) {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+			name = null;
+		}
+	}
+
+	@Override
+	public long getSimulations() {
+		return simulations.sum();
+	}
+
+	@Override
+	public int getRunningSimulations() {
+		return running.get();
+	}
+
+	@Override
+	public long getIterations() {
+		return iterations.sum();
+	}
+
+	/**
+	 * @return mean number of iterations of the finished simulations
+	 */
+	@Override
+	public double getMeanIterations() {
+		return mean(finishedIterations.sum(), finishedSimulations.sum());
+	}
+
+	@Override
+	public double getMeanStepMillis() {
+		return mean(stepNanos.sum(), iterations.sum()) / 1e6;
+	}
+
+	@Override
+	public double getMaxStepMillis() {
+		return maxStepNanos.get() / 1e6;
+	}
+
+	@Override
+	public double getMeanRepulsionMillis() {
+		return mean(repulsionNanos.sum(), iterations.sum()) / 1e6;
+	}
+
+	@Override
+	public double getMeanAttractionMillis() {
+		return mean(attractionNanos.sum(), iterations.sum()) / 1e6;
+	}
+
+	@Override
+	public double getMeanDisplacementMillis() {
+		return mean(displacementNanos.sum(), iterations.sum()) / 1e6;
+	}
+
+	@Override
+	public double getStepMillis50() {
+		return percentile(0.5);
+	}
+
+	@Override
+	public double getStepMillis90() {
+		return percentile(0.9);
+	}
+
+	@Override
+	public double getStepMillis99() {
+		return percentile(0.99);
+	}
+
+	/**
+	 * @param p the fraction of steps, between 0 and 1
+	 * @return time in milliseconds that a fraction p of the steps took less
+	 *         than, 0 if there were none
+	 */
+	public double percentile(double p) {
+		long[] counts = getStepTimeHistogram();
+		long total = 0;
+		for (long count : counts) {
+			total += count;
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(p * total);
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= Math.max(1, rank)) {
+				return (1L << i) / 1e3;
+			}
+		}
+		return (1L << (counts.length - 1)) / 1e3;
+	}
+
+	@Override
+	public long[] getStepTimeHistogram() {
+		long[] counts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = histogram.get(i);
+		}
+		return counts;
+	}
+
+	@Override
+	public double getLastTemperature() {
+		return lastTemperature;
+	}
+
+	@Override
+	public double getLastEnergy() {
+		return lastEnergy;
+	}
+
+	@Override
+	public double getLastMaxDisplacement() {
+		return lastMaxDisplacement;
+	}
+
+	@Override
+	public double getLastMeanDisplacement() {
+		return lastMeanDisplacement;
+	}
+
+	/**
+	 * Resets all counters, except the number of running simulations.
+	 */
+	@Override
+	public void reset() {
+		simulations.reset();
+		finishedSimulations.reset();
+		finishedIterations.reset();
+		iterations.reset();
+		stepNanos.reset();
+		repulsionNanos.reset();
+		attractionNanos.reset();
+		displacementNanos.reset();
+		maxStepNanos.set(0);
+		for (int i = 0; i < BUCKETS; i++) {
+			histogram.set(i, 0);
+		}
+	}
+
+	private static double mean(long sum, long count) {
+		return count == 0 ? 0 : (double) sum / count;
+	}
+}
@@ -0,0 +1,43 @@
+package fdp.metrics;
+
+/**
+ * Management interface of {@link SimulationStats}.
+ */
+public interface SimulationStatsMBean {
+
+	long getSimulations();
+
+	int getRunningSimulations();
+
+	long getIterations();
+
+	double getMeanIterations();
+
+	double getMeanStepMillis();
+
+	double getMaxStepMillis();
+
+	double getMeanRepulsionMillis();
+
+	double getMeanAttractionMillis();
+
+	double getMeanDisplacementMillis();
+
+	double getStepMillis50();
+
+	double getStepMillis90();
+
+	double getStepMillis99();
+
+	long[] getStepTimeHistogram();
+
+	double getLastTemperature();
+
+	double getLastEnergy();
+
+	double getLastMaxDisplacement();
+
+	double getLastMeanDisplacement();
+
+	void reset();
+}
@@ -1,6 +1,9 @@
 package view.controller;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import fdp.GraphConfiguration;
 import javafx.fxml.FXML;
@@ -14,20 +17,54 @@ public class ChartWindowController {
 	@FXML
 	private LineChart<Double, Integer> chart;
 
+	// the data point of every cooling rate in every series
+	private final List<Map<Double, Data<Double, Integer>>> values = new ArrayList<>();
+
 	/**
-	 * Called by the {@link FindOptimumController} to display the result of the cooling rate optimization.
-	 * @param seriesList
+	 * Called by the {@link FindOptimumController} to create an empty series for every configuration before the
+	 * cooling rate optimization starts.
 	 * @param configs
 	 */
-	void showChart(List<List<Data<Double, Integer>>> seriesList, List<GraphConfiguration> configs) {
+	void showSeries(List<GraphConfiguration> configs) {
 		
 		chart.setCreateSymbols(false);
+		// points arrive one by one, animating every single one would be too slow
+		chart.setAnimated(false);
 
-		for (int i = 0; i < seriesList.size(); i++) {
+		for (GraphConfiguration config : configs) {
 			XYChart.Series<Double, Integer> xySeries = new Series<>();
-			xySeries.getData().addAll(seriesList.get(i));
 			chart.getData().add(xySeries);
-			xySeries.setName("Fa = " + configs.get(i).getParameter().getAttractiveForce() + "; Fr = " + configs.get(i).getParameter().getRepulsiveForce());
+			xySeries.setName("Fa = " + config.getParameter().getAttractiveForce() + "; Fr = " + config.getParameter().getRepulsiveForce());
+			values.add(new HashMap<>());
+		}
+	}
+
+	/**
+	 * Adds the result of a cooling rate to a series or updates it if the rate is already shown.
+	 * Must be called on the JavaFX thread.
+	 * @param configuration index of the series
+	 * @param coolingRate
+	 * @param iterations
+	 */
+	void updateValue(int configuration, double coolingRate, double iterations) {
+		int rounded = (int) Math.round(iterations);
+		Data<Double, Integer> data = values.get(configuration).get(coolingRate);
+		if (data == null) {
+			data = new Data<>(coolingRate, rounded);
+			values.get(configuration).put(coolingRate, data);
+			chart.getData().get(configuration).getData().add(data);
+		} else {
+			data.setYValue(rounded);
 		}
 	}
+
+	/**
+	 * Appends a note, e.g. the optimum, to the name of a series.
+	 * @param configuration index of the series
+	 * @param note
+	 */
+	void setNote(int configuration, String note) {
+		XYChart.Series<Double, Integer> xySeries = chart.getData().get(configuration);
+		xySeries.setName(xySeries.getName() + "; " + note);
+	}
 }
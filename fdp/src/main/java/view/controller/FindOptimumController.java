@@ -3,20 +3,25 @@ package view.controller;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.commons.lang3.math.NumberUtils;
 
-import fdp.ForceDirectedPlacement;
+import fdp.CoolingRateOptimization;
+import fdp.CoolingRateOptimum;
 import fdp.GraphConfiguration;
+import fdp.LayoutPriority;
+import fdp.LayoutScheduler;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
-import javafx.scene.chart.XYChart.Data;
+import javafx.scene.control.Button;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.TextField;
 import javafx.stage.Stage;
@@ -38,11 +43,18 @@ public class FindOptimumController {
 	private int sampleSizeValue;
 	@FXML
 	private CheckBox chartCheckBox;
+	@FXML
+	private CheckBox adaptiveCheckBox;
+	@FXML
+	private Button findOptimumButton;
 
 	private List<GraphConfiguration> graphConfigurations;
 
 	private double bestCoolingRate;
 
+	// the running search, null if there is none
+	private CoolingRateOptimization optimization;
+
 	@FXML
 	private void initialize() {
 		fromTextField.setText("0.005");
@@ -53,37 +65,86 @@ public class FindOptimumController {
 
 	@FXML
 	private void findOptimumClicked(ActionEvent e) {
+		if (optimization != null) {
+			// the button cancels the running search
+			optimization.cancel();
+			return;
+		}
 		if (!parseAndCheckFields()) {
 			MainWindowController.showErrorDialog("Are you sure that all fields are filled with correct values?", "");
 			return;
 		}
 
-		List<List<Data<Double, Integer>>> chartValuesList = new ArrayList<>();
-		for (GraphConfiguration config : this.graphConfigurations) {
+		CoolingRateOptimization running = new CoolingRateOptimization(graphConfigurations, fromValue, toValue,
+				stepSizeValue, sampleSizeValue, adaptiveCheckBox.isSelected());
+		optimization = running;
+		ChartWindowController chart = chartCheckBox.isSelected() ? showChartWindow() : null;
+		if (chart != null) {
+			// plot every cooling rate as soon as it is known
+			running.setListener((configuration, rate, iterations) -> Platform
+					.runLater(() -> chart.updateValue(configuration, rate, iterations)));
+		}
+		findOptimumButton.setText("Cancel");
+		toTextField.getScene().getWindow().setOnHidden(event -> running.cancel());
+
+		// keep the simulations off the JavaFX thread, the search runs as a batch layout
+		Runnable search = () -> {
 			try {
-				chartValuesList.add(ForceDirectedPlacement.optimizeCoolingRate(config, fromValue, toValue, stepSizeValue, sampleSizeValue));
+				List<CoolingRateOptimum> optima = running.run();
+				Platform.runLater(() -> searchFinished(optima, chart));
 			} catch (ParseException e1) {
-				MainWindowController.showErrorDialog("Parsing Error",
-						"Please make sure that the entered expressions are correct.");
+				Platform.runLater(() -> {
+					searchStopped();
+					MainWindowController.showErrorDialog("Parsing Error",
+							"Please make sure that the entered expressions are correct.");
+				});
+			} catch (CancellationException | InterruptedException e1) {
+				Platform.runLater(this::searchStopped);
+			} catch (RuntimeException e1) {
+				// a failed simulation, the search is over either way
+				Throwable cause = e1.getCause() != null ? e1.getCause() : e1;
+				Platform.runLater(() -> {
+					searchStopped();
+					MainWindowController.showErrorDialog("Cooling rate search failed", String.valueOf(cause));
+				});
 			}
+		};
+		try {
+			LayoutScheduler.getDefault().submit(Executors.callable(search), LayoutPriority.BATCH);
+		} catch (RejectedExecutionException e1) {
+			searchStopped();
+			MainWindowController.showErrorDialog("Too many simulations", e1.getMessage());
 		}
-	
-		// get the cooling rate that used the least iterations
-		Collections.sort(chartValuesList.get(0), (x, y) -> x.getYValue().compareTo(y.getYValue()));
-		bestCoolingRate = round(chartValuesList.get(0).get(0).getXValue(), 3);
-		
-		toTextField.getScene().getWindow().hide();
-		
-		if (chartCheckBox.isSelected()) {
-			showChartWindow(chartValuesList);
+	}
+
+	/**
+	 * Takes the optimum of the first configuration and closes the dialog.
+	 * @param optima
+	 * @param chart the chart window or null
+	 */
+	private void searchFinished(List<CoolingRateOptimum> optima, ChartWindowController chart) {
+		optimization = null;
+		if (chart != null) {
+			for (int i = 0; i < optima.size(); i++) {
+				CoolingRateOptimum optimum = optima.get(i);
+				chart.setNote(i, String.format("optimum %.3f (95%%: %.3f - %.3f)", optimum.getCoolingRate(),
+						optimum.getLower(), optimum.getUpper()));
+			}
 		}
+		bestCoolingRate = round(optima.get(0).getCoolingRate(), 3);
+		toTextField.getScene().getWindow().hide();
+	}
+
+	private void searchStopped() {
+		optimization = null;
+		findOptimumButton.setText("Find Optimum");
 	}
 	
 	/**
-	 * Shows the chart windows that displays the result in a chart.
-	 * @param chartValuesList
+	 * Shows the chart windows that displays the results in a chart while they come in.
+	 * @return the controller of the chart window
 	 */
-	private void showChartWindow(List<List<Data<Double, Integer>>> chartValuesList) {
+	private ChartWindowController showChartWindow() {
 		FXMLLoader loader = new FXMLLoader(getClass().getResource("/chart_window.fxml"));
 		Parent root = null;
 		try {
@@ -98,8 +159,9 @@ public class FindOptimumController {
 		stage.setResizable(false);
 		
 		ChartWindowController controller = loader.<ChartWindowController>getController();
-		controller.showChart(chartValuesList, graphConfigurations);
+		controller.showSeries(graphConfigurations);
 		stage.show();
+		return controller;
 	}
 
 	/**
@@ -0,0 +1,199 @@
+package view.controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import fdp.graph.CompactGraph;
+import fdp.layout.Snapshot;
+import fdp.layout.SnapshotBuffer;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+/**
+ * Draws the latest snapshots of a list of layouts onto a Canvas.
+ * <p>
+ * A frame is only drawn if a layout published a new snapshot since the last
+ * one or the renderer was invalidated. The level of detail depends on the size
+ * of a graph, so a frame costs about the same for any graph: small graphs are
+ * drawn with circles, larger ones with points and the largest ones are
+ * splatted into a density image. At most {@link #EDGE_BUDGET} edges of a graph
+ * are drawn, evenly picked from all of them, and edges are stroked as paths
+ * instead of single lines.
+ */
+class GraphRenderer {
+
+	static final int VERTEX_WIDTH = 16;
+
+	private static final Color BACKGROUND_COLOR = Color.LIGHTSTEELBLUE;
+	private static final Color VERTEX_FILL_COLOR = Color.WHITESMOKE;
+	private static final Color VERTEX_CIRCLE_COLOR = Color.BLACK;
+	private static final Color EDGE_COLOR = Color.BLACK;
+	private static final Color DENSE_EDGE_COLOR = Color.rgb(0, 0, 0, 0.25);
+
+	// vertices are drawn as circles up to this many vertices
+	private static final int CIRCLE_LIMIT = 2_000;
+	// and as points up to this many, above they are splatted
+	private static final int POINT_LIMIT = 50_000;
+	private static final int EDGE_BUDGET = 40_000;
+	// long paths are slow to rasterize, so they are stroked in pieces
+	private static final int PATH_SEGMENTS = 4_096;
+
+	private final Canvas canvas;
+	private final GraphicsContext gc;
+
+	// the snapshots on the canvas and the ones to draw next
+	private List<Snapshot> drawn = new ArrayList<>();
+	private List<Snapshot> next = new ArrayList<>();
+	private boolean dirty = true;
+
+	private WritableImage density;
+	private int[] counts;
+	private int[] pixels;
+
+	GraphRenderer(Canvas canvas) {
+		this.canvas = canvas;
+		this.gc = canvas.getGraphicsContext2D();
+	}
+
+	/**
+	 * Forces the next frame to be drawn, e.g. after the canvas was resized.
+	 */
+	void invalidate() {
+		dirty = true;
+	}
+
+	/**
+	 * Draws the latest snapshots of the layouts, unless they are the ones
+	 * already drawn.
+	 *
+	 * @param layouts the layouts to draw, in drawing order
+	 * @return true if a frame was drawn
+	 */
+	boolean render(List<SnapshotBuffer> layouts) {
+		next.clear();
+		for (SnapshotBuffer layout : layouts) {
+			Snapshot snapshot = layout.latest();
+			if (snapshot != null) {
+				next.add(snapshot);
+			}
+		}
+		// a snapshot is never changed, only replaced by the one of a later iteration
+		if (!dirty && next.equals(drawn)) {
+			return false;
+		}
+		List<Snapshot> swap = drawn;
+		drawn = next;
+		next = swap;
+		dirty = false;
+
+		gc.setFill(BACKGROUND_COLOR);
+		gc.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+		for (Snapshot snapshot : drawn) {
+			drawEdges(snapshot);
+			drawVertices(snapshot);
+		}
+		return true;
+	}
+
+	private void drawEdges(Snapshot s) {
+		CompactGraph g = s.getGraph();
+		int[] offsets = g.getOffsets();
+		int[] targets = g.getTargets();
+		int slots = targets.length;
+		// every edge is stored for both endpoints, only the half with i < j is drawn
+		int stride = Math.max(1, (slots + 2 * EDGE_BUDGET - 1) / (2 * EDGE_BUDGET));
+		int n = s.getVertexCount();
+		double d = VERTEX_WIDTH / 2.0;
+
+		if (stride > 1 || n > CIRCLE_LIMIT) {
+			gc.setStroke(DENSE_EDGE_COLOR);
+			gc.setLineWidth(0.5);
+		} else {
+			gc.setStroke(EDGE_COLOR);
+			gc.setLineWidth(2);
+		}
+		gc.beginPath();
+		int segments = 0;
+		int i = 0;
+		for (int e = 0; e < slots; e += stride) {
+			while (offsets[i + 1] <= e) {
+				i++;
+			}
+			int j = targets[e];
+			if (i < j) {
+				gc.moveTo(s.getX(i) + d, s.getY(i) + d);
+				gc.lineTo(s.getX(j) + d, s.getY(j) + d);
+				if (++segments == PATH_SEGMENTS) {
+					gc.stroke();
+					gc.beginPath();
+					segments = 0;
+				}
+			}
+		}
+		gc.stroke();
+	}
+
+	private void drawVertices(Snapshot s) {
+		int n = s.getVertexCount();
+		if (n <= CIRCLE_LIMIT) {
+			gc.setFill(VERTEX_FILL_COLOR);
+			for (int i = 0; i < n; i++) {
+				gc.fillOval(s.getX(i), s.getY(i), VERTEX_WIDTH, VERTEX_WIDTH);
+			}
+			gc.setStroke(VERTEX_CIRCLE_COLOR);
+			gc.setLineWidth(2);
+			for (int i = 0; i < n; i++) {
+				gc.strokeOval(s.getX(i), s.getY(i), VERTEX_WIDTH, VERTEX_WIDTH);
+			}
+		} else if (n <= POINT_LIMIT) {
+			double d = VERTEX_WIDTH / 2.0 - 1;
+			gc.setFill(VERTEX_CIRCLE_COLOR);
+			for (int i = 0; i < n; i++) {
+				gc.fillRect(s.getX(i) + d, s.getY(i) + d, 2, 2);
+			}
+		} else {
+			splat(s);
+		}
+	}
+
+	/**
+	 * Counts the vertices per pixel and draws the counts as an image, darker
+	 * with more vertices, which costs a constant time per vertex and pixel.
+	 */
+	private void splat(Snapshot s) {
+		int width = (int) canvas.getWidth();
+		int height = (int) canvas.getHeight();
+		if (width <= 0 || height <= 0) {
+			return;
+		}
+		if (density == null || density.getWidth() != width || density.getHeight() != height) {
+			density = new WritableImage(width, height);
+			counts = new int[width * height];
+			pixels = new int[width * height];
+		} else {
+			Arrays.fill(counts, 0);
+		}
+		int d = VERTEX_WIDTH / 2;
+		int max = 1;
+		for (int i = 0; i < s.getVertexCount(); i++) {
+			int px = (int) s.getX(i) + d;
+			int py = (int) s.getY(i) + d;
+			if (px >= 0 && px < width && py >= 0 && py < height) {
+				max = Math.max(max, ++counts[py * width + px]);
+			}
+		}
+		// logarithmic, so single vertices stay visible next to dense clusters
+		double scale = 255 / Math.log1p(max);
+		for (int p = 0; p < pixels.length; p++) {
+			int c = counts[p];
+			// premultiplied black, only the alpha varies
+			pixels[p] = c == 0 ? 0 : Math.max(96, (int) (Math.log1p(c) * scale)) << 24;
+		}
+		density.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbPreInstance(), pixels, 0, width);
+		gc.drawImage(density, 0, 0);
+	}
+}
@@ -4,29 +4,26 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
-import javax.vecmath.Vector2d;
-
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.jgrapht.Graph;
-import org.jgrapht.generate.GnmRandomGraphGenerator;
 import org.jgrapht.generate.GraphGenerator;
-import org.jgrapht.generate.GridGraphGenerator;
-import org.jgrapht.generate.HyperCubeGraphGenerator;
-import org.jgrapht.generate.LinearGraphGenerator;
-import org.jgrapht.generate.RingGraphGenerator;
-import org.jgrapht.generate.StarGraphGenerator;
-import org.jgrapht.generate.WheelGraphGenerator;
 
 import fdp.ForceDirectedPlacement;
 import fdp.GraphConfiguration;
+import fdp.GraphType;
+import fdp.IncrementalLayout;
 import fdp.Parameter;
+import fdp.RepulsionMode;
 import fdp.graph.Edge;
 import fdp.graph.Vertex;
+import fdp.layout.SnapshotBuffer;
 import javafx.animation.AnimationTimer;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -34,26 +31,25 @@ import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
-import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.RadioButton;
 import javafx.scene.control.TextField;
+import javafx.scene.control.ToggleButton;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Pane;
-import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 import parsii.tokenizer.ParseException;
 
 public class MainWindowController {
 
-	private static final Color VERTEX_FILL_COLOR = Color.WHITESMOKE;
-	private static final Color VERTEX_CIRCLE_COLOR = Color.BLACK;
-	private static final Color EDGE_COLOR = Color.BLACK;
-	private static final int VERTEX_WIDTH = 16;
+	private static final int VERTEX_WIDTH = GraphRenderer.VERTEX_WIDTH;
+	// edges of a vertex added by hand
+	private static final int ADDED_DEGREE = 2;
 
 	@FXML
 	private Pane pane;
@@ -73,9 +69,13 @@ public class MainWindowController {
 	@FXML
 	private TextField repulsiveForcesTextField;
 	@FXML
+	private ChoiceBox<String> repulsionChoiceBox;
+	@FXML
 	private TextField coolingRateTextField;
 	private float coolingRateValue;
 	@FXML
+	private CheckBox adaptiveCoolingCheckBox;
+	@FXML
 	private ChoiceBox<String> graphChoiceBox;
 	@FXML
 	private TextField graphSizeTextField;
@@ -83,17 +83,22 @@ public class MainWindowController {
 	@FXML
 	private TextField frameDelayTextField;
 	private int frameDelayValue;
+	@FXML
+	private ToggleButton pauseToggleButton;
 
-	private GraphicsContext gc;
-	private List<Graph<Vertex, Edge>> graphs = new ArrayList<>();
+	private GraphRenderer renderer;
+	// the positions of the running or finished simulations
+	private List<SnapshotBuffer> layouts = new ArrayList<>();
+	// the simulations publishing to the layouts
+	private List<IncrementalLayout> simulations = new ArrayList<>();
+	// the vertices of every simulation, to pick the changes from
+	private List<List<Vertex>> vertices = new ArrayList<>();
+	private Random random = new Random();
 
 	private AnimationTimer animation = new AnimationTimer() {
 		@Override
 		public void handle(long now) {
-			reset(gc.getCanvas());
-			for (Graph<Vertex, Edge> g : graphs) {
-				drawGraph(gc, g);
-			}
+			renderer.render(layouts);
 		}
 	};
 
@@ -104,18 +109,17 @@ public class MainWindowController {
 		pane.getChildren().add(canvas);
 		pane.widthProperty().addListener(o -> {
 			canvas.setWidth(pane.getWidth());
-			reset(canvas);
+			renderer.invalidate();
 		});
 		pane.heightProperty().addListener(o -> {
 			canvas.setHeight(pane.getHeight());
-			reset(canvas);
+			renderer.invalidate();
 		});
 
-		gc = canvas.getGraphicsContext2D();
-		gc.setLineWidth(2);
-		reset(canvas);
+		renderer = new GraphRenderer(canvas);
 
 		graphChoiceBox.getSelectionModel().select(0);
+		repulsionChoiceBox.getSelectionModel().select(0);
 		criterionTextField.setText("15");
 		attractiveForcesTextField.setText("(d * d) / k");
 		repulsiveForcesTextField.setText("(k * k) / d");
@@ -127,46 +131,19 @@ public class MainWindowController {
 		animation.start();
 	}
 
-	private void reset(Canvas canvas) {
-		GraphicsContext gc = canvas.getGraphicsContext2D();
-		gc.setFill(Color.LIGHTSTEELBLUE);
-		gc.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
-	}
-
-	private void drawGraph(GraphicsContext gc, Graph<Vertex, Edge> g) {
-		for (Edge e : g.edgeSet()) {
-			Vector2d uPos = e.getU().getPos();
-			Vector2d vPos = e.getV().getPos();
-			int d = VERTEX_WIDTH / 2;
-			gc.setFill(EDGE_COLOR);
-			gc.strokeLine(uPos.x + d, uPos.y + d, vPos.x + d, vPos.y + d);
-		}
-		for (Vertex v : g.vertexSet()) {
-			gc.setFill(VERTEX_FILL_COLOR);
-			gc.fillOval(v.getPos().x, v.getPos().y, VERTEX_WIDTH, VERTEX_WIDTH);
-			gc.setFill(VERTEX_CIRCLE_COLOR);
-			gc.strokeOval(v.getPos().x, v.getPos().y, VERTEX_WIDTH, VERTEX_WIDTH);
-		}
+	private GraphGenerator<Vertex, Edge, ?> getSelectedGraphGenerator() {
+		GraphType type = GraphType.fromDisplayName(graphChoiceBox.getSelectionModel().getSelectedItem());
+		return type == null ? null : type.createGenerator(graphSizeValue);
 	}
 
-	private GraphGenerator<Vertex, Edge, ?> getSelectedGraphGenerator() {
-		switch (graphChoiceBox.getSelectionModel().getSelectedItem()) {
-		case "Random":
-			return new GnmRandomGraphGenerator<>(graphSizeValue, graphSizeValue);
-		case "Linear":
-			return new LinearGraphGenerator<>(graphSizeValue);
+	private RepulsionMode getSelectedRepulsionMode() {
+		switch (repulsionChoiceBox.getSelectionModel().getSelectedItem()) {
+		case "Barnes-Hut":
+			return RepulsionMode.BARNES_HUT;
 		case "Grid":
-			return new GridGraphGenerator<>(graphSizeValue, graphSizeValue);
-		case "Ring":
-			return new RingGraphGenerator<>(graphSizeValue);
-		case "Star":
-			return new StarGraphGenerator<>(graphSizeValue);
-		case "Wheel":
-			return new WheelGraphGenerator<>(graphSizeValue);
-		case "Hyper Cube":
-			return new HyperCubeGraphGenerator<>(graphSizeValue);
+			return RepulsionMode.GRID;
 		}
-		return null;
+		return RepulsionMode.EXACT;
 	}
 
 	static void showErrorDialog(String title, String msg) {
@@ -217,12 +194,73 @@ public class MainWindowController {
 	protected void simulateClicked(ActionEvent e) {
 		for (GraphConfiguration config : getGraphConfigurations()) {
 			Graph<Vertex, Edge> graph = config.generateGraph();
+			SnapshotBuffer snapshots = new SnapshotBuffer();
 			try {
-				ForceDirectedPlacement.simulate(graph, config.getParameter());
+				// a copy, the layout changes the graph while it is running
+				List<Vertex> graphVertices = new ArrayList<>(graph.vertexSet());
+				this.simulations.add(ForceDirectedPlacement.simulateIncrementally(graph, config.getParameter(), snapshots));
+				this.vertices.add(graphVertices);
+				this.layouts.add(snapshots);
 			} catch (ParseException e1) {
 				MainWindowController.showErrorDialog("Parsing Error", "Please make sure that the entered expressions are correct.");
+			} catch (RejectedExecutionException e1) {
+				MainWindowController.showErrorDialog("Too many simulations", e1.getMessage());
+			}
+		}
+		pauseToggleButton.setSelected(false);
+	}
+
+	@FXML
+	protected void pauseClicked(ActionEvent e) {
+		for (IncrementalLayout simulation : simulations) {
+			if (pauseToggleButton.isSelected()) {
+				simulation.getHandle().pause();
+			} else {
+				simulation.getHandle().resume();
+			}
+		}
+	}
+
+	/**
+	 * Adds a vertex connected to a few random vertices to every layout, which
+	 * only moves the vertices around it instead of starting over.
+	 */
+	@FXML
+	protected void addVertexClicked(ActionEvent e) {
+		for (int i = 0; i < simulations.size(); i++) {
+			IncrementalLayout simulation = simulations.get(i);
+			List<Vertex> graphVertices = vertices.get(i);
+			List<Vertex> neighbours = new ArrayList<>();
+			for (int j = 0; j < ADDED_DEGREE && !graphVertices.isEmpty(); j++) {
+				neighbours.add(graphVertices.get(random.nextInt(graphVertices.size())));
 			}
-			this.graphs.add(graph);
+			Vertex v = new Vertex();
+			graphVertices.add(v);
+			change(() -> simulation.addVertex(v, neighbours));
+		}
+	}
+
+	/**
+	 * Removes a random vertex from every layout.
+	 */
+	@FXML
+	protected void removeVertexClicked(ActionEvent e) {
+		for (int i = 0; i < simulations.size(); i++) {
+			IncrementalLayout simulation = simulations.get(i);
+			List<Vertex> graphVertices = vertices.get(i);
+			if (!graphVertices.isEmpty()) {
+				Vertex v = graphVertices.remove(random.nextInt(graphVertices.size()));
+				change(() -> simulation.removeVertex(v));
+			}
+		}
+	}
+
+	private void change(Runnable change) {
+		try {
+			change.run();
+		} catch (RejectedExecutionException e1) {
+			// the change stays queued for the next one
+			MainWindowController.showErrorDialog("Too many simulations", e1.getMessage());
 		}
 	}
 
@@ -252,7 +290,11 @@ public class MainWindowController {
 		}
 		
 		List<Pair<String, String>> forceFunctions = parseForceFunctions();
-		this.graphs.clear();
+		// the previous simulations are no longer drawn
+		this.simulations.forEach(simulation -> simulation.getHandle().cancel());
+		this.simulations.clear();
+		this.vertices.clear();
+		this.layouts.clear();
 		
 		for (Pair<String, String> forces : forceFunctions) {
 			
@@ -262,8 +304,10 @@ public class MainWindowController {
 			p.setEquilibriumCriterion(mechEquiRadioButton.isSelected());
 			p.setAttractiveForce(forces.getLeft());
 			p.setRepulsiveForce(forces.getRight());
+			p.setRepulsionMode(getSelectedRepulsionMode());
 			p.setCriterion(criterionValue);
 			p.setCoolingRate(coolingRateValue);
+			p.setAdaptiveCooling(adaptiveCoolingCheckBox.isSelected());
 			p.setFrameDelay(frameDelayValue);
 			
 			graphConfigs.add(new GraphConfiguration(getSelectedGraphGenerator(), p));
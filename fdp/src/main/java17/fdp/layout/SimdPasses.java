@@ -0,0 +1,129 @@
+package fdp.layout;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The passes of {@link VectorPasses} with the Vector API, using the widest
+ * vectors of the processor. Lanes that do not fill a whole vector at the end
+ * of a range are processed one at a time with the same operations, fused
+ * multiply-adds included, so a vertex is displaced the same way whichever part
+ * of a range it falls into and the result does not depend on how the passes
+ * are split.
+ */
+final class SimdPasses extends VectorPasses {
+
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	SimdPasses() {
+		if (SPECIES.length() < 2) {
+			throw new UnsupportedOperationException("No SIMD registers for doubles");
+		}
+	}
+
+	@Override
+	void repulse(double[] x, double[] y, int n, int from, int to, double c, int e, double[] dispX,
+			double[] dispY) {
+		int lanes = SPECIES.length();
+		int bound = SPECIES.loopBound(n);
+		DoubleVector zero = DoubleVector.zero(SPECIES);
+		for (int i = from; i < to; i++) {
+			double xi = x[i];
+			double yi = y[i];
+			DoubleVector vxi = DoubleVector.broadcast(SPECIES, xi);
+			DoubleVector vyi = DoubleVector.broadcast(SPECIES, yi);
+			DoubleVector fx = zero;
+			DoubleVector fy = zero;
+			int j = 0;
+			for (; j < bound; j += lanes) {
+				DoubleVector dx = vxi.sub(DoubleVector.fromArray(SPECIES, x, j));
+				DoubleVector dy = vyi.sub(DoubleVector.fromArray(SPECIES, y, j));
+				DoubleVector d2 = dx.mul(dx).add(dy.mul(dy));
+				// also masks j == i
+				VectorMask<Double> apart = d2.compare(VectorOperators.GT, 0);
+				DoubleVector f = factor(d2, c, e).blend(zero, apart.not());
+				fx = dx.fma(f, fx);
+				fy = dy.fma(f, fy);
+			}
+			double sx = fx.reduceLanes(VectorOperators.ADD);
+			double sy = fy.reduceLanes(VectorOperators.ADD);
+			for (; j < n; j++) {
+				double dx = xi - x[j];
+				double dy = yi - y[j];
+				double d2 = dx * dx + dy * dy;
+				if (d2 > 0) {
+					double f = factor(d2, c, e);
+					sx = Math.fma(dx, f, sx);
+					sy = Math.fma(dy, f, sy);
+				}
+			}
+			dispX[i] = sx;
+			dispY[i] = sy;
+		}
+	}
+
+	/**
+	 * c * d^e of the squared distances, without a square root for even e.
+	 */
+	private static DoubleVector factor(DoubleVector d2, double c, int e) {
+		int half = Math.floorDiv(e, 2);
+		DoubleVector p = DoubleVector.broadcast(SPECIES, c);
+		for (int h = 0; h < half; h++) {
+			p = p.mul(d2);
+		}
+		for (int h = 0; h > half; h--) {
+			p = p.div(d2);
+		}
+		return (e & 1) == 0 ? p : p.mul(d2.lanewise(VectorOperators.SQRT));
+	}
+
+	private static double factor(double d2, double c, int e) {
+		int half = Math.floorDiv(e, 2);
+		double p = c;
+		for (int h = 0; h < half; h++) {
+			p *= d2;
+		}
+		for (int h = 0; h > half; h--) {
+			p /= d2;
+		}
+		return (e & 1) == 0 ? p : p * Math.sqrt(d2);
+	}
+
+	@Override
+	double displace(double[] x, double[] y, double[] dispX, double[] dispY, int from, int to, double t,
+			double frameWidth, double frameHeight) {
+		int lanes = SPECIES.length();
+		int bound = from + SPECIES.loopBound(to - from);
+		DoubleVector zero = DoubleVector.zero(SPECIES);
+		DoubleVector max = zero;
+		int i = from;
+		for (; i < bound; i += lanes) {
+			DoubleVector dx = DoubleVector.fromArray(SPECIES, dispX, i);
+			DoubleVector dy = DoubleVector.fromArray(SPECIES, dispY, i);
+			DoubleVector length = dx.mul(dx).add(dy.mul(dy)).lanewise(VectorOperators.SQRT);
+			max = max.max(length);
+			// limit maximum displacement by temperature t, vertices without force stay
+			DoubleVector scale = length.min(t).div(length).blend(zero, length.compare(VectorOperators.EQ, 0));
+			DoubleVector vx = dx.fma(scale, DoubleVector.fromArray(SPECIES, x, i));
+			DoubleVector vy = dy.fma(scale, DoubleVector.fromArray(SPECIES, y, i));
+			// prevent being displaced outside the frame
+			vx.max(0.0).min(frameWidth).intoArray(x, i);
+			vy.max(0.0).min(frameHeight).intoArray(y, i);
+		}
+		double maxForce = max.reduceLanes(VectorOperators.MAX);
+		for (; i < to; i++) {
+			double length = Math.sqrt(dispX[i] * dispX[i] + dispY[i] * dispY[i]);
+			maxForce = Math.max(maxForce, length);
+			if (length > 0) {
+				double scale = Math.min(length, t) / length;
+				x[i] = Math.fma(dispX[i], scale, x[i]);
+				y[i] = Math.fma(dispY[i], scale, y[i]);
+			}
+			x[i] = Math.min(frameWidth, Math.max(0.0, x[i]));
+			y[i] = Math.min(frameHeight, Math.max(0.0, y[i]));
+		}
+		return maxForce;
+	}
+}
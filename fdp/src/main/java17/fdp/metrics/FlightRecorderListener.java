@@ -0,0 +1,74 @@
+package fdp.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Commits an {@link IterationEvent} for every iteration, see
+ * {@link IterationListener#flightRecorder()}. Compiled for Java 17 only, like
+ * the SIMD passes, and only loaded if the JVM has a Flight Recorder.
+ */
+class FlightRecorderListener implements IterationListener {
+
+	@Override
+	public void iterationCompleted(IterationMetrics metrics) {
+		IterationEvent event = new IterationEvent();
+		if (!event.shouldCommit()) {
+			return;
+		}
+		event.iteration = metrics.getIteration();
+		event.vertexCount = metrics.getVertexCount();
+		event.temperature = metrics.getTemperature();
+		event.stepTime = metrics.getStepNanos();
+		event.repulsionTime = metrics.getRepulsionNanos();
+		event.attractionTime = metrics.getAttractionNanos();
+		event.displacementTime = metrics.getDisplacementNanos();
+		event.maxDisplacement = metrics.getMaxDisplacement();
+		event.meanDisplacement = metrics.getMeanDisplacement();
+		event.energy = metrics.getEnergy();
+		event.commit();
+	}
+
+	@Name("fdp.Iteration")
+	@Label("Layout Iteration")
+	@Category("Force-Directed Placement")
+	static class IterationEvent extends Event {
+
+		@Label("Iteration")
+		int iteration;
+
+		@Label("Vertices")
+		int vertexCount;
+
+		@Label("Temperature")
+		double temperature;
+
+		@Label("Step Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long stepTime;
+
+		@Label("Repulsion Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long repulsionTime;
+
+		@Label("Attraction Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long attractionTime;
+
+		@Label("Displacement Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long displacementTime;
+
+		@Label("Max Displacement")
+		double maxDisplacement;
+
+		@Label("Mean Displacement")
+		double meanDisplacement;
+
+		@Label("Energy")
+		double energy;
+	}
+}
@@ -0,0 +1,99 @@
+package fdp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jgrapht.Graph;
+import org.jgrapht.generate.GridGraphGenerator;
+import org.jgrapht.graph.SimpleGraph;
+import org.junit.Test;
+
+import fdp.graph.Edge;
+import fdp.graph.EdgeFactory;
+import fdp.graph.Vertex;
+import fdp.graph.VertexFactory;
+import fdp.metrics.IterationMetrics;
+
+/**
+ * Lays out graphs with several components, run at once and in slices.
+ */
+public class ComponentSimulationTest {
+
+	@Test
+	public void componentsArePackedIntoTheFrame() throws Exception {
+		for (boolean stepped : new boolean[] { false, true }) {
+			Graph<Vertex, Edge> graph = grids(4, 6);
+			ComponentSimulation simulation = new ComponentSimulation(graph, parameter());
+			int iterations;
+			if (stepped) {
+				simulation.begin();
+				// slices of a few iterations, as the scheduler runs them
+				for (int target = 3; simulation.advance(target, Long.MAX_VALUE); target += 3) {
+					assertEquals(target, simulation.getIteration());
+				}
+				iterations = simulation.end();
+			} else {
+				iterations = simulation.startSimulation();
+			}
+			assertEquals(40, iterations);
+			for (Vertex v : graph.vertexSet()) {
+				assertTrue(v.getPos().x >= 0 && v.getPos().x <= 600);
+				assertTrue(v.getPos().y >= 0 && v.getPos().y <= 600);
+			}
+		}
+	}
+
+	@Test
+	public void steppedComponentsRunInParallel() throws Exception {
+		assumeTrue(Runtime.getRuntime().availableProcessors() > 1);
+		LayoutScheduler scheduler = new LayoutScheduler(4, LayoutScheduler.DEFAULT_CAPACITY, false);
+		try {
+			ComponentSimulation simulation = new ComponentSimulation(grids(4, 20), parameter());
+			AtomicInteger active = new AtomicInteger();
+			AtomicInteger most = new AtomicInteger();
+			simulation.setListener((IterationMetrics metrics) -> {
+				most.accumulateAndGet(active.incrementAndGet(), Math::max);
+				try {
+					// long enough for the steps of other components to overlap
+					Thread.sleep(1);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				active.decrementAndGet();
+			});
+			// paced, so every slice advances all components a little
+			scheduler.submit(simulation, LayoutPriority.INTERACTIVE, TimeUnit.MICROSECONDS.toNanos(100)).get(30,
+					TimeUnit.SECONDS);
+			assertTrue(most.get() > 1);
+		} finally {
+			scheduler.shutdown();
+		}
+	}
+
+	private static Parameter parameter() {
+		Parameter p = new Parameter();
+		p.setFrameWidth(600);
+		p.setFrameHeight(600);
+		p.setRepulsionMode(RepulsionMode.GRID);
+		p.setCriterion(40);
+		p.setCoolingRate(0.02);
+		p.setAttractiveForce("(d * d) / k");
+		p.setRepulsiveForce("(k * k) / d");
+		return p;
+	}
+
+	/**
+	 * @return a graph of several grids that are not connected
+	 */
+	private static Graph<Vertex, Edge> grids(int count, int size) {
+		Graph<Vertex, Edge> graph = new SimpleGraph<>(new EdgeFactory());
+		for (int i = 0; i < count; i++) {
+			new GridGraphGenerator<Vertex, Edge>(size, size).generateGraph(graph, new VertexFactory(), null);
+		}
+		return graph;
+	}
+}
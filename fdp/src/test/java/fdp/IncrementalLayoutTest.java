@@ -0,0 +1,136 @@
+package fdp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.vecmath.Vector2d;
+
+import org.jgrapht.Graph;
+import org.jgrapht.generate.GridGraphGenerator;
+import org.jgrapht.graph.SimpleGraph;
+import org.junit.Test;
+
+import fdp.graph.Edge;
+import fdp.graph.EdgeFactory;
+import fdp.graph.Vertex;
+import fdp.graph.VertexFactory;
+import fdp.layout.Snapshot;
+import fdp.layout.SnapshotBuffer;
+import parsii.tokenizer.ParseException;
+
+/**
+ * Changes graphs while and after they are laid out.
+ */
+public class IncrementalLayoutTest {
+
+	@Test
+	public void changesDuringTheFirstRunAreApplied() throws ParseException {
+		Graph<Vertex, Edge> graph = grid(10);
+		Vertex[] vertices = graph.vertexSet().toArray(new Vertex[0]);
+		IncrementalLayout layout = new IncrementalLayout(graph, parameter());
+		SnapshotBuffer snapshots = new SnapshotBuffer();
+		layout.setSnapshots(snapshots);
+
+		layout.begin();
+		assertTrue(layout.advance(20, Long.MAX_VALUE));
+		Vertex added = new Vertex();
+		layout.addVertex(added, Arrays.asList(vertices[0], vertices[1]));
+		layout.removeVertex(vertices[50]);
+		layout.removeEdge(vertices[0], vertices[1]);
+		assertTrue(layout.advance(21, Long.MAX_VALUE));
+
+		Snapshot snapshot = snapshots.latest();
+		assertEquals(100, snapshot.getGraph().getVertexCount());
+		assertEquals(graph.edgeSet().size(), snapshot.getGraph().getEdgeCount());
+		while (layout.advance(Integer.MAX_VALUE, Long.MAX_VALUE)) {
+			// until the layout is finished
+		}
+		layout.end();
+		assertEquals(100, graph.vertexSet().size());
+		assertTrue(graph.containsEdge(added, vertices[1]));
+		// the new vertex was laid out with the others
+		assertTrue(added.getPos().x > 0 || added.getPos().y > 0);
+	}
+
+	@Test
+	public void changesWaitUntilTheComponentsArePacked() throws ParseException {
+		Graph<Vertex, Edge> graph = grid(5);
+		Graph<Vertex, Edge> other = grid(5);
+		Vertex[] vertices = graph.vertexSet().toArray(new Vertex[0]);
+		Vertex[] others = other.vertexSet().toArray(new Vertex[0]);
+		other.vertexSet().forEach(graph::addVertex);
+		other.edgeSet().forEach(e -> graph.addEdge(e.getV(), e.getU()));
+		IncrementalLayout layout = new IncrementalLayout(graph, parameter());
+
+		layout.begin();
+		assertTrue(layout.advance(5, Long.MAX_VALUE));
+		layout.addEdge(vertices[0], others[0]);
+		assertTrue(layout.advance(6, Long.MAX_VALUE));
+		assertFalse(graph.containsEdge(vertices[0], others[0]));
+		while (layout.advance(Integer.MAX_VALUE, Long.MAX_VALUE)) {
+			// the components are packed, then the edge is added and its region settles
+		}
+		layout.end();
+		assertTrue(graph.containsEdge(vertices[0], others[0]));
+	}
+
+	@Test
+	public void relayoutOnlyMovesTheRegionOfTheChanges() throws ParseException {
+		Graph<Vertex, Edge> graph = grid(30);
+		Parameter p = parameter();
+		new Simulation(graph, p).startSimulation();
+		p.setInitialPlacement(InitialPlacement.KEEP);
+		IncrementalLayout layout = new IncrementalLayout(graph, p);
+		Map<Vertex, Vector2d> before = new HashMap<>();
+		for (Vertex v : graph.vertexSet()) {
+			before.put(v, new Vector2d(v.getPos()));
+		}
+
+		Vertex corner = graph.vertexSet().iterator().next();
+		Vertex added = new Vertex();
+		layout.addVertex(added, Arrays.asList(corner));
+		int iterations = layout.relayout();
+		assertTrue(iterations > 0 && iterations <= 50);
+
+		int moved = 0;
+		for (Vertex v : graph.vertexSet()) {
+			if (v != added && !v.getPos().equals(before.get(v))) {
+				moved++;
+			}
+		}
+		// the corner, its neighbours and theirs at most
+		assertTrue(moved > 0 && moved <= 1 + 2 + 3);
+		double k = Simulation.optimalDistance(p.getFrameWidth() * p.getFrameWidth(), 900);
+		Vector2d distance = new Vector2d(added.getPos());
+		distance.sub(corner.getPos());
+		assertTrue(distance.length() < 3 * k);
+
+		// nothing queued, nothing to do
+		assertEquals(0, layout.relayout());
+	}
+
+	private static Parameter parameter() {
+		Parameter p = new Parameter();
+		p.setFrameWidth(600);
+		p.setFrameHeight(600);
+		p.setRepulsionMode(RepulsionMode.GRID);
+		p.setEquilibriumCriterion(true);
+		p.setCriterion(1);
+		p.setMaxIterations(200);
+		p.setCoolingRate(0.02);
+		p.setAttractiveForce("(d * d) / k");
+		p.setRepulsiveForce("(k * k) / d");
+		return p;
+	}
+
+	private static Graph<Vertex, Edge> grid(int size) {
+		Graph<Vertex, Edge> graph = new SimpleGraph<>(new EdgeFactory());
+		new GridGraphGenerator<Vertex, Edge>(size, size).generateGraph(graph, new VertexFactory(), null);
+		return graph;
+	}
+}
@@ -0,0 +1,395 @@
+package fdp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jgrapht.Graph;
+import org.jgrapht.generate.GridGraphGenerator;
+import org.jgrapht.graph.SimpleGraph;
+import org.junit.After;
+import org.junit.Test;
+
+import fdp.graph.Edge;
+import fdp.graph.EdgeFactory;
+import fdp.graph.Vertex;
+import fdp.graph.VertexFactory;
+import parsii.tokenizer.ParseException;
+
+/**
+ * Runs layouts on a {@link LayoutScheduler} with few workers.
+ */
+public class LayoutSchedulerTest {
+
+	private LayoutScheduler scheduler;
+
+	@After
+	public void shutdown() {
+		if (scheduler != null) {
+			scheduler.shutdown();
+		}
+	}
+
+	@Test
+	public void repeatedLayoutsStartNoThreads() throws Exception {
+		scheduler = new LayoutScheduler(2, LayoutScheduler.DEFAULT_CAPACITY, false);
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		// starts the workers and the shared pools of the steps
+		wave();
+		long started = threads.getTotalStartedThreadCount();
+		for (int i = 0; i < 4; i++) {
+			wave();
+		}
+		// every layout of the waves splits its steps or components, none of them starts a thread
+		assertTrue(threads.getTotalStartedThreadCount() - started <= 2);
+	}
+
+	/**
+	 * Runs graphs with two components, whose components are laid out in
+	 * parallel, and simulations whose steps are split.
+	 */
+	private void wave() throws Exception {
+		List<Future<?>> layouts = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			Parameter p = parameter(2);
+			Graph<Vertex, Edge> graph = grid(6);
+			grid(6).edgeSet().forEach(e -> {
+				graph.addVertex(e.getV());
+				graph.addVertex(e.getU());
+				graph.addEdge(e.getV(), e.getU());
+			});
+			ComponentSimulation components = new ComponentSimulation(graph, parameter(1));
+			layouts.add(scheduler.submit(components::startSimulation, LayoutPriority.BATCH));
+			layouts.add(scheduler.submit(new Simulation(grid(10), p), LayoutPriority.INTERACTIVE));
+		}
+		for (Future<?> layout : layouts) {
+			layout.get(30, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test
+	public void pausedSteppedLayoutsGiveTheirWorkerBack() throws Exception {
+		scheduler = new LayoutScheduler(1, LayoutScheduler.DEFAULT_CAPACITY, false);
+		Steps steps = new Steps(Integer.MAX_VALUE);
+		LayoutHandle<Integer> paused = scheduler.submit(steps, LayoutPriority.BATCH);
+		steps.started.await();
+		paused.pause();
+		assertTrue(paused.isPaused());
+
+		// the only worker runs the other layout meanwhile
+		LayoutHandle<String> other = scheduler.submit(() -> "done", LayoutPriority.BATCH);
+		assertEquals("done", other.get(5, TimeUnit.SECONDS));
+		int iteration = steps.getIteration();
+		Thread.sleep(50);
+		assertEquals(iteration, steps.getIteration());
+
+		paused.resume();
+		assertFalse(paused.isPaused());
+		while (steps.getIteration() == iteration) {
+			Thread.sleep(1);
+		}
+		paused.cancel();
+		assertTrue(paused.isCancelled());
+		assertTrue(steps.ended.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void pacedLayoutsRunAStepEveryStepTime() throws Exception {
+		// a single worker for all of them, so none may keep it while waiting for its next frame
+		scheduler = new LayoutScheduler(1, LayoutScheduler.DEFAULT_CAPACITY, false);
+		long stepNanos = TimeUnit.MILLISECONDS.toNanos(4);
+		List<Steps> layouts = new ArrayList<>();
+		List<LayoutHandle<Integer>> handles = new ArrayList<>();
+		long start = System.nanoTime();
+		for (int i = 0; i < 4; i++) {
+			Steps steps = new Steps(Integer.MAX_VALUE, false);
+			layouts.add(steps);
+			handles.add(scheduler.submit(steps, LayoutPriority.INTERACTIVE, stepNanos));
+		}
+		Thread.sleep(400);
+		// the worker is free between the slices
+		assertEquals("batch", scheduler.submit(() -> "batch", LayoutPriority.BATCH).get(1, TimeUnit.SECONDS));
+		int[] iterations = new int[layouts.size()];
+		for (int i = 0; i < layouts.size(); i++) {
+			iterations[i] = layouts.get(i).getIteration();
+		}
+		long expected = (System.nanoTime() - start) / stepNanos;
+		for (int i = 0; i < layouts.size(); i++) {
+			handles.get(i).cancel();
+			// neither far behind nor running flat out
+			assertTrue(iterations[i] + " of " + expected, iterations[i] >= expected / 2);
+			assertTrue(iterations[i] + " of " + expected, iterations[i] <= expected + 2);
+		}
+	}
+
+	@Test
+	public void slowPacedLayoutsYieldAfterTheirBudget() throws Exception {
+		scheduler = new LayoutScheduler(1, LayoutScheduler.DEFAULT_CAPACITY, false);
+		// steps take a millisecond but are due every 10 microseconds
+		Steps steps = new Steps(Integer.MAX_VALUE, true);
+		LayoutHandle<Integer> handle = scheduler.submit(steps, LayoutPriority.BATCH,
+				TimeUnit.MICROSECONDS.toNanos(10));
+		steps.started.await();
+		long start = System.nanoTime();
+		scheduler.submit(() -> null, LayoutPriority.BATCH).get(1, TimeUnit.SECONDS);
+		// the other layout waited for a slice at most, not for the layout to catch up
+		assertTrue(System.nanoTime() - start < 4 * LayoutScheduler.FRAME_NANOS);
+		handle.cancel();
+		assertTrue(steps.ended.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void pausedLayoutsWaitOnTheirWorker() throws Exception {
+		scheduler = new LayoutScheduler(1, LayoutScheduler.DEFAULT_CAPACITY, false);
+		CountDownLatch started = new CountDownLatch(1);
+		AtomicBoolean stop = new AtomicBoolean();
+		int[] checkpoints = new int[1];
+		LayoutHandle<Integer> handle = scheduler.submit(() -> {
+			started.countDown();
+			while (!stop.get()) {
+				checkpoints[0]++;
+				LayoutScheduler.checkpoint();
+			}
+			return checkpoints[0];
+		}, LayoutPriority.BATCH);
+		started.await();
+		handle.pause();
+		Thread.sleep(20);
+		stop.set(true);
+		Thread.sleep(20);
+		assertFalse(handle.isDone());
+		handle.resume();
+		assertTrue(handle.get(5, TimeUnit.SECONDS) > 0);
+	}
+
+	@Test
+	public void cancelledLayoutsAreNeverStarted() throws Exception {
+		scheduler = new LayoutScheduler(1, LayoutScheduler.DEFAULT_CAPACITY, false);
+		CountDownLatch release = block(LayoutPriority.BATCH);
+		AtomicBoolean ran = new AtomicBoolean();
+		LayoutHandle<Object> queued = scheduler.submit(() -> ran.getAndSet(true), LayoutPriority.BATCH);
+		assertTrue(queued.cancel(true));
+		assertTrue(queued.isDone());
+		release.countDown();
+		// the scheduler runs layouts in order, so the cancelled one was skipped
+		scheduler.submit(() -> null, LayoutPriority.BATCH).get(5, TimeUnit.SECONDS);
+		assertFalse(ran.get());
+		try {
+			queued.get();
+			fail();
+		} catch (CancellationException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void cancelledSteppedLayoutsAreEnded() throws Exception {
+		scheduler = new LayoutScheduler(1, LayoutScheduler.DEFAULT_CAPACITY, false);
+		Steps steps = new Steps(Integer.MAX_VALUE);
+		LayoutHandle<Integer> handle = scheduler.submit(steps, LayoutPriority.INTERACTIVE);
+		steps.started.await();
+		handle.cancel();
+		assertTrue(steps.ended.await(5, TimeUnit.SECONDS));
+		assertFalse(handle.cancel(true));
+	}
+
+	@Test
+	public void fullQueuesRejectLayouts() throws Exception {
+		scheduler = new LayoutScheduler(1, 2, false);
+		CountDownLatch release = block(LayoutPriority.BATCH);
+		scheduler.submit(() -> null, LayoutPriority.BATCH);
+		scheduler.submit(() -> null, LayoutPriority.BATCH);
+		try {
+			scheduler.submit(() -> null, LayoutPriority.BATCH);
+			fail();
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+		// the other priority has a queue of its own
+		LayoutHandle<String> interactive = scheduler.submit(() -> "interactive", LayoutPriority.INTERACTIVE);
+		release.countDown();
+		assertEquals("interactive", interactive.get(5, TimeUnit.SECONDS));
+
+		scheduler.shutdown();
+		try {
+			scheduler.submit(() -> null, LayoutPriority.INTERACTIVE);
+			fail();
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void interactiveLayoutsRunBetweenTheStepsOfBatchLayouts() throws Exception {
+		scheduler = new LayoutScheduler(1, LayoutScheduler.DEFAULT_CAPACITY, false);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch interactiveDone = new CountDownLatch(1);
+		LayoutHandle<Boolean> batch = scheduler.submit(() -> {
+			started.countDown();
+			// only returns if the interactive layout ran on this worker meanwhile
+			while (!interactiveDone.await(1, TimeUnit.MILLISECONDS)) {
+				LayoutScheduler.checkpoint();
+			}
+			return true;
+		}, LayoutPriority.BATCH);
+		started.await();
+		LayoutHandle<Object> interactive = scheduler.submit(() -> {
+			interactiveDone.countDown();
+			return null;
+		}, LayoutPriority.INTERACTIVE);
+		assertTrue(batch.get(5, TimeUnit.SECONDS));
+		assertTrue(interactive.isDone());
+	}
+
+	@Test
+	public void partsRunOnTheCallingWorkerIfNoOtherIsFree() throws Exception {
+		scheduler = new LayoutScheduler(1, LayoutScheduler.DEFAULT_CAPACITY, false);
+		LayoutHandle<List<Integer>> handle = scheduler.submit(() -> {
+			List<Callable<Integer>> tasks = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				int part = i;
+				tasks.add(() -> part * part);
+			}
+			List<Integer> results = new ArrayList<>();
+			for (Future<Integer> future : LayoutScheduler.invokeAll(tasks)) {
+				results.add(future.get());
+			}
+			return results;
+		}, LayoutPriority.BATCH);
+		assertEquals(Arrays.asList(0, 1, 4, 9), handle.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void waitingLayoutsRunTheLayoutsTheyWaitFor() throws Exception {
+		scheduler = new LayoutScheduler(1, LayoutScheduler.DEFAULT_CAPACITY, false);
+		LayoutHandle<String> outer = scheduler.submit(() -> {
+			LayoutHandle<String> inner = scheduler.submit(() -> "inner", LayoutPriority.BATCH);
+			LayoutScheduler.await(inner::isDone);
+			return inner.get();
+		}, LayoutPriority.BATCH);
+		assertEquals("inner", outer.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void executorsAwaitTheirLayouts() throws Exception {
+		scheduler = new LayoutScheduler(2, LayoutScheduler.DEFAULT_CAPACITY, false);
+		ExecutorService executor = scheduler.executor(LayoutPriority.BATCH);
+		CountDownLatch release = new CountDownLatch(1);
+		executor.submit(() -> {
+			release.await();
+			return null;
+		});
+		executor.shutdown();
+		assertFalse(executor.awaitTermination(20, TimeUnit.MILLISECONDS));
+		release.countDown();
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+		assertTrue(executor.isTerminated());
+	}
+
+	/**
+	 * Keeps a worker busy until the latch is released.
+	 */
+	private CountDownLatch block(LayoutPriority priority) throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		scheduler.submit(() -> {
+			started.countDown();
+			release.await();
+			return null;
+		}, priority);
+		started.await();
+		return release;
+	}
+
+	/**
+	 * Runs steps that take a millisecond, or no time at all.
+	 */
+	static class Steps implements SteppedLayout {
+
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch ended = new CountDownLatch(1);
+		private final int total;
+		private final boolean sleep;
+		private volatile int iteration;
+
+		Steps(int total) {
+			this(total, true);
+		}
+
+		Steps(int total, boolean sleep) {
+			this.total = total;
+			this.sleep = sleep;
+		}
+
+		@Override
+		public void begin() {
+			started.countDown();
+		}
+
+		@Override
+		public boolean advance(int target, long budgetNanos) {
+			long start = System.nanoTime();
+			while (iteration < total && iteration < target && !Thread.currentThread().isInterrupted()) {
+				if (sleep) {
+					try {
+						Thread.sleep(1);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+				iteration++;
+				LayoutScheduler.checkpoint();
+				if (budgetNanos != Long.MAX_VALUE && System.nanoTime() - start >= budgetNanos) {
+					break;
+				}
+			}
+			return iteration < total && !Thread.currentThread().isInterrupted();
+		}
+
+		@Override
+		public int end() {
+			ended.countDown();
+			return iteration;
+		}
+
+		@Override
+		public int getIteration() {
+			return iteration;
+		}
+	}
+
+	private static Parameter parameter(int parallelism) {
+		Parameter p = new Parameter();
+		p.setFrameWidth(600);
+		p.setFrameHeight(600);
+		p.setRepulsionMode(RepulsionMode.GRID);
+		p.setCriterion(30);
+		p.setCoolingRate(0.02);
+		p.setParallelism(parallelism);
+		p.setAttractiveForce("(d * d) / k");
+		p.setRepulsiveForce("(k * k) / d");
+		return p;
+	}
+
+	private static Graph<Vertex, Edge> grid(int size) {
+		Graph<Vertex, Edge> graph = new SimpleGraph<>(new EdgeFactory());
+		new GridGraphGenerator<Vertex, Edge>(size, size).generateGraph(graph, new VertexFactory(), null);
+		return graph;
+	}
+}
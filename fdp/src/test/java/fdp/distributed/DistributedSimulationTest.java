@@ -0,0 +1,117 @@
+package fdp.distributed;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.jgrapht.Graph;
+import org.jgrapht.generate.GridGraphGenerator;
+import org.jgrapht.graph.SimpleGraph;
+import org.junit.Test;
+
+import fdp.Parameter;
+import fdp.RepulsionMode;
+import fdp.graph.CompactGraph;
+import fdp.graph.Edge;
+import fdp.graph.EdgeFactory;
+import fdp.graph.Vertex;
+import fdp.graph.VertexFactory;
+
+/**
+ * Lays out graphs with worker processes on this machine.
+ */
+public class DistributedSimulationTest {
+
+	private long stepNanos;
+
+	@Test
+	public void workersLayOutTheWholeGraph() throws Exception {
+		CompactGraph graph = grid(20);
+		DistributedSimulation simulation = layout(graph, 3, 60);
+		assertEquals(60, simulation.getIteration());
+		double[] x = simulation.getX();
+		double[] y = simulation.getY();
+		double edges = 0;
+		double pairs = 0;
+		int n = graph.getVertexCount();
+		for (int v = 0; v < n; v++) {
+			assertTrue(x[v] >= 0 && x[v] <= 600 && y[v] >= 0 && y[v] <= 600);
+			for (int e = graph.getOffsets()[v]; e < graph.getOffsets()[v + 1]; e++) {
+				int u = graph.getTargets()[e];
+				edges += Math.hypot(x[v] - x[u], y[v] - y[u]);
+			}
+			int u = (v * 7919) % n;
+			pairs += Math.hypot(x[v] - x[u], y[v] - y[u]);
+		}
+		// neighbours end up much closer than vertices picked at random
+		assertTrue(edges / graph.getOffsets()[n] < 0.25 * pairs / n);
+		assertTrue(simulation.getCriticalPathNanos() >= simulation.getExchangeNanos());
+	}
+
+	@Test
+	public void workersSpeedUpTheSteps() throws Exception {
+		int cores = Runtime.getRuntime().availableProcessors();
+		assumeTrue(cores > 1);
+		CompactGraph graph = grid(100);
+		int count = Math.min(cores, 4);
+		long one = stepTime(graph, 1);
+		long many = stepTime(graph, count);
+		double speedup = one / (double) many;
+		assertTrue("speedup " + speedup + " with " + count + " workers", speedup > 1.1);
+	}
+
+	/**
+	 * @return the wall-clock time of the steps once the workers are warmed up
+	 */
+	private long stepTime(CompactGraph graph, int workers) throws Exception {
+		assertEquals(40, layout(graph, workers, 40).getIteration());
+		return stepNanos;
+	}
+
+	/**
+	 * Starts the workers and runs the layout with them, timing the steps after
+	 * the first 10.
+	 */
+	private DistributedSimulation layout(CompactGraph graph, int workers, int iterations)
+			throws IOException, InterruptedException {
+		Parameter p = new Parameter();
+		p.setFrameWidth(600);
+		p.setFrameHeight(600);
+		p.setRepulsionMode(RepulsionMode.BARNES_HUT);
+		p.setCriterion(iterations);
+		p.setCoolingRate(0.02);
+		p.setAttractiveForce("(d * d) / k");
+		p.setRepulsiveForce("(k * k) / d");
+		try (ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress())) {
+			DistributedSimulation simulation = new DistributedSimulation(graph, p, server, workers,
+					DistributedSimulation.DEFAULT_LEVELS);
+			try (LocalWorkers local = new LocalWorkers(server.getLocalPort(), workers, Collections.emptyList())) {
+				simulation.begin();
+				try {
+					simulation.advance(Math.min(10, iterations), Long.MAX_VALUE);
+					long begun = System.nanoTime();
+					while (simulation.advance(Integer.MAX_VALUE, Long.MAX_VALUE)) {
+						// until the criterion is met
+					}
+					stepNanos = System.nanoTime() - begun;
+				} finally {
+					simulation.end();
+				}
+				local.await(10, TimeUnit.SECONDS);
+			}
+			return simulation;
+		}
+	}
+
+	private static CompactGraph grid(int size) {
+		Graph<Vertex, Edge> graph = new SimpleGraph<>(new EdgeFactory());
+		new GridGraphGenerator<Vertex, Edge>(size, size).generateGraph(graph, new VertexFactory(), null);
+		return CompactGraph.compile(graph);
+	}
+}
@@ -0,0 +1,68 @@
+package fdp.distributed;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.function.DoubleBinaryOperator;
+
+import org.junit.Test;
+
+/**
+ * Compares the forces of the summary with the ones of the vertices it stands
+ * for.
+ */
+public class FarFieldTest {
+
+	private static final DoubleBinaryOperator REPULSION = (d, k) -> k * k / d;
+	private static final double K = 10;
+
+	@Test
+	public void distantVerticesActAtTheirCenter() {
+		// 32 x 32 cells of 10 x 10
+		FarField field = new FarField(5, 320, 320);
+		Random random = new Random(1);
+		double[] x = new double[200];
+		double[] y = new double[200];
+		for (int i = 0; i < x.length; i++) {
+			x[i] = 200 + random.nextDouble() * 100;
+			y[i] = 200 + random.nextDouble() * 100;
+			field.add(x[i], y[i], 1);
+		}
+		field.build();
+		double[] force = new double[2];
+		field.accumulate(20, 30, 0.5, REPULSION, K, force);
+		double[] exact = exact(x, y, 20, 30);
+		assertEquals(exact[0], force[0], 0.01 * Math.abs(exact[0]));
+		assertEquals(exact[1], force[1], 0.01 * Math.abs(exact[1]));
+	}
+
+	@Test
+	public void nearCellsDoNotActAtTheirCenter() {
+		FarField field = new FarField(5, 320, 320);
+		// a cell full of vertices whose center is right next to the position
+		for (int i = 0; i < 100; i++) {
+			field.add(100 + i % 10, 100 + i / 10, 1);
+		}
+		field.build();
+		double[] force = new double[2];
+		field.accumulate(104.51, 104.5, 0.8, REPULSION, K, force);
+		// the vertices push to the right, but not with 100 times the force at a distance of 0.01
+		assertTrue(force[0] > 0);
+		assertTrue(force[0] < 100 * REPULSION.applyAsDouble(5, K));
+		assertEquals(0, force[1], 1e-9);
+	}
+
+	private static double[] exact(double[] x, double[] y, double px, double py) {
+		double[] force = new double[2];
+		for (int i = 0; i < x.length; i++) {
+			double dx = px - x[i];
+			double dy = py - y[i];
+			double d = Math.sqrt(dx * dx + dy * dy);
+			double f = REPULSION.applyAsDouble(d, K) / d;
+			force[0] += dx * f;
+			force[1] += dy * f;
+		}
+		return force;
+	}
+}
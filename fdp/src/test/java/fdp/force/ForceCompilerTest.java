@@ -0,0 +1,56 @@
+package fdp.force;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.function.DoubleBinaryOperator;
+
+import org.junit.Test;
+
+import parsii.tokenizer.ParseException;
+
+public class ForceCompilerTest {
+
+	@Test
+	public void specialisesPowerLaws() throws ParseException {
+		assertTrue(ForceCompiler.compile("(k * k) / d") instanceof PowerLaw);
+		assertTrue(ForceCompiler.compile("(d * d) / k") instanceof PowerLaw);
+		assertTrue(ForceCompiler.compile("2 * d^3 / k") instanceof PowerLaw);
+	}
+
+	@Test
+	public void compiledForcesAgreeWithParsii() throws ParseException {
+		for (String expression : new String[] { "(k * k) / d", "d * ln(d / k)", "max(d, k) - sqrt(k) % 3",
+				"-2^2 * d", "2^3^2 / k + tanh(d)" }) {
+			DoubleBinaryOperator compiled = ForceCompiler.compile(expression);
+			DoubleBinaryOperator reference = new ExpressionForce(expression);
+			for (double d = 0.5; d < 500; d *= 3) {
+				double expected = reference.applyAsDouble(d, 12);
+				assertEquals(expression, expected, compiled.applyAsDouble(d, 12), 1e-9 * Math.abs(expected));
+			}
+		}
+	}
+
+	@Test
+	public void parserRejectsUnsupportedSyntax() {
+		for (String expression : new String[] { "3k * d", "foo(d)", "min(d)", "x * d", "(d", "d)", "1..2 * d",
+				"d * 2 *" }) {
+			assertNull(expression, new ForceCompiler.ExpressionParser(expression).parse());
+		}
+		assertNotNull(new ForceCompiler.ExpressionParser(" d * (k + 1) ").parse());
+	}
+
+	@Test
+	public void unsupportedSyntaxFallsBackToParsii() throws ParseException {
+		DoubleBinaryOperator force = ForceCompiler.compile("3k * d");
+		assertTrue(force instanceof ExpressionForce);
+		assertEquals(3000 * 2, force.applyAsDouble(2, 1), 1e-9);
+	}
+
+	@Test(expected = ParseException.class)
+	public void malformedExpressionsAreReported() throws ParseException {
+		ForceCompiler.compile("d * * k");
+	}
+}
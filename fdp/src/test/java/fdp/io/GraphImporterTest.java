@@ -0,0 +1,158 @@
+package fdp.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fdp.graph.CompactGraph;
+
+public class GraphImporterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void readsEdgeLists() throws IOException {
+		ImportedGraph graph = read("graph.csv", "# comment\r\n"
+				+ "% another comment\n"
+				+ "a,b,0.5\r\n"
+				+ "\n"
+				+ "  b ; \"c d\"\n"
+				+ "\"c d\"\ta\n"
+				+ "b a\n"
+				+ "a a\n"
+				+ "7 b");
+		assertEquals(4, graph.getGraph().getVertexCount());
+		assertEquals(4, graph.getGraph().getEdgeCount());
+		assertEquals(set("b", "c d"), neighbours(graph, "a"));
+		assertEquals(set("a", "c d", "7"), neighbours(graph, "b"));
+		assertEquals(set("b"), neighbours(graph, "7"));
+	}
+
+	@Test
+	public void numericAndTextLabelsAreDistinct() throws IOException {
+		ImportedGraph graph = read("graph.txt", "1 2\n2 01\n01 x\n100000 1\n");
+		assertEquals(5, graph.getGraph().getVertexCount());
+		assertEquals(set("2", "100000"), neighbours(graph, "1"));
+		assertEquals(set("2", "x"), neighbours(graph, "01"));
+	}
+
+	@Test
+	public void sparseNumericLabelsAreFoundAgain() throws IOException {
+		StringBuilder content = new StringBuilder("1 60000000\n1 5000\n");
+		// enough labels that 5000 is looked up in the dense array from now on
+		for (int i = 2; i <= 1001; i++) {
+			content.append(i).append(' ').append(i + 1).append('\n');
+		}
+		content.append("5000 2\n60000000 2\n");
+		ImportedGraph graph = read("graph.txt", content.toString());
+		assertEquals(1004, graph.getGraph().getVertexCount());
+		assertEquals(set("1", "2"), neighbours(graph, "5000"));
+		assertEquals(set("1", "2"), neighbours(graph, "60000000"));
+	}
+
+	@Test
+	public void reportsLinesWithOneLabel() throws IOException {
+		try {
+			read("graph.txt", "a b\nc\n");
+			fail();
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().endsWith(":2: expected two vertex labels"));
+		}
+	}
+
+	@Test
+	public void readsGraphML() throws IOException {
+		ImportedGraph graph = read("graph.graphml", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<!-- <node id=\"commented\"/> -->\n"
+				+ "<g:graphml xmlns:g=\"http://graphml.graphdrawing.org/xmlns\">\n"
+				+ "  <g:key id=\"w\" for=\"edge\" attr.name=\"weight\"/>\n"
+				+ "  <g:graph edgedefault=\"undirected\">\n"
+				+ "    <g:node id=\"n0\"><g:data key=\"w\">1</g:data></g:node>\n"
+				+ "    <g:node id='n1'/>\n"
+				+ "    <g:node id=\"lonely\"/>\n"
+				+ "    <g:edge id=\"e0\" source=\"n0\" target=\"n1\"/>\n"
+				+ "    <g:edge target=\"n2\"\n source = \"n1\"><g:data key=\"w\">2</g:data></g:edge>\n"
+				+ "    <g:edge source=\"n1\" target=\"n0\"/>\n"
+				+ "    <g:edge source=\"n2\" target=\"n2\"/>\n"
+				+ "  </g:graph>\n"
+				+ "</g:graphml>\n");
+		assertEquals(4, graph.getGraph().getVertexCount());
+		assertEquals(2, graph.getGraph().getEdgeCount());
+		assertEquals(set("n0", "n2"), neighbours(graph, "n1"));
+		assertEquals(set(), neighbours(graph, "lonely"));
+	}
+
+	@Test
+	public void rejectsEdgesWithoutTarget() throws IOException {
+		try {
+			read("graph.graphml", "<graphml><graph><edge source=\"a\"/></graph></graphml>");
+			fail();
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().endsWith("edge without source or target"));
+		}
+	}
+
+	@Test
+	public void binaryGraphsRoundTrip() throws IOException {
+		CompactGraph graph = read("graph.txt", "0 1\n1 2\n2 0\n2 3\n4 5\n").getGraph();
+		Path file = folder.getRoot().toPath().resolve("graph" + GraphImporter.BINARY_EXTENSION);
+		BinaryGraphFormat.write(graph, file);
+		CompactGraph read = GraphImporter.read(file).getGraph();
+		assertEquals(graph.getVertexCount(), read.getVertexCount());
+		assertArrayEquals(graph.getOffsets(), read.getOffsets());
+		assertArrayEquals(graph.getTargets(), read.getTargets());
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsOtherBinaryFiles() throws IOException {
+		read("graph" + GraphImporter.BINARY_EXTENSION, "0 1\n1 2\n2 0\n2 3\n4 5\n");
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsTruncatedBinaryFiles() throws IOException {
+		CompactGraph graph = read("graph.txt", "0 1\n1 2\n2 0\n").getGraph();
+		Path file = folder.getRoot().toPath().resolve("graph" + GraphImporter.BINARY_EXTENSION);
+		BinaryGraphFormat.write(graph, file);
+		byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 4));
+		GraphImporter.read(file);
+	}
+
+	private ImportedGraph read(String name, String content) throws IOException {
+		Path file = folder.getRoot().toPath().resolve(name);
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+		return GraphImporter.read(file);
+	}
+
+	private static Set<String> neighbours(ImportedGraph imported, String label) {
+		CompactGraph graph = imported.getGraph();
+		for (int v = 0; v < graph.getVertexCount(); v++) {
+			if (imported.getLabel(v).equals(label)) {
+				Set<String> labels = new TreeSet<>();
+				for (int e = graph.getOffsets()[v]; e < graph.getOffsets()[v + 1]; e++) {
+					labels.add(imported.getLabel(graph.getTargets()[e]));
+				}
+				return labels;
+			}
+		}
+		throw new AssertionError("no vertex " + label);
+	}
+
+	private static Set<String> set(String... labels) {
+		return new TreeSet<>(Arrays.asList(labels));
+	}
+}
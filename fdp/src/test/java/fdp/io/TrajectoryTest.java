@@ -0,0 +1,145 @@
+package fdp.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Records trajectories with {@link TrajectoryRecorder} and reads them back with
+ * {@link TrajectoryReader}.
+ */
+public class TrajectoryTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void roundTrip() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("layout.fdpt");
+		int n = 5;
+		try (TrajectoryRecorder recorder = new TrajectoryRecorder(file, 2)) {
+			recorder.start(n, 800, 600);
+			for (int iteration = 0; iteration <= 10; iteration++) {
+				recorder.record(iteration, 100 - iteration, positions(n, iteration, 0), positions(n, iteration, 1));
+			}
+			assertEquals(6, recorder.getFrameCount());
+		}
+		try (TrajectoryReader reader = new TrajectoryReader(file)) {
+			assertEquals(n, reader.getVertexCount());
+			assertEquals(6, reader.getFrameCount());
+			assertEquals(2, reader.getInterval());
+			assertEquals(800, reader.getFrameWidth());
+			assertEquals(600, reader.getFrameHeight());
+			float[] x = new float[n];
+			float[] y = new float[n];
+			for (int frame = 0; frame < 6; frame++) {
+				int iteration = 2 * frame;
+				assertEquals(iteration, reader.getIteration(frame));
+				assertEquals(100 - iteration, reader.getTemperature(frame), 0);
+				reader.readFrame(frame, x, y);
+				assertFrame(positions(n, iteration, 0), x);
+				assertFrame(positions(n, iteration, 1), y);
+			}
+		}
+		assertEquals(TrajectoryFormat.HEADER_SIZE + 6 * TrajectoryFormat.frameSize(n), Files.size(file));
+	}
+
+	@Test
+	public void framesAreReadWithoutTheOthers() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("layout.fdpt");
+		// frames of 1.6 MB, so the recorder maps several regions
+		int n = 200_000;
+		int frames = 25;
+		try (TrajectoryRecorder recorder = new TrajectoryRecorder(file, 1)) {
+			recorder.start(n, 800, 600);
+			for (int iteration = 0; iteration < frames; iteration++) {
+				recorder.record(iteration, iteration, positions(n, iteration, 0), positions(n, iteration, 1));
+			}
+		}
+		// overwrite the even frames, a reader that scans or decodes other frames reads garbage
+		long frameSize = TrajectoryFormat.frameSize(n);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			ByteBuffer garbage = ByteBuffer.allocate((int) frameSize);
+			for (int i = 0; i < garbage.capacity(); i++) {
+				garbage.put(i, (byte) 0xff);
+			}
+			for (int frame = 0; frame < frames; frame += 2) {
+				garbage.clear();
+				channel.write(garbage, TrajectoryFormat.HEADER_SIZE + frame * frameSize);
+			}
+		}
+		try (TrajectoryReader reader = new TrajectoryReader(file)) {
+			assertEquals(frames, reader.getFrameCount());
+			float[] x = new float[n];
+			float[] y = new float[n];
+			for (int frame = frames - 2; frame > 0; frame -= 2) {
+				reader.readFrame(frame, x, y);
+				assertEquals(frame, reader.getIteration(frame));
+				assertFrame(positions(n, frame, 0), x);
+				assertFrame(positions(n, frame, 1), y);
+			}
+		}
+	}
+
+	@Test
+	public void framesAreVisibleWhileRecording() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("layout.fdpt");
+		try (TrajectoryRecorder recorder = new TrajectoryRecorder(file, 1)) {
+			recorder.start(3, 10, 10);
+			for (int iteration = 0; iteration < 3; iteration++) {
+				recorder.record(iteration, 1, positions(3, iteration, 0), positions(3, iteration, 1));
+			}
+			try (TrajectoryReader reader = new TrajectoryReader(file)) {
+				assertEquals(3, reader.getFrameCount());
+				float[] x = new float[3];
+				float[] y = new float[3];
+				reader.readFrame(2, x, y);
+				assertFrame(positions(3, 2, 1), y);
+			}
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsOtherFiles() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("layout.fdpt");
+		Files.write(file, new byte[64]);
+		new TrajectoryReader(file).close();
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void rejectsMissingFrames() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("layout.fdpt");
+		try (TrajectoryRecorder recorder = new TrajectoryRecorder(file, 1)) {
+			recorder.start(1, 10, 10);
+			recorder.record(0, 1, new double[1], new double[1]);
+		}
+		try (TrajectoryReader reader = new TrajectoryReader(file)) {
+			reader.getIteration(1);
+		}
+	}
+
+	private static double[] positions(int n, int iteration, int axis) {
+		double[] p = new double[n];
+		for (int i = 0; i < n; i++) {
+			p[i] = i * 0.5 + iteration * 10 + axis * 1000;
+		}
+		return p;
+	}
+
+	private static void assertFrame(double[] expected, float[] actual) {
+		for (int i = 0; i < expected.length; i++) {
+			if ((float) expected[i] != actual[i]) {
+				assertEquals("vertex " + i, (float) expected[i], actual[i], 0);
+			}
+		}
+	}
+}
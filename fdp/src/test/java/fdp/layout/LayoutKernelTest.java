@@ -0,0 +1,238 @@
+package fdp.layout;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.DoubleBinaryOperator;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fdp.Parameter;
+import fdp.RepulsionMode;
+import fdp.VertexOrder;
+import fdp.graph.CompactGraph;
+import fdp.io.MappedLayout;
+
+/**
+ * Compares the steps of the kernel in Barnes-Hut mode with exact repulsion,
+ * split steps with sequential ones, changed kernels with new ones and mapped
+ * kernels with the ones on the heap.
+ */
+public class LayoutKernelTest {
+
+	private static final DoubleBinaryOperator ATTRACTION = (d, k) -> d * d / k;
+	private static final DoubleBinaryOperator REPULSION = (d, k) -> k * k / d;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void barnesHutWithoutApproximationIsExact() {
+		CompactGraph graph = ring(300);
+		LayoutKernel exact = kernel(graph, RepulsionMode.EXACT, 0);
+		LayoutKernel barnesHut = kernel(graph, RepulsionMode.BARNES_HUT, 0);
+		for (int s = 0; s < 5; s++) {
+			assertEquals(exact.step(50), barnesHut.step(50), 1e-6);
+		}
+		assertPositions(exact, barnesHut, 1e-6);
+	}
+
+	@Test
+	public void barnesHutStaysCloseToExact() {
+		CompactGraph graph = ring(300);
+		LayoutKernel exact = kernel(graph, RepulsionMode.EXACT, 0.8);
+		LayoutKernel barnesHut = kernel(graph, RepulsionMode.BARNES_HUT, 0.8);
+		double maxForce = exact.step(50);
+		double approximated = barnesHut.step(50);
+		assertEquals(maxForce, approximated, 0.02 * maxForce);
+		// one step moves the vertices by up to 50, on average they end up much closer
+		double[] ex = exact.getX();
+		double[] ey = exact.getY();
+		double[] ax = barnesHut.getX();
+		double[] ay = barnesHut.getY();
+		double deviation = 0;
+		for (int i = 0; i < ex.length; i++) {
+			deviation += Math.hypot(ex[i] - ax[i], ey[i] - ay[i]);
+		}
+		assertTrue(deviation / ex.length < 0.5);
+	}
+
+	@Test
+	public void splitStepsDoNotChangeTheResult() {
+		CompactGraph graph = ring(2000);
+		for (RepulsionMode mode : RepulsionMode.values()) {
+			LayoutKernel sequential = kernel(graph, mode, 0.8);
+			LayoutKernel split = kernel(graph, mode, 0.8);
+			split.setPool(StepPools.get(4));
+			for (int s = 0; s < 3; s++) {
+				assertEquals(sequential.step(50), split.step(50), 0);
+			}
+			assertPositions(sequential, split, 0);
+		}
+	}
+
+	@Test
+	public void changedKernelsMatchNewOnes() {
+		for (RepulsionMode mode : RepulsionMode.values()) {
+			LayoutKernel changed = kernel(ring(300), mode, 0.8);
+			changed.reorder(VertexOrder.HILBERT);
+			// the edges of the ring as pairs of graph indices, kept like the kernel does
+			List<Set<Integer>> edges = new ArrayList<>();
+			for (int i = 0; i < 300; i++) {
+				edges.add(new HashSet<>());
+				edges.get(i).add((i + 1) % 300);
+				edges.get(i).add((i + 299) % 300);
+			}
+			Random random = new Random(2);
+			for (int c = 0; c < 2000; c++) {
+				int n = edges.size();
+				int v = random.nextInt(n);
+				switch (random.nextInt(4)) {
+				case 0:
+					assertEquals(n, changed.addVertex(null, random.nextDouble() * 1000, random.nextDouble() * 1000));
+					edges.add(new HashSet<>());
+					break;
+				case 1:
+					int moved = changed.removeVertex(v);
+					assertEquals(n - 1, moved);
+					for (int u : edges.get(v)) {
+						edges.get(u).remove(v);
+					}
+					Set<Integer> last = edges.remove(moved);
+					if (moved != v) {
+						edges.set(v, last);
+						for (Set<Integer> targets : edges) {
+							if (targets.remove(moved)) {
+								targets.add(v);
+							}
+						}
+					}
+					break;
+				case 2:
+					int u = random.nextInt(n);
+					if (u != v && edges.get(v).add(u)) {
+						edges.get(u).add(v);
+						changed.addEdge(v, u);
+					}
+					break;
+				default:
+					if (!edges.get(v).isEmpty()) {
+						int w = edges.get(v).iterator().next();
+						edges.get(v).remove(w);
+						edges.get(w).remove(v);
+						changed.removeEdge(v, w);
+					}
+				}
+			}
+			CompactGraph graph = changed.getGraph();
+			int n = edges.size();
+			assertEquals(n, changed.getVertexCount());
+			assertEquals(n, graph.getVertexCount());
+			for (int v = 0; v < n; v++) {
+				Set<Integer> targets = new HashSet<>();
+				for (int e = graph.getOffsets()[v]; e < graph.getOffsets()[v + 1]; e++) {
+					assertFalse(targets.contains(graph.getTargets()[e]));
+					targets.add(graph.getTargets()[e]);
+				}
+				assertEquals("vertex " + v, edges.get(v), targets);
+			}
+
+			// a new kernel of the resulting graph takes the same steps
+			LayoutKernel rebuilt = kernel(graph, mode, 0.8, 1000 / Math.sqrt(300));
+			rebuilt.setPositions(0, n, changed.getX(), changed.getY());
+			for (int s = 0; s < 3; s++) {
+				assertEquals(rebuilt.step(50), changed.step(50), 1e-9);
+			}
+			assertPositions(rebuilt, changed, 1e-9);
+		}
+	}
+
+	@Test
+	public void mappedKernelsTakeTheStepsOfTheGrid() throws IOException {
+		CompactGraph graph = ring(2000);
+		LayoutKernel heap = kernel(graph, RepulsionMode.GRID, 0);
+		try (MappedLayout layout = MappedLayout.create(folder.newFile().toPath(), graph, 1000, 1000)) {
+			int n = graph.getVertexCount();
+			for (int i = 0; i < n; i++) {
+				layout.getX().put(i, heap.getX(i));
+				layout.getY().put(i, heap.getY(i));
+			}
+			MappedKernel mapped = new MappedKernel(layout, 1000 / Math.sqrt(n), ATTRACTION, REPULSION);
+			mapped.setPool(StepPools.get(4));
+			for (int s = 0; s < 3; s++) {
+				// the buckets are visited in another order, which changes the rounding
+				assertEquals(heap.step(50), mapped.step(50), 1e-6);
+			}
+			assertEquals(heap.getEnergy(), mapped.getEnergy(), 1e-6 * heap.getEnergy());
+			for (int i = 0; i < n; i++) {
+				assertTrue("vertex " + i, Math.hypot(heap.getX(i) - layout.getX().get(i),
+						heap.getY(i) - layout.getY().get(i)) <= 1e-6);
+			}
+		}
+	}
+
+	@Test
+	public void poolsAreSharedPerParallelism() {
+		assertNull(StepPools.get(1));
+		assertSame(StepPools.get(3), StepPools.get(3));
+		assertEquals(3, StepPools.get(3).getParallelism());
+	}
+
+	private static void assertPositions(LayoutKernel expected, LayoutKernel actual, double delta) {
+		double[] ex = expected.getX();
+		double[] ey = expected.getY();
+		double[] ax = actual.getX();
+		double[] ay = actual.getY();
+		for (int i = 0; i < ex.length; i++) {
+			assertTrue("vertex " + i, Math.hypot(ex[i] - ax[i], ey[i] - ay[i]) <= delta);
+		}
+	}
+
+	private static LayoutKernel kernel(CompactGraph graph, RepulsionMode mode, double theta) {
+		return kernel(graph, mode, theta, 1000 / Math.sqrt(graph.getVertexCount()));
+	}
+
+	private static LayoutKernel kernel(CompactGraph graph, RepulsionMode mode, double theta, double k) {
+		Parameter p = new Parameter();
+		p.setFrameWidth(1000);
+		p.setFrameHeight(1000);
+		p.setRepulsionMode(mode);
+		p.setTheta(theta);
+		int n = graph.getVertexCount();
+		LayoutKernel kernel = new LayoutKernel(graph, p, k, ATTRACTION, REPULSION);
+		Random random = new Random(1);
+		double[] x = new double[n];
+		double[] y = new double[n];
+		for (int i = 0; i < n; i++) {
+			x[i] = random.nextDouble() * 1000;
+			y[i] = random.nextDouble() * 1000;
+		}
+		kernel.setPositions(0, n, x, y);
+		return kernel;
+	}
+
+	/**
+	 * @return a cycle of n vertices
+	 */
+	static CompactGraph ring(int n) {
+		int[] offsets = new int[n + 1];
+		int[] targets = new int[2 * n];
+		for (int i = 0; i < n; i++) {
+			offsets[i + 1] = 2 * (i + 1);
+			targets[2 * i] = (i + n - 1) % n;
+			targets[2 * i + 1] = (i + 1) % n;
+		}
+		return new CompactGraph(n, offsets, targets, null);
+	}
+}
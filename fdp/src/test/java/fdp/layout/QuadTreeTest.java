@@ -0,0 +1,122 @@
+package fdp.layout;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.function.DoubleBinaryOperator;
+
+import org.junit.Test;
+
+/**
+ * Compares the Barnes-Hut approximation with the exact repulsion.
+ */
+public class QuadTreeTest {
+
+	private static final DoubleBinaryOperator REPULSION = (d, k) -> k * k / d;
+	private static final double K = 10;
+
+	@Test
+	public void openingEveryCellIsExact() {
+		double[][] positions = randomPositions(500, 1);
+		double[][] exact = exact(positions[0], positions[1]);
+		double[][] approximated = approximate(positions[0], positions[1], 0);
+		for (int i = 0; i < exact[0].length; i++) {
+			assertEquals(exact[0][i], approximated[0][i], 1e-9 * Math.abs(exact[0][i]) + 1e-9);
+			assertEquals(exact[1][i], approximated[1][i], 1e-9 * Math.abs(exact[1][i]) + 1e-9);
+		}
+	}
+
+	@Test
+	public void errorGrowsWithTheta() {
+		double[][] positions = randomPositions(2000, 2);
+		double[][] exact = exact(positions[0], positions[1]);
+		double previous = 0;
+		for (double theta : new double[] { 0.3, 0.6, 1.0 }) {
+			double error = relativeError(exact, approximate(positions[0], positions[1], theta));
+			assertTrue("theta " + theta + ": " + error, error >= previous);
+			previous = error;
+		}
+	}
+
+	@Test
+	public void errorIsBoundedAtDefaultTheta() {
+		double[][] positions = randomPositions(2000, 3);
+		double[][] exact = exact(positions[0], positions[1]);
+		// the default opening angle of Parameter
+		assertTrue(relativeError(exact, approximate(positions[0], positions[1], 0.8)) < 0.01);
+		assertTrue(relativeError(exact, approximate(positions[0], positions[1], 0.5)) < 0.005);
+	}
+
+	@Test
+	public void coincidentVerticesDoNotRepelThemselves() {
+		// more vertices at one position than the tree can split
+		double[] x = { 5, 5, 5, 100 };
+		double[] y = { 5, 5, 5, 100 };
+		double[][] approximated = approximate(x, y, 0.8);
+		double[][] exact = exact(x, y);
+		for (int i = 0; i < x.length; i++) {
+			assertTrue(Double.isFinite(approximated[0][i]) && Double.isFinite(approximated[1][i]));
+			assertEquals(exact[0][i], approximated[0][i], 1e-9);
+			assertEquals(exact[1][i], approximated[1][i], 1e-9);
+		}
+	}
+
+	private static double[][] randomPositions(int n, long seed) {
+		Random random = new Random(seed);
+		double[] x = new double[n];
+		double[] y = new double[n];
+		for (int i = 0; i < n; i++) {
+			x[i] = random.nextDouble() * 1000;
+			y[i] = random.nextDouble() * 1000;
+		}
+		return new double[][] { x, y };
+	}
+
+	private static double[][] exact(double[] x, double[] y) {
+		int n = x.length;
+		double[] dispX = new double[n];
+		double[] dispY = new double[n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				double dx = x[i] - x[j];
+				double dy = y[i] - y[j];
+				double d = Math.sqrt(dx * dx + dy * dy);
+				if (d > 0) {
+					double f = REPULSION.applyAsDouble(d, K) / d;
+					dispX[i] += dx * f;
+					dispY[i] += dy * f;
+				}
+			}
+		}
+		return new double[][] { dispX, dispY };
+	}
+
+	private static double[][] approximate(double[] x, double[] y, double theta) {
+		int n = x.length;
+		double[] dispX = new double[n];
+		double[] dispY = new double[n];
+		QuadTree tree = new QuadTree();
+		tree.build(x, y, n);
+		for (int i = 0; i < n; i++) {
+			tree.accumulate(i, theta, REPULSION, K, dispX, dispY);
+		}
+		return new double[][] { dispX, dispY };
+	}
+
+	/**
+	 * @return the norm of the error of all forces relative to the norm of the
+	 *         exact forces
+	 */
+	private static double relativeError(double[][] exact, double[][] approximated) {
+		double error = 0;
+		double norm = 0;
+		for (int i = 0; i < exact[0].length; i++) {
+			double ex = approximated[0][i] - exact[0][i];
+			double ey = approximated[1][i] - exact[1][i];
+			error += ex * ex + ey * ey;
+			norm += exact[0][i] * exact[0][i] + exact[1][i] * exact[1][i];
+		}
+		return Math.sqrt(error / norm);
+	}
+}
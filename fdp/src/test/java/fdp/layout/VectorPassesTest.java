@@ -0,0 +1,123 @@
+package fdp.layout;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares the SIMD passes with the scalar loops of the kernel. Only runs on
+ * Java 17 and later with the module jdk.incubator.vector, e.g. with the java17
+ * profile.
+ */
+public class VectorPassesTest {
+
+	private static final int N = 1003;
+
+	@Test
+	public void repulsionMatchesTheScalarLoop() {
+		VectorPasses passes = VectorPasses.INSTANCE;
+		assumeTrue(passes != null);
+		double[][] positions = positions(N, 1);
+		double[] x = positions[0];
+		double[] y = positions[1];
+		for (int e = -VectorPasses.MAX_EXPONENT; e <= VectorPasses.MAX_EXPONENT; e++) {
+			double[] dispX = new double[N];
+			double[] dispY = new double[N];
+			passes.repulse(x, y, N, 0, N, 3, e, dispX, dispY);
+			for (int i = 0; i < N; i++) {
+				double fx = 0;
+				double fy = 0;
+				for (int j = 0; j < N; j++) {
+					double dx = x[i] - x[j];
+					double dy = y[i] - y[j];
+					double d = Math.sqrt(dx * dx + dy * dy);
+					if (d > 0) {
+						double f = 3 * Math.pow(d, e);
+						fx += dx * f;
+						fy += dy * f;
+					}
+				}
+				assertEquals("e " + e + " vertex " + i, fx, dispX[i], 1e-9 * Math.abs(fx) + 1e-9);
+				assertEquals("e " + e + " vertex " + i, fy, dispY[i], 1e-9 * Math.abs(fy) + 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void displacementMatchesTheScalarLoop() {
+		VectorPasses passes = VectorPasses.INSTANCE;
+		assumeTrue(passes != null);
+		double[][] positions = positions(N, 2);
+		double[][] forces = forces(N, 3);
+		double[] x = positions[0].clone();
+		double[] y = positions[1].clone();
+		// some vertices without force, some pushed outside the frame
+		forces[0][5] = 0;
+		forces[1][5] = 0;
+		double maxForce = passes.displace(x, y, forces[0], forces[1], 0, N, 300, 1000, 1000);
+
+		double max = 0;
+		for (int i = 0; i < N; i++) {
+			double px = positions[0][i];
+			double py = positions[1][i];
+			double length = Math.sqrt(forces[0][i] * forces[0][i] + forces[1][i] * forces[1][i]);
+			max = Math.max(max, length);
+			if (length > 0) {
+				double scale = Math.min(length, 300) / length;
+				px += forces[0][i] * scale;
+				py += forces[1][i] * scale;
+			}
+			assertEquals("vertex " + i, Math.min(1000, Math.max(0.0, px)), x[i], 1e-9);
+			assertEquals("vertex " + i, Math.min(1000, Math.max(0.0, py)), y[i], 1e-9);
+		}
+		assertEquals(max, maxForce, 0);
+	}
+
+	@Test
+	public void splitRangesAreDisplacedAlike() {
+		VectorPasses passes = VectorPasses.INSTANCE;
+		assumeTrue(passes != null);
+		double[][] positions = positions(N, 4);
+		double[][] forces = forces(N, 5);
+		double[] x = positions[0].clone();
+		double[] y = positions[1].clone();
+		passes.displace(x, y, forces[0], forces[1], 0, N, 50, 1000, 1000);
+		double[] splitX = positions[0].clone();
+		double[] splitY = positions[1].clone();
+		// ranges whose ends do not fall on the vectors
+		for (int from = 0; from < N; from += 7) {
+			passes.displace(splitX, splitY, forces[0], forces[1], from, Math.min(N, from + 7), 50, 1000, 1000);
+		}
+		assertArrayEquals(x, splitX, 0);
+		assertArrayEquals(y, splitY, 0);
+	}
+
+	/**
+	 * @return random coordinates between 0 and 1000
+	 */
+	private static double[][] positions(int n, long seed) {
+		Random random = new Random(seed);
+		double[][] positions = new double[2][n];
+		for (int i = 0; i < n; i++) {
+			positions[0][i] = random.nextDouble() * 1000;
+			positions[1][i] = random.nextDouble() * 1000;
+		}
+		return positions;
+	}
+
+	/**
+	 * @return random forces between -500 and 500
+	 */
+	private static double[][] forces(int n, long seed) {
+		double[][] forces = positions(n, seed);
+		for (int i = 0; i < n; i++) {
+			forces[0][i] -= 500;
+			forces[1][i] -= 500;
+		}
+		return forces;
+	}
+}